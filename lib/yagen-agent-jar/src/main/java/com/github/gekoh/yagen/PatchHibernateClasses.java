@@ -0,0 +1,75 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.LoaderClassPath;
+
+import java.io.File;
+import java.util.Date;
+
+/**
+ * Applies the patches of {@link PatchTransformer} at build time to the hibernate classes unpacked into a directory.
+ * The directory can then be packaged as pre-patched hibernate jar, which is recognized at runtime so that neither
+ * the agent nor the runtime patch in YagenInit is needed.
+ * <p>
+ * usage: PatchHibernateClasses &lt;directory containing unpacked hibernate classes&gt;
+ *
+ * @author Georg Kohlweiss
+ */
+public class PatchHibernateClasses {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("usage: " + PatchHibernateClasses.class.getName() + " <hibernate classes directory>");
+            System.exit(1);
+        }
+        patch(new File(args[0]));
+    }
+
+    public static void patch(File classesDir) throws Exception {
+        if (!classesDir.isDirectory()) {
+            throw new IllegalArgumentException("not a directory: " + classesDir);
+        }
+
+        // classes in the directory take precedence, yagen-api needs to be on the classpath for compiling the patches
+        ClassPool cp = new ClassPool(true);
+        cp.appendClassPath(new LoaderClassPath(PatchHibernateClasses.class.getClassLoader()));
+        cp.insertClassPath(classesDir.getAbsolutePath());
+
+        // all classes are patched within the same pool, patches refer to members added by earlier ones
+        for (String className : PatchTransformer.PATCH_CLASS_LIST) {
+            File classFile = new File(classesDir, className.replace('.', '/') + ".class");
+            if (!classFile.isFile()) {
+                throw new IllegalArgumentException("cannot find class " + className + " in " + classesDir);
+            }
+
+            CtClass ctClass = cp.get(className);
+            if (PatchTransformer.patchClass(ctClass)) {
+                ctClass.writeFile(classesDir.getAbsolutePath());
+                logInfo("patched class " + className);
+            }
+            else {
+                logInfo("class " + className + " already patched");
+            }
+        }
+    }
+
+    private static void logInfo(String msg) {
+        System.out.println(new Date().toString() + " " + PatchHibernateClasses.class.getName() + " " + msg);
+    }
+}
@@ -26,12 +26,16 @@ import javassist.Modifier;
 import javassist.NotFoundException;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.ProtectionDomain;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * @author Georg Kohlweiss
@@ -53,40 +57,94 @@ public class PatchTransformer implements ClassFileTransformer {
             "org.hibernate.dialect.Dialect"
     );
 
+    private final PatchedClassCache cache = PatchedClassCache.getDefault();
+
+    /**
+     * pool used while classes of {@link #PATCH_CLASS_LIST} remain to be patched, released afterwards
+     */
     private ClassPool classPool;
+    private final Map<ClassLoader, Boolean> poolLoaders = new WeakHashMap<ClassLoader, Boolean>();
+    /**
+     * resulting bytecode of the classes handled since the pool was released, patches of later classes may refer to
+     * members added by earlier patches
+     */
+    private final Map<String, byte[]> handledClasses = new HashMap<String, byte[]>();
 
-    public PatchTransformer() {
-        classPool = new ClassPool();
-        classPool.appendSystemPath();
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+        String name = className.replace("/", ".");
+        if (PATCH_CLASS_LIST.contains(name)) {
+            return patch(loader, name, classfileBuffer);
+        }
+        return classfileBuffer;
+    }
+
+    private synchronized byte[] patch(ClassLoader loader, String className, byte[] classfileBuffer) {
         try {
-            classPool.appendPathList(System.getProperty("java.class.path"));
+            byte[] cached = cache != null ? cache.get(className, classfileBuffer) : null;
+            if (cached != null) {
+                logInfo("using cached patched class: " + className);
+                if (classPool != null) {
+                    classPool.makeClass(new ByteArrayInputStream(cached));
+                }
+                handled(className, cached);
+                return cached;
+            }
+
+            logInfo("patching class: " + className);
 
-            classPool.appendClassPath(new LoaderClassPath(ClassLoader.getSystemClassLoader()));
+            CtClass ctClass = getClassPool(loader).makeClass(new ByteArrayInputStream(classfileBuffer));
+            byte[] result = classfileBuffer;
+            if (patchClass(ctClass)) {
+                logInfo("... done");
+                result = ctClass.toBytecode();
+                if (cache != null) {
+                    cache.put(className, classfileBuffer, result);
+                }
+            }
+            else {
+                logInfo("... no change (agent active?)");
+            }
+            handled(className, result);
+            return result;
         } catch (Exception e) {
-            throw new RuntimeException(e);
+            e.printStackTrace();
         }
+        return classfileBuffer;
     }
 
-    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined, ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
-        if (PATCH_CLASS_LIST.contains(className.replace("/", "."))) {
-            logInfo("patching class: " + className);
-
+    private ClassPool getClassPool(ClassLoader loader) throws IOException {
+        if (classPool == null) {
+            classPool = new ClassPool();
+            classPool.appendSystemPath();
             try {
-                classPool.appendClassPath(new LoaderClassPath(loader));
-                CtClass ctClass = classPool.makeClass(new ByteArrayInputStream(classfileBuffer));
+                classPool.appendPathList(System.getProperty("java.class.path"));
 
-                if (patchClass(ctClass)) {
-                    logInfo("... done");
-                    return ctClass.toBytecode();
-                }
-                else {
-                    logInfo("... no change (agent active?)");
-                }
+                classPool.appendClassPath(new LoaderClassPath(ClassLoader.getSystemClassLoader()));
             } catch (Exception e) {
-                e.printStackTrace();
+                throw new RuntimeException(e);
+            }
+            for (byte[] handled : handledClasses.values()) {
+                classPool.makeClass(new ByteArrayInputStream(handled));
             }
         }
-        return classfileBuffer;
+        if (loader != null && !poolLoaders.containsKey(loader)) {
+            classPool.appendClassPath(new LoaderClassPath(loader));
+            poolLoaders.put(loader, Boolean.TRUE);
+        }
+        return classPool;
+    }
+
+    /**
+     * releases the class pool as soon as all classes are patched, another class loader loading hibernate
+     * again gets a new pool
+     */
+    private void handled(String className, byte[] bytecode) {
+        handledClasses.put(className, bytecode);
+        if (handledClasses.keySet().containsAll(PATCH_CLASS_LIST)) {
+            classPool = null;
+            poolLoaders.clear();
+            handledClasses.clear();
+        }
     }
 
     public static boolean patchClass(CtClass clazz) throws Exception {
@@ -145,7 +203,8 @@ public class PatchTransformer implements ClassFileTransformer {
         String initDialectSrc = "com.github.gekoh.yagen.hibernate.PatchGlue.initDialect($1, getNamingStrategy(), getProperties(), serviceRegistry, classes.values());";
 
         clazz.getDeclaredMethod("generateDropSchemaScript").insertBefore(initDialectSrc);
-        clazz.getDeclaredMethod("generateSchemaCreationScript").insertBefore(initDialectSrc);
+        clazz.getDeclaredMethod("generateSchemaCreationScript").insertBefore("{" + initDialectSrc +
+                "com.github.gekoh.yagen.hibernate.PatchGlue.beginTableEnhancements($1);}");
 
         try {
             clazz.getDeclaredMethod("generateSchemaUpdateScriptList").insertBefore(initDialectSrc);
@@ -159,6 +218,10 @@ public class PatchTransformer implements ClassFileTransformer {
         method.insertAfter(
                 "$_ = com.github.gekoh.yagen.hibernate.PatchGlue.addHeaderAndFooter($_, dialect);"
         );
+        method.addCatch(
+                "{ com.github.gekoh.yagen.hibernate.PatchGlue.abortTableEnhancements($1); throw $e; }",
+                clazz.getClassPool().get("java.lang.RuntimeException")
+        );
 
         method = clazz.getDeclaredMethod("reset");
 
@@ -255,7 +318,7 @@ public class PatchTransformer implements ClassFileTransformer {
             method.insertBefore("delimiter = $6;");
 
             CtMethod newMethod = CtMethod.make(
-                    "private void execute(boolean script, boolean export, java.io.Writer fileOutput, java.sql.Statement statement, java.lang.String sql) {\n" +
+                    "private void execute(boolean script, boolean export, java.io.Writer fileOutput, java.sql.Statement statement, java.lang.String sql) throws java.io.IOException, java.sql.SQLException {\n" +
                             "    com.github.gekoh.yagen.hibernate.PatchGlue.schemaExportExecute (script, export, fileOutput, statement, sql, $0);\n" +
                             "}"
                     ,
@@ -0,0 +1,261 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * On-disk cache of patched hibernate classes so that subsequent JVM starts do not need to patch with javassist.
+ * Entries are keyed by class name, the hash of the original class bytes and the yagen version, which includes the
+ * hashes of {@link PatchTransformer} and of PatchGlue the patched code calls. Changed hibernate jars or patches
+ * therefore never hit stale entries.
+ * <p>
+ * The cache is only used if system property {@value #CACHE_DIR_PROPERTY} names its directory. Since cached bytes
+ * get defined as hibernate classes, the directory is created accessible by its owner only and entries are only used
+ * if directory and entry are owned by the current user, not writable by group or others and the content matches the
+ * SHA-256 stored with the entry. Do not point the property to a directory shared with other users.
+ *
+ * @author Georg Kohlweiss
+ */
+public class PatchedClassCache {
+
+    public static final String CACHE_DIR_PROPERTY = "yagen.patchCacheDir";
+
+    /**
+     * classes the patched bytecode depends on, relative to the class path
+     */
+    private static final String[] PATCH_RESOURCES = {
+            PatchTransformer.class.getName().replace('.', '/') + ".class",
+            "com/github/gekoh/yagen/hibernate/PatchGlue.class"
+    };
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final int HASH_LEN = 32;
+
+    private static final Set<PosixFilePermission> NOT_OWNER_WRITABLE = EnumSet.of(
+            PosixFilePermission.GROUP_WRITE, PosixFilePermission.OTHERS_WRITE);
+
+    private static String version;
+
+    private final File directory;
+
+    public PatchedClassCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return cache configured by system property, null if not configured
+     */
+    public static PatchedClassCache getDefault() {
+        String dir = System.getProperty(CACHE_DIR_PROPERTY);
+        return dir != null && dir.trim().length() > 0 ? new PatchedClassCache(new File(dir.trim())) : null;
+    }
+
+    /**
+     * @return patched class bytes or null if not cached or the entry cannot be trusted
+     */
+    public byte[] get(String className, byte[] originalBytes) {
+        File file = getFile(className, originalBytes);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            if (!isTrusted(directory) || !isTrusted(file)) {
+                log("ignoring cached class " + file + " since it is not exclusively owned by " + System.getProperty("user.name"));
+                return null;
+            }
+            byte[] content = readFully(new FileInputStream(file));
+            if (content.length < HASH_LEN) {
+                log("ignoring truncated cached class " + file);
+                return null;
+            }
+            byte[] patchedBytes = Arrays.copyOfRange(content, HASH_LEN, content.length);
+            if (!MessageDigest.isEqual(Arrays.copyOf(content, HASH_LEN), hash(file.getName(), patchedBytes))) {
+                log("ignoring cached class " + file + " since its content hash does not match");
+                return null;
+            }
+            return patchedBytes;
+        } catch (IOException e) {
+            log("cannot read cached class " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void put(String className, byte[] originalBytes, byte[] patchedBytes) {
+        File file = getFile(className, originalBytes);
+        File tmpFile = new File(directory, file.getName() + "." + System.nanoTime() + ".tmp");
+        try {
+            createDirectory();
+            if (!isTrusted(directory)) {
+                throw new IOException("directory is not exclusively owned by " + System.getProperty("user.name"));
+            }
+            OutputStream out = new FileOutputStream(tmpFile);
+            try {
+                out.write(hash(file.getName(), patchedBytes));
+                out.write(patchedBytes);
+            } finally {
+                out.close();
+            }
+            setOwnerOnly(tmpFile.toPath(), false);
+            // another JVM may have written the same entry concurrently, entries with the same key are equal
+            if (!tmpFile.renameTo(file) && !file.isFile()) {
+                throw new IOException("cannot rename " + tmpFile + " to " + file);
+            }
+        } catch (IOException e) {
+            log("cannot write cached class " + file + ": " + e.getMessage());
+        } finally {
+            if (tmpFile.exists() && !tmpFile.delete()) {
+                tmpFile.deleteOnExit();
+            }
+        }
+    }
+
+    private void createDirectory() throws IOException {
+        if (directory.isDirectory()) {
+            return;
+        }
+        if (!directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("cannot create directory " + directory);
+        }
+        setOwnerOnly(directory.toPath(), true);
+    }
+
+    private static void setOwnerOnly(Path path, boolean directory) throws IOException {
+        if (Files.getFileAttributeView(path, PosixFileAttributeView.class) != null) {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(directory ? "rwx------" : "rw-------"));
+        }
+    }
+
+    /**
+     * @return true if the file is owned by the current user and, where supported, not writable by group or others
+     */
+    static boolean isTrusted(File file) throws IOException {
+        Path path = file.toPath();
+        String owner = Files.getOwner(path).getName();
+        String user = System.getProperty("user.name");
+        // windows reports owners with a DOMAIN prefix
+        if (!owner.equals(user) && !owner.endsWith("\\" + user)) {
+            return false;
+        }
+        if (Files.getFileAttributeView(path, PosixFileAttributeView.class) != null) {
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
+            permissions.retainAll(NOT_OWNER_WRITABLE);
+            return permissions.isEmpty();
+        }
+        return true;
+    }
+
+    private static byte[] hash(String entryName, byte[] patchedBytes) {
+        MessageDigest digest = newDigest();
+        digest.update(entryName.getBytes());
+        digest.update(patchedBytes);
+        return digest.digest();
+    }
+
+    File getFile(String className, byte[] originalBytes) {
+        MessageDigest digest = newDigest();
+        digest.update(originalBytes);
+        digest.update(getVersion().getBytes());
+        return new File(directory, className.replace('/', '.') + "-" + toHex(digest.digest()) + ".class");
+    }
+
+    /**
+     * @return yagen version and hash of the patch implementation
+     */
+    static synchronized String getVersion() {
+        if (version == null) {
+            Package pkg = PatchTransformer.class.getPackage();
+            MessageDigest digest = newDigest();
+            ClassLoader loader = PatchTransformer.class.getClassLoader() != null ? PatchTransformer.class.getClassLoader() : ClassLoader.getSystemClassLoader();
+            for (String resource : PATCH_RESOURCES) {
+                InputStream in = loader.getResourceAsStream(resource);
+                if (in != null) {
+                    try {
+                        digest.update(readFully(in));
+                    } catch (IOException e) {
+                        log("cannot read " + resource + ": " + e.getMessage());
+                    }
+                }
+            }
+            version = (pkg != null ? pkg.getImplementationVersion() : null) + "/" + toHex(digest.digest());
+        }
+        return version;
+    }
+
+    /**
+     * defines the class in the given class loader like javassist CtClass.toClass() does
+     */
+    public static Class defineClass(ClassLoader loader, String className, byte[] bytes) throws Exception {
+        Method defineClass = ClassLoader.class.getDeclaredMethod("defineClass", String.class, byte[].class, int.class, int.class, ProtectionDomain.class);
+        defineClass.setAccessible(true);
+        return (Class) defineClass.invoke(loader, className, bytes, 0, bytes.length, null);
+    }
+
+    public static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private static void log(String msg) {
+        System.out.println(new Date().toString() + " " + PatchedClassCache.class.getName() + " " + msg);
+    }
+}
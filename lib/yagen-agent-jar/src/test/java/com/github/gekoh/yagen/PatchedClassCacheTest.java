@@ -0,0 +1,87 @@
+package com.github.gekoh.yagen;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class PatchedClassCacheTest {
+
+    private static File createCacheDir() throws Exception {
+        File dir = File.createTempFile("yagen-patch-cache", "");
+        Assert.assertTrue(dir.delete());
+        dir.deleteOnExit();
+        return new File(dir, "classes");
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        PatchedClassCache cache = new PatchedClassCache(createCacheDir());
+        byte[] original = {1, 2, 3};
+        byte[] patched = {1, 2, 3, 4};
+
+        Assert.assertNull(cache.get("org.hibernate.mapping.Table", original));
+
+        cache.put("org.hibernate.mapping.Table", original, patched);
+
+        Assert.assertArrayEquals(patched, cache.get("org.hibernate.mapping.Table", original));
+        // other hibernate version
+        Assert.assertNull(cache.get("org.hibernate.mapping.Table", new byte[]{1, 2, 4}));
+        Assert.assertNull(cache.get("org.hibernate.mapping.Index", original));
+
+        // a new cache instance, e.g. in the next JVM
+        Assert.assertArrayEquals(patched, new PatchedClassCache(cache.getFile("x", original).getParentFile()).get("org.hibernate.mapping.Table", original));
+
+        File[] files = cache.getFile("x", original).getParentFile().listFiles();
+        Assert.assertEquals(1, files.length);
+        Assert.assertTrue(files[0].getName().startsWith("org.hibernate.mapping.Table-"));
+        Assert.assertTrue(files[0].delete());
+        Assert.assertTrue(files[0].getParentFile().delete());
+    }
+
+    @Test
+    public void testDefault() throws Exception {
+        String previous = System.getProperty(PatchedClassCache.CACHE_DIR_PROPERTY);
+        try {
+            System.setProperty(PatchedClassCache.CACHE_DIR_PROPERTY, "");
+            Assert.assertNull(PatchedClassCache.getDefault());
+
+            System.clearProperty(PatchedClassCache.CACHE_DIR_PROPERTY);
+            Assert.assertNull(PatchedClassCache.getDefault());
+
+            System.setProperty(PatchedClassCache.CACHE_DIR_PROPERTY, createCacheDir().getPath());
+            Assert.assertNotNull(PatchedClassCache.getDefault());
+        } finally {
+            if (previous != null) {
+                System.setProperty(PatchedClassCache.CACHE_DIR_PROPERTY, previous);
+            } else {
+                System.clearProperty(PatchedClassCache.CACHE_DIR_PROPERTY);
+            }
+        }
+    }
+
+    @Test
+    public void testTamperedEntry() throws Exception {
+        PatchedClassCache cache = new PatchedClassCache(createCacheDir());
+        byte[] original = {1, 2, 3};
+
+        cache.put("org.hibernate.mapping.Table", original, new byte[]{1, 2, 3, 4});
+
+        File file = cache.getFile("org.hibernate.mapping.Table", original);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(raf.length() - 1);
+            raf.write(5);
+        } finally {
+            raf.close();
+        }
+
+        Assert.assertNull(cache.get("org.hibernate.mapping.Table", original));
+        Assert.assertTrue(file.delete());
+        Assert.assertTrue(file.getParentFile().delete());
+    }
+}
@@ -22,6 +22,7 @@ public class Constants {
     //private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(Constants.class);
 
     public static final String _HST = "_HST";
+    public static final String _HOB = "_HOB";
     public static final String _NNTR = "_NNTR";
     public static final String _ATR = "_ATR";
     public static final String _CK = "_CK";
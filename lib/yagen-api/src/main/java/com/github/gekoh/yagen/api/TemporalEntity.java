@@ -30,4 +30,12 @@ public @interface TemporalEntity {
     String historyTableName() default "";
     String historyTimestampColumnName() default "TRANSACTION_TIMESTAMP";
     String[] ignoreChangeOfColumns() default {};
+
+    /**
+     * history is captured asynchronously, the trigger only appends the row image to the outbox table
+     * (history table name with suffix {@value Constants#_HOB}) and
+     * {@link com.github.gekoh.yagen.hst.HistoryOutboxDrainer} writes the history rows.
+     * Only supported on Oracle and PostgreSQL, other databases write the history synchronously.
+     */
+    boolean outbox() default false;
 }
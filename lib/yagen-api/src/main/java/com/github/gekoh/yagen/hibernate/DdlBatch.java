@@ -0,0 +1,188 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.hibernate;
+
+import java.sql.BatchUpdateException;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Collects consecutive DDL statements of the schema export and executes them as JDBC batch to save the round trip
+ * per statement. PL/SQL blocks and drop statements, which regularly fail when objects do not exist, are not batched
+ * but passed to the {@link Executor} like statements failing within a batch, so they get executed and reported
+ * one by one as before.
+ * <p>
+ * PostgreSQL executes a batch in autocommit mode as one transaction, so a failing statement also rolls back the
+ * DDL executed before it within the batch. All statements of a failed batch are therefore executed again one by one
+ * for PostgreSQL.
+ * <p>
+ * The batch size is set with system property {@value #BATCH_SIZE_PROPERTY}, 0 disables batching.
+ *
+ * @author Georg Kohlweiss
+ */
+public class DdlBatch {
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(DdlBatch.class);
+
+    public static final String BATCH_SIZE_PROPERTY = "yagen.ddl.batchSize";
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private static final Pattern NOT_BATCHABLE_PATTERN = Pattern.compile("^\\s*drop\\s", Pattern.CASE_INSENSITIVE);
+
+    private final Statement statement;
+    private final int batchSize;
+    private final Executor executor;
+    private final boolean atomic;
+    private final List<String> pending = new ArrayList<String>();
+
+    public DdlBatch(Statement statement, int batchSize, Executor executor) {
+        this(statement, batchSize, executor, false);
+    }
+
+    /**
+     * @param atomic true if the database rolls back the whole batch when one of its statements fails
+     */
+    public DdlBatch(Statement statement, int batchSize, Executor executor, boolean atomic) {
+        this.statement = statement;
+        this.batchSize = batchSize;
+        this.executor = executor;
+        this.atomic = atomic;
+    }
+
+    /**
+     * @return batch executing with the given statement, null if batching is disabled or not supported by the driver
+     */
+    public static DdlBatch create(Statement statement, Executor executor) {
+        int batchSize = getBatchSize();
+        if (statement == null || batchSize < 2) {
+            return null;
+        }
+        boolean atomic;
+        try {
+            DatabaseMetaData metaData = statement.getConnection().getMetaData();
+            if (!metaData.supportsBatchUpdates()) {
+                return null;
+            }
+            atomic = metaData.getDatabaseProductName().toLowerCase().contains("postgres");
+        } catch (SQLException e) {
+            LOG.debug("cannot determine batch support of driver, not batching DDL", e);
+            return null;
+        }
+        return new DdlBatch(statement, batchSize, executor, atomic);
+    }
+
+    public static int getBatchSize() {
+        String batchSize = System.getProperty(BATCH_SIZE_PROPERTY);
+        try {
+            return batchSize != null ? Integer.parseInt(batchSize.trim()) : DEFAULT_BATCH_SIZE;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("system property " + BATCH_SIZE_PROPERTY + " needs to be a number instead of '" + batchSize + "'", e);
+        }
+    }
+
+    /**
+     * adds the statement to the batch or executes it on its own after executing the pending batch
+     *
+     * @param delimiter delimiter of the statement in scripts, PL/SQL blocks are delimited by /
+     */
+    public void add(String sql, String delimiter) {
+        if ("/".equals(delimiter) || NOT_BATCHABLE_PATTERN.matcher(sql).find()) {
+            flush();
+            executor.execute(sql);
+            return;
+        }
+
+        try {
+            statement.addBatch(sql);
+        } catch (SQLException e) {
+            flush();
+            executor.execute(sql);
+            return;
+        }
+        pending.add(sql);
+
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * executes all pending statements, statements failing are executed again one by one with the {@link Executor}
+     * to report their errors
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<String> batch = new ArrayList<String>(pending);
+        pending.clear();
+
+        try {
+            statement.executeBatch();
+        } catch (BatchUpdateException e) {
+            clearBatch();
+            if (atomic) {
+                LOG.debug("batch of {} statements rolled back, executing them one by one: {}", batch.size(), e.getMessage());
+                for (String sql : batch) {
+                    executor.execute(sql);
+                }
+                return;
+            }
+            int[] updateCounts = e.getUpdateCounts();
+            int processed = updateCounts != null ? updateCounts.length : 0;
+
+            if (processed < batch.size()) {
+                // driver stopped at the first failing statement
+                executor.execute(batch.get(processed));
+                for (String sql : batch.subList(processed + 1, batch.size())) {
+                    add(sql, null);
+                }
+                flush();
+            }
+            else {
+                for (int i = 0; i < processed; i++) {
+                    if (updateCounts[i] == Statement.EXECUTE_FAILED) {
+                        executor.execute(batch.get(i));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            clearBatch();
+            LOG.warn("failed executing batch of {} statements, executing them one by one: {}", batch.size(), e.getMessage());
+            for (String sql : batch) {
+                executor.execute(sql);
+            }
+        }
+    }
+
+    private void clearBatch() {
+        try {
+            statement.clearBatch();
+        } catch (SQLException e) {
+            LOG.debug("cannot clear batch", e);
+        }
+    }
+
+    /**
+     * executes a single statement including the usual error handling and reporting
+     */
+    public static interface Executor {
+        void execute(String sql);
+    }
+}
@@ -16,7 +16,6 @@
 package com.github.gekoh.yagen.hibernate;
 
 import com.github.gekoh.yagen.api.DefaultNamingStrategy;
-import org.apache.commons.lang.StringUtils;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.dialect.Dialect;
 import org.hibernate.mapping.Column;
@@ -28,6 +27,7 @@ import org.hibernate.type.Type;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.sql.SQLException;
@@ -51,7 +51,6 @@ public class PatchGlue {
 
     public static final String STATEMENT_SEPARATOR = "\n------- CreateDDL statement separator -------\n";
     public static final Pattern SEPARATOR_PATTERN = Pattern.compile("\r?\n" + STATEMENT_SEPARATOR.trim() + "\r?\n");
-    public static final Pattern PLSQL_END_PATTERN = Pattern.compile("[\\s]+end[\\s]*([a-z_]+)?;([\\s]*(\\r?\\n)?/?)$", Pattern.CASE_INSENSITIVE);
     public static final Pattern COMMENT_PATTERN = Pattern.compile(
             "(((--)[^\\n]*((\\r?\\n)|$))+)|" + // single line comment(s)
                     "(/\\*+(.*?)\\*+/)", // block comment
@@ -74,7 +73,7 @@ public class PatchGlue {
             for (PersistentClass persistentClass : persistentClasses) {
                 addClass(profile, persistentClass);
             }
-            return ReflectExecutor.i_createDdl.get().newInstance(profile, dialect);
+            return ReflectExecutor.i_createDdl.invoke(profile, dialect);
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
@@ -84,17 +83,17 @@ public class PatchGlue {
         if (dialect != null && ReflectExecutor.c_enhancer.get().isAssignableFrom(dialect.getClass())) {
             try {
                 if (profile == null) {
-                    profile = ReflectExecutor.i_profile.get().newInstance("runtime");
+                    profile = ReflectExecutor.i_profile.invoke("runtime");
                 }
 
-                Object clonedProfile = ReflectExecutor.m_clone.get().invoke(profile);
+                Object clonedProfile = ReflectExecutor.m_clone.invoke(profile);
                 Object ddlEnhancer = dialect;
 
                 if (namingStrategy instanceof DefaultNamingStrategy) {
-                    ReflectExecutor.m_setNamingStrategy.get().invoke(clonedProfile, namingStrategy);
+                    ReflectExecutor.m_setNamingStrategy.invoke(clonedProfile, namingStrategy);
                 }
-                if (ReflectExecutor.m_getDDLEnhancer.get().invoke(ddlEnhancer) == null) {
-                    ReflectExecutor.m_initDDLEnhancer.get().invoke(ddlEnhancer, clonedProfile, dialect, serviceRegistry, persistentClasses);
+                if (ReflectExecutor.m_getDDLEnhancer.invoke(ddlEnhancer) == null) {
+                    ReflectExecutor.m_initDDLEnhancer.invoke(ddlEnhancer, clonedProfile, dialect, serviceRegistry, persistentClasses);
                 }
             } catch (Exception e) {
                 throw new IllegalStateException(e);
@@ -108,13 +107,40 @@ public class PatchGlue {
     public static void addClass (Object profile, PersistentClass clazz) {
         if (profile != null) {
             try {
-                ReflectExecutor.m_addPersistenceClass.get().invoke(profile, clazz.getMappedClass());
+                ReflectExecutor.m_addPersistenceClass.invoke(profile, clazz.getMappedClass());
             } catch (Exception e) {
                 LOG.error("error adding persistence class", e);
             }
         }
     }
 
+    public static void beginTableEnhancements(Dialect dialect) {
+        Object ddlEnhancer = getDDLEnhancerFromDialect(dialect);
+        if (ddlEnhancer == null) {
+            return;
+        }
+
+        try {
+            ReflectExecutor.m_beginTableEnhancements.invoke(ddlEnhancer);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void abortTableEnhancements(Dialect dialect) {
+        Object ddlEnhancer = getDDLEnhancerFromDialect(dialect);
+        if (ddlEnhancer == null) {
+            return;
+        }
+
+        try {
+            ReflectExecutor.m_abortTableEnhancements.invoke(ddlEnhancer);
+        } catch (Exception e) {
+            // do not hide the failure of the schema creation
+            LOG.error("error aborting table enhancements", e);
+        }
+    }
+
     public static String afterTableSqlCreateString(Table table, Dialect dialect, String returnValue) {
         StringBuffer buf = new StringBuffer(returnValue);
 
@@ -131,7 +157,7 @@ public class PatchGlue {
         }
 
         try {
-            return (String) ReflectExecutor.m_updateCreateTable.get().invoke(ddlEnhancer, dialect, buf.append(dialect.getTableTypeString()), table.getName(), allColumns);
+            return (String) ReflectExecutor.m_updateCreateTable.invoke(ddlEnhancer, dialect, buf.append(dialect.getTableTypeString()), table.getName(), allColumns);
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
@@ -146,7 +172,7 @@ public class PatchGlue {
         }
 
         try {
-            return (String) ReflectExecutor.m_updateDropTable.get().invoke(ddlEnhancer, dialect, buf, table.getName());
+            return (String) ReflectExecutor.m_updateDropTable.invoke(ddlEnhancer, dialect, buf, table.getName());
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
@@ -165,7 +191,7 @@ public class PatchGlue {
         }
 
         try {
-            return (String) ReflectExecutor.m_updateCreateConstraint.get().invoke(ddlEnhancer, dialect, buf, constraint.getName(), table, constraint);
+            return (String) ReflectExecutor.m_updateCreateConstraint.invoke(ddlEnhancer, dialect, buf, constraint.getName(), table, constraint);
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
@@ -186,7 +212,7 @@ public class PatchGlue {
         }
 
         try {
-            return (String) ReflectExecutor.m_updateCreateIndex.get().invoke(ddlEnhancer, dialect, buf, name, table, columnList);
+            return (String) ReflectExecutor.m_updateCreateIndex.invoke(ddlEnhancer, dialect, buf, name, table, columnList);
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
@@ -205,7 +231,7 @@ public class PatchGlue {
         }
 
         try {
-            return new String[]{ (String) ReflectExecutor.m_updateCreateSequence.get().invoke(ddlEnhancer, dialect, returnValue, type) };
+            return new String[]{ (String) ReflectExecutor.m_updateCreateSequence.invoke(ddlEnhancer, dialect, returnValue, type) };
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
@@ -215,7 +241,7 @@ public class PatchGlue {
         if (dialect != null && ReflectExecutor.c_enhancer.get().isAssignableFrom(dialect.getClass())) {
             Object ddlEnhancer;
             try {
-                ddlEnhancer = ReflectExecutor.m_getDDLEnhancer.get().invoke(dialect);
+                ddlEnhancer = ReflectExecutor.m_getDDLEnhancer.invoke(dialect);
             } catch (Exception e) {
                 throw new IllegalStateException(e);
             }
@@ -240,7 +266,12 @@ public class PatchGlue {
     }
 
     // Hibernate 3
-    public static void schemaExportExecute(boolean script, boolean export, Writer fileOutput, Statement statement, String sql, SchemaExport schemaExport)
+    /**
+     * Failing statements are reported to the calling SchemaExport by throwing the first failure at the end, like
+     * its original execute method, so its exceptions list and haltOnError still work. Further failures of the same
+     * call are chained with {@link SQLException#setNextException(SQLException)}.
+     */
+    public static void schemaExportExecute(boolean script, boolean export, Writer fileOutput, final Statement statement, String sql, SchemaExport schemaExport)
             throws IOException, SQLException {
         if (schemaExportPerform == null) {
             try {
@@ -249,23 +280,51 @@ public class PatchGlue {
                 LOG.error("cannot find api method inserted by patch", e);
             }
         }
-        for (String singleSql : splitSQL(sql)) {
-            SqlStatement ddlStmt = prepareDDL(singleSql);
+        final List<SQLException> failures = new ArrayList<SQLException>();
+        DdlBatch batch = export ? DdlBatch.create(statement, new DdlBatch.Executor() {
+            public void execute(String sql) {
+                try {
+                    statement.executeUpdate(sql);
+                } catch (SQLException e) {
+                    LOG.warn("failed executing sql: {}", sql);
+                    LOG.warn("failure: {}", e.getMessage());
+                    failures.add(e);
+                }
+            }
+        }) : null;
+
+        for (SqlScript.Statement ddlStmt : SqlScript.split(sql)) {
             try {
-                schemaExportPerform.invoke(schemaExport, new Object[]{script, export, fileOutput, statement, ddlStmt.getSql(), ddlStmt.getDelimiter()});
+                schemaExportPerform.invoke(schemaExport, new Object[]{script, export && batch == null, fileOutput, statement, ddlStmt.getSql(), ddlStmt.getDelimiter()});
+                if (batch != null && ddlStmt.hasCode()) {
+                    batch.add(ddlStmt.getSql(), ddlStmt.getDelimiter());
+                }
             } catch (InvocationTargetException e) {
-                if (e.getCause() instanceof SQLException && !isEmptyStatement(singleSql)) {
-                    LOG.warn("failed executing sql: {}", singleSql);
+                if (e.getCause() instanceof SQLException && ddlStmt.hasCode()) {
+                    LOG.warn("failed executing sql: {}", ddlStmt);
                     LOG.warn("failure: {}", e.getCause().getMessage());
+                    failures.add((SQLException) e.getCause());
                 }
             } catch (Exception e) {
                 LOG.error("error calling patched api method in SchemaExport", e);
             }
         }
+
+        if (batch != null) {
+            batch.flush();
+        }
+
+        if (!failures.isEmpty()) {
+            SQLException failure = failures.get(0);
+            for (SQLException next : failures.subList(1, failures.size())) {
+                failure.setNextException(next);
+            }
+            throw failure;
+        }
     }
 
     // Hibernate 4.3.5
-    public static void schemaExportPerform (String[] sqlCommands, List exporters, SchemaExport schemaExport) {
+    public static void schemaExportPerform (String[] sqlCommands, List exporters, final SchemaExport schemaExport) {
         if (schemaExportPerform == null) {
             try {
                 schemaExportPerform = SchemaExport.class.getMethod("performApi", String[].class, List.class, String.class);
@@ -273,32 +332,85 @@ public class PatchGlue {
                 LOG.error("cannot find api method inserted by patch", e);
             }
         }
+        final List passedExporters = new ArrayList();
+        passedExporters.add(null);
+
+        Object databaseExporter = null;
+        for (Object exporter : exporters) {
+            if (isDatabaseExporter(exporter)) {
+                databaseExporter = exporter;
+            }
+        }
+        final Object batchExporter = databaseExporter;
+        DdlBatch batch = databaseExporter != null ? DdlBatch.create(getExporterStatement(databaseExporter), new DdlBatch.Executor() {
+            public void execute(String sql) {
+                passedExporters.set(0, batchExporter);
+                performApi(schemaExport, new String[]{sql}, passedExporters, null, sql);
+            }
+        }) : null;
+
         String[] wrapArr = new String[1];
         for (String sqlCommand : sqlCommands) {
-            for (String singleSql : splitSQL(sqlCommand)) {
-                SqlStatement ddlStmt = prepareDDL(singleSql);
+            for (SqlScript.Statement ddlStmt : SqlScript.split(sqlCommand)) {
                 wrapArr[0] = ddlStmt.getSql();
-                boolean emptyStatement = isEmptyStatement(singleSql);
-                try {
-                    List passedExporters = new ArrayList();
-                    passedExporters.add(null);
-                    for (Object exporter : exporters) {
-                        passedExporters.set(0, exporter);
-                        boolean databaseExporter = exporter.getClass().getSimpleName().equals("DatabaseExporter");
-                        if (!databaseExporter || !emptyStatement) {
-                            schemaExportPerform.invoke(schemaExport, new Object[]{wrapArr, passedExporters, databaseExporter ? null : ddlStmt.getDelimiter()});
-                        }
+                boolean emptyStatement = !ddlStmt.hasCode();
+                for (Object exporter : exporters) {
+                    boolean isDatabaseExporter = exporter == databaseExporter;
+                    if (isDatabaseExporter && emptyStatement) {
+                        continue;
+                    }
+                    if (isDatabaseExporter && batch != null) {
+                        batch.add(ddlStmt.getSql(), ddlStmt.getDelimiter());
+                        continue;
                     }
-                } catch (InvocationTargetException e) {
-                    if (e.getCause() instanceof SQLException && !emptyStatement) {
-                        LOG.warn("failed executing sql: {}", singleSql);
-                        LOG.warn("failure: {}", e.getCause().getMessage());
+                    passedExporters.set(0, exporter);
+                    if (!performApi(schemaExport, wrapArr, passedExporters, isDatabaseExporter ? null : ddlStmt.getDelimiter(), ddlStmt)) {
+                        break;
                     }
-                } catch (Exception e) {
-                    LOG.error("cannot call patched api method in SchemaExport", e);
                 }
             }
         }
+
+        if (batch != null) {
+            batch.flush();
+        }
+    }
+
+    /**
+     * @return false if the patched api method could not be called
+     */
+    private static boolean performApi(SchemaExport schemaExport, String[] sqlCommands, List exporters, String delimiter, CharSequence sql) {
+        try {
+            schemaExportPerform.invoke(schemaExport, new Object[]{sqlCommands, exporters, delimiter});
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException && !SqlScript.isEmpty(sql)) {
+                LOG.warn("failed executing sql: {}", sql);
+                LOG.warn("failure: {}", e.getCause().getMessage());
+            }
+            return false;
+        } catch (Exception e) {
+            LOG.error("cannot call patched api method in SchemaExport", e);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isDatabaseExporter(Object exporter) {
+        return exporter.getClass().getSimpleName().equals("DatabaseExporter");
+    }
+
+    /**
+     * @return statement the hibernate DatabaseExporter executes DDL with, null if not accessible
+     */
+    private static Statement getExporterStatement(Object databaseExporter) {
+        try {
+            Field statementField = databaseExporter.getClass().getDeclaredField("statement");
+            statementField.setAccessible(true);
+            return (Statement) statementField.get(databaseExporter);
+        } catch (Exception e) {
+            LOG.debug("cannot access statement of {}, not batching DDL", databaseExporter.getClass().getName());
+            return null;
+        }
     }
 
     public static boolean isScript(String sql) {
@@ -316,87 +428,20 @@ public class PatchGlue {
     }
 
     public static Collection<String> splitSQL(String sql) {
-        Matcher matcher = SEPARATOR_PATTERN.matcher(sql);
-        int endIdx, idx=0;
-        ArrayList<String> statements = new ArrayList<String>();
-
-        while(matcher.find(idx)) {
-            endIdx=matcher.start();
-
-            if (endIdx-idx > 0) {
-                statements.add(sql.substring(idx, endIdx));
-            }
-
-            if (endIdx>=0) {
-                idx = matcher.end();
-            }
-        }
-
-        if (idx < sql.length()) {
-            String singleSql = sql.substring(idx);
-            if (StringUtils.isNotEmpty(singleSql.trim())) {
-                statements.add(singleSql);
-            }
-        }
-
-        for (int i=0; i<statements.size(); i++) {
-            String stmt = statements.get(i);
-            if (stmt == null || stmt.trim().length() < 1) {
-                statements.remove(i);
-                i--;
-                continue;
-            }
-            matcher = COMMENT_PATTERN.matcher(stmt);
-            if (matcher.find() && stmt.substring(0, matcher.start()).trim().length() < 1) {
-                statements.remove(i);
-                statements.add(i, stmt.substring(matcher.end()));
-                if (stmt.substring(0, matcher.end()).trim().length() > 0) {
-                    statements.add(i, stmt.substring(0, matcher.end()));
-                }
-            }
+        List<SqlScript.Statement> statements = SqlScript.split(sql);
+        List<String> result = new ArrayList<String>(statements.size());
+        for (SqlScript.Statement statement : statements) {
+            result.add(statement.toString());
         }
-
-        return statements;
+        return result;
     }
 
     public static boolean isEmptyStatement(String sqlStmt) {
-        Matcher matcher = COMMENT_PATTERN.matcher(sqlStmt);
-
-        while (matcher.find()) {
-            sqlStmt = sqlStmt.substring(0, matcher.start()) + sqlStmt.substring(matcher.end());
-            matcher = COMMENT_PATTERN.matcher(sqlStmt);
-        }
-
-        return sqlStmt.trim().length()<1;
+        return SqlScript.isEmpty(sqlStmt);
     }
 
     public static SqlStatement prepareDDL(String sql){
-        sql = sql.trim();
-        String delimiter = "";
-
-        Matcher matcher = PLSQL_END_PATTERN.matcher(sql);
-        if (matcher.find()) {
-            if (matcher.group(2) != null) {
-                sql = sql.substring(0, matcher.start(2));
-            }
-            sql += "\n";
-            delimiter = "/";
-        }
-        // remove trailing semicolon in case of non pl/sql type objects/statements
-        else if (sql.endsWith(";")) {
-            sql = sql.substring(0, sql.length()-1);
-        }
-
-        StringBuilder sqlWoComments = new StringBuilder(sql);
-        while ((matcher = COMMENT_PATTERN.matcher(sqlWoComments.toString())).find()) {
-            sqlWoComments.delete(matcher.start(), matcher.end());
-        }
-
-        if (delimiter.length() < 1 && sqlWoComments.toString().trim().length() > 0) {
-            delimiter = ";";
-        }
-
-        return new SqlStatementImpl(sql, delimiter);
+        return SqlScript.prepare(sql);
     }
 
     public static <T> String join(List<T> list, String separator, StringValueExtractor<T> valueExtractor) {
@@ -417,7 +462,9 @@ public class PatchGlue {
 
         if (dialect != null && ReflectExecutor.c_enhancer.get().isAssignableFrom(dialect.getClass())) {
             try {
-                profile = ReflectExecutor.m_getProfile.get().invoke(ReflectExecutor.m_getDDLEnhancer.get().invoke(dialect));
+                Object ddlEnhancer = ReflectExecutor.m_getDDLEnhancer.invoke(dialect);
+                createSQL = (String[]) ReflectExecutor.m_completeTableEnhancements.invoke(ddlEnhancer, createSQL);
+                profile = ReflectExecutor.m_getProfile.invoke(ddlEnhancer);
             } catch (Exception e) {
                 throw new IllegalStateException(e);
             }
@@ -428,7 +475,7 @@ public class PatchGlue {
         }
 
         try {
-            return (String[]) ReflectExecutor.m_addDdls.get().invoke(profile, createSQL, dialect);
+            return (String[]) ReflectExecutor.m_addDdls.invoke(profile, createSQL, dialect);
         } catch (Exception e) {
             throw new IllegalStateException(e);
         }
@@ -437,22 +484,4 @@ public class PatchGlue {
     public static interface StringValueExtractor<T> {
         String getValue(T object);
     }
-
-    public static class SqlStatementImpl implements SqlStatement {
-        private String sql;
-        private String delimiter;
-
-        private SqlStatementImpl(String sql, String delimiter) {
-            this.sql = sql;
-            this.delimiter = delimiter;
-        }
-
-        public String getSql() {
-            return sql;
-        }
-
-        public String getDelimiter() {
-            return delimiter;
-        }
-    }
 }
@@ -15,12 +15,23 @@
 */
 package com.github.gekoh.yagen.hibernate;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * Calls into the generator classes from patched hibernate code without linking them. Methods and constructors are
+ * resolved once into method handles adapted to a generic signature, which get called with invokeExact.
+ * All lookups are initialized lazily and thread safe since persistence units may bootstrap concurrently.
+ *
  * @author Georg Kohlweiss
  */
 public class ReflectExecutor {
@@ -35,46 +46,53 @@ public class ReflectExecutor {
     public static final String DDLGEN_CLASS_NAME = "com.github.gekoh.yagen.ddl.DDLGenerator$AddDDLEntry";
     public static final String YAGENINIT_CLASS_NAME = "com.github.gekoh.yagen.hibernate.YagenInit";
 
-    static final Initializer<Constructor> i_createDdl = getConstructor(CREATEDDL_CLASS_NAME);
+    private static final ConcurrentMap<Class, Map<String, Method>> DECLARED_METHODS = new ConcurrentHashMap<Class, Map<String, Method>>();
 
-    static final Initializer<Class> c_enhancer      = getClass(DDLENHANCER_CLASS_NAME);
-    static final Initializer<Constructor> i_profile = getConstructor(PROFILE_CLASS_NAME);
+    static final Invoker i_createDdl = getConstructor(CREATEDDL_CLASS_NAME);
 
-    static final Initializer<Method> m_addPersistenceClass = getMethod(PROFILE_CLASS_NAME + ".addPersistenceClass");
-    static final Initializer<Method> m_setNamingStrategy   = getMethod(PROFILE_CLASS_NAME + ".setNamingStrategy");
-    static final Initializer<Method> m_clone               = getMethod(PROFILE_CLASS_NAME + ".clone");
-    static final Initializer<Method> m_addDdls             = getMethod(PROFILE_CLASS_NAME + ".addDdls");
+    static final Initializer<Class> c_enhancer = getClass(DDLENHANCER_CLASS_NAME);
+    static final Invoker i_profile = getConstructor(PROFILE_CLASS_NAME);
 
-    static final Initializer<Method> m_getDDLEnhancer  = getMethod(DDLENHANCER_CLASS_NAME + ".getDDLEnhancer");
-    static final Initializer<Method> m_initDDLEnhancer = getMethod(DDLENHANCER_CLASS_NAME + ".initDDLEnhancer");
+    static final Invoker m_addPersistenceClass = getMethod(PROFILE_CLASS_NAME + ".addPersistenceClass");
+    static final Invoker m_setNamingStrategy   = getMethod(PROFILE_CLASS_NAME + ".setNamingStrategy");
+    static final Invoker m_clone               = getMethod(PROFILE_CLASS_NAME + ".clone");
+    static final Invoker m_addDdls             = getMethod(PROFILE_CLASS_NAME + ".addDdls");
 
-    static final Initializer<Method> m_patchCollectionsAlwaysLazy = getMethod(PATCH_HIBERNATE_CLASS_NAME + ".patchCollectionsAlwaysLazy");
-    static final Initializer<Method> m_patchIgnoreVersion   = getMethod(PATCH_HIBERNATE_CLASS_NAME + ".patchIgnoreVersion");
+    static final Invoker m_getDDLEnhancer  = getMethod(DDLENHANCER_CLASS_NAME + ".getDDLEnhancer");
+    static final Invoker m_initDDLEnhancer = getMethod(DDLENHANCER_CLASS_NAME + ".initDDLEnhancer");
 
-    static final Initializer<Method> m_updateCreateTable    = getMethod(CREATEDDL_CLASS_NAME + ".updateCreateTable");
-    static final Initializer<Method> m_updateDropTable      = getMethod(CREATEDDL_CLASS_NAME + ".updateDropTable");
-    static final Initializer<Method> m_updateCreateConstraint = getMethod(CREATEDDL_CLASS_NAME + ".updateCreateConstraint");
-    static final Initializer<Method> m_updateCreateIndex    = getMethod(CREATEDDL_CLASS_NAME + ".updateCreateIndex");
-    static final Initializer<Method> m_updateCreateSequence = getMethod(CREATEDDL_CLASS_NAME + ".updateCreateSequence");
-    static final Initializer<Method> m_getProfile           = getMethod(CREATEDDL_CLASS_NAME + ".getProfile");
+    static final Invoker m_patchCollectionsAlwaysLazy = getMethod(PATCH_HIBERNATE_CLASS_NAME + ".patchCollectionsAlwaysLazy");
+    static final Invoker m_patchIgnoreVersion   = getMethod(PATCH_HIBERNATE_CLASS_NAME + ".patchIgnoreVersion");
 
-    static final Initializer<Method> m_getDdlText           = getMethod(DDLGEN_CLASS_NAME + ".getDdlText");
+    static final Invoker m_updateCreateTable    = getMethod(CREATEDDL_CLASS_NAME + ".updateCreateTable");
+    static final Invoker m_updateDropTable      = getMethod(CREATEDDL_CLASS_NAME + ".updateDropTable");
+    static final Invoker m_updateCreateConstraint = getMethod(CREATEDDL_CLASS_NAME + ".updateCreateConstraint");
+    static final Invoker m_updateCreateIndex    = getMethod(CREATEDDL_CLASS_NAME + ".updateCreateIndex");
+    static final Invoker m_updateCreateSequence = getMethod(CREATEDDL_CLASS_NAME + ".updateCreateSequence");
+    static final Invoker m_getProfile           = getMethod(CREATEDDL_CLASS_NAME + ".getProfile");
+    static final Invoker m_beginTableEnhancements    = getMethod(CREATEDDL_CLASS_NAME + ".beginTableEnhancements");
+    static final Invoker m_completeTableEnhancements = getMethod(CREATEDDL_CLASS_NAME + ".completeTableEnhancements");
+    static final Invoker m_abortTableEnhancements    = getMethod(CREATEDDL_CLASS_NAME + ".abortTableEnhancements");
 
-    static final Initializer<Method> m_newProfileIfNull     = getMethod(YAGENINIT_CLASS_NAME + ".newProfileIfNull");
+    static final Invoker m_getDdlText           = getMethod(DDLGEN_CLASS_NAME + ".getDdlText");
 
-    private static Initializer<Method> getMethod(final String fqMethodName) {
+    static final Invoker m_newProfileIfNull     = getMethod(YAGENINIT_CLASS_NAME + ".newProfileIfNull");
+
+    /**
+     * @param fqMethodName fully qualified class name and method name separated by a dot, the method name needs to be
+     *                     unique within the declared methods of the class
+     */
+    static Invoker getMethod(final String fqMethodName) {
         final String className = fqMethodName.substring(0, fqMethodName.lastIndexOf("."));
         final String methodName = fqMethodName.substring(className.length() + 1);
 
-        return new Initializer<Method>() {
+        return new Invoker() {
             @Override
-            public Method init() {
+            public MethodHandle init() {
                 try {
-                    Method[] methods = ReflectExecutor.getClass(className).get().getDeclaredMethods();
-                    for (Method method : methods) {
-                        if (methodName.equals(method.getName())) {
-                            return method;
-                        }
+                    Method method = getDeclaredMethods(ReflectExecutor.getClass(className).get()).get(methodName);
+                    if (method != null) {
+                        return adapt(MethodHandles.lookup().unreflect(method));
                     }
                 } catch (Exception e) {
                     LOG.error("cannot find method " + fqMethodName, e);
@@ -84,6 +102,23 @@ public class ReflectExecutor {
         };
     }
 
+    private static Map<String, Method> getDeclaredMethods(Class clazz) {
+        Map<String, Method> methods = DECLARED_METHODS.get(clazz);
+        if (methods == null) {
+            methods = new HashMap<String, Method>();
+            for (Method method : clazz.getDeclaredMethods()) {
+                if (!methods.containsKey(method.getName())) {
+                    methods.put(method.getName(), method);
+                }
+            }
+            Map<String, Method> existing = DECLARED_METHODS.putIfAbsent(clazz, methods);
+            if (existing != null) {
+                methods = existing;
+            }
+        }
+        return methods;
+    }
+
     private static Initializer<Class> getClass(final String className) {
         return new Initializer<Class>() {
             @Override
@@ -98,22 +133,38 @@ public class ReflectExecutor {
         };
     }
 
-    private static Initializer<Constructor> getConstructor(final String className) {
-        return new Initializer<Constructor>() {
+    static Invoker getConstructor(final String className) {
+        return new Invoker() {
             @Override
-            public Constructor init() {
+            public MethodHandle init() {
+                Class clazz = ReflectExecutor.getClass(className).get();
+                Constructor constructor;
                 try {
-                    return ReflectExecutor.getClass(className).get().getConstructor();
+                    constructor = clazz.getConstructor();
                 } catch (Exception e) {
-                    return ReflectExecutor.getClass(className).get().getConstructors()[0];
+                    constructor = clazz.getConstructors()[0];
+                }
+                try {
+                    return adapt(MethodHandles.lookup().unreflectConstructor(constructor));
+                } catch (IllegalAccessException e) {
+                    LOG.error("cannot access constructor of " + className, e);
                 }
+                return null;
             }
         };
     }
 
+    /**
+     * @return handle taking and returning objects only, so it can be called with invokeExact from any call site
+     */
+    private static MethodHandle adapt(MethodHandle handle) {
+        handle = handle.asFixedArity();
+        return handle.asType(MethodType.genericMethodType(handle.type().parameterCount()));
+    }
+
     public static void newProfileIfNull() {
         try {
-            m_newProfileIfNull.get().invoke(null);
+            m_newProfileIfNull.invoke();
         } catch (Exception e) {
             LOG.error("error calling newProfileIfNull", e);
         }
@@ -121,15 +172,94 @@ public class ReflectExecutor {
 
     public abstract static class Initializer<T> {
 
-        T object;
+        private volatile T object;
 
         public abstract T init();
         public T get() {
-            if (object == null) {
-                object = init();
+            T result = object;
+            if (result == null) {
+                synchronized (this) {
+                    result = object;
+                    if (result == null) {
+                        object = result = init();
+                    }
+                }
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * Calls a method or constructor. Instance methods take the target object as first argument, static methods and
+     * constructors the method arguments only. Exceptions thrown by the called method are passed on unwrapped.
+     */
+    public abstract static class Invoker extends Initializer<MethodHandle> {
+
+        public Object invoke() throws Exception {
+            try {
+                return (Object) get().invokeExact();
+            } catch (Throwable t) {
+                throw rethrow(t);
             }
-            return object;
         }
 
+        public Object invoke(Object a1) throws Exception {
+            try {
+                return (Object) get().invokeExact(a1);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        public Object invoke(Object a1, Object a2) throws Exception {
+            try {
+                return (Object) get().invokeExact(a1, a2);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        public Object invoke(Object a1, Object a2, Object a3) throws Exception {
+            try {
+                return (Object) get().invokeExact(a1, a2, a3);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        public Object invoke(Object a1, Object a2, Object a3, Object a4) throws Exception {
+            try {
+                return (Object) get().invokeExact(a1, a2, a3, a4);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        public Object invoke(Object a1, Object a2, Object a3, Object a4, Object a5) throws Exception {
+            try {
+                return (Object) get().invokeExact(a1, a2, a3, a4, a5);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        public Object invoke(Object a1, Object a2, Object a3, Object a4, Object a5, Object a6) throws Exception {
+            try {
+                return (Object) get().invokeExact(a1, a2, a3, a4, a5, a6);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        }
+
+        private static Exception rethrow(Throwable t) {
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            if (t instanceof Exception) {
+                return (Exception) t;
+            }
+            return new IllegalStateException(t);
+        }
     }
-}
\ No newline at end of file
+}
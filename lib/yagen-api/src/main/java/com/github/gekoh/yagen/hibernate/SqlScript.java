@@ -0,0 +1,383 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.hibernate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits DDL scripts created by CreateDDL into single statements in one pass over the script.
+ * Statements are separated by {@link PatchGlue#STATEMENT_SEPARATOR} lines, comments preceding a statement are
+ * returned as separate, comment only statements. The statements are slices of the script, the text of a statement
+ * only gets copied when it is read with {@link Statement#getSql()} or {@link Statement#toString()}.
+ * <p>
+ * Results are the same as the former regex based {@link PatchGlue#splitSQL(String)},
+ * {@link PatchGlue#isEmptyStatement(String)} and {@link PatchGlue#prepareDDL(String)} which now delegate here.
+ *
+ * @author Georg Kohlweiss
+ */
+public class SqlScript {
+
+    private static final String SEPARATOR_LINE = PatchGlue.STATEMENT_SEPARATOR.trim();
+
+    private SqlScript() {
+    }
+
+    /**
+     * @return statements of the script in script order, statements consisting of whitespace only are omitted
+     */
+    public static List<Statement> split(CharSequence script) {
+        Lexer lexer = new Lexer(script);
+        while (lexer.pos < lexer.length) {
+            lexer.statement();
+        }
+        return lexer.statements;
+    }
+
+    /**
+     * @return a single statement prepared for execution, see {@link Statement#getSql()}
+     */
+    public static Statement prepare(CharSequence sql) {
+        return new Statement(sql, 0, sql.length(), indexOfCode(sql, 0, sql.length()));
+    }
+
+    /**
+     * @return true if the sql consists of whitespace and comments only
+     */
+    public static boolean isEmpty(CharSequence sql) {
+        return indexOfCode(sql, 0, sql.length()) < 0;
+    }
+
+    /**
+     * @return index of the first character not being whitespace or part of a comment, -1 if there is none
+     */
+    private static int indexOfCode(CharSequence sql, int start, int end) {
+        int pos = start;
+        while (pos < end) {
+            char c = sql.charAt(pos);
+            if (c <= ' ') {
+                pos++;
+            }
+            else if (c == '-' && pos + 1 < end && sql.charAt(pos + 1) == '-') {
+                while (pos < end && sql.charAt(pos) != '\n') {
+                    pos++;
+                }
+            }
+            else if (c == '/' && pos + 1 < end && sql.charAt(pos + 1) == '*') {
+                int commentEnd = indexOfBlockCommentEnd(sql, pos + 2, end);
+                if (commentEnd < 0) {
+                    return pos;
+                }
+                pos = commentEnd;
+            }
+            else {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index after the closing of the block comment, -1 if not closed before end
+     */
+    private static int indexOfBlockCommentEnd(CharSequence sql, int pos, int end) {
+        for (; pos + 1 < end; pos++) {
+            if (sql.charAt(pos) == '*' && sql.charAt(pos + 1) == '/') {
+                return pos + 2;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index after the semicolon if the statement ends with a pl/sql block end (end [name];) optionally
+     * followed by a slash, otherwise -1
+     */
+    private static int indexOfPlsqlEnd(CharSequence sql, int start, int end) {
+        int pos = end - 1;
+        if (pos >= start && sql.charAt(pos) == '/') {
+            pos--;
+        }
+        while (pos >= start && isWhitespace(sql.charAt(pos))) {
+            pos--;
+        }
+        if (pos < start || sql.charAt(pos) != ';') {
+            return -1;
+        }
+        int semicolon = pos;
+
+        int nameEnd = pos;
+        pos--;
+        while (pos >= start && isNameChar(sql.charAt(pos))) {
+            pos--;
+        }
+        int nameStart = pos + 1;
+
+        // block end directly followed by the name, e.g. "endtrg;" or just "end;"
+        if (nameEnd - nameStart >= 3 && isEnd(sql, nameStart) && nameStart - 1 >= start && isWhitespace(sql.charAt(nameStart - 1))) {
+            return semicolon + 1;
+        }
+
+        while (pos >= start && isWhitespace(sql.charAt(pos))) {
+            pos--;
+        }
+        if (pos - 3 >= start && isEnd(sql, pos - 2) && isWhitespace(sql.charAt(pos - 3))) {
+            return semicolon + 1;
+        }
+        return -1;
+    }
+
+    private static boolean isEnd(CharSequence sql, int pos) {
+        return Character.toLowerCase(sql.charAt(pos)) == 'e'
+                && Character.toLowerCase(sql.charAt(pos + 1)) == 'n'
+                && Character.toLowerCase(sql.charAt(pos + 2)) == 'd';
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+
+    private static class Lexer {
+        private final CharSequence script;
+        private final int length;
+        private final List<Statement> statements = new ArrayList<Statement>();
+        private int pos;
+
+        private Lexer(CharSequence script) {
+            this.script = script;
+            this.length = script.length();
+        }
+
+        /**
+         * lexes the statement starting at the current position up to and including the next separator
+         */
+        private void statement() {
+            int start = pos;
+
+            // leading comments become statements of their own
+            while (pos < length) {
+                char c = script.charAt(pos);
+                if (c == '\r' || c == '\n') {
+                    int separatorEnd = indexOfSeparatorEnd(pos);
+                    if (separatorEnd > 0) {
+                        add(start, pos, -1);
+                        pos = separatorEnd;
+                        return;
+                    }
+                    pos++;
+                }
+                else if (c <= ' ') {
+                    pos++;
+                }
+                else if (c == '-' && pos + 1 < length && script.charAt(pos + 1) == '-') {
+                    lineComments();
+                    add(start, pos, -1);
+                    start = pos;
+                }
+                else if (c == '/' && pos + 1 < length && script.charAt(pos + 1) == '*') {
+                    int commentEnd = blockCommentEnd(pos + 2);
+                    if (commentEnd < 0) {
+                        break;
+                    }
+                    pos = commentEnd;
+                    add(start, pos, -1);
+                    start = pos;
+                }
+                else {
+                    break;
+                }
+            }
+
+            int code = pos;
+            // anything up to the separator line belongs to the statement
+            while (pos < length) {
+                char c = script.charAt(pos);
+                if (c == '\n' || c == '\r') {
+                    int separatorEnd = indexOfSeparatorEnd(pos);
+                    if (separatorEnd > 0) {
+                        add(start, pos, code);
+                        pos = separatorEnd;
+                        return;
+                    }
+                }
+                pos++;
+            }
+            add(start, length, code < length ? code : -1);
+        }
+
+        /**
+         * consumes subsequent single line comments including their line ends, stops in front of a separator
+         */
+        private void lineComments() {
+            do {
+                pos += 2;
+                while (pos < length) {
+                    char c = script.charAt(pos);
+                    if (c == '\n' || c == '\r') {
+                        if (indexOfSeparatorEnd(pos) > 0) {
+                            return;
+                        }
+                        if (c == '\n') {
+                            pos++;
+                            break;
+                        }
+                    }
+                    pos++;
+                }
+            } while (pos + 1 < length && script.charAt(pos) == '-' && script.charAt(pos + 1) == '-');
+        }
+
+        /**
+         * @return index after the closing of the block comment, -1 if not closed within the statement
+         */
+        private int blockCommentEnd(int from) {
+            for (int idx = from; idx + 1 < length; idx++) {
+                char c = script.charAt(idx);
+                if (c == '*' && script.charAt(idx + 1) == '/') {
+                    return idx + 2;
+                }
+                if ((c == '\n' || c == '\r') && indexOfSeparatorEnd(idx) > 0) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return index after the separator line starting with the line end at idx, -1 if there is none
+         */
+        private int indexOfSeparatorEnd(int idx) {
+            if (script.charAt(idx) == '\r') {
+                idx++;
+            }
+            if (idx >= length || script.charAt(idx) != '\n') {
+                return -1;
+            }
+            idx++;
+            if (idx + SEPARATOR_LINE.length() > length) {
+                return -1;
+            }
+            for (int i = 0; i < SEPARATOR_LINE.length(); i++) {
+                if (script.charAt(idx + i) != SEPARATOR_LINE.charAt(i)) {
+                    return -1;
+                }
+            }
+            idx += SEPARATOR_LINE.length();
+            if (idx < length && script.charAt(idx) == '\r') {
+                idx++;
+            }
+            if (idx >= length || script.charAt(idx) != '\n') {
+                return -1;
+            }
+            return idx + 1;
+        }
+
+        private void add(int start, int end, int code) {
+            int idx = start;
+            while (idx < end && script.charAt(idx) <= ' ') {
+                idx++;
+            }
+            if (idx < end) {
+                statements.add(new Statement(script, start, end, code));
+            }
+        }
+    }
+
+    /**
+     * Single statement as slice of the script. The prepared sql has leading and trailing whitespace removed,
+     * a trailing semicolon gets removed unless the statement ends a pl/sql block, pl/sql blocks are delimited by "/".
+     */
+    public static class Statement implements CharSequence, SqlStatement {
+        private final CharSequence script;
+        private final int start;
+        private final int end;
+        private final int code;
+        private final int sqlStart;
+        private final int sqlEnd;
+        private final String delimiter;
+        private String sql;
+
+        private Statement(CharSequence script, int start, int end, int code) {
+            this.script = script;
+            this.start = start;
+            this.end = end;
+            this.code = code;
+
+            int sqlStart = start, sqlEnd = end;
+            while (sqlStart < sqlEnd && script.charAt(sqlStart) <= ' ') {
+                sqlStart++;
+            }
+            while (sqlEnd > sqlStart && script.charAt(sqlEnd - 1) <= ' ') {
+                sqlEnd--;
+            }
+
+            int plsqlEnd = indexOfPlsqlEnd(script, sqlStart, sqlEnd);
+            if (plsqlEnd > 0) {
+                sqlEnd = plsqlEnd;
+                delimiter = "/";
+            }
+            else {
+                // remove trailing semicolon in case of non pl/sql type objects/statements
+                if (sqlEnd > sqlStart && script.charAt(sqlEnd - 1) == ';') {
+                    sqlEnd--;
+                }
+                delimiter = code >= 0 && code < sqlEnd ? ";" : "";
+            }
+            this.sqlStart = sqlStart;
+            this.sqlEnd = sqlEnd;
+        }
+
+        /**
+         * @return false if the statement consists of comments only
+         */
+        public boolean hasCode() {
+            return code >= 0;
+        }
+
+        public String getSql() {
+            if (sql == null) {
+                String text = script.subSequence(sqlStart, sqlEnd).toString();
+                sql = "/".equals(delimiter) ? text + "\n" : text;
+            }
+            return sql;
+        }
+
+        public String getDelimiter() {
+            return delimiter;
+        }
+
+        public int length() {
+            return end - start;
+        }
+
+        public char charAt(int index) {
+            return script.charAt(start + index);
+        }
+
+        public CharSequence subSequence(int from, int to) {
+            return script.subSequence(start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return script.subSequence(start, end).toString();
+        }
+    }
+}
@@ -0,0 +1,606 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.hst;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains the outbox tables written by the history triggers of entities annotated with
+ * {@link com.github.gekoh.yagen.api.TemporalEntity#outbox()} and writes the same history rows as the synchronous
+ * history triggers, including operation, transaction timestamp and invalidation of the previous row.
+ * <p>
+ * Each call of {@link #drain()} reads up to {@link #setBatchSize(int) batchSize} records per outbox, completed by the
+ * remaining records of the transactions contained, merges the records of rows modified several times within a
+ * transaction, writes the history rows in JDBC batches and deletes the drained records, all within one database
+ * transaction. Deleting the drained records is the checkpoint, a failing batch is rolled back and drained again.
+ * <p>
+ * Transactions are applied in order of their transaction timestamp, so only one drainer must process an outbox.
+ * {@link #awaitCapacity(long, TimeUnit)} lets producers wait while too many records are pending,
+ * {@link #getLagMillis()} reports how far the history is behind.
+ *
+ * @author Georg Kohlweiss
+ */
+public class HistoryOutboxDrainer implements Runnable {
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(HistoryOutboxDrainer.class);
+
+    public static final String SEQUENCE_COLUMN_NAME = "hst_outbox_seq";
+    public static final String TRANSACTION_ID_COLUMN_NAME = "hst_transaction_id";
+
+    private static final String OPERATION_COLUMN_NAME = "operation";
+    private static final String INVALIDATED_AT_COLUMN_NAME = "invalidated_at";
+    private static final String UUID_COLUMN_NAME = "hst_uuid";
+
+    private static final int IN_LIST_SIZE = 500;
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 1000;
+    public static final long DEFAULT_MAX_PENDING_RECORDS = 100000;
+
+    private final DataSource dataSource;
+    private final List<Outbox> outboxes = new CopyOnWriteArrayList<Outbox>();
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long pollIntervalMillis = DEFAULT_POLL_INTERVAL_MILLIS;
+    private long maxPendingRecords = DEFAULT_MAX_PENDING_RECORDS;
+
+    private final Object capacityLock = new Object();
+    private volatile boolean running;
+
+    public HistoryOutboxDrainer(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * @param outboxTableName outbox table, history table name with suffix {@value com.github.gekoh.yagen.api.Constants#_HOB}
+     * @param historyTableName history table to write
+     * @param historyTimestampColumnName see {@link com.github.gekoh.yagen.api.TemporalEntity#historyTimestampColumnName()}
+     * @param pkColumnNames primary key columns of the live table
+     */
+    public HistoryOutboxDrainer addOutbox(String outboxTableName, String historyTableName, String historyTimestampColumnName, String... pkColumnNames) {
+        if (pkColumnNames == null || pkColumnNames.length < 1) {
+            throw new IllegalArgumentException("need primary key columns of outbox " + outboxTableName);
+        }
+        List<String> pkColumns = new ArrayList<String>();
+        for (String pkColumnName : pkColumnNames) {
+            pkColumns.add(pkColumnName.toLowerCase());
+        }
+        outboxes.add(new Outbox(outboxTableName, historyTableName, historyTimestampColumnName.toLowerCase(), pkColumns));
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size needs to be positive instead of " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public long getPollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+
+    /**
+     * @param pollIntervalMillis time to wait after draining less than a full batch
+     */
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    public long getMaxPendingRecords() {
+        return maxPendingRecords;
+    }
+
+    /**
+     * @param maxPendingRecords number of pending records above which {@link #awaitCapacity(long, TimeUnit)} blocks
+     */
+    public void setMaxPendingRecords(long maxPendingRecords) {
+        this.maxPendingRecords = maxPendingRecords;
+    }
+
+    /**
+     * drains all outboxes until {@link #stop()} is called, full batches are followed by the next batch immediately
+     */
+    public void run() {
+        running = true;
+        try {
+            while (running && !Thread.currentThread().isInterrupted()) {
+                boolean fullBatch = false;
+                for (Outbox outbox : outboxes) {
+                    try {
+                        fullBatch |= drain(outbox) >= batchSize;
+                    } catch (SQLException e) {
+                        LOG.error("failed draining history outbox " + outbox.outboxTableName + ", retrying in " + pollIntervalMillis + "ms", e);
+                    } catch (RuntimeException e) {
+                        LOG.error("failed draining history outbox " + outbox.outboxTableName + ", retrying in " + pollIntervalMillis + "ms", e);
+                    }
+                }
+                if (!fullBatch) {
+                    try {
+                        Thread.sleep(pollIntervalMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        } finally {
+            running = false;
+        }
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * drains one batch of each outbox
+     *
+     * @return number of outbox records drained
+     */
+    public int drain() throws SQLException {
+        int drained = 0;
+        for (Outbox outbox : outboxes) {
+            drained += drain(outbox);
+        }
+        return drained;
+    }
+
+    /**
+     * blocks while more than {@link #setMaxPendingRecords(long) maxPendingRecords} records are pending to let
+     * producers slow down instead of letting the outbox grow unbounded
+     *
+     * @return false if capacity was not available within the timeout
+     */
+    public boolean awaitCapacity(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        synchronized (capacityLock) {
+            while (getPendingRecords() > maxPendingRecords) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    return false;
+                }
+                capacityLock.wait(wait);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return records pending in all outboxes as of the last drain
+     */
+    public long getPendingRecords() {
+        long pending = 0;
+        for (Outbox outbox : outboxes) {
+            pending += outbox.pendingRecords;
+        }
+        return pending;
+    }
+
+    /**
+     * @return age of the oldest pending transaction as of the last drain, 0 if all outboxes were empty
+     */
+    public long getLagMillis() {
+        long lag = 0;
+        for (Outbox outbox : outboxes) {
+            lag = Math.max(lag, outbox.lagMillis);
+        }
+        return lag;
+    }
+
+    /**
+     * @return highest sequence number drained from the given outbox table, -1 if nothing drained yet
+     */
+    public long getLastDrainedSequence(String outboxTableName) {
+        for (Outbox outbox : outboxes) {
+            if (outbox.outboxTableName.equalsIgnoreCase(outboxTableName)) {
+                return outbox.lastDrainedSequence;
+            }
+        }
+        throw new IllegalArgumentException("unknown outbox " + outboxTableName);
+    }
+
+    private int drain(Outbox outbox) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            connection.setAutoCommit(false);
+
+            List<OutboxRecord> records = loadBatch(connection, outbox);
+            if (!records.isEmpty()) {
+                write(connection, outbox, records);
+            }
+            updateMetrics(connection, outbox);
+
+            connection.commit();
+
+            if (!records.isEmpty()) {
+                outbox.lastDrainedSequence = Math.max(outbox.lastDrainedSequence, records.get(records.size() - 1).sequence);
+                LOG.debug("drained {} records from history outbox {}", records.size(), outbox.outboxTableName);
+            }
+            return records.size();
+        } catch (SQLException e) {
+            rollback(connection, e);
+            throw e;
+        } catch (RuntimeException e) {
+            rollback(connection, e);
+            throw e;
+        } finally {
+            try {
+                connection.setAutoCommit(autoCommit);
+            } finally {
+                connection.close();
+            }
+            synchronized (capacityLock) {
+                capacityLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * rolls back without hiding the failure that caused the rollback
+     */
+    private static void rollback(Connection connection, Exception cause) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * @return records of the first transactions in the outbox ordered by sequence, transactions are loaded completely
+     */
+    private List<OutboxRecord> loadBatch(Connection connection, Outbox outbox) throws SQLException {
+        Set<String> transactionIds = new LinkedHashSet<String>();
+        PreparedStatement stmt = connection.prepareStatement("select " + TRANSACTION_ID_COLUMN_NAME + " from " + outbox.outboxTableName + " order by " + SEQUENCE_COLUMN_NAME);
+        try {
+            stmt.setMaxRows(batchSize);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                transactionIds.add(rs.getString(1));
+            }
+        } finally {
+            stmt.close();
+        }
+
+        List<OutboxRecord> records = new ArrayList<OutboxRecord>();
+        List<String> ids = new ArrayList<String>(transactionIds);
+        for (int start = 0; start < ids.size(); start += IN_LIST_SIZE) {
+            List<String> chunk = ids.subList(start, Math.min(start + IN_LIST_SIZE, ids.size()));
+            StringBuilder sql = new StringBuilder("select * from ").append(outbox.outboxTableName)
+                    .append(" where ").append(TRANSACTION_ID_COLUMN_NAME).append(" in (");
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i > 0 ? ", ?" : "?");
+            }
+            sql.append(")");
+
+            stmt = connection.prepareStatement(sql.toString());
+            try {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setString(i + 1, chunk.get(i));
+                }
+                ResultSet rs = stmt.executeQuery();
+                ResultSetMetaData metaData = rs.getMetaData();
+                while (rs.next()) {
+                    Map<String, Object> values = new LinkedHashMap<String, Object>();
+                    for (int col = 1; col <= metaData.getColumnCount(); col++) {
+                        String columnName = metaData.getColumnLabel(col).toLowerCase();
+                        values.put(columnName, columnName.equals(outbox.historyTimestampColumnName) ? rs.getTimestamp(col) : rs.getObject(col));
+                    }
+                    records.add(new OutboxRecord(outbox, values));
+                }
+            } finally {
+                stmt.close();
+            }
+        }
+
+        Collections.sort(records, new Comparator<OutboxRecord>() {
+            public int compare(OutboxRecord o1, OutboxRecord o2) {
+                return o1.sequence < o2.sequence ? -1 : o1.sequence == o2.sequence ? 0 : 1;
+            }
+        });
+        return records;
+    }
+
+    private void write(Connection connection, Outbox outbox, List<OutboxRecord> records) throws SQLException {
+        List<HistoryRow> invalidations = new ArrayList<HistoryRow>();
+        List<HistoryRow> historyRows = materialize(records, invalidations);
+
+        if (!invalidations.isEmpty()) {
+            invalidate(connection, outbox, invalidations);
+        }
+
+        if (!historyRows.isEmpty()) {
+            List<String> columns = new ArrayList<String>(historyRows.get(0).values.keySet());
+            StringBuilder sql = new StringBuilder("insert into ").append(outbox.historyTableName).append(" (");
+            StringBuilder params = new StringBuilder();
+            for (int i = 0; i < columns.size(); i++) {
+                sql.append(i > 0 ? ", " : "").append(columns.get(i));
+                params.append(i > 0 ? ", ?" : "?");
+            }
+            sql.append(") values (").append(params).append(")");
+
+            PreparedStatement stmt = connection.prepareStatement(sql.toString());
+            try {
+                for (HistoryRow row : historyRows) {
+                    for (int i = 0; i < columns.size(); i++) {
+                        stmt.setObject(i + 1, row.values.get(columns.get(i)));
+                    }
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            } finally {
+                stmt.close();
+            }
+        }
+
+        PreparedStatement stmt = connection.prepareStatement("delete from " + outbox.outboxTableName + " where " + SEQUENCE_COLUMN_NAME + "=?");
+        try {
+            for (OutboxRecord record : records) {
+                stmt.setLong(1, record.sequence);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * invalidates the latest history row of each row modified the first time in this batch
+     */
+    private void invalidate(Connection connection, Outbox outbox, List<HistoryRow> invalidations) throws SQLException {
+        // primary key columns being null need a different statement
+        Map<String, List<HistoryRow>> byNullPattern = new LinkedHashMap<String, List<HistoryRow>>();
+        for (HistoryRow row : invalidations) {
+            StringBuilder where = new StringBuilder();
+            for (int i = 0; i < outbox.pkColumns.size(); i++) {
+                where.append(outbox.pkColumns.get(i)).append(row.key.get(i) == null ? " is null and " : "=? and ");
+            }
+            List<HistoryRow> rows = byNullPattern.get(where.toString());
+            if (rows == null) {
+                byNullPattern.put(where.toString(), rows = new ArrayList<HistoryRow>());
+            }
+            rows.add(row);
+        }
+
+        for (Map.Entry<String, List<HistoryRow>> entry : byNullPattern.entrySet()) {
+            PreparedStatement stmt = connection.prepareStatement("update " + outbox.historyTableName +
+                    " set " + INVALIDATED_AT_COLUMN_NAME + "=? where " + entry.getKey() +
+                    outbox.historyTimestampColumnName + "<? and " + OPERATION_COLUMN_NAME + "<>'D' and " + INVALIDATED_AT_COLUMN_NAME + " is null");
+            try {
+                for (HistoryRow row : entry.getValue()) {
+                    int idx = 1;
+                    stmt.setTimestamp(idx++, row.timestamp);
+                    for (Object keyValue : row.key) {
+                        if (keyValue != null) {
+                            stmt.setObject(idx++, keyValue);
+                        }
+                    }
+                    stmt.setTimestamp(idx, row.timestamp);
+                    stmt.addBatch();
+                }
+                int[] counts = stmt.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    // Statement.SUCCESS_NO_INFO (-2) is returned by some drivers for batches
+                    if (counts[i] == 0 || counts[i] > 1) {
+                        // the synchronous trigger raises an error here as well, the batch is rolled back and retried
+                        throw new SQLException("unable to invalidate history record for " + outbox.historyTableName + " " +
+                                outbox.pkColumns + "=" + entry.getValue().get(i).key + ", " + counts[i] + " rows updated");
+                    }
+                }
+            } finally {
+                stmt.close();
+            }
+        }
+    }
+
+    private void updateMetrics(Connection connection, Outbox outbox) throws SQLException {
+        Statement stmt = connection.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("select count(1), min(" + outbox.historyTimestampColumnName + ") from " + outbox.outboxTableName);
+            rs.next();
+            outbox.pendingRecords = rs.getLong(1);
+            Timestamp oldest = rs.getTimestamp(2);
+            outbox.lagMillis = oldest != null ? Math.max(0, System.currentTimeMillis() - oldest.getTime()) : 0;
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * merges the records like the synchronous history trigger does for rows modified several times in a transaction,
+     * insert followed by updates results in an insert, insert followed by delete leaves no history, delete followed by
+     * insert results in an insert and later modifications replace the history row of the earlier ones keeping its uuid
+     *
+     * @param records outbox records ordered by sequence
+     * @param invalidations receives the history rows which need the latest history row of the database invalidated
+     * @return history rows to insert in order of transaction timestamp
+     */
+    static List<HistoryRow> materialize(List<OutboxRecord> records, List<HistoryRow> invalidations) {
+        Map<String, List<OutboxRecord>> transactions = new LinkedHashMap<String, List<OutboxRecord>>();
+        for (OutboxRecord record : records) {
+            List<OutboxRecord> transaction = transactions.get(record.transactionId);
+            if (transaction == null) {
+                transactions.put(record.transactionId, transaction = new ArrayList<OutboxRecord>());
+            }
+            transaction.add(record);
+        }
+
+        List<List<OutboxRecord>> ordered = new ArrayList<List<OutboxRecord>>(transactions.values());
+        Collections.sort(ordered, new Comparator<List<OutboxRecord>>() {
+            public int compare(List<OutboxRecord> o1, List<OutboxRecord> o2) {
+                int cmp = o1.get(0).timestamp.compareTo(o2.get(0).timestamp);
+                return cmp != 0 ? cmp : o1.get(0).sequence < o2.get(0).sequence ? -1 : o1.get(0).sequence == o2.get(0).sequence ? 0 : 1;
+            }
+        });
+
+        List<HistoryRow> historyRows = new ArrayList<HistoryRow>();
+        // latest not deleted history row per key written in this batch, invalidated in memory
+        Map<List<Object>, HistoryRow> latestRows = new HashMap<List<Object>, HistoryRow>();
+
+        for (List<OutboxRecord> transaction : ordered) {
+            Map<List<Object>, HistoryRow> modifiedRows = new HashMap<List<Object>, HistoryRow>();
+            List<HistoryRow> transactionRows = new ArrayList<HistoryRow>();
+
+            for (OutboxRecord record : transaction) {
+                HistoryRow modified = modifiedRows.get(record.key);
+                if (modified == null) {
+                    HistoryRow row = new HistoryRow(record);
+                    modifiedRows.put(record.key, row);
+                    transactionRows.add(row);
+                }
+                else if (modified.firstOperation == Operation.I && record.operation == Operation.D) {
+                    // the trigger keeps the modified row entry, a later insert in this transaction reuses its uuid
+                    transactionRows.remove(modified);
+                    modified.operation = null;
+                }
+                else {
+                    if (modified.operation == null) {
+                        transactionRows.add(modified);
+                    }
+                    // e.g. delete followed by insert becomes a single insert with the uuid of the delete
+                    modified.replace(record);
+                }
+            }
+
+            for (HistoryRow row : transactionRows) {
+                if (row.firstOperation != Operation.I) {
+                    HistoryRow latest = latestRows.get(row.key);
+                    if (latest != null) {
+                        latest.values.put(INVALIDATED_AT_COLUMN_NAME, row.timestamp);
+                    }
+                    else {
+                        invalidations.add(row);
+                    }
+                }
+                if (row.operation == Operation.D) {
+                    latestRows.remove(row.key);
+                }
+                else {
+                    latestRows.put(row.key, row);
+                }
+                historyRows.add(row);
+            }
+        }
+
+        return historyRows;
+    }
+
+    private static class Outbox {
+        private final String outboxTableName;
+        private final String historyTableName;
+        private final String historyTimestampColumnName;
+        private final List<String> pkColumns;
+
+        private volatile long pendingRecords;
+        private volatile long lagMillis;
+        private volatile long lastDrainedSequence = -1;
+
+        private Outbox(String outboxTableName, String historyTableName, String historyTimestampColumnName, List<String> pkColumns) {
+            this.outboxTableName = outboxTableName;
+            this.historyTableName = historyTableName;
+            this.historyTimestampColumnName = historyTimestampColumnName;
+            this.pkColumns = pkColumns;
+        }
+    }
+
+    /**
+     * record of the outbox table, values are the columns of the history table
+     */
+    static class OutboxRecord {
+        final long sequence;
+        final String transactionId;
+        final Operation operation;
+        final Timestamp timestamp;
+        final List<Object> key;
+        final Map<String, Object> values;
+
+        private OutboxRecord(Outbox outbox, Map<String, Object> values) {
+            this(((Number) values.remove(SEQUENCE_COLUMN_NAME)).longValue(),
+                    (String) values.remove(TRANSACTION_ID_COLUMN_NAME),
+                    (Timestamp) values.get(outbox.historyTimestampColumnName),
+                    outbox.pkColumns,
+                    values);
+        }
+
+        OutboxRecord(long sequence, String transactionId, Timestamp timestamp, List<String> pkColumns, Map<String, Object> values) {
+            this.sequence = sequence;
+            this.transactionId = transactionId;
+            this.operation = Operation.valueOf(String.valueOf(values.get(OPERATION_COLUMN_NAME)));
+            this.timestamp = timestamp;
+            this.values = values;
+            List<Object> key = new ArrayList<Object>();
+            for (String pkColumn : pkColumns) {
+                key.add(values.get(pkColumn));
+            }
+            this.key = key;
+        }
+    }
+
+    /**
+     * history row to insert, merged from the records of one row within a transaction
+     */
+    static class HistoryRow {
+        final List<Object> key;
+        final Operation firstOperation;
+        final Timestamp timestamp;
+        final Map<String, Object> values;
+        Operation operation;
+
+        private HistoryRow(OutboxRecord record) {
+            this.key = record.key;
+            this.firstOperation = record.operation;
+            this.operation = record.operation;
+            this.timestamp = record.timestamp;
+            this.values = new LinkedHashMap<String, Object>(record.values);
+        }
+
+        private void replace(OutboxRecord record) {
+            Object uuid = values.get(UUID_COLUMN_NAME);
+            values.clear();
+            values.putAll(record.values);
+            values.put(UUID_COLUMN_NAME, uuid);
+            operation = firstOperation == Operation.I ? Operation.I : record.operation;
+            values.put(OPERATION_COLUMN_NAME, operation.name());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.util;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Declared fields, methods and annotations of one class, read in a single reflective pass and cached per class.
+ * {@link Class#getDeclaredFields()} and {@link Class#getDeclaredMethods()} return new copies on every call, each
+ * copy with its own lazily parsed annotations. All callers scanning entity classes share the member instances of
+ * this index instead.
+ * The index is immutable after construction and may be used concurrently.
+ *
+ * @author Georg Kohlweiss
+ */
+public class AnnotationIndex {
+
+    private static final ClassValue<AnnotationIndex> INDEXES = new ClassValue<AnnotationIndex>() {
+        @Override
+        protected AnnotationIndex computeValue(Class<?> type) {
+            return new AnnotationIndex(type);
+        }
+    };
+
+    private static final Map<Class<? extends Annotation>, Annotation> NO_ANNOTATIONS = Collections.emptyMap();
+
+    private final Class type;
+    private final List<Field> fields;
+    private final List<Method> methods;
+    private final List<AccessibleObject> fieldsAndMethods;
+    private final Map<Class<? extends Annotation>, Annotation> typeAnnotations;
+    private final Map<AccessibleObject, Map<Class<? extends Annotation>, Annotation>> memberAnnotations = new IdentityHashMap<AccessibleObject, Map<Class<? extends Annotation>, Annotation>>();
+    private final Map<Class<? extends Annotation>, List<AccessibleObject>> annotatedMembers = new HashMap<Class<? extends Annotation>, List<AccessibleObject>>();
+
+    public static AnnotationIndex of(Class type) {
+        return INDEXES.get(type);
+    }
+
+    private AnnotationIndex(Class type) {
+        this.type = type;
+        this.fields = Collections.unmodifiableList(Arrays.asList(type.getDeclaredFields()));
+        this.methods = Collections.unmodifiableList(Arrays.asList(type.getDeclaredMethods()));
+
+        List<AccessibleObject> all = new ArrayList<AccessibleObject>(fields.size() + methods.size());
+        all.addAll(fields);
+        all.addAll(methods);
+        this.fieldsAndMethods = Collections.unmodifiableList(all);
+
+        this.typeAnnotations = toMap(type.getAnnotations());
+
+        for (AccessibleObject fieldOrMethod : fieldsAndMethods) {
+            Map<Class<? extends Annotation>, Annotation> annotations = toMap(fieldOrMethod.getDeclaredAnnotations());
+            memberAnnotations.put(fieldOrMethod, annotations);
+
+            for (Class<? extends Annotation> annotationType : annotations.keySet()) {
+                List<AccessibleObject> members = annotatedMembers.get(annotationType);
+                if (members == null) {
+                    annotatedMembers.put(annotationType, members = new ArrayList<AccessibleObject>());
+                }
+                members.add(fieldOrMethod);
+            }
+        }
+    }
+
+    private static Map<Class<? extends Annotation>, Annotation> toMap(Annotation[] annotations) {
+        if (annotations.length < 1) {
+            return NO_ANNOTATIONS;
+        }
+        Map<Class<? extends Annotation>, Annotation> map = new HashMap<Class<? extends Annotation>, Annotation>(annotations.length * 2);
+        for (Annotation annotation : annotations) {
+            map.put(annotation.annotationType(), annotation);
+        }
+        return map;
+    }
+
+    public Class getType() {
+        return type;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    public List<Method> getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return declared fields followed by declared methods
+     */
+    public List<AccessibleObject> getFieldsAndMethods() {
+        return fieldsAndMethods;
+    }
+
+    /**
+     * @return annotations of the indexed type including inherited ones, same as {@link Class#getAnnotations()}
+     */
+    public Collection<Annotation> getTypeAnnotations() {
+        return typeAnnotations.values();
+    }
+
+    public <T extends Annotation> T getTypeAnnotation(Class<T> annotationType) {
+        return annotationType.cast(typeAnnotations.get(annotationType));
+    }
+
+    public boolean isTypeAnnotationPresent(Class<? extends Annotation> annotationType) {
+        return typeAnnotations.containsKey(annotationType);
+    }
+
+    /**
+     * @param fieldOrMethod member of this index, members obtained from another index or directly from the class
+     *                      are looked up via their own reflective annotations
+     */
+    public <T extends Annotation> T getAnnotation(AccessibleObject fieldOrMethod, Class<T> annotationType) {
+        Map<Class<? extends Annotation>, Annotation> annotations = memberAnnotations.get(fieldOrMethod);
+        if (annotations == null) {
+            return fieldOrMethod.getAnnotation(annotationType);
+        }
+        return annotationType.cast(annotations.get(annotationType));
+    }
+
+    public boolean isAnnotationPresent(AccessibleObject fieldOrMethod, Class<? extends Annotation> annotationType) {
+        return getAnnotation(fieldOrMethod, annotationType) != null;
+    }
+
+    /**
+     * @return declared fields and methods carrying the given annotation, fields first
+     */
+    public List<AccessibleObject> getAnnotatedMembers(Class<? extends Annotation> annotationType) {
+        List<AccessibleObject> members = annotatedMembers.get(annotationType);
+        return members != null ? Collections.unmodifiableList(members) : Collections.<AccessibleObject>emptyList();
+    }
+}
@@ -300,7 +300,7 @@ public class FieldInfo {
     }
 
     private void addAttributeOverrides(Map<String, String> overrides, String path, Class type) {
-        for (Field field : type.getDeclaredFields()) {
+        for (Field field : AnnotationIndex.of(type).getFields()) {
             String fieldPath = path + field.getName();
             String curPath = fieldPath + ".";
 
@@ -409,7 +409,7 @@ public class FieldInfo {
 
     private static List<FieldInfo> convertFields(List<FieldInfo> fields, Class baseEntity) {
 
-        for (Field field : baseEntity.getDeclaredFields()) {
+        for (Field field : AnnotationIndex.of(baseEntity).getFields()) {
             FieldInfo fi;
             Class type = field.getType();
             String name = field.getName();
@@ -480,7 +480,7 @@ public class FieldInfo {
             type = ((Method) id).getReturnType();
         }
         if (column == null && id.isAnnotationPresent(EmbeddedId.class)) {
-            for (Field field : type.getDeclaredFields()) {
+            for (Field field : AnnotationIndex.of(type).getFields()) {
                 if (field.isAnnotationPresent(Column.class)) {
                     return field.getAnnotation(Column.class);
                 }
@@ -506,7 +506,7 @@ public class FieldInfo {
         }
         String name = namePrefix + suffix;
         if (id.isAnnotationPresent(EmbeddedId.class)) {
-            for (Field field : type.getDeclaredFields()) {
+            for (Field field : AnnotationIndex.of(type).getFields()) {
                 if (field.isAnnotationPresent(Column.class)) {
                     FieldInfo fieldInfo = new FieldInfo(type, name, "@" + AttributeOverride.class.getName() + "(name=\"" + field.getName() + "\", column=" +
                             "@" + Column.class.getName() + "(name = \"" + escapeAttributeValue(columnName) + "\", length = " + column.length() + "))");
@@ -528,14 +528,10 @@ public class FieldInfo {
     }
 
     public static AccessibleObject getIdFieldOrMethod(Class entityClass) {
-        for (Field field : entityClass.getDeclaredFields()) {
-            if (field.isAnnotationPresent(Id.class) || field.isAnnotationPresent(EmbeddedId.class)) {
-                return field;
-            }
-        }
-        for (Method method : entityClass.getDeclaredMethods()) {
-            if (method.isAnnotationPresent(Id.class) || method.isAnnotationPresent(EmbeddedId.class)) {
-                return method;
+        AnnotationIndex index = AnnotationIndex.of(entityClass);
+        for (AccessibleObject fieldOrMethod : index.getFieldsAndMethods()) {
+            if (index.isAnnotationPresent(fieldOrMethod, Id.class) || index.isAnnotationPresent(fieldOrMethod, EmbeddedId.class)) {
+                return fieldOrMethod;
             }
         }
         return entityClass.getSuperclass() != null ? getIdFieldOrMethod(entityClass.getSuperclass()) : null;
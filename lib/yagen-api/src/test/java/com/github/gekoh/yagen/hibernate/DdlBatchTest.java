@@ -0,0 +1,201 @@
+package com.github.gekoh.yagen.hibernate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class DdlBatchTest {
+
+    /**
+     * statement recording executed batches, statements containing 'fail' fail
+     */
+    private static class BatchRecorder implements InvocationHandler {
+        private final boolean continueAfterFailure;
+        private final List<String> batch = new ArrayList<String>();
+        private final List<List<String>> executedBatches = new ArrayList<List<String>>();
+
+        private BatchRecorder(boolean continueAfterFailure) {
+            this.continueAfterFailure = continueAfterFailure;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("addBatch")) {
+                batch.add((String) args[0]);
+            }
+            else if (method.getName().equals("clearBatch")) {
+                batch.clear();
+            }
+            else if (method.getName().equals("executeBatch")) {
+                executedBatches.add(new ArrayList<String>(batch));
+                List<Integer> counts = new ArrayList<Integer>();
+                boolean failed = false;
+                for (String sql : batch) {
+                    if (sql.contains("fail")) {
+                        failed = true;
+                        if (!continueAfterFailure) {
+                            break;
+                        }
+                        counts.add(Statement.EXECUTE_FAILED);
+                    }
+                    else {
+                        counts.add(0);
+                    }
+                }
+                batch.clear();
+                int[] updateCounts = new int[counts.size()];
+                for (int i = 0; i < updateCounts.length; i++) {
+                    updateCounts[i] = counts.get(i);
+                }
+                if (failed) {
+                    throw new BatchUpdateException("failed", updateCounts);
+                }
+                return updateCounts;
+            }
+            return null;
+        }
+
+        private Statement getStatement() {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Statement.class}, this);
+        }
+    }
+
+    private static class ExecutionRecorder implements DdlBatch.Executor {
+        private final List<String> executed = new ArrayList<String>();
+
+        public void execute(String sql) {
+            executed.add(sql);
+        }
+    }
+
+    @Test
+    public void testBatching() {
+        BatchRecorder recorder = new BatchRecorder(false);
+        ExecutionRecorder single = new ExecutionRecorder();
+        DdlBatch batch = new DdlBatch(recorder.getStatement(), 2, single);
+
+        batch.add("create table a (id int)", ";");
+        batch.add("create table b (id int)", ";");
+        batch.add("create table c (id int)", ";");
+        batch.add("drop table x", ";");
+        batch.add("create or replace trigger t\nbegin\n  null;\nend;\n", "/");
+        batch.add("create index c_ix on c (id)", ";");
+        batch.flush();
+
+        Assert.assertEquals(Arrays.asList(
+                Arrays.asList("create table a (id int)", "create table b (id int)"),
+                Arrays.asList("create table c (id int)"),
+                Arrays.asList("create index c_ix on c (id)")), recorder.executedBatches);
+        Assert.assertEquals(Arrays.asList("drop table x", "create or replace trigger t\nbegin\n  null;\nend;\n"), single.executed);
+    }
+
+    @Test
+    public void testDriverStoppingAtFailure() {
+        BatchRecorder recorder = new BatchRecorder(false);
+        ExecutionRecorder single = new ExecutionRecorder();
+        DdlBatch batch = new DdlBatch(recorder.getStatement(), 10, single);
+
+        batch.add("create table a (id int)", ";");
+        batch.add("create table fail (id int)", ";");
+        batch.add("create table b (id int)", ";");
+        batch.flush();
+
+        Assert.assertEquals(Arrays.asList("create table fail (id int)"), single.executed);
+        Assert.assertEquals(Arrays.asList("create table b (id int)"), recorder.executedBatches.get(1));
+    }
+
+    @Test
+    public void testDriverContinuingAfterFailure() {
+        BatchRecorder recorder = new BatchRecorder(true);
+        ExecutionRecorder single = new ExecutionRecorder();
+        DdlBatch batch = new DdlBatch(recorder.getStatement(), 10, single);
+
+        batch.add("create table fail1 (id int)", ";");
+        batch.add("create table a (id int)", ";");
+        batch.add("create table fail2 (id int)", ";");
+        batch.flush();
+
+        Assert.assertEquals(1, recorder.executedBatches.size());
+        Assert.assertEquals(Arrays.asList("create table fail1 (id int)", "create table fail2 (id int)"), single.executed);
+    }
+
+    @Test
+    public void testAtomicBatchExecutedAgain() {
+        BatchRecorder recorder = new BatchRecorder(false);
+        ExecutionRecorder single = new ExecutionRecorder();
+        DdlBatch batch = new DdlBatch(recorder.getStatement(), 10, single, true);
+
+        batch.add("create table a (id int)", ";");
+        batch.add("create table fail (id int)", ";");
+        batch.add("create table b (id int)", ";");
+        batch.flush();
+
+        // statements before the failing one got rolled back with the batch
+        Assert.assertEquals(1, recorder.executedBatches.size());
+        Assert.assertEquals(Arrays.asList("create table a (id int)", "create table fail (id int)", "create table b (id int)"), single.executed);
+    }
+
+    @Test
+    public void testFailureWithinBatchHsqldb() throws Exception {
+        Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:ddlbatch", "sa", "");
+        try {
+            final Statement statement = connection.createStatement();
+            final List<String> failed = new ArrayList<String>();
+            DdlBatch batch = DdlBatch.create(statement, new DdlBatch.Executor() {
+                public void execute(String sql) {
+                    try {
+                        statement.executeUpdate(sql);
+                    } catch (SQLException e) {
+                        failed.add(sql);
+                    }
+                }
+            });
+            Assert.assertNotNull(batch);
+
+            batch.add("create table a (id int)", ";");
+            batch.add("create index a_ix on a (id)", ";");
+            batch.add("create table a (id int)", ";");
+            batch.add("create table b (id int)", ";");
+            batch.flush();
+
+            Assert.assertEquals(Arrays.asList("create table a (id int)"), failed);
+            // statements before and after the failing one are applied
+            statement.executeQuery("select id from a").close();
+            statement.executeQuery("select id from b").close();
+            ResultSet rs = connection.getMetaData().getIndexInfo(null, null, "A", false, false);
+            boolean indexFound = false;
+            while (rs.next()) {
+                indexFound |= "A_IX".equals(rs.getString("INDEX_NAME"));
+            }
+            Assert.assertTrue(indexFound);
+        } finally {
+            connection.createStatement().execute("shutdown");
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testBatchSizeProperty() {
+        System.setProperty(DdlBatch.BATCH_SIZE_PROPERTY, "0");
+        try {
+            Assert.assertNull(DdlBatch.create(new BatchRecorder(false).getStatement(), new ExecutionRecorder()));
+        } finally {
+            System.clearProperty(DdlBatch.BATCH_SIZE_PROPERTY);
+        }
+        Assert.assertEquals(DdlBatch.DEFAULT_BATCH_SIZE, DdlBatch.getBatchSize());
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.gekoh.yagen.hibernate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class ReflectExecutorTest {
+
+    private static final String TARGET_CLASS_NAME = Target.class.getName();
+
+    public static class Target {
+        private final String name;
+
+        public Target(String name) {
+            this.name = name;
+        }
+
+        public String concat(StringBuffer buf, String suffix, List values) {
+            return buf.append(name).append(suffix).append(values).toString();
+        }
+
+        public String[] complete(String[] sql) {
+            return new String[]{sql[0] + ";"};
+        }
+
+        public static String describe(Object value) {
+            return "value " + value;
+        }
+
+        public void fail() throws IOException {
+            throw new IOException("failed");
+        }
+    }
+
+    @Test
+    public void testInvoke() throws Exception {
+        Object target = ReflectExecutor.getConstructor(TARGET_CLASS_NAME).invoke("tbl");
+
+        Assert.assertEquals("tbl_x[1, 2]", ReflectExecutor.getMethod(TARGET_CLASS_NAME + ".concat").invoke(target, new StringBuffer(), "_x", Arrays.asList(1, 2)));
+        Assert.assertEquals("value 42", ReflectExecutor.getMethod(TARGET_CLASS_NAME + ".describe").invoke(42));
+        Assert.assertArrayEquals(new String[]{"create;"}, (String[]) ReflectExecutor.getMethod(TARGET_CLASS_NAME + ".complete").invoke(target, new String[]{"create"}));
+    }
+
+    @Test
+    public void testExceptionNotWrapped() throws Exception {
+        Object target = ReflectExecutor.getConstructor(TARGET_CLASS_NAME).invoke("tbl");
+        try {
+            ReflectExecutor.getMethod(TARGET_CLASS_NAME + ".fail").invoke(target);
+            Assert.fail("exception expected");
+        } catch (IOException e) {
+            Assert.assertEquals("failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testConcurrentInitialization() throws Exception {
+        final AtomicInteger initCount = new AtomicInteger();
+        final ReflectExecutor.Invoker describe = ReflectExecutor.getMethod(TARGET_CLASS_NAME + ".describe");
+        final ReflectExecutor.Initializer<MethodHandle> counting = new ReflectExecutor.Initializer<MethodHandle>() {
+            @Override
+            public MethodHandle init() {
+                initCount.incrementAndGet();
+                return describe.get();
+            }
+        };
+
+        int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<MethodHandle>> results = new ArrayList<Future<MethodHandle>>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<MethodHandle>() {
+                    public MethodHandle call() throws Exception {
+                        start.await();
+                        return counting.get();
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<MethodHandle> result : results) {
+                Assert.assertSame(describe.get(), result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(1, initCount.get());
+    }
+}
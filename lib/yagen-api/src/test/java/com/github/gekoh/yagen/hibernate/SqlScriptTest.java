@@ -0,0 +1,84 @@
+package com.github.gekoh.yagen.hibernate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class SqlScriptTest {
+
+    private static final String SEPARATOR = PatchGlue.STATEMENT_SEPARATOR;
+
+    @Test
+    public void testSplit() {
+        String script = "-- table\n-- of customers\ncreate table customer (id number(10));" + SEPARATOR
+                + "  " + SEPARATOR
+                + "/* trigger */\ncreate or replace trigger customer_trg\nbefore insert on customer\nbegin\n  null;\nend customer_trg;\n/" + SEPARATOR
+                + "insert into customer (id) values (1);\n";
+
+        List<SqlScript.Statement> statements = SqlScript.split(script);
+
+        Assert.assertEquals(5, statements.size());
+        Assert.assertEquals("-- table\n-- of customers\n", statements.get(0).toString());
+        Assert.assertFalse(statements.get(0).hasCode());
+        Assert.assertEquals("create table customer (id number(10));", statements.get(1).toString());
+        Assert.assertEquals("/* trigger */", statements.get(2).toString());
+        Assert.assertEquals("\ncreate or replace trigger customer_trg\nbefore insert on customer\nbegin\n  null;\nend customer_trg;\n/", statements.get(3).toString());
+        Assert.assertEquals("insert into customer (id) values (1);\n", statements.get(4).toString());
+
+        Assert.assertEquals("", statements.get(0).getDelimiter());
+        Assert.assertEquals("create table customer (id number(10))", statements.get(1).getSql());
+        Assert.assertEquals(";", statements.get(1).getDelimiter());
+        Assert.assertEquals("create or replace trigger customer_trg\nbefore insert on customer\nbegin\n  null;\nend customer_trg;\n", statements.get(3).getSql());
+        Assert.assertEquals("/", statements.get(3).getDelimiter());
+        Assert.assertEquals("insert into customer (id) values (1)", statements.get(4).getSql());
+    }
+
+    @Test
+    public void testSliceOfScript() {
+        String script = "drop table a" + SEPARATOR.replace("\n", "\r\n") + "drop table b";
+
+        List<SqlScript.Statement> statements = SqlScript.split(script);
+
+        Assert.assertEquals(2, statements.size());
+        SqlScript.Statement second = statements.get(1);
+        Assert.assertEquals(12, second.length());
+        Assert.assertEquals('d', second.charAt(0));
+        Assert.assertEquals("table", second.subSequence(5, 10).toString());
+        Assert.assertEquals("drop table b", second.toString());
+    }
+
+    @Test
+    public void testEmptyStatements() {
+        Assert.assertTrue(SqlScript.isEmpty(" -- comment\n/* block\n comment */ \n"));
+        Assert.assertTrue(SqlScript.isEmpty("/**/"));
+        Assert.assertFalse(SqlScript.isEmpty("/* unterminated"));
+        Assert.assertFalse(SqlScript.isEmpty("/**/ ;"));
+        Assert.assertTrue(SqlScript.split(" \n \n").isEmpty());
+
+        Assert.assertEquals("", SqlScript.prepare("/* c */ ;").getDelimiter());
+        Assert.assertEquals(";", SqlScript.prepare("select 1 from dual /* c */").getDelimiter());
+    }
+
+    @Test
+    public void testPlsqlEnd() {
+        Assert.assertEquals("/", SqlScript.prepare("begin null; END;").getDelimiter());
+        Assert.assertEquals("/", SqlScript.prepare("begin null; end my_block;  \n/").getDelimiter());
+        Assert.assertEquals("begin null; end my_block;\n", SqlScript.prepare("begin null; end my_block;  \n/").getSql());
+        Assert.assertEquals(";", SqlScript.prepare("select * from weekend;").getDelimiter());
+        Assert.assertEquals("select * from weekend", SqlScript.prepare("select * from weekend;").getSql());
+        Assert.assertEquals(";", SqlScript.prepare("end;").getDelimiter());
+    }
+
+    @Test
+    public void testPatchGlueDelegates() {
+        String script = "/* c */create table a (id int)" + SEPARATOR + "create table b (id int)";
+
+        Assert.assertEquals(3, PatchGlue.splitSQL(script).size());
+        Assert.assertTrue(PatchGlue.isEmptyStatement("-- only a comment"));
+        Assert.assertEquals("create table b (id int)", PatchGlue.prepareDDL("create table b (id int);").getSql());
+    }
+}
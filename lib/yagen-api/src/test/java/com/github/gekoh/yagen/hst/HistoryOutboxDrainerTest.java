@@ -0,0 +1,171 @@
+package com.github.gekoh.yagen.hst;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class HistoryOutboxDrainerTest {
+
+    private static final List<String> PK_COLUMNS = Collections.singletonList("id");
+
+    private long sequence;
+
+    private HistoryOutboxDrainer.OutboxRecord record(String transactionId, long time, String id, String operation, String value) {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        values.put("id", id);
+        values.put("value", value);
+        values.put("hst_uuid", "uuid" + sequence);
+        values.put("operation", operation);
+        values.put("transaction_timestamp", new Timestamp(time));
+        values.put("invalidated_at", null);
+        return new HistoryOutboxDrainer.OutboxRecord(sequence++, transactionId, new Timestamp(time), PK_COLUMNS, values);
+    }
+
+    @Test
+    public void testModificationsWithinTransaction() {
+        List<HistoryOutboxDrainer.HistoryRow> invalidations = new ArrayList<HistoryOutboxDrainer.HistoryRow>();
+        List<HistoryOutboxDrainer.HistoryRow> rows = HistoryOutboxDrainer.materialize(Arrays.asList(
+                record("tx1", 1000, "a", "I", "a1"),
+                record("tx1", 1000, "a", "U", "a2"),
+                record("tx1", 1000, "b", "I", "b1"),
+                record("tx1", 1000, "b", "D", null),
+                record("tx1", 1000, "c", "U", "c1"),
+                record("tx1", 1000, "c", "D", null)
+        ), invalidations);
+
+        Assert.assertEquals(2, rows.size());
+
+        Assert.assertEquals(Operation.I, rows.get(0).operation);
+        Assert.assertEquals("a2", rows.get(0).values.get("value"));
+        Assert.assertEquals("I", rows.get(0).values.get("operation"));
+        Assert.assertEquals("uuid0", rows.get(0).values.get("hst_uuid"));
+
+        Assert.assertEquals(Operation.D, rows.get(1).operation);
+        Assert.assertEquals("uuid4", rows.get(1).values.get("hst_uuid"));
+
+        Assert.assertEquals(1, invalidations.size());
+        Assert.assertEquals(Collections.<Object>singletonList("c"), invalidations.get(0).key);
+    }
+
+    @Test
+    public void testDeleteFollowedByInsert() {
+        List<HistoryOutboxDrainer.HistoryRow> invalidations = new ArrayList<HistoryOutboxDrainer.HistoryRow>();
+        List<HistoryOutboxDrainer.HistoryRow> rows = HistoryOutboxDrainer.materialize(Arrays.asList(
+                record("tx1", 1000, "a", "D", null),
+                record("tx1", 1000, "a", "I", "a2"),
+                record("tx1", 1000, "b", "I", "b1"),
+                record("tx1", 1000, "b", "D", null),
+                record("tx1", 1000, "b", "I", "b2")
+        ), invalidations);
+
+        // like the trigger a single insert keeping the uuid of the first modification
+        Assert.assertEquals(2, rows.size());
+        Assert.assertEquals(Operation.I, rows.get(0).operation);
+        Assert.assertEquals("I", rows.get(0).values.get("operation"));
+        Assert.assertEquals("a2", rows.get(0).values.get("value"));
+        Assert.assertEquals("uuid0", rows.get(0).values.get("hst_uuid"));
+
+        Assert.assertEquals(Operation.I, rows.get(1).operation);
+        Assert.assertEquals("b2", rows.get(1).values.get("value"));
+        Assert.assertEquals("uuid2", rows.get(1).values.get("hst_uuid"));
+
+        // the deleted row's latest history row is invalidated
+        Assert.assertEquals(1, invalidations.size());
+        Assert.assertSame(rows.get(0), invalidations.get(0));
+    }
+
+    @Test
+    public void testInvalidationWithinBatch() {
+        List<HistoryOutboxDrainer.HistoryRow> invalidations = new ArrayList<HistoryOutboxDrainer.HistoryRow>();
+        List<HistoryOutboxDrainer.HistoryRow> rows = HistoryOutboxDrainer.materialize(Arrays.asList(
+                record("tx2", 2000, "a", "U", "a2"),
+                record("tx1", 1000, "a", "U", "a1"),
+                record("tx3", 3000, "a", "D", null),
+                record("tx4", 4000, "a", "I", "a4")
+        ), invalidations);
+
+        Assert.assertEquals(4, rows.size());
+
+        // transactions are applied in order of their timestamp
+        Assert.assertEquals("a1", rows.get(0).values.get("value"));
+        Assert.assertEquals(new Timestamp(2000), rows.get(0).values.get("invalidated_at"));
+        Assert.assertEquals("a2", rows.get(1).values.get("value"));
+        Assert.assertEquals(new Timestamp(3000), rows.get(1).values.get("invalidated_at"));
+        Assert.assertEquals(Operation.D, rows.get(2).operation);
+        Assert.assertNull(rows.get(2).values.get("invalidated_at"));
+        Assert.assertEquals(Operation.I, rows.get(3).operation);
+        Assert.assertNull(rows.get(3).values.get("invalidated_at"));
+
+        // only the history row written before this batch needs to be invalidated in the database
+        Assert.assertEquals(1, invalidations.size());
+        Assert.assertSame(rows.get(0), invalidations.get(0));
+    }
+
+    @Test
+    public void testRuntimeExceptionDoesNotStopDrainer() {
+        final HistoryOutboxDrainer[] drainer = new HistoryOutboxDrainer[1];
+        final int[] calls = new int[1];
+        DataSource dataSource = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{DataSource.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (++calls[0] > 1) {
+                    drainer[0].stop();
+                }
+                throw new IllegalStateException("driver failure");
+            }
+        });
+        drainer[0] = new HistoryOutboxDrainer(dataSource).addOutbox("TST_HOB", "TST_HST", "TRANSACTION_TIMESTAMP", "ID");
+        drainer[0].setPollIntervalMillis(1);
+
+        drainer[0].run();
+
+        Assert.assertEquals(2, calls[0]);
+        Assert.assertFalse(drainer[0].isRunning());
+    }
+
+    @Test
+    public void testFailedRollbackDoesNotHideFailure() throws Exception {
+        final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("getAutoCommit")) {
+                    return true;
+                }
+                if (method.getName().equals("prepareStatement")) {
+                    throw new SQLException("select failed");
+                }
+                if (method.getName().equals("rollback")) {
+                    throw new SQLException("rollback failed");
+                }
+                return null;
+            }
+        });
+        DataSource dataSource = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{DataSource.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return connection;
+            }
+        });
+
+        try {
+            new HistoryOutboxDrainer(dataSource).addOutbox("TST_HOB", "TST_HST", "TRANSACTION_TIMESTAMP", "ID").drain();
+            Assert.fail("drain needs to fail");
+        } catch (SQLException e) {
+            Assert.assertEquals("select failed", e.getMessage());
+            Assert.assertEquals("rollback failed", e.getSuppressed()[0].getMessage());
+        }
+    }
+}
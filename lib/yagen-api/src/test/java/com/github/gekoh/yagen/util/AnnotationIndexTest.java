@@ -0,0 +1,84 @@
+package com.github.gekoh.yagen.util;
+
+import org.junit.Test;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class AnnotationIndexTest {
+
+    @Entity
+    @Table(name = "INDEXED")
+    static class Indexed {
+        @Id
+        @Column(name = "ID")
+        private String id;
+
+        @Column(name = "NAME")
+        private String name;
+
+        @Transient
+        private String ignored;
+
+        @Column(name = "DERIVED")
+        public String getDerived() {
+            return null;
+        }
+    }
+
+    static class IndexedSubclass extends Indexed {
+        private String plain;
+    }
+
+    @Test
+    public void testSameIndexPerClass() {
+        AnnotationIndex index = AnnotationIndex.of(Indexed.class);
+        assertSame(index, AnnotationIndex.of(Indexed.class));
+        assertSame(Indexed.class, index.getType());
+        assertNotSame(index, AnnotationIndex.of(IndexedSubclass.class));
+    }
+
+    @Test
+    public void testMembersAndAnnotations() throws Exception {
+        AnnotationIndex index = AnnotationIndex.of(Indexed.class);
+
+        assertEquals(Indexed.class.getDeclaredFields().length, index.getFields().size());
+        assertEquals(Indexed.class.getDeclaredMethods().length, index.getMethods().size());
+        assertEquals(index.getFields().size() + index.getMethods().size(), index.getFieldsAndMethods().size());
+
+        assertTrue(index.isTypeAnnotationPresent(Entity.class));
+        assertEquals("INDEXED", index.getTypeAnnotation(Table.class).name());
+
+        List<AccessibleObject> columns = index.getAnnotatedMembers(Column.class);
+        assertEquals(3, columns.size());
+        assertTrue(columns.get(0) instanceof Field);
+        assertTrue(columns.get(2) instanceof java.lang.reflect.Method);
+        assertEquals(1, index.getAnnotatedMembers(Transient.class).size());
+        assertTrue(index.getAnnotatedMembers(Entity.class).isEmpty());
+
+        for (AccessibleObject fieldOrMethod : index.getFieldsAndMethods()) {
+            assertEquals(fieldOrMethod.getAnnotation(Column.class), index.getAnnotation(fieldOrMethod, Column.class));
+        }
+
+        // members not obtained from the index fall back to reflection
+        Field id = Indexed.class.getDeclaredField("id");
+        assertTrue(index.isAnnotationPresent(id, Id.class));
+    }
+
+    @Test
+    public void testIdFieldOrMethodFromIndex() throws Exception {
+        assertSame(AnnotationIndex.of(Indexed.class).getAnnotatedMembers(Id.class).get(0), FieldInfo.getIdFieldOrMethod(IndexedSubclass.class));
+        assertTrue(AnnotationIndex.of(IndexedSubclass.class).getTypeAnnotations().isEmpty());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the generator benchmarks accepting the usual JMH command line options.
+ * Unless given on the command line, results get written as JSON to {@value #DEFAULT_RESULT_FILE} and the
+ * GC profiler is added to report the allocation rate besides the generation time.
+ * <p>
+ * usage: java -jar target/benchmarks.jar [jmh options] [benchmark regex], e.g. -p entities=1000 -p dialect=oracle
+ * <p>
+ * {@link HistoryStateBenchmark} only runs if a PostgreSQL database is given by {@value HistoryStateBenchmark#URL_PROPERTY}.
+ *
+ * @author Georg Kohlweiss
+ */
+public class BenchmarkRunner {
+
+    public static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(cmdOptions)
+                .jvmArgsAppend("-Dlog4j.configuration=benchmark-log4j.xml");
+
+        if (cmdOptions.getIncludes().isEmpty()) {
+            options.include(BenchmarkRunner.class.getPackage().getName() + "\\..*Benchmark\\..*");
+            if (System.getProperty(HistoryStateBenchmark.URL_PROPERTY) == null) {
+                // requires a database
+                options.exclude(HistoryStateBenchmark.class.getName());
+            }
+        }
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmdOptions.getResult().hasValue()) {
+            options.result(DEFAULT_RESULT_FILE);
+        }
+        if (cmdOptions.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.benchmark;
+
+import com.github.gekoh.yagen.ddl.CreateTableStatement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the former regex based analysis of create table statements (patterns copied from CreateDDL before
+ * {@link CreateTableStatement} was introduced) with the single-pass tokenizer.
+ * The regex path re-scans the statement for every enhancement step reading table structure, the tokenizer path
+ * parses once and reads the model. One operation analyzes one table.
+ *
+ * @author Georg Kohlweiss
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CreateTableStatementBenchmark {
+
+    private static final String REGEX_COLNAME = "[\"'`]?[a-zA-Z]+[0-9a-zA-Z_]*[\"'`]?";
+
+    private static final Pattern TBL_PATTERN = Pattern.compile(".*"
+            + "create (table)[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*)[\\s]*\\("
+            + "(.*(,([\\s]*(constraint[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*)[\\s]+)?(primary key[\\s]*\\((" + REGEX_COLNAME + "([\\s]*,[\\s]*" + REGEX_COLNAME + ")*)\\))))"
+            + ".*)[\\s]*\\)\\s*(partition\\s+by.*)?");
+
+    private static final Pattern COL_PATTERN = Pattern.compile("([\\(|\\s]?)(" + REGEX_COLNAME + ")([\\s]((varchar(2)?\\([^\\)]+\\))|(number\\([^\\)]+\\))|(numeric\\([^\\)]+\\))|(timestamp(\\s*\\([0-9]+\\))?)|(date)|([cb]lob)|(char\\([^\\)]+\\))|(int((eger)|[0-9]*))|(bigint)|(bit)|(bool(ean)?)|(((double)|(float))( precision)?)))([\\s]+default[\\s]*([^\\s]*))?(([\\s]+constraint[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*))?([\\s]+not)?[\\s]+null)?(([\\s]+constraint[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*))?[\\s]+unique)?[^\\(,]*(,|\\))");
+
+    private static final Pattern UNIQUE_PATTERN = Pattern.compile("(,(([\\s]*constraint[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*))?[\\s]*unique[\\s]*\\((" + REGEX_COLNAME + "([\\s]*,[\\s]*" + REGEX_COLNAME + ")*)\\)))");
+
+    /**
+     * number of steps in CreateDDL.updateCreateTable which analyzed the statement (audit columns, cascade nullable,
+     * blob columns, history table, constraint names, default values, timeline view, ...)
+     */
+    private static final int ANALYZING_STEPS = 8;
+
+    @Param({"10", "50", "200"})
+    public int columns;
+
+    private String sql;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<String> elements = new ArrayList<String>();
+        elements.add("ID varchar2(36) not null");
+        for (int i = 1; i < columns; i++) {
+            switch (i % 5) {
+                case 0: elements.add("COL_" + i + " number(10) default 0 not null"); break;
+                case 1: elements.add("COL_" + i + " varchar2(255)"); break;
+                case 2: elements.add("COL_" + i + " timestamp constraint TBL_COL_" + i + "_NN not null"); break;
+                case 3: elements.add("COL_" + i + " number(3,1)"); break;
+                default: elements.add("COL_" + i + " clob"); break;
+            }
+        }
+        elements.add("constraint TBL_PK primary key (ID)");
+        elements.add("unique (COL_1, COL_3)");
+
+        StringBuilder sb = new StringBuilder("create table BENCHMARK_TABLE (");
+        for (int i = 0; i < elements.size(); i++) {
+            sb.append(i > 0 ? ", " : "").append(elements.get(i));
+        }
+        sql = sb.append(")").toString();
+
+        if (regex() != tokenizer()) {
+            throw new IllegalStateException("regex and tokenizer path do not find the same number of columns");
+        }
+    }
+
+    @Benchmark
+    public int regex() {
+        int columns = 0;
+        for (int step = 0; step < ANALYZING_STEPS; step++) {
+            Matcher matcher = TBL_PATTERN.matcher(sql);
+            if (!matcher.find()) {
+                throw new IllegalStateException("no primary key found");
+            }
+            columns = 0;
+            matcher = COL_PATTERN.matcher(sql);
+            int idx = 0;
+            while (matcher.find(idx)) {
+                columns++;
+                idx = matcher.end();
+            }
+            matcher = UNIQUE_PATTERN.matcher(sql);
+            idx = 0;
+            while (matcher.find(idx)) {
+                idx = matcher.end();
+            }
+        }
+        return columns;
+    }
+
+    @Benchmark
+    public int tokenizer() {
+        CreateTableStatement createTable = CreateTableStatement.parse(sql);
+        int columns = 0;
+        for (int step = 0; step < ANALYZING_STEPS; step++) {
+            if (!createTable.hasPrimaryKey()) {
+                throw new IllegalStateException("no primary key found");
+            }
+            columns = createTable.getColumns().size();
+            createTable.getUniqueClauses();
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.benchmark;
+
+import com.github.gekoh.yagen.ddl.CreateDDL;
+import com.github.gekoh.yagen.ddl.DDLGenerator;
+import com.github.gekoh.yagen.ddl.SyntheticDomain;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.Mapping;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.ForeignKey;
+import org.hibernate.mapping.Index;
+import org.hibernate.mapping.Table;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Synthetic domain mapped by plain (unpatched) hibernate, holding the statements hibernate would pass to
+ * {@link CreateDDL} for each table, foreign key and index. This way the benchmarks measure the enhancement only,
+ * without the schema export around it.
+ *
+ * @author Georg Kohlweiss
+ */
+@State(Scope.Benchmark)
+public class DomainState {
+
+    private static final Map<String, SyntheticDomain> DOMAINS = new ConcurrentHashMap<String, SyntheticDomain>();
+
+    @Param({"100", "1000", "10000"})
+    public int entities;
+
+    @Param({"oracle", "postgres", "hsqldb"})
+    public String dialect;
+
+    /**
+     * plain: auditable entities with one foreign key each,
+     * mixed: history, partitioning, layered views, I18N, mapped superclasses and a dense foreign key graph
+     */
+    @Param({"mixed"})
+    public String mix;
+
+    private DDLGenerator.Profile profile;
+    private Dialect hibernateDialect;
+
+    private List<Table> tables = new ArrayList<Table>();
+    private List<String> tableSql = new ArrayList<String>();
+    private List<Map<String, Column>> tableColumns = new ArrayList<Map<String, Column>>();
+    private List<ForeignKey> foreignKeys = new ArrayList<ForeignKey>();
+    private List<String> foreignKeySql = new ArrayList<String>();
+    private List<Index> indexes = new ArrayList<Index>();
+    private List<String> indexSql = new ArrayList<String>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SyntheticDomain domain = getDomain(mix, entities);
+        hibernateDialect = (Dialect) Class.forName(getDialectClassName(dialect)).newInstance();
+
+        profile = new DDLGenerator.Profile("benchmark-" + entities);
+        domain.addTo(profile);
+        Configuration cfg = new Configuration();
+        for (Class entityClass : domain.getEntityClasses()) {
+            cfg.addAnnotatedClass(entityClass);
+        }
+        cfg.buildMappings();
+        Mapping mapping = cfg.buildMapping();
+
+        Iterator<Table> tableIt = cfg.getTableMappings();
+        while (tableIt.hasNext()) {
+            Table table = tableIt.next();
+            if (!table.isPhysicalTable()) {
+                continue;
+            }
+            tables.add(table);
+            tableSql.add(table.sqlCreateString(hibernateDialect, mapping, null, null) + hibernateDialect.getTableTypeString());
+
+            Map<String, Column> columns = new LinkedHashMap<String, Column>();
+            Iterator<Column> colIt = table.getColumnIterator();
+            while (colIt.hasNext()) {
+                Column column = colIt.next();
+                columns.put(column.getName().toLowerCase(), column);
+            }
+            tableColumns.add(columns);
+
+            Iterator<ForeignKey> fkIt = table.getForeignKeyIterator();
+            while (fkIt.hasNext()) {
+                ForeignKey fk = fkIt.next();
+                if (fk.isPhysicalConstraint()) {
+                    foreignKeys.add(fk);
+                    foreignKeySql.add(fk.sqlCreateString(hibernateDialect, mapping, null, null));
+                }
+            }
+
+            Iterator<Index> idxIt = table.getIndexIterator();
+            while (idxIt.hasNext()) {
+                Index index = idxIt.next();
+                indexes.add(index);
+                indexSql.add(index.sqlCreateString(hibernateDialect, mapping, null, null));
+            }
+        }
+    }
+
+    /**
+     * @return the domain of given mix and size, classes of each domain get generated only once per fork
+     */
+    public static synchronized SyntheticDomain getDomain(String mix, int entities) {
+        String key = mix + ":" + entities;
+        SyntheticDomain domain = DOMAINS.get(key);
+        if (domain == null) {
+            DOMAINS.put(key, domain = createGenerator(mix).generate(entities));
+        }
+        return domain;
+    }
+
+    private static SyntheticDomain.Generator createGenerator(String mix) {
+        if ("plain".equals(mix)) {
+            return new SyntheticDomain.Generator()
+                    .withAuditableRatio(0.5);
+        }
+        else if ("mixed".equals(mix)) {
+            return new SyntheticDomain.Generator()
+                    .withAuditableRatio(0.5)
+                    .withTemporalEntityRatio(0.2)
+                    .withIntervalPartitioningRatio(0.05)
+                    .withLayeredTablesViewRatio(0.02)
+                    .withI18NRatio(0.05)
+                    .withMappedSuperclassChain(3, 0.5)
+                    .withForeignKeysPerEntity(3);
+        }
+        throw new IllegalArgumentException("unknown mix " + mix + ", use one of plain, mixed");
+    }
+
+    public static String getDialectClassName(String dialect) {
+        if ("oracle".equals(dialect)) {
+            return "org.hibernate.dialect.Oracle10gDialect";
+        }
+        else if ("postgres".equals(dialect)) {
+            return "org.hibernate.dialect.PostgreSQLDialect";
+        }
+        else if ("hsqldb".equals(dialect)) {
+            return "org.hibernate.dialect.HSQLDialect";
+        }
+        throw new IllegalArgumentException("unknown dialect " + dialect + ", use one of oracle, postgres, hsqldb");
+    }
+
+    /**
+     * @return a new DDL enhancer initialized with a copy of the domain profile, ready to enhance all statements once
+     */
+    public CreateDDL newCreateDDL() throws CloneNotSupportedException {
+        return new CreateDDL(profile.clone(), hibernateDialect);
+    }
+
+    public DDLGenerator.Profile getProfile() {
+        return profile;
+    }
+
+    public Dialect getDialect() {
+        return hibernateDialect;
+    }
+
+    public int getTableCount() {
+        return tables.size();
+    }
+
+    public Table getTable(int idx) {
+        return tables.get(idx);
+    }
+
+    public String getTableSql(int idx) {
+        return tableSql.get(idx);
+    }
+
+    public Map<String, Column> getTableColumns(int idx) {
+        return tableColumns.get(idx);
+    }
+
+    public int getForeignKeyCount() {
+        return foreignKeys.size();
+    }
+
+    public ForeignKey getForeignKey(int idx) {
+        return foreignKeys.get(idx);
+    }
+
+    public String getForeignKeySql(int idx) {
+        return foreignKeySql.get(idx);
+    }
+
+    public int getIndexCount() {
+        return indexes.size();
+    }
+
+    public Index getIndex(int idx) {
+        return indexes.get(idx);
+    }
+
+    public String getIndexSql(int idx) {
+        return indexSql.get(idx);
+    }
+}
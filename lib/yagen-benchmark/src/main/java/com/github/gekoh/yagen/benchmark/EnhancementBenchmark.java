@@ -0,0 +1,94 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.benchmark;
+
+import com.github.gekoh.yagen.ddl.CreateDDL;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.Index;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the enhancement of the statements hibernate creates for the whole domain, one operation enhances all
+ * tables, foreign keys or indexes respectively. Divide the score by the number of entities for the time per statement.
+ * <p>
+ * Each operation needs its own {@link CreateDDL} since object names may only be registered once, the instance
+ * is created outside of the measurement.
+ *
+ * @author Georg Kohlweiss
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EnhancementBenchmark {
+
+    @State(Scope.Thread)
+    public static class Enhancer {
+        CreateDDL createDDL;
+
+        @Setup(Level.Invocation)
+        public void setUp(DomainState domain) throws CloneNotSupportedException {
+            createDDL = domain.newCreateDDL();
+        }
+    }
+
+    @Benchmark
+    public void updateCreateTable(DomainState domain, Enhancer enhancer, Blackhole bh) {
+        for (int i = 0; i < domain.getTableCount(); i++) {
+            bh.consume(enhancer.createDDL.updateCreateTable(domain.getDialect(), new StringBuffer(domain.getTableSql(i)),
+                    domain.getTable(i).getName(), domain.getTableColumns(i)));
+        }
+    }
+
+    @Benchmark
+    public void updateCreateConstraint(DomainState domain, Enhancer enhancer, Blackhole bh) {
+        for (int i = 0; i < domain.getForeignKeyCount(); i++) {
+            bh.consume(enhancer.createDDL.updateCreateConstraint(domain.getDialect(), new StringBuffer(domain.getForeignKeySql(i)),
+                    domain.getForeignKey(i).getName(), domain.getForeignKey(i).getTable(), domain.getForeignKey(i)));
+        }
+    }
+
+    @Benchmark
+    public void updateCreateIndex(DomainState domain, Enhancer enhancer, Blackhole bh) {
+        for (int i = 0; i < domain.getIndexCount(); i++) {
+            Index index = domain.getIndex(i);
+            List<Column> columns = new ArrayList<Column>();
+            Iterator<Column> colIt = index.getColumnIterator();
+            while (colIt.hasNext()) {
+                columns.add(colIt.next());
+            }
+            bh.consume(enhancer.createDDL.updateCreateIndex(domain.getDialect(), new StringBuffer(domain.getIndexSql(i)),
+                    index.getName(), index.getTable(), columns));
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.benchmark;
+
+import com.github.gekoh.yagen.ddl.CreateDDL;
+import com.github.gekoh.yagen.ddl.DDLGenerator;
+import com.github.gekoh.yagen.ddl.TableConfig;
+import com.github.gekoh.yagen.hibernate.SqlScript;
+import org.hibernate.dialect.PostgreSQL82Dialect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the throughput of writing transactions on a history table in PostgreSQL, keeping the history
+ * bookkeeping in the logged tables HST_CURRENT_TRANSACTION and HST_MODIFIED_ROW ("tables") against the
+ * transaction local setting and temporary table ("transaction-local"), see
+ * {@link DDLGenerator.Profile#setTransactionLocalHistoryState(boolean)}.
+ * <p>
+ * Requires a PostgreSQL 10+ database given by system property {@value #URL_PROPERTY} (user and password by
+ * {@value #USER_PROPERTY} and {@value #PASSWORD_PROPERTY}), each state gets deployed into a schema of its own.
+ * The history triggers are the statement level ones, one operation is a transaction inserting {@link Database#rows}
+ * new rows and updating the rows inserted by the previous transaction of the thread.
+ * <p>
+ * usage: java -Dyagen.benchmark.postgres.url=jdbc:postgresql://localhost/bench -jar target/benchmarks.jar
+ * HistoryStateBenchmark -t 8
+ *
+ * @author Georg Kohlweiss
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+public class HistoryStateBenchmark {
+
+    public static final String URL_PROPERTY = "yagen.benchmark.postgres.url";
+    public static final String USER_PROPERTY = "yagen.benchmark.postgres.user";
+    public static final String PASSWORD_PROPERTY = "yagen.benchmark.postgres.password";
+
+    private static final String TABLE_NAME = "BENCH_ITEMS";
+
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        @Param({"tables", "transaction-local"})
+        public String state;
+
+        @Param({"1", "10", "100"})
+        public int rows;
+
+        private String schema;
+        private AtomicInteger sessionCount = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            schema = "yagen_bench_" + state.replace('-', '_');
+
+            Connection connection = connect();
+            try {
+                execute(connection, "drop schema if exists " + schema + " cascade");
+                execute(connection, "create schema " + schema);
+                execute(connection, "set search_path to " + schema);
+                // stand-in for the java based sys_guid of InitDB.ddl.sql
+                execute(connection, "create function sys_guid() returns varchar as $$ select md5(random()::text || clock_timestamp()::text) $$ language sql");
+
+                for (String ddl : createDdl()) {
+                    for (SqlScript.Statement statement : SqlScript.split(ddl)) {
+                        if (statement.hasCode()) {
+                            execute(connection, toPostgreSql(statement.getSql()));
+                        }
+                    }
+                }
+                connection.commit();
+            } finally {
+                connection.close();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            Connection connection = connect();
+            try {
+                execute(connection, "drop schema " + schema + " cascade");
+                connection.commit();
+            } finally {
+                connection.close();
+            }
+        }
+
+        private List<String> createDdl() {
+            DDLGenerator.Profile profile = new DDLGenerator.Profile("history-state");
+            profile.setStatementLevelHistoryTriggers(true);
+            profile.setTransactionLocalHistoryState("transaction-local".equals(state));
+            PostgreSQL82Dialect dialect = new PostgreSQL82Dialect();
+            CreateDDL createDDL = new CreateDDL(profile, dialect);
+
+            TableConfig.add(createDDL, TABLE_NAME)
+                    .withTableAnnotation("BENCH")
+                    .withTemporalEntityAnnotation();
+
+            List<String> ddl = new ArrayList<String>(createDDL.enhanceCreateTableDdl(dialect,
+                    "create table " + TABLE_NAME + " (ID varchar(36) not null, NAME varchar(255), AMOUNT int, constraint BENCH_PK primary key (ID))"));
+
+            for (DDLGenerator.AddDDLEntry headerDdl : profile.getHeaderDdls()) {
+                if (headerDdl.toString().endsWith("InitHistory.ddl.sql")) {
+                    ddl.add(0, headerDdl.getDdlText(dialect));
+                }
+            }
+            return ddl;
+        }
+
+        private Connection connect() throws SQLException {
+            String url = System.getProperty(URL_PROPERTY);
+            if (url == null) {
+                throw new IllegalStateException("system property " + URL_PROPERTY + " pointing to a PostgreSQL database required");
+            }
+            Connection connection = DriverManager.getConnection(url, System.getProperty(USER_PROPERTY), System.getProperty(PASSWORD_PROPERTY));
+            connection.setAutoCommit(false);
+            return connection;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Session {
+
+        private Connection connection;
+        private PreparedStatement insert;
+        private PreparedStatement update;
+        private String idPrefix;
+        private int transactionCount;
+
+        @Setup(Level.Trial)
+        public void setUp(Database database) throws SQLException {
+            connection = database.connect();
+            execute(connection, "set search_path to " + database.schema);
+            connection.commit();
+
+            idPrefix = "S" + database.sessionCount.incrementAndGet() + "-";
+            insert = connection.prepareStatement("insert into " + TABLE_NAME + " (ID, NAME, AMOUNT) values (?, ?, 0)");
+            update = connection.prepareStatement("update " + TABLE_NAME + " set AMOUNT=AMOUNT+1 where ID>=? and ID<=?");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            connection.close();
+        }
+
+        private String id(int transaction, int row) {
+            return idPrefix + String.format("%010d-%06d", transaction, row);
+        }
+    }
+
+    @Benchmark
+    public int transaction(Database database, Session session) throws SQLException {
+        int transaction = session.transactionCount++;
+
+        for (int i = 0; i < database.rows; i++) {
+            session.insert.setString(1, session.id(transaction, i));
+            session.insert.setString(2, "item " + i);
+            session.insert.addBatch();
+        }
+        session.insert.executeBatch();
+
+        session.update.setString(1, session.id(transaction - 1, 0));
+        session.update.setString(2, session.id(transaction - 1, database.rows - 1));
+        int updated = session.update.executeUpdate();
+
+        session.connection.commit();
+        return updated;
+    }
+
+    /**
+     * @return statement without the "/" delimiter line following pl/pgsql functions in the generated DDL
+     */
+    private static String toPostgreSql(String sql) {
+        sql = sql.trim();
+        if (sql.endsWith("/")) {
+            sql = sql.substring(0, sql.length() - 1).trim();
+        }
+        return sql;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        Statement stmt = connection.createStatement();
+        try {
+            stmt.execute(sql);
+        } finally {
+            stmt.close();
+        }
+    }
+}
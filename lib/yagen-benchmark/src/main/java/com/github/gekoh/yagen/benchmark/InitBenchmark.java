@@ -0,0 +1,47 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.benchmark;
+
+import com.github.gekoh.yagen.ddl.CreateDDL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CreateDDL#init(com.github.gekoh.yagen.ddl.DDLGenerator.Profile)} which scans all entity classes
+ * of the domain ({@link com.github.gekoh.yagen.ddl.TableConfig#scanEntityClass(Class, boolean)}) and checks the
+ * table short names, plus the registration of views and additional DDLs for the dialect.
+ *
+ * @author Georg Kohlweiss
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InitBenchmark {
+
+    @Benchmark
+    public CreateDDL init(DomainState domain) throws CloneNotSupportedException {
+        return domain.newCreateDDL();
+    }
+}
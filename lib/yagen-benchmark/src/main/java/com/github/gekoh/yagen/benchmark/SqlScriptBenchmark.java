@@ -0,0 +1,192 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.benchmark;
+
+import com.github.gekoh.yagen.hibernate.PatchGlue;
+import com.github.gekoh.yagen.hibernate.SqlScript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares splitting a whole generated script into prepared statements as done by the schema export, using the
+ * former regex based implementation of PatchGlue (copied here) against the single-pass {@link SqlScript}.
+ * One operation processes the whole script, run with the GC profiler to compare the allocation per operation.
+ *
+ * @author Georg Kohlweiss
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SqlScriptBenchmark {
+
+    private static final Pattern SEPARATOR_PATTERN = Pattern.compile("\r?\n" + PatchGlue.STATEMENT_SEPARATOR.trim() + "\r?\n");
+    private static final Pattern PLSQL_END_PATTERN = Pattern.compile("[\\s]+end[\\s]*([a-z_]+)?;([\\s]*(\\r?\\n)?/?)$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COMMENT_PATTERN = Pattern.compile(
+            "(((--)[^\\n]*((\\r?\\n)|$))+)|" + // single line comment(s)
+                    "(/\\*+(.*?)\\*+/)", // block comment
+            Pattern.DOTALL);
+
+    /**
+     * number of tables in the script, each with comments, an index, a foreign key and a history trigger
+     */
+    @Param({"100", "1000", "10000"})
+    public int tables;
+
+    private String script;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tables; i++) {
+            sb.append("-- table ").append(i).append("\n-- generated\n")
+                    .append("create table TABLE_").append(i).append(" (ID varchar2(36) not null, NAME varchar2(255), PARENT_ID varchar2(36), ")
+                    .append("LAST_MODIFIED_AT timestamp, constraint TABLE_").append(i).append("_PK primary key (ID));")
+                    .append(PatchGlue.STATEMENT_SEPARATOR)
+                    .append("create index TABLE_").append(i).append("_IX on TABLE_").append(i).append(" (PARENT_ID);")
+                    .append(PatchGlue.STATEMENT_SEPARATOR)
+                    .append("alter table TABLE_").append(i).append(" add constraint TABLE_").append(i)
+                    .append("_FK foreign key (PARENT_ID) references TABLE_").append(i).append(";")
+                    .append(PatchGlue.STATEMENT_SEPARATOR)
+                    .append("/* history */\ncreate or replace trigger TABLE_").append(i).append("_HTR\n")
+                    .append("after insert or update or delete on TABLE_").append(i).append("\nfor each row\ndeclare\n")
+                    .append("  hst_operation varchar2(1); -- I, U or D\nbegin\n")
+                    .append("  insert into TABLE_").append(i).append("_HST (HST_UUID, ID, NAME) values (sys_guid(), :new.ID, :new.NAME);\n")
+                    .append("end;\n/")
+                    .append(PatchGlue.STATEMENT_SEPARATOR)
+                    .append("comment on table TABLE_").append(i).append(" is 'table number ").append(i).append(" -- not a comment';")
+                    .append(PatchGlue.STATEMENT_SEPARATOR);
+        }
+        script = sb.toString();
+    }
+
+    @Benchmark
+    public void regex(Blackhole bh) {
+        for (String singleSql : splitSQL(script)) {
+            String[] ddlStmt = prepareDDL(singleSql);
+            bh.consume(ddlStmt[0]);
+            bh.consume(ddlStmt[1]);
+            bh.consume(isEmptyStatement(singleSql));
+        }
+    }
+
+    @Benchmark
+    public void lexer(Blackhole bh) {
+        for (SqlScript.Statement statement : SqlScript.split(script)) {
+            bh.consume(statement.getSql());
+            bh.consume(statement.getDelimiter());
+            bh.consume(statement.hasCode());
+        }
+    }
+
+    private static List<String> splitSQL(String sql) {
+        Matcher matcher = SEPARATOR_PATTERN.matcher(sql);
+        int endIdx, idx = 0;
+        ArrayList<String> statements = new ArrayList<String>();
+
+        while (matcher.find(idx)) {
+            endIdx = matcher.start();
+            if (endIdx - idx > 0) {
+                statements.add(sql.substring(idx, endIdx));
+            }
+            idx = matcher.end();
+        }
+
+        if (idx < sql.length()) {
+            String singleSql = sql.substring(idx);
+            if (singleSql.trim().length() > 0) {
+                statements.add(singleSql);
+            }
+        }
+
+        for (int i = 0; i < statements.size(); i++) {
+            String stmt = statements.get(i);
+            if (stmt == null || stmt.trim().length() < 1) {
+                statements.remove(i);
+                i--;
+                continue;
+            }
+            matcher = COMMENT_PATTERN.matcher(stmt);
+            if (matcher.find() && stmt.substring(0, matcher.start()).trim().length() < 1) {
+                statements.remove(i);
+                statements.add(i, stmt.substring(matcher.end()));
+                if (stmt.substring(0, matcher.end()).trim().length() > 0) {
+                    statements.add(i, stmt.substring(0, matcher.end()));
+                }
+            }
+        }
+
+        return statements;
+    }
+
+    private static boolean isEmptyStatement(String sqlStmt) {
+        Matcher matcher = COMMENT_PATTERN.matcher(sqlStmt);
+
+        while (matcher.find()) {
+            sqlStmt = sqlStmt.substring(0, matcher.start()) + sqlStmt.substring(matcher.end());
+            matcher = COMMENT_PATTERN.matcher(sqlStmt);
+        }
+
+        return sqlStmt.trim().length() < 1;
+    }
+
+    private static String[] prepareDDL(String sql) {
+        sql = sql.trim();
+        String delimiter = "";
+
+        Matcher matcher = PLSQL_END_PATTERN.matcher(sql);
+        if (matcher.find()) {
+            if (matcher.group(2) != null) {
+                sql = sql.substring(0, matcher.start(2));
+            }
+            sql += "\n";
+            delimiter = "/";
+        }
+        else if (sql.endsWith(";")) {
+            sql = sql.substring(0, sql.length() - 1);
+        }
+
+        StringBuilder sqlWoComments = new StringBuilder(sql);
+        while ((matcher = COMMENT_PATTERN.matcher(sqlWoComments.toString())).find()) {
+            sqlWoComments.delete(matcher.start(), matcher.end());
+        }
+
+        if (delimiter.length() < 1 && sqlWoComments.toString().trim().length() > 0) {
+            delimiter = ";";
+        }
+
+        return new String[]{sql, delimiter};
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.benchmark;
+
+import com.github.gekoh.yagen.ddl.CreateDDL;
+import com.github.gekoh.yagen.ddl.TemplateCache;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.Velocity;
+import org.hibernate.dialect.Oracle10gDialect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringWriter;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-table render cost of a trigger template when evaluating the template source for every table
+ * (as CreateDDL did before {@link TemplateCache} was introduced) with merging the template parsed once.
+ * One operation renders the template for one table.
+ *
+ * @author Georg Kohlweiss
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateCacheBenchmark {
+
+    @Param({"CascadeNullableTrigger.vm.pl.sql"})
+    public String template;
+
+    private String source;
+    private TemplateCache templateCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = readResource(TemplateCache.SET_VARS_RESOURCE) + readResource(template);
+        templateCache = new TemplateCache();
+
+        if (!evaluate().equals(cached())) {
+            throw new IllegalStateException("evaluated and merged template differ");
+        }
+    }
+
+    @Benchmark
+    public String evaluate() {
+        StringWriter wr = new StringWriter();
+        Velocity.evaluate(createContext(), wr, template, source);
+        return wr.toString();
+    }
+
+    @Benchmark
+    public String cached() {
+        StringWriter wr = new StringWriter();
+        templateCache.merge(template, createContext(), wr);
+        return wr.toString();
+    }
+
+    private static String readResource(String resource) {
+        return new Scanner(CreateDDL.class.getResourceAsStream(resource), "UTF-8").useDelimiter("\\A").next();
+    }
+
+    private static VelocityContext createContext() {
+        VelocityContext context = new VelocityContext();
+        context.put("dialect", new Oracle10gDialect());
+        context.put("triggerName", "AJC_JOBS_ID_NNT");
+        context.put("operation", null);
+        context.put("tableName", "AMP_JOB_CONFIGS");
+        context.put("fkColumnName", "JOBS_ID");
+        context.put("SYSTEM_SETTING", "SYSTEM_SETTING");
+        context.put("new", ":new");
+        context.put("old", ":old");
+        return context;
+    }
+}
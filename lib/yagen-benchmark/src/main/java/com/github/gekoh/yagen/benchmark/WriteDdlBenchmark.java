@@ -0,0 +1,91 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.benchmark;
+
+import com.github.gekoh.yagen.ddl.CoreDDLGenerator;
+import com.github.gekoh.yagen.ddl.DDLGenerator;
+import com.github.gekoh.yagen.hibernate.YagenInit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the whole generation of the DDL script by {@link DDLGenerator#writeDDL(DDLGenerator.Profile)}
+ * including the hibernate mapping, schema export and writing the output file.
+ * <p>
+ * The hibernate classes get patched in the benchmark fork before any of them is loaded, so this benchmark
+ * cannot run in the same JVM as the other benchmarks (do not run it with -f 0).
+ *
+ * @author Georg Kohlweiss
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteDdlBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int entities;
+
+    @Param({"oracle", "postgres", "hsqldb"})
+    public String dialect;
+
+    @Param({"mixed"})
+    public String mix;
+
+    private DDLGenerator.Profile profile;
+    private File outputFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        YagenInit.init();
+        System.setProperty("hibernate.dialect", DomainState.getDialectClassName(dialect));
+
+        outputFile = File.createTempFile("yagen-benchmark-" + dialect + "-" + entities, ".ddl.sql");
+
+        profile = new DDLGenerator.Profile("benchmark-" + entities);
+        DomainState.getDomain(mix, entities).addTo(profile);
+        profile.setOutputFile(outputFile.getAbsolutePath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (outputFile != null && !outputFile.delete()) {
+            outputFile.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public long writeDDL() throws CloneNotSupportedException {
+        CoreDDLGenerator.generateFrom(profile.clone());
+        return outputFile.length();
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.gekoh.yagen.example.test;
+
+import com.github.gekoh.yagen.ddl.CoreDDLGenerator;
+import com.github.gekoh.yagen.ddl.DDLGenerator;
+import org.hibernate.dialect.Oracle10gDialect;
+import org.hibernate.dialect.PostgreSQL82Dialect;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class MultiDialectDdlTest {
+
+    @Test
+    public void testHeaderPerDialect() throws Exception {
+        File oracleFile = File.createTempFile("yagen-oracle", ".ddl.sql");
+        File postgresFile = File.createTempFile("yagen-postgres", ".ddl.sql");
+        oracleFile.deleteOnExit();
+        postgresFile.deleteOnExit();
+
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("default");
+        profile.setPersistenceUnitName("generation-unit");
+
+        Map<String, String> dialectToOutputFile = new LinkedHashMap<String, String>();
+        dialectToOutputFile.put(Oracle10gDialect.class.getName(), oracleFile.getPath());
+        dialectToOutputFile.put(PostgreSQL82Dialect.class.getName(), postgresFile.getPath());
+
+        CoreDDLGenerator.generateFrom(profile, dialectToOutputFile);
+
+        String oracleDdl = read(oracleFile).toLowerCase();
+        String postgresDdl = read(postgresFile).toLowerCase();
+
+        Assert.assertTrue(oracleDdl.contains("whenever sqlerror exit failure"));
+        Assert.assertTrue(oracleDdl.contains("function get_audit_user(client_user_in in varchar2)"));
+
+        // header templates rendered for oracle must not be reused for other dialects
+        Assert.assertFalse(postgresDdl.contains("whenever sqlerror exit failure"));
+        Assert.assertFalse(postgresDdl.contains("set define off"));
+        Assert.assertFalse(postgresDdl.contains("function get_audit_user(client_user_in in varchar2)"));
+    }
+
+    private static String read(File file) throws Exception {
+        Scanner scanner = new Scanner(new FileInputStream(file), "UTF-8");
+        try {
+            return scanner.useDelimiter("\\A").hasNext() ? scanner.next() : "";
+        } finally {
+            scanner.close();
+        }
+    }
+}
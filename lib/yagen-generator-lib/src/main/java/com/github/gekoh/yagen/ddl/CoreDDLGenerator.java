@@ -21,6 +21,15 @@ import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.GnuParser;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author Georg Kohlweiss
@@ -38,6 +47,15 @@ public class CoreDDLGenerator {
     private static final String PARAM_DISABLE_FKS = "disable-foreign-keys";
     private static final String PARAM_REGEX_RENDER_ONLY_ENTITIES = "only-entities-regex";
     private static final String PARAM_NO_HISTORY_GENERATION = "no-history";
+    private static final String PARAM_STATEMENT_LEVEL_HISTORY_TRIGGERS = "statement-level-history-triggers";
+    private static final String PARAM_COMPOUND_HISTORY_TRIGGERS = "compound-history-triggers";
+    private static final String PARAM_TRANSACTION_LOCAL_HISTORY_STATE = "transaction-local-history-state";
+    private static final String PARAM_PARALLELISM = "parallelism";
+    private static final String PARAM_FRAGMENT_CACHE_DIR = "fragment-cache-dir";
+    private static final String PARAM_DIALECT_OUTPUT_LIST = "dialect-output-list";
+    private static final String PARAM_SUMMARY_REPORT = "summary-report";
+    private static final String PARAM_SCHEMA_MODEL_FILE = "schema-model-file";
+    private static final String PARAM_SCHEMA_SNAPSHOT_FILE = "schema-snapshot-file";
 
     public static final Options OPTIONS = new Options();
     static {
@@ -51,6 +69,15 @@ public class CoreDDLGenerator {
         addOption(PARAM_REGEX_RENDER_ONLY_ENTITIES, true, "entities matching specified regex will be rendered");
         addOption(PARAM_DISABLE_FKS, false, "indicates that foreign keys should be initially disabled");
         addOption(PARAM_NO_HISTORY_GENERATION, false, "indicates that no history tables should be generated even if @TemporalEntity is used");
+        addOption(PARAM_STATEMENT_LEVEL_HISTORY_TRIGGERS, false, "generates history triggers processing all rows of a statement at once (PostgreSQL only)");
+        addOption(PARAM_COMPOUND_HISTORY_TRIGGERS, false, "generates compound history triggers writing the history of all rows of a statement in bulk (Oracle only)");
+        addOption(PARAM_TRANSACTION_LOCAL_HISTORY_STATE, false, "keeps history bookkeeping of a transaction in a transaction local setting and a temporary table instead of logged tables (PostgreSQL only)");
+        addOption(PARAM_PARALLELISM, true, "number of threads used for enhancing table DDL, output is the same as generated by a single thread");
+        addOption(PARAM_FRAGMENT_CACHE_DIR, true, "directory caching the DDL of each table, only tables with changed entities are generated again");
+        addOption(PARAM_DIALECT_OUTPUT_LIST, true, "semicolon separated list of dialect-class=output-file pairs, generates the scripts of all dialects from one scan of the entities");
+        addOption(PARAM_SUMMARY_REPORT, true, "path of the JSON report with timings, statement counts and sizes of the generation phases");
+        addOption(PARAM_SCHEMA_MODEL_FILE, true, "path of the generated schema model, input of SchemaDiff creating the migration script to the next release");
+        addOption(PARAM_SCHEMA_SNAPSHOT_FILE, true, "path of the generated schema model as binary snapshot, loads faster than the model file");
     }
     private static void addOption(String longOpt, boolean hasArg, String description) {
         OPTIONS.addOption(null, longOpt, hasArg, description);
@@ -58,18 +85,43 @@ public class CoreDDLGenerator {
 
     public static void main(String[] args) {
         try {
-            generateFrom(createProfileFrom(args));
+            Map<String, String> dialectToOutputFile = getDialectOutputFiles(args);
+            if (dialectToOutputFile.isEmpty()) {
+                generateFrom(createProfileFrom(args));
+            }
+            else {
+                generateFrom(createProfileFrom(args), dialectToOutputFile);
+            }
         } catch (ParseException e) {
             LOG.error("error parsing arguments", e);
         }
     }
 
     public static void generateFrom(DDLGenerator.Profile profile) {
+        init(profile);
+
+        new DDLGenerator().writeDDL(profile);
+    }
+
+    /**
+     * generates the scripts of all given dialects in one pass, see {@link DDLGenerator#writeDDL(DDLGenerator.Profile, Map)}
+     *
+     * @param dialectToOutputFile dialect class name mapped to the path of the generated ddl file
+     */
+    public static void generateFrom(DDLGenerator.Profile profile, Map<String, String> dialectToOutputFile) {
+        init(profile);
+
+        new DDLGenerator().writeDDL(profile, dialectToOutputFile);
+    }
+
+    private static void init(DDLGenerator.Profile profile) {
+        long start = System.nanoTime();
         try {
             YagenInit.init(profile);
         } catch (Exception e) {
             throw new IllegalStateException("cannot init patches for ddl generator", e);
         }
+        profile.phaseCompleted(GenerationPhase.PATCH, null, start, 0, 0);
 
         profile.addHeaderDdl(new DDLGenerator.AddTemplateDDLEntry(
                 "#if( ${dialect.getClass().getSimpleName().toLowerCase().contains('oracle')} )\n" +
@@ -88,8 +140,58 @@ public class CoreDDLGenerator {
             e.printStackTrace();
         }
 */
+    }
 
-        new DDLGenerator().writeDDL(profile);
+    public static Map<String, String> getDialectOutputFiles(String[] args) throws ParseException {
+        CommandLine cl = new GnuParser().parse(OPTIONS, args);
+        Map<String, String> dialectToOutputFile = new LinkedHashMap<String, String>();
+
+        if (cl.hasOption(PARAM_DIALECT_OUTPUT_LIST)) {
+            for (String dialectOutputFile : cl.getOptionValue(PARAM_DIALECT_OUTPUT_LIST).split(";[\\s]*")) {
+                String[] pair = dialectOutputFile.split("=", 2);
+                if (pair.length != 2 || StringUtils.isEmpty(pair[0]) || StringUtils.isEmpty(pair[1])) {
+                    throw new IllegalArgumentException("expected dialect-class=output-file instead of '" + dialectOutputFile + "'");
+                }
+                dialectToOutputFile.put(pair[0].trim(), pair[1].trim());
+            }
+        }
+
+        return dialectToOutputFile;
+    }
+
+    /**
+     * collects the schema model while generating and writes it to the given files when generation completed
+     *
+     * @param modelFile file for the model in text format, null to not write it
+     * @param snapshotFile file for the model as {@link SchemaSnapshot}, null to not write it
+     */
+    public static void addSchemaModel(DDLGenerator.Profile profile, final File modelFile, final File snapshotFile) {
+        final SchemaModel model = new SchemaModel();
+        profile.addDuplexer(model);
+        profile.addGenerationListener(new GenerationListener() {
+            public void phaseCompleted(GenerationPhase phase, String objectName, long durationNanos, int statementCount, long byteSize) {
+            }
+
+            public void generationCompleted(DDLGenerator.Profile profile) {
+                try {
+                    if (modelFile != null) {
+                        Writer wr = new OutputStreamWriter(new FileOutputStream(modelFile), "UTF-8");
+                        try {
+                            model.write(wr);
+                        } finally {
+                            wr.close();
+                        }
+                        LOG.info("schema model written to file {}", modelFile);
+                    }
+                    if (snapshotFile != null) {
+                        SchemaSnapshot.write(model, snapshotFile);
+                        LOG.info("schema snapshot written to file {}", snapshotFile);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("cannot write schema model", e);
+                }
+            }
+        });
     }
 
     public static DDLGenerator.Profile createProfileFrom(String[] args) throws ParseException {
@@ -135,9 +237,39 @@ public class CoreDDLGenerator {
                 profile.setNoHistory(true);
             }
 
+            if (cl.hasOption(PARAM_STATEMENT_LEVEL_HISTORY_TRIGGERS)) {
+                profile.setStatementLevelHistoryTriggers(true);
+            }
+
+            if (cl.hasOption(PARAM_COMPOUND_HISTORY_TRIGGERS)) {
+                profile.setCompoundHistoryTriggers(true);
+            }
+
+            if (cl.hasOption(PARAM_TRANSACTION_LOCAL_HISTORY_STATE)) {
+                profile.setTransactionLocalHistoryState(true);
+            }
+
             if (cl.hasOption(PARAM_REGEX_RENDER_ONLY_ENTITIES)) {
                 profile.setOnlyRenderEntitiesRegex(cl.getOptionValue(PARAM_REGEX_RENDER_ONLY_ENTITIES));
             }
+
+            if (cl.hasOption(PARAM_PARALLELISM)) {
+                profile.setEnhancementParallelism(Integer.parseInt(cl.getOptionValue(PARAM_PARALLELISM)));
+            }
+
+            if (cl.hasOption(PARAM_FRAGMENT_CACHE_DIR)) {
+                profile.setFragmentCacheDir(cl.getOptionValue(PARAM_FRAGMENT_CACHE_DIR));
+            }
+
+            if (cl.hasOption(PARAM_SUMMARY_REPORT)) {
+                profile.addGenerationListener(new GenerationSummary(new File(cl.getOptionValue(PARAM_SUMMARY_REPORT))));
+            }
+
+            if (cl.hasOption(PARAM_SCHEMA_MODEL_FILE) || cl.hasOption(PARAM_SCHEMA_SNAPSHOT_FILE)) {
+                addSchemaModel(profile,
+                        cl.hasOption(PARAM_SCHEMA_MODEL_FILE) ? new File(cl.getOptionValue(PARAM_SCHEMA_MODEL_FILE)) : null,
+                        cl.hasOption(PARAM_SCHEMA_SNAPSHOT_FILE) ? new File(cl.getOptionValue(PARAM_SCHEMA_SNAPSHOT_FILE)) : null);
+            }
         } catch (ClassNotFoundException e) {
             throw new IllegalStateException("cannot instantiate profile provider class " + cl.getOptionValue(PARAM_PROFILE_PROVIDER_CLASS));
         } catch (Exception e) {
@@ -32,8 +32,11 @@ import com.github.gekoh.yagen.api.Profile;
 import com.github.gekoh.yagen.api.Sequence;
 import com.github.gekoh.yagen.api.TemporalEntity;
 import com.github.gekoh.yagen.api.UniqueConstraint;
+import com.github.gekoh.yagen.ddl.scan.ClassMetadata;
+import com.github.gekoh.yagen.ddl.scan.ClassMetadataRepository;
 import com.github.gekoh.yagen.hibernate.PatchGlue;
 import com.github.gekoh.yagen.hst.CreateEntities;
+import com.github.gekoh.yagen.hst.HistoryOutboxDrainer;
 import com.github.gekoh.yagen.util.FieldInfo;
 import org.apache.commons.lang.StringUtils;
 import org.apache.velocity.VelocityContext;
@@ -50,13 +53,11 @@ import javax.persistence.CollectionTable;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.JoinTable;
 import javax.persistence.MappedSuperclass;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.SequenceInputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.sql.Types;
@@ -72,7 +73,15 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -90,29 +99,6 @@ public class CreateDDL {
 
     public static final String STATIC_FIELD_TABLE_NAME_SHORT = "TABLE_NAME_SHORT";
 
-    private static final String REGEX_COLNAME = "[\"'`]?[a-zA-Z]+[0-9a-zA-Z_]*[\"'`]?";
-
-    private static final Pattern TBL_PATTERN = Pattern.compile(".*"
-            + "create (table)[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*)[\\s]*\\("
-            + "(.*(,([\\s]*(constraint[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*)[\\s]+)?(primary key[\\s]*\\((" + REGEX_COLNAME +"([\\s]*,[\\s]*" + REGEX_COLNAME + ")*)\\))))"
-            + ".*)[\\s]*\\)\\s*(partition\\s+by.*)?");
-    private static final int TBL_PATTERN_IDX_TBL_SYN = 1;
-    private static final int TBL_PATTERN_IDX_TBLNAME = 2;
-    private static final int TBL_PATTERN_IDX_TBL_DEF = 3;
-    private static final int TBL_PATTERN_IDX_AFTER_COL_DEF = 4;
-    private static final int TBL_PATTERN_IDX_PK_START = 5;
-    private static final int TBL_PATTERN_IDX_PK_NAME = 7;
-    private static final int TBL_PATTERN_IDX_PK_CLAUSE = 8;
-    private static final int TBL_PATTERN_IDX_PK_COLLIST = 9;
-    private static final int TBL_PATTERN_IDX_PART_CLAUSE = 10;
-
-    private static final Pattern TBL_PATTERN_WO_PK = Pattern.compile(".*"
-            + "create table[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*)([\\s]*\\()"
-            + ".*(\\))\\s*(partition\\s+by.*)?");
-    private static final int TBL_PATTERN_WO_PK_IDX_TBLNAME = 1;
-    private static final int TBL_PATTERN_WO_PK_IDX_BEFORE_COL_DEF = 2;
-    private static final int TBL_PATTERN_WO_PK_IDX_AFTER_COL_DEF = 3;
-
     private static final Pattern TBL_ALTER_PATTERN = Pattern.compile("alter table[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*)[\\s]");
     private static final Pattern IDX_CREATE_PATTERN = Pattern.compile("create( unique)? index[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*)[\\s]+on[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*)([\\s]*\\()");
     private static final int IDX_CREATE_PATTERN_IDX_NAME = 2;
@@ -120,22 +106,6 @@ public class CreateDDL {
     private static final Pattern SEQ_CREATE_PATTERN = Pattern.compile("create sequence[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*)");
     private static final Pattern PKG_CREATE_PATTERN = Pattern.compile("create( or replace)?[\\s]+package[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*)[\\s]", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
 
-    private static final Pattern COL_PATTERN = Pattern.compile("([\\(|\\s]?)(" + REGEX_COLNAME + ")([\\s]((varchar(2)?\\([^\\)]+\\))|(number\\([^\\)]+\\))|(numeric\\([^\\)]+\\))|(timestamp(\\s*\\([0-9]+\\))?)|(date)|([cb]lob)|(char\\([^\\)]+\\))|(int((eger)|[0-9]*))|(bigint)|(bit)|(bool(ean)?)|(((double)|(float))( precision)?)))([\\s]+default[\\s]*([^\\s]*))?(([\\s]+constraint[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*))?([\\s]+not)?[\\s]+null)?(([\\s]+constraint[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*))?[\\s]+unique)?[^\\(,]*(,|\\))");
-    private static final int COL_PATTERN_IDX_COLNAME = 2;
-    private static final int COL_PATTERN_IDX_TYPE    = 4;
-    private static final int COL_PATTERN_IDX_DEFAULT = 26;
-    private static final int COL_PATTERN_IDX_NOTNULL = 28;
-    private static final int COL_PATTERN_IDX_NOTNULL_CONS = 29;
-    private static final int COL_PATTERN_IDX_NOTNULL_CONS_NAME = 30;
-    private static final int COL_PATTERN_IDX_NOT     = 31;
-    private static final int COL_PATTERN_IDX_UNIQUE  = 32;
-    private static final int COL_PATTERN_IDX_UNIQUE_CONS = 33;
-    private static final int COL_PATTERN_IDX_UNIQUE_CONS_NAME = 34;
-
-    private static final Pattern UNIQUE_PATTERN = Pattern.compile("(,(([\\s]*constraint[\\s]+([a-zA-Z]+[0-9a-zA-Z_]*))?[\\s]*unique[\\s]*\\((" + REGEX_COLNAME + "([\\s]*,[\\s]*" + REGEX_COLNAME + ")*)\\)))");
-    private static final int UNIQUE_PATTERN_IDX_UNIQUE_FULL = 2;
-    private static final int UNIQUE_PATTERN_IDX_UNIQUE_NAME = 4;
-    private static final int UNIQUE_PATTERN_IDX_UNIQUE_COLS = 5;
     private static final Pattern CONSTRAINT_OR_INDEX_PATTERN = Pattern.compile("(unique[\\s]*)?(index|constraint)[\\s]*(([a-zA-Z][0-9a-zA-Z]*_)?[a-zA-Z]+[0-9a-zA-Z_]*)");
     private static final int CONSTRAINT_OR_INDEX_PATTERN_IDX_NAME = 3;
     private static final int CONSTRAINT_OR_INDEX_PATTERN_IDX_SHORTNAME = 4;
@@ -164,21 +134,47 @@ public class CreateDDL {
         AUDIT_COLUMN_DEFINITION.put(AuditInfo.LAST_MODIFIED_BY, AuditInfo.LAST_MODIFIED_BY + " ${varcharType}");
     }
 
-    private Map<String, TableConfig> tblNameToConfig = new LinkedHashMap<String, TableConfig>();
+    private static final ForkJoinPool.ForkJoinWorkerThreadFactory DAEMON_WORKER_FACTORY = new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private Map<String, TableConfig> tblNameToConfig = Collections.synchronizedMap(new LinkedHashMap<String, TableConfig>());
+    private ConcurrentMap<String, TableConfig> mappedSuperclassToConfig = new ConcurrentHashMap<String, TableConfig>();
 
-    private StringBuffer deferredDdl = new StringBuffer();
-    private Set<String> objectNames = new HashSet<String>();
+    /**
+     * deferred DDL of all enhanced tables in the order hibernate requested the table enhancement
+     */
+    private DdlSink deferredDdl = new SpillingDdlSink();
+    private boolean languageViewRequired;
+    private Set<String> objectNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private Map<String, String> tblShortNameToTblName = new HashMap<String, String>();
     private Set<String> externalViews = new HashSet<String>();
     private Set<String> views;
-    private Set<String> tblColNameHasSingleColIndex = new HashSet<String>();
-    private Map<String, List<String>> tblNameToDropObjectsSql = new HashMap<String, List<String>>();
+    private Set<String> tblColNameHasSingleColIndex = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private ConcurrentMap<String, List<String>> tblNameToDropObjectsSql = new ConcurrentHashMap<String, List<String>>();
 
     private DDLGenerator.Profile currentProfile;
 
-    private List<String> dbObjects = new ArrayList<String>();
+    private List<String> dbObjects = Collections.synchronizedList(new ArrayList<String>());
 
-    private boolean historyInitSet = false;
+    private AtomicBoolean historyInitSet = new AtomicBoolean(false);
+
+    private AtomicInteger tableEnhancementSeq = new AtomicInteger();
+    private ForkJoinPool tableEnhancementPool;
+    private Map<String, TableEnhancement> pendingTableEnhancements = new LinkedHashMap<String, TableEnhancement>();
+    private Map<String, String> completedTableEnhancements = new HashMap<String, String>();
+    private ThreadLocal<TableEnhancement> currentTableEnhancement = new ThreadLocal<TableEnhancement>();
+
+    private TemplateCache templateCache = new TemplateCache();
+    private TableFragmentCache fragmentCache;
+
+    private CreateDDL() {
+    }
 
     public CreateDDL(Object profile, Dialect dialect) {
         if (!(profile instanceof DDLGenerator.Profile)) {
@@ -188,19 +184,47 @@ public class CreateDDL {
         initViewsAndRegisterDDLs(dialect);
     }
 
+    /**
+     * Scans the entity classes of the profile without dialect specific initialization. Set the returned instance as
+     * {@link DDLGenerator.Profile#setSharedModel(CreateDDL)} to let all generator instances of that profile use the
+     * same table configs instead of scanning again, e.g. when generating scripts for several dialects.
+     */
+    public static CreateDDL createSharedModel(DDLGenerator.Profile profile) {
+        CreateDDL model = new CreateDDL();
+        model.init(profile);
+        return model;
+    }
+
     public void init(DDLGenerator.Profile profile) {
         currentProfile = profile;
+        if (profile.getFragmentCacheDir() != null) {
+            fragmentCache = new TableFragmentCache(new File(profile.getFragmentCacheDir()));
+        }
+
+        CreateDDL sharedModel = profile.getSharedModel();
+        if (sharedModel != null) {
+            // table configs are not modified after scanning, configs registered while rendering go to the own map only
+            tblNameToConfig.putAll(sharedModel.tblNameToConfig);
+            tblShortNameToTblName.putAll(sharedModel.tblShortNameToTblName);
+            externalViews.addAll(sharedModel.externalViews);
+            mappedSuperclassToConfig.putAll(sharedModel.mappedSuperclassToConfig);
+            return;
+        }
+
+        long scanStart = System.nanoTime();
         boolean selectiveRendering = false;
+        ClassMetadataRepository classMetadata = profile.getClassMetadata();
 
         for (Class entityClass : profile.getEntityClasses()) {
 
-            Class baseClass = TableConfig.getClassOfTableAnnotation(entityClass);
+            ClassMetadata entityMetadata = classMetadata.get(entityClass);
+            ClassMetadata baseClass = TableConfig.getClassOfTableAnnotation(classMetadata, entityMetadata);
 
-            if (baseClass == null || baseClass != entityClass) {
+            if (baseClass == null || baseClass != entityMetadata) {
                 continue;
             }
 
-            String nameLC = getProfile().getNamingStrategy().classToTableName(baseClass.getName()).toLowerCase();
+            String nameLC = getProfile().getNamingStrategy().classToTableName(baseClass.getClassName()).toLowerCase();
 
             TableConfig tableConfig = tblNameToConfig.get(nameLC);
             if (tableConfig == null) {
@@ -215,18 +239,18 @@ public class CreateDDL {
                 tblShortNameToTblName.put(shortName, tableName);
             }
 
-            if (profile.getOnlyRenderEntities() != null && !profile.getOnlyRenderEntities().matcher(baseClass.getName()).matches()) {
+            if (profile.getOnlyRenderEntities() != null && !profile.getOnlyRenderEntities().matcher(baseClass.getClassName()).matches()) {
                 tableConfig.setTableToBeRendered(false);
             }
             else if (baseClass.isAnnotationPresent(Profile.class) &&
-                    (Arrays.asList(((Profile) baseClass.getAnnotation(Profile.class)).value()).contains(profile.getName()))) {
+                    (Arrays.asList(baseClass.getStringArrayAttribute(Profile.class, "value")).contains(profile.getName()))) {
                 // at least one Profile annotation contains the name of current profile,
                 // so only entities shall be rendered which have an appropriate Profile annotation
                 selectiveRendering = true;
             }
 
             if (baseClass.isAnnotationPresent(Generated.class)) {
-                if (((Generated) baseClass.getAnnotation(Generated.class)).isView()) {
+                if (baseClass.getBooleanAttribute(Generated.class, "isView")) {
                     externalViews.add(nameLC);
                 }
                 tableConfig.setTableToBeRendered(false);
@@ -234,13 +258,14 @@ public class CreateDDL {
         }
 
         for (Class entityClass : profile.getEntityClasses()) {
-            Class baseClass = TableConfig.getClassOfTableAnnotation(entityClass);
+            ClassMetadata entityMetadata = classMetadata.get(entityClass);
+            ClassMetadata baseClass = TableConfig.getClassOfTableAnnotation(classMetadata, entityMetadata);
 
             if (baseClass == null) {
                 continue;
             }
 
-            String nameLC = getProfile().getNamingStrategy().classToTableName(baseClass.getName()).toLowerCase();
+            String nameLC = getProfile().getNamingStrategy().classToTableName(baseClass.getClassName()).toLowerCase();
 
             TableConfig tableConfig = tblNameToConfig.get(nameLC);
 
@@ -248,14 +273,18 @@ public class CreateDDL {
                 throw new IllegalStateException("did not find table config for '" + nameLC + "', forgot to add entity class " + baseClass + " to mapping file?");
             }
 
-            if (entityClass == baseClass && selectiveRendering &&
+            if (entityMetadata == baseClass && selectiveRendering &&
                     (!baseClass.isAnnotationPresent(Profile.class) ||
-                    !(Arrays.asList(((Profile)baseClass.getAnnotation(Profile.class)).value()).contains(profile.getName())))) {
+                    !(Arrays.asList(baseClass.getStringArrayAttribute(Profile.class, "value")).contains(profile.getName())))) {
                 tableConfig.setTableToBeRendered(false);
             }
 
+            long start = System.nanoTime();
             tableConfig.scanEntityClass(entityClass, selectiveRendering);
+            profile.phaseCompleted(GenerationPhase.ENTITY, entityClass.getName(), start, 0, 0);
         }
+
+        profile.phaseCompleted(GenerationPhase.ENTITY_SCAN, null, scanStart, 0, 0);
     }
 
     public TableConfig getConfigForTableName (String tableName) {
@@ -266,12 +295,26 @@ public class CreateDDL {
         tblNameToConfig.put(tableConfig.getTableName(), tableConfig);
     }
 
+    /**
+     * @return the config of the given mapped superclass, shared by all table configs of its subclasses
+     */
+    TableConfig getMappedSuperclassConfig (ClassMetadata mappedSuperclass) {
+        TableConfig tableConfig = mappedSuperclassToConfig.get(mappedSuperclass.getClassName());
+        if (tableConfig == null) {
+            // also reached from parallel table enhancements, configs of the same class are equal so the first one wins
+            tableConfig = new TableConfig(this, mappedSuperclass, getProfile().getNamingStrategy().classToTableName(mappedSuperclass.getClassName()));
+            TableConfig existing = mappedSuperclassToConfig.putIfAbsent(mappedSuperclass.getClassName(), tableConfig);
+            if (existing != null) {
+                tableConfig = existing;
+            }
+        }
+        return tableConfig;
+    }
+
     public void checkTableName(Dialect dialect, String name) {
         String nameLC = name.toLowerCase();
 
-        if (objectNames.contains(name)) {
-            throw new IllegalArgumentException("object name "+name+" already defined for another object");
-        }
+        registerObjectName(name);
 
         if (isOracle(dialect)) {
             int maxlen = CreateDDL.MAX_LEN_TABLE_NAME;
@@ -286,16 +329,12 @@ public class CreateDDL {
                         "please specify a name with less or equal to " + maxlen + " chars.");
             }
         }
-
-        objectNames.add(name);
     }
     
     public void checkObjectName(Dialect dialect, String name) {
         name = name.toLowerCase();
 
-        if (objectNames.contains(name)) {
-            throw new IllegalArgumentException("object name "+name+" already defined for another object");
-        }
+        registerObjectName(name);
 
         if (isOracle(dialect)) {
             if (name.length() > CreateDDL.MAX_LEN_OBJECT_NAME) {
@@ -303,8 +342,17 @@ public class CreateDDL {
                         "please specify a name with less or equal to " + CreateDDL.MAX_LEN_OBJECT_NAME + " chars.");
             }
         }
+    }
 
-        objectNames.add(name);
+    private void registerObjectName(String name) {
+        if (!objectNames.add(name)) {
+            throw new IllegalArgumentException("object name "+name+" already defined for another object");
+        }
+
+        TableEnhancement enhancement = currentTableEnhancement.get();
+        if (enhancement != null) {
+            enhancement.getFragment().addObjectName(name);
+        }
     }
 
     private boolean renderTable (String tableNameLC) {
@@ -325,6 +373,7 @@ public class CreateDDL {
     }
 
     public String updateDropTable(Dialect dialect, StringBuffer buf, String name) {
+        awaitTableEnhancements();
         StringBuilder sql = new StringBuilder();
         String nameLC = name.toLowerCase();
 
@@ -360,20 +409,14 @@ public class CreateDDL {
     public Collection<String> enhanceCreateTableDdl(Dialect dialect, String tableCreate) {
         tableCreate = tableCreate.replaceFirst(";\\s*$", "").toLowerCase().replace("\n", " ");
 
-        Matcher matcher = TBL_PATTERN.matcher(tableCreate);
-        if (matcher.find()) {
-            String tableName = matcher.group(TBL_PATTERN_IDX_TBLNAME);
+        CreateTableStatement createTable = CreateTableStatement.parse(tableCreate);
+        if (createTable.hasPrimaryKey()) {
+            String tableName = createTable.getTableName();
 
             Map columns = new HashMap();
 
-            Matcher colMatcher = COL_PATTERN.matcher(matcher.group(TBL_PATTERN_IDX_TBL_DEF));
-
-            int idx=0;
-            while ((colMatcher.find(idx))) {
-
-                columns.put(colMatcher.group(COL_PATTERN_IDX_COLNAME), null);
-
-                idx = colMatcher.end();
+            for (CreateTableStatement.Column column : createTable.getColumns()) {
+                columns.put(column.getName(), null);
             }
             return PatchGlue.splitSQL(updateCreateTable(dialect, new StringBuffer(tableCreate), tableName, columns));
         }
@@ -382,12 +425,8 @@ public class CreateDDL {
 
     public String updateCreateTable(Dialect dialect, StringBuffer buf, String tableName, Map columnMap) {
         LOG.info("modify DDL created by hibernate for table {}", tableName);
-        boolean isOracle = isOracle(dialect);
 
         String nameLC = tableName.toLowerCase();
-        String entityClassName = getEntityClassName(nameLC);
-
-        Set<String> columns = new LinkedHashSet<String>(columnMap.keySet());
 
         if (!renderTable(nameLC)) {
             return "-- skipped creation statement for table '" + tableName + "' as the mapped entity was not chosen to be processed";
@@ -406,18 +445,297 @@ public class CreateDDL {
             return "-- skipped creation statement for table '" + tableName + "' since there will be a view in place";
         }
 
-        String sqlCreate = buf.toString();
-        buf = new StringBuffer();
+        TableEnhancement enhancement = new TableEnhancement(dialect, buf.toString(), tableName, columnMap, tableConfig,
+                reserveSequenceNames(dialect, tableConfig));
+
+        if (tableEnhancementPool == null) {
+            String sql = enhancement.compute();
+            enhancement.replay();
+            return sql;
+        }
+
+        tableEnhancementPool.execute(enhancement);
+        pendingTableEnhancements.put(enhancement.getPlaceholder(), enhancement);
+
+        return enhancement.getPlaceholder();
+    }
+
+    /**
+     * Switches to parallel enhancement of create table statements if the profile requests it.
+     * Until {@link #completeTableEnhancements(String[])} is called {@link #updateCreateTable(Dialect, StringBuffer, String, Map)}
+     * returns placeholders which will be replaced by the enhanced DDL in the order hibernate requested them.
+     */
+    public void beginTableEnhancements() {
+        int parallelism = getProfile().getEnhancementParallelism();
+
+        // a previous generation failed before its enhancements were completed
+        shutdownTableEnhancements();
+
+        if (parallelism > 1) {
+            // naming strategy is created lazily, do this before tables get enhanced concurrently
+            getProfile().getNamingStrategy();
+            templateCache.precompile();
+            // daemon workers since the pool is not shut down if generation fails before completion
+            tableEnhancementPool = new ForkJoinPool(parallelism, DAEMON_WORKER_FACTORY, null, false);
+        }
+    }
+
+    public String[] completeTableEnhancements(String[] createSQL) {
+        if (fragmentCache != null) {
+            LOG.info("reused {} cached table fragments, enhanced {} tables", fragmentCache.getHits(), fragmentCache.getMisses());
+        }
+
+        if (tableEnhancementPool == null) {
+            return createSQL;
+        }
+
+        try {
+            awaitTableEnhancements();
+
+            for (int i = 0; i < createSQL.length; i++) {
+                String enhancedSql = completedTableEnhancements.remove(createSQL[i]);
+                if (enhancedSql != null) {
+                    createSQL[i] = enhancedSql;
+                }
+            }
+
+            if (!completedTableEnhancements.isEmpty()) {
+                throw new IllegalStateException("enhanced DDL of tables " + completedTableEnhancements.keySet() + " not part of the creation script");
+            }
+        } finally {
+            shutdownTableEnhancements();
+        }
+
+        return createSQL;
+    }
+
+    /**
+     * Stops parallel enhancement of create table statements after generation failed before
+     * {@link #completeTableEnhancements(String[])} was reached.
+     */
+    public void abortTableEnhancements() {
+        shutdownTableEnhancements();
+    }
+
+    private void shutdownTableEnhancements() {
+        if (tableEnhancementPool != null) {
+            tableEnhancementPool.shutdownNow();
+            tableEnhancementPool = null;
+        }
+        pendingTableEnhancements.clear();
+        completedTableEnhancements.clear();
+    }
+
+    /**
+     * waits for all pending table enhancements since most other DDL depends on state collected while enhancing tables,
+     * object DDL gets duplexed in the order the tables were requested
+     */
+    private void awaitTableEnhancements() {
+        for (TableEnhancement enhancement : pendingTableEnhancements.values()) {
+            completedTableEnhancements.put(enhancement.getPlaceholder(), enhancement.join());
+            enhancement.replay();
+        }
+        pendingTableEnhancements.clear();
+    }
+
+    private Set<String> reserveSequenceNames(Dialect dialect, TableConfig tableConfig) {
+        Set<String> duplicateSequenceNames = new HashSet<String>();
+
+        for (Sequence sequence : tableConfig.getSequences()) {
+            String seqNameLC = getProfile().getNamingStrategy().sequenceName(sequence.name()).toLowerCase();
+
+            if (objectNames.contains(seqNameLC)) {
+                duplicateSequenceNames.add(seqNameLC);
+            }
+            else {
+                checkObjectName(dialect, seqNameLC);
+            }
+        }
+
+        return duplicateSequenceNames;
+    }
+
+    /**
+     * reuses the cached fragment of the table if nothing it depends on changed since it was cached, otherwise enhances
+     * the create table statement and caches the fragment
+     */
+    private String enhanceCreateTable(TableEnhancement enhancement) {
+        long start = System.nanoTime();
+        String sql = enhanceCreateTableCached(enhancement);
+        getProfile().phaseCompleted(GenerationPhase.TABLE, enhancement.getTableName(), start, countStatements(sql), sql.length());
+        return sql;
+    }
+
+    private String enhanceCreateTableCached(TableEnhancement enhancement) {
+        String fingerprint = fragmentCache != null ? getFingerprint(enhancement) : null;
+
+        if (fingerprint != null) {
+            TableFragment cachedFragment = fragmentCache.load(fingerprint);
+            if (cachedFragment != null) {
+                LOG.debug("reusing cached fragment {} of table {}", fingerprint, enhancement.getTableName());
+                return applyFragment(cachedFragment, enhancement);
+            }
+        }
+
+        String sql = renderCreateTable(enhancement);
+
+        if (fingerprint != null) {
+            enhancement.getFragment().setSql(sql);
+            fragmentCache.store(fingerprint, enhancement.getFragment());
+        }
+
+        return sql;
+    }
+
+    /**
+     * registers the state recorded in the cached fragment like enhancing the table would have done
+     */
+    private String applyFragment(TableFragment cachedFragment, TableEnhancement enhancement) {
+        for (String objectName : cachedFragment.getObjectNames()) {
+            registerObjectName(objectName);
+        }
+        for (String[] dropStatement : cachedFragment.getDropStatements()) {
+            addDropStatement(dropStatement[0], dropStatement[1]);
+        }
+        for (String[] historyEntity : cachedFragment.getHistoryEntities()) {
+            try {
+                registerHistoryEntity(historyEntity[0], historyEntity[1]);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("history entity class of cached fragment of table " + enhancement.getTableName() + " not found", e);
+            }
+        }
+        if (cachedFragment.isHistoryInitRequired()) {
+            requireHistoryInit();
+        }
+        for (Object[] duplexedDdl : cachedFragment.getDuplexedDdls()) {
+            duplex((ObjectType) duplexedDdl[0], (String) duplexedDdl[1], (String) duplexedDdl[2]);
+        }
+        for (String dbObject : cachedFragment.getDBObjects()) {
+            addDBObject(dbObject);
+        }
+        enhancement.getDeferredDdl().append(cachedFragment.getDeferredDdl());
+
+        return cachedFragment.getSql();
+    }
+
+    /**
+     * @return fingerprint of all inputs the enhancement of the table depends on, null if the table cannot be cached
+     */
+    private String getFingerprint(TableEnhancement enhancement) {
+        TableConfig tableConfig = enhancement.getTableConfig();
+        String nameLC = enhancement.getTableName().toLowerCase();
+        NamingStrategy namingStrategy = getProfile().getNamingStrategy();
+
+        TableFragmentCache.Fingerprint fingerprint = fragmentCache.createFingerprint()
+                .add(enhancement.getDialect().getClass().getName())
+                .add(getProfile().getName())
+                .add(getProfile().isNoHistory())
+                .add(getProfile().isStatementLevelHistoryTriggers())
+                .add(getProfile().isCompoundHistoryTriggers())
+                .add(getProfile().isTransactionLocalHistoryState())
+                .add(getProfile().isDisableFKs())
+                .add(namingStrategy.getClass().getName())
+                .add(fragmentCache.getClassFingerprint(namingStrategy.getClass().getName()))
+                .add(enhancement.getTableName())
+                .add(enhancement.getSql())
+                .add(new TreeSet<String>(enhancement.getDuplicateSequenceNames()));
+
+        for (Object entry : enhancement.getColumnMap().entrySet()) {
+            Object column = ((Map.Entry) entry).getValue();
+            fingerprint.add(((Map.Entry) entry).getKey())
+                    .add(column instanceof Column ? ((Column) column).isNullable() : null);
+        }
+
+        if (!addClassFingerprints(fingerprint, tableConfig)) {
+            return null;
+        }
+
+        String i18nBaseEntityTblName = tableConfig.getI18nBaseEntityTblName();
+        if (i18nBaseEntityTblName != null && tblNameToConfig.get(i18nBaseEntityTblName) != null
+                && !addClassFingerprints(fingerprint, tblNameToConfig.get(i18nBaseEntityTblName))) {
+            return null;
+        }
+
+        String entityClassName = getEntityClassName(nameLC);
+        if (entityClassName != null) {
+            fingerprint.add(fragmentCache.getClassFingerprint(entityClassName + CreateEntities.HISTORY_ENTITY_SUFFIX));
+
+            Map<String, String> comments = getProfile().getComments() != null ? getProfile().getComments().get(entityClassName) : null;
+            fingerprint.add(comments != null ? new TreeMap<String, String>(comments) : null);
+        }
+
+        return fingerprint.getHash();
+    }
+
+    private boolean addClassFingerprints(TableFragmentCache.Fingerprint fingerprint, TableConfig tableConfig) {
+        // table configs added programmatically have no classes to identify their version
+        if (tableConfig.getScannedClasses().isEmpty()) {
+            return false;
+        }
+
+        for (Class scannedClass : tableConfig.getScannedClasses()) {
+            String classFingerprint = fragmentCache.getClassFingerprint(scannedClass.getName());
+            if (classFingerprint == null) {
+                return false;
+            }
+            fingerprint.add(classFingerprint);
+        }
+
+        return tableConfig.getSuperClassConfig() == null || addClassFingerprints(fingerprint, tableConfig.getSuperClassConfig());
+    }
+
+    private void registerHistoryEntity(String hstEntityClassName, String histTableName) throws ClassNotFoundException {
+        // this will throw an exception when the history entity class is not found
+        TableConfig hstConfig = new TableConfig(this, Class.forName(hstEntityClassName), histTableName);
+
+        hstConfig.setTableToBeRendered(false);
+
+        tblNameToConfig.put(hstConfig.getTableName(), hstConfig);
+
+        TableEnhancement enhancement = currentTableEnhancement.get();
+        if (enhancement != null) {
+            enhancement.getFragment().addHistoryEntity(hstEntityClassName, histTableName);
+        }
+    }
+
+    private void requireHistoryInit() {
+        TableEnhancement enhancement = currentTableEnhancement.get();
+        if (enhancement != null) {
+            enhancement.getFragment().setHistoryInitRequired(true);
+        }
+
+        if (historyInitSet.compareAndSet(false, true)) {
+            getProfile().addHeaderDdl(new DDLGenerator.AddTemplateDDLEntry(CreateDDL.class.getResource("/com/github/gekoh/yagen/ddl/InitHistory.ddl.sql"))
+                    .withVariable("transactionLocalState", getProfile().isTransactionLocalHistoryState()));
+        }
+    }
+
+    private String renderCreateTable(TableEnhancement enhancement) {
+        Dialect dialect = enhancement.getDialect();
+        String tableName = enhancement.getTableName();
+        Map columnMap = enhancement.getColumnMap();
+        TableConfig tableConfig = enhancement.getTableConfig();
+        StringBuffer tableDeferredDdl = enhancement.getDeferredDdl();
+
+        boolean isOracle = isOracle(dialect);
+
+        String nameLC = tableName.toLowerCase();
+        String entityClassName = getEntityClassName(nameLC);
+
+        Set<String> columns = new LinkedHashSet<String>(columnMap.keySet());
+
+        CreateTableStatement createTable = CreateTableStatement.parse(enhancement.getSql());
+        StringBuffer buf = new StringBuffer();
         String liveTableName = nameLC;
         Set<String> columnNames = columns;
-        List<String> pkCols = getPkColumnNamesFrom(sqlCreate);
+        List<String> pkCols = getPkColumnNamesFrom(createTable);
 
         Auditable auditable = tableConfig.getTableAnnotationOfType(Auditable.class);
         if (auditable != null && auditable.createNonExistingColumns()) {
-            sqlCreate = addAuditColumns(dialect, sqlCreate, columns, auditable.userNameLength(), getAuditColumnsNeeded(entityClassName));
+            createTable = addAuditColumns(dialect, createTable, columns, auditable.userNameLength(), getAuditColumnsNeeded(entityClassName));
         }
 
-        sqlCreate = processCascadeNullable(dialect, buf, nameLC, sqlCreate, tableConfig.getColumnNamesIsCascadeNullable());
+        createTable = processCascadeNullable(dialect, tableDeferredDdl, nameLC, createTable, tableConfig.getColumnNamesIsCascadeNullable());
 
         String i18nFK = tableConfig.getI18nBaseEntityFkCol();
 
@@ -427,22 +745,22 @@ public class CreateDDL {
             liveTableName = i18nTblName;
             columnNames = getI18NEntityColumns(columns);
 
-            sqlCreate = getI18NDetailTableCreateString(dialect, sqlCreate, i18nTblName, i18nFK);
+            createTable = getI18NDetailTableCreateString(dialect, createTable, i18nTblName, i18nFK);
 
             addDropStatement(nameLC, getIfExistsDropStatement(dialect, "drop table " + i18nTblName, null));
 
-            pkCols = getPkColumnNamesFrom(sqlCreate);
+            pkCols = getPkColumnNamesFrom(createTable);
 
             if (dialect.supportsCommentOn()) {
                 buf.append(STATEMENT_SEPARATOR).append("comment on table ").append(i18nTblName).append(" is 'Base table for I18N descriptions, for comments see view ")
                         .append(nameLC).append("'\n");
             }
 
-            deferredDdl.append(STATEMENT_SEPARATOR).append(getI18NDetailViewCreateString(dialect, nameLC, baseEntityTableName, i18nTblName, i18nFK, columnNames));
+            tableDeferredDdl.append(STATEMENT_SEPARATOR).append(getI18NDetailViewCreateString(dialect, nameLC, baseEntityTableName, i18nTblName, i18nFK, columnNames));
             if (isOracle) {
-                addComments(deferredDdl, nameLC, entityClassName, columns);
+                addComments(tableDeferredDdl, nameLC, entityClassName, columns);
             }
-            writeI18NDetailViewTriggerCreateString(dialect, deferredDdl, nameLC, i18nTblName, i18nFK, columnNames);
+            writeI18NDetailViewTriggerCreateString(dialect, tableDeferredDdl, nameLC, i18nTblName, i18nFK, columnNames);
         }
         else if (isOracle) {
             addComments(buf, nameLC, entityClassName, columns);
@@ -461,29 +779,22 @@ public class CreateDDL {
                     String hstEntityClassName = entityClassName + CreateEntities.HISTORY_ENTITY_SUFFIX;
                     histTableName = getProfile().getNamingStrategy().classToTableName(hstEntityClassName);
 
-                    // this will throw an exception when the history entity class is not found
-                    TableConfig hstConfig = new TableConfig(this, Class.forName(hstEntityClassName), histTableName);
-
-                    hstConfig.setTableToBeRendered(false);
-
-                    tblNameToConfig.put(hstConfig.getTableName(), hstConfig);
+                    registerHistoryEntity(hstEntityClassName, histTableName);
                 }
                 else {
 //                  there is no entity for the live table, e.g. for ManyToMany relations
                     histTableName = getProfile().getNamingStrategy().tableName(temporalEntity.historyTableName());
                 }
 
-                Matcher tblMatcher = TBL_PATTERN_WO_PK.matcher(sqlCreate);
-
-                if (!tblMatcher.find()) {
-                    throw new IllegalStateException("cannot find create table statement in sql: " + sqlCreate);
+                if (!createTable.isTable()) {
+                    throw new IllegalStateException("cannot find create table statement in sql: " + createTable);
                 }
 
                 String histColNameLC = temporalEntity.historyTimestampColumnName().toLowerCase();
                 List<String> historyRelevantCols = getHistoryRelevantColumns(columnNames, temporalEntity.ignoreChangeOfColumns(), histColNameLC);
 
                 if (StringUtils.isEmpty(histTableName)) {
-                    histTableName = tblMatcher.group(TBL_PATTERN_WO_PK_IDX_TBLNAME) + Constants._HST;
+                    histTableName = createTable.getTableName() + Constants._HST;
                 }
 
                 if (pkCols == null) {
@@ -499,48 +810,74 @@ public class CreateDDL {
                     pkCols = toLowercaseList(uniqueConstraints[0].columnNames());
                 }
 
-                Set<String> blobCols = getBlobColumns(sqlCreate);
+                Set<String> blobCols = getBlobColumns(createTable);
                 buf.append(STATEMENT_SEPARATOR).append("-- adding history table due to annotation ")
                         .append(temporalEntity.annotationType().getName())
                         .append(" on entity of table ")
                         .append(tableName)
                         .append("\n")
-                        .append(getHistTableSqlCreateString(dialect, sqlCreate, histTableName, histColNameLC, columnNames, pkCols, partitioning));
+                        .append(getHistTableSqlCreateString(dialect, createTable, histTableName, histColNameLC, columnNames, pkCols, partitioning));
+
+                String outboxTableName = null;
+                if (temporalEntity.outbox()) {
+                    if (isOracle || isPostgreSql(dialect)) {
+                        outboxTableName = histTableName + Constants._HOB;
+                        buf.append(getHistOutboxSql(dialect, nameLC, histTableName, outboxTableName));
+                    }
+                    else {
+                        LOG.warn("history outbox not supported for {}, writing history of table {} synchronously", dialect.getClass().getSimpleName(), liveTableName);
+                    }
+                }
 
                 if (isOracle) {
                     buf.append(STATEMENT_SEPARATOR);
                     buf.append("-- creating trigger for inserting history rows from table ").append(tableName).append("\n")
-                            .append(getOracleHistTriggerSql(dialect, liveTableName, histTableName, histColNameLC, columnNames, pkCols, historyRelevantCols, blobCols, columnMap)).append("\n/");
+                            .append(getOracleHistTriggerSql(dialect, liveTableName, histTableName, outboxTableName, histColNameLC, columnNames, pkCols, historyRelevantCols, blobCols, getLobColumns(createTable), columnMap)).append("\n/");
+                }
+                else if (isPostgreSql(dialect) && outboxTableName == null && getProfile().isStatementLevelHistoryTriggers()) {
+                    buf.append(getPostgreSQLStatementLevelHistTriggerSql(dialect, liveTableName, histTableName, histColNameLC, columnNames, pkCols, historyRelevantCols, blobCols, columnMap));
                 }
                 else if (isPostgreSql(dialect)) {
-                    buf.append(STATEMENT_SEPARATOR)
-                            .append(getPostgreSQLHistTriggerFunction(dialect, liveTableName, histTableName, histColNameLC, columnNames, pkCols, historyRelevantCols, blobCols, columnMap)).append("\n/");
+                    String triggerName = getProfile().getNamingStrategy().triggerName(getEntityClassName(liveTableName), liveTableName, null, "_htr");
+                    String functionName = triggerName + "_function";
+                    checkObjectName(dialect, triggerName);
 
                     buf.append(STATEMENT_SEPARATOR)
-                            .append("create trigger ").append(liveTableName).append("_htU\n")
-                            .append("after update on ").append(liveTableName).append("\n")
-                            .append("for each row\n")
-                            .append("when (");
-                    for (String historyRelevantCol : historyRelevantCols) {
-                        buf.append("new.").append(historyRelevantCol).append(" is distinct from old.").append(historyRelevantCol).append(" or\n");
+                            .append(getPostgreSQLHistTriggerFunction(dialect, functionName, liveTableName, histTableName, outboxTableName, histColNameLC, columnNames, pkCols, historyRelevantCols, blobCols, columnMap)).append("\n/");
+
+                    // updates not changing any history relevant column do not fire a trigger at all
+                    if (!historyRelevantCols.isEmpty()) {
+                        String updateTriggerName = getProfile().getNamingStrategy().triggerName(getEntityClassName(liveTableName), liveTableName, null, "_htU");
+                        checkObjectName(dialect, updateTriggerName);
+
+                        StringBuilder updateTrigger = new StringBuilder()
+                                .append("create trigger ").append(updateTriggerName).append("\n")
+                                .append("after update on ").append(liveTableName).append("\n")
+                                .append("for each row\n")
+                                .append("when (");
+                        for (String historyRelevantCol : historyRelevantCols) {
+                            updateTrigger.append("new.").append(historyRelevantCol).append(" is distinct from old.").append(historyRelevantCol).append(" or\n");
+                        }
+                        updateTrigger.delete(updateTrigger.length()-4, updateTrigger.length());
+                        updateTrigger.append(")\nexecute procedure ").append(functionName).append("()");
+
+                        addDBObject(updateTrigger.toString());
+                        buf.append(STATEMENT_SEPARATOR).append(updateTrigger);
                     }
-                    buf.delete(buf.length()-4, buf.length());
-                    buf.append(")\nexecute procedure ").append(liveTableName).append("_htr_function()");
 
-                    buf.append(STATEMENT_SEPARATOR)
-                            .append("create trigger ").append(liveTableName).append("_htr\n")
-                            .append("after insert or delete on ").append(liveTableName).append("\n")
-                            .append("for each row\n")
-                            .append("execute procedure ").append(liveTableName).append("_htr_function()");
+                    String trigger = "create trigger " + triggerName + "\n" +
+                            "after insert or delete on " + liveTableName + "\n" +
+                            "for each row\n" +
+                            "execute procedure " + functionName + "()";
+
+                    addDBObject(trigger);
+                    buf.append(STATEMENT_SEPARATOR).append(trigger);
                 }
                 else {
                     buf.append(getHsqlDBHistTriggerSql(dialect, liveTableName, histTableName, histColNameLC, columnNames, pkCols, historyRelevantCols, columnMap));
                 }
 
-                if (!historyInitSet) {
-                    getProfile().addHeaderDdl(new DDLGenerator.AddTemplateDDLEntry(CreateDDL.class.getResource("/com/github/gekoh/yagen/ddl/InitHistory.ddl.sql")));
-                    historyInitSet = true;
-                }
+                requireHistoryInit();
             } catch (ClassNotFoundException e) {
                 LOG.info("not generating history table of live table {} since corresponding history entity class not found in classpath", nameLC);
             }
@@ -551,12 +888,9 @@ public class CreateDDL {
 
             buf.append(STATEMENT_SEPARATOR);
 
-            if (objectNames.contains(seqName.toLowerCase())) {
+            if (enhancement.getDuplicateSequenceNames().contains(seqName.toLowerCase())) {
                 buf.append("-- WARNING: duplicate definition of sequence or name already defined for another object!\n--");
             }
-            else {
-                checkObjectName(dialect, seqName.toLowerCase());
-            }
 
             buf.append("create sequence ").append(seqName)
                     .append(" start with ").append(sequence.startWith())
@@ -567,29 +901,28 @@ public class CreateDDL {
         }
 
         if (supportsPartitioning(dialect) && partitioning != null) {
-            sqlCreate = addPartitioning(buf, partitioning, nameLC, sqlCreate, columns, pkCols);
+            createTable = addPartitioning(buf, partitioning, nameLC, createTable, columns, pkCols);
         }
 
-        sqlCreate = addConstraintsAndNames(dialect, buf, sqlCreate, nameLC, tableConfig.getColumnNameToEnumCheckConstraints());
-        sqlCreate = addDefaultValues(sqlCreate, nameLC);
+        createTable = addConstraintsAndNames(dialect, buf, createTable, nameLC, tableConfig.getColumnNameToEnumCheckConstraints());
+        createTable = addDefaultValues(createTable, nameLC);
 
         Changelog changelog = tableConfig.getTableAnnotationOfType(Changelog.class);
         if (changelog != null && StringUtils.isNotEmpty(changelog.timelineViewName())) {
-            deferredDdl.append(STATEMENT_SEPARATOR);
-            deferredDdl.append(getTimelineView(changelog, tableConfig, dialect, sqlCreate, changelog.timelineViewName(), tableName, columns, pkCols));
+            tableDeferredDdl.append(STATEMENT_SEPARATOR);
+            tableDeferredDdl.append(getTimelineView(changelog, tableConfig, dialect, createTable, changelog.timelineViewName(), tableName, columns, pkCols));
         }
 
         com.github.gekoh.yagen.api.Table table = tableConfig.getTableAnnotationOfType(com.github.gekoh.yagen.api.Table.class);
-        if (table != null && table.isGlobalTemporary()) {
-            Matcher matcher = TBL_PATTERN.matcher(sqlCreate);
-
-            if (matcher.find()) {
-                sqlCreate = sqlCreate.substring(0, matcher.start(TBL_PATTERN_IDX_TBL_SYN)) + "global temporary " +
-                        sqlCreate.substring(matcher.start(TBL_PATTERN_IDX_TBL_SYN), matcher.end(TBL_PATTERN_IDX_TBL_DEF)+1) +
-                        " ON COMMIT " + table.globalTemporaryOnCommit() + sqlCreate.substring(matcher.end(TBL_PATTERN_IDX_TBL_DEF)+1);
-            }
+        if (table != null && table.isGlobalTemporary() && createTable.hasPrimaryKey()) {
+            createTable = createTable.edit()
+                    .insert(createTable.getTableKeywordStart(), "global temporary ")
+                    .insert(createTable.getCloseParen() + 1, " ON COMMIT " + table.globalTemporaryOnCommit())
+                    .apply();
         }
 
+        String sqlCreate = createTable.getSql();
+
         LayeredTablesView layeredTablesView = tableConfig.getTableAnnotationOfType(LayeredTablesView.class);
         if (layeredTablesView != null) {
             if (layeredTablesView.tableNamesInOrder().length < 1) {
@@ -599,7 +932,7 @@ public class CreateDDL {
                 LOG.warn("no key columns defined for layered table view requested for {}", nameLC);
             }
             else {
-                sqlCreate = handleLayeredTable(sqlCreate, buf, layeredTablesView, dialect, columnNames, columnMap);
+                sqlCreate = handleLayeredTable(createTable, buf, layeredTablesView, dialect, columnNames, columnMap);
 
                 int idx=0;
                 for (String layeredTableName : layeredTablesView.tableNamesInOrder()) {
@@ -611,12 +944,12 @@ public class CreateDDL {
             addIndexes(buf, dialect, tableConfig, tableConfig.getTableName(), "");
         }
 
+        duplex(ObjectType.TABLE, tableName, sqlCreate);
+
         if (buf.length() == 0) {
             return sqlCreate;
         }
 
-        getProfile().duplex(ObjectType.TABLE, tableName, sqlCreate);
-
         buf.insert(0, sqlCreate);
         buf.insert(0, STATEMENT_SEPARATOR);
 
@@ -640,32 +973,38 @@ public class CreateDDL {
         return true;
     }
 
-    private Set<String> getBlobColumns(String sqlCreate) {
+    private Set<String> getBlobColumns(CreateTableStatement createTable) {
         Set<String> blobCols = new HashSet<String>();
 
-        Matcher matcher = COL_PATTERN.matcher(sqlCreate);
-        int idx = 0;
-        while (matcher.find(idx)) {
-
-            if (matcher.group(COL_PATTERN_IDX_TYPE).compareToIgnoreCase("blob") == 0) {
-                blobCols.add(matcher.group(COL_PATTERN_IDX_COLNAME).toLowerCase());
+        for (CreateTableStatement.Column column : createTable.getColumns()) {
+            if (column.getType().compareToIgnoreCase("blob") == 0) {
+                blobCols.add(column.getName().toLowerCase());
             }
-
-            idx = matcher.end();
         }
 
         return blobCols;
     }
 
-    private String handleLayeredTable(String sqlCreate, StringBuffer buf, LayeredTablesView layeredTablesView, Dialect dialect, Set<String> columnNames, Map<String, Column> columnMap) {
-        Matcher matcher = TBL_PATTERN.matcher(sqlCreate);
-        if (!matcher.find()) {
+    private Set<String> getLobColumns(CreateTableStatement createTable) {
+        Set<String> lobCols = new HashSet<String>();
+
+        for (CreateTableStatement.Column column : createTable.getColumns()) {
+            if (column.getType().toLowerCase().contains("lob")) {
+                lobCols.add(column.getName().toLowerCase());
+            }
+        }
+
+        return lobCols;
+    }
+
+    private String handleLayeredTable(CreateTableStatement createTable, StringBuffer buf, LayeredTablesView layeredTablesView, Dialect dialect, Set<String> columnNames, Map<String, Column> columnMap) {
+        if (!createTable.hasPrimaryKey()) {
             LOG.warn("found annotation {} but table pattern does not match", layeredTablesView);
-            return sqlCreate;
+            return createTable.getSql();
         }
 
         StringBuilder ddl = new StringBuilder();
-        String tblName = matcher.group(TBL_PATTERN_IDX_TBLNAME);
+        String tblName = createTable.getTableName();
         String tableNames = "";
         String colList = "";
         StringBuilder viewSource = new StringBuilder();
@@ -690,7 +1029,7 @@ public class CreateDDL {
 
             checkObjectName(dialect, tableName);
 
-            String newCreate = sqlCreate.substring(0, matcher.start(TBL_PATTERN_IDX_TBLNAME)) + tableName + sqlCreate.substring(matcher.end(TBL_PATTERN_IDX_TBLNAME));
+            String newCreate = createTable.edit().replace(createTable.getTableNameStart(), createTable.getTableNameEnd(), tableName).toSql();
             ddl.append(STATEMENT_SEPARATOR);
             ddl.append("-- inserting table layer #").append(priority).append(" of view ").append(tblName).append("\n");
             ddl.append(modifyName(newCreate, ""+priority, dialect));
@@ -818,7 +1157,7 @@ public class CreateDDL {
                     checkObjectName(dialect, constraintName);
                 }
 
-                getProfile().duplex(ObjectType.INDEX, constraintName, ddl);
+                duplex(ObjectType.INDEX, constraintName, ddl);
 
                 buf.append(STATEMENT_SEPARATOR).append(ddl);
             }
@@ -855,12 +1194,13 @@ public class CreateDDL {
             checkObjectName(dialect, indexName);
         }
 
-        getProfile().duplex(ObjectType.INDEX, indexName, ddl);
+        duplex(ObjectType.INDEX, indexName, ddl);
 
         buf.append(STATEMENT_SEPARATOR).append(ddl);
     }
 
     public String updateCreateConstraint(Dialect dialect, StringBuffer buf, String name, Table table, Constraint constraint) {
+        awaitTableEnhancements();
         NamingStrategy namingStrategy = getProfile().getNamingStrategy();
         String newName = namingStrategy.constraintName(constraint, getEntityClassName(namingStrategy.tableName(table.getName())));
 
@@ -956,7 +1296,7 @@ public class CreateDDL {
                 }
             }
 
-            getProfile().duplex(ObjectType.CONSTRAINT, name, buf.toString());
+            duplex(ObjectType.CONSTRAINT, name, buf.toString());
 
             if (constraint.getColumnSpan() == 1 && hasIndex(table, tableNameLC, singleColumn)) {
                 LOG.debug("not creating foreign key index as there is already an index on table " + tableNameLC + " and column " + colList.toString());
@@ -975,7 +1315,7 @@ public class CreateDDL {
 
                 buf.append(STATEMENT_SEPARATOR).append("-- auto create index on foreign key constraint\n").append(objDdl);
 
-                getProfile().duplex(ObjectType.INDEX, fkIndexName, objDdl.toString());
+                duplex(ObjectType.INDEX, fkIndexName, objDdl.toString());
             }
         }
 
@@ -983,6 +1323,7 @@ public class CreateDDL {
     }
 
     public String updateCreateIndex(Dialect dialect, StringBuffer buf, String name, Table table, List<org.hibernate.mapping.Column> columns) {
+        awaitTableEnhancements();
         String newName = getProfile().getNamingStrategy().indexName(name);
 
         if (!name.equals(newName)) {
@@ -1036,7 +1377,7 @@ public class CreateDDL {
                 sql.append(buf.substring(0, matcher.start(3))).append(i18nTblName).append(buf.substring(matcher.end(3)));
             }
 
-            getProfile().duplex(ObjectType.INDEX, name, sql.toString());
+            duplex(ObjectType.INDEX, name, sql.toString());
             
             return sql.toString();
         }
@@ -1049,12 +1390,13 @@ public class CreateDDL {
             tblColNameHasSingleColIndex.add(tableNameLC + "." + columns.get(0).getName().toLowerCase());
         }
 
-        getProfile().duplex(ObjectType.INDEX, name, buf.toString());
+        duplex(ObjectType.INDEX, name, buf.toString());
 
         return buf.toString();
     }
 
     public String updateCreateSequence(Dialect dialect, String sqlCreate, org.hibernate.type.Type type) {
+        awaitTableEnhancements();
         Matcher matcher = SEQ_CREATE_PATTERN.matcher(sqlCreate);
 
         if (matcher.find()) {
@@ -1068,33 +1410,23 @@ public class CreateDDL {
         return sqlCreate;
     }
 
-    private String processCascadeNullable(Dialect dialect, StringBuffer buf, String tableName, String sqlCreate, Set<String> columns) {
+    private CreateTableStatement processCascadeNullable(Dialect dialect, StringBuffer tableDeferredDdl, String tableName, CreateTableStatement createTable, Set<String> columns) {
         if (columns == null || columns.size() < 1) {
-            return sqlCreate;
+            return createTable;
         }
 
-        Matcher matcher = COL_PATTERN.matcher(sqlCreate);
-        int idx = 0;
+        CreateTableStatement.Editor editor = createTable.edit();
 
-        StringBuilder sb = new StringBuilder();
-
-        while (matcher.find(idx)) {
-            String colName = TableConfig.getIdentifierForReference(matcher.group(COL_PATTERN_IDX_COLNAME));
+        for (CreateTableStatement.Column column : createTable.getColumns()) {
+            String colName = TableConfig.getIdentifierForReference(column.getName());
 
-            if (columns.contains(colName) && matcher.group(COL_PATTERN_IDX_NOT) != null) {
-                sb.append(sqlCreate.substring(idx, matcher.start(COL_PATTERN_IDX_NOTNULL)));
-                idx = matcher.end(COL_PATTERN_IDX_NOTNULL);
-                createCascadeNullableTrigger(dialect, deferredDdl, tableName, colName);
-            }
-            else {
-                sb.append(sqlCreate.substring(idx, matcher.end()));
-                idx = matcher.end();
+            if (columns.contains(colName) && column.isNotNull()) {
+                editor.delete(column.getNullClauseStart(), column.getNullClauseEnd());
+                createCascadeNullableTrigger(dialect, tableDeferredDdl, tableName, colName);
             }
         }
 
-        sb.append(sqlCreate.substring(idx));
-
-        return sb.toString();
+        return editor.apply();
     }
 
     private void createCascadeNullableTrigger(Dialect dialect, StringBuffer buf, String tableName, String colName) {
@@ -1132,69 +1464,60 @@ public class CreateDDL {
         StringWriter wr = new StringWriter();
         mergeTemplateFromResource(template, wr, context);
 
-        getProfile().duplex(ObjectType.TRIGGER, triggerName, wr.toString());
+        duplex(ObjectType.TRIGGER, triggerName, wr.toString());
 
         buf.append(STATEMENT_SEPARATOR).append(wr.toString()).append("\n/");
 
         return triggerName;
     }
 
-    private String addDefaultValues(String sqlCreate, String nameLC) {
+    private CreateTableStatement addDefaultValues(CreateTableStatement createTable, String nameLC) {
         TableConfig tableConfig = tblNameToConfig.get(nameLC);
 
         if (tableConfig == null) {
-            return sqlCreate;
+            return createTable;
         }
 
-        StringBuilder b = new StringBuilder();
-        Matcher matcher = COL_PATTERN.matcher(sqlCreate);
-        int idx = 0;
+        CreateTableStatement.Editor editor = createTable.edit();
 
-        while (matcher.find(idx)) {
-            String colName = TableConfig.getIdentifierForReference(matcher.group(COL_PATTERN_IDX_COLNAME));
+        for (CreateTableStatement.Column column : createTable.getColumns()) {
+            String colName = TableConfig.getIdentifierForReference(column.getName());
 
-            if (matcher.group(COL_PATTERN_IDX_DEFAULT) == null) {
+            if (column.getDefaultValue() == null) {
                 String defaultExpr = tableConfig.getColNameToDefault().get(colName);
 
                 if (defaultExpr != null) {
-                    b.append(sqlCreate.substring(idx, matcher.end(COL_PATTERN_IDX_TYPE)));
-                    b.append(" default ").append(defaultExpr);
-                    idx = matcher.end(COL_PATTERN_IDX_TYPE);
+                    editor.insert(column.getTypeEnd(), " default " + defaultExpr);
                 }
             }
-
-            b.append(sqlCreate.substring(idx, matcher.end()));
-            idx = matcher.end();
         }
 
-        b.append(sqlCreate.substring(idx));
-
-        return b.toString();
+        return editor.apply();
     }
 
-    private static String addAuditColumns(Dialect dialect, String sqlCreate, Set<String> columns, int userNameLength, List<String> auditColumns) {
-        Matcher matcher = TBL_PATTERN.matcher(sqlCreate);
+    private static CreateTableStatement addAuditColumns(Dialect dialect, CreateTableStatement createTable, Set<String> columns, int userNameLength, List<String> auditColumns) {
         int insertIdx = -1;
 
-        if (matcher.find()) {
-            insertIdx = matcher.start(TBL_PATTERN_IDX_AFTER_COL_DEF);
+        if (createTable.hasPrimaryKey()) {
+            insertIdx = createTable.getPrimaryKey().getCommaIdx();
         }
-        else if ((matcher = TBL_PATTERN_WO_PK.matcher(sqlCreate)).find()) {
-            insertIdx = matcher.start(TBL_PATTERN_WO_PK_IDX_AFTER_COL_DEF);
+        else if (createTable.isTable()) {
+            insertIdx = createTable.getCloseParen();
         }
 
         if (insertIdx >= 0) {
-            StringBuilder sb = new StringBuilder(sqlCreate.substring(0, insertIdx));
+            StringBuilder sb = new StringBuilder();
             for (String auditColumn : auditColumns) {
                 if (!columns.contains(auditColumn)) {
                     sb.append(", ").append(formatColumn(dialect, AUDIT_COLUMN_DEFINITION.get(auditColumn), userNameLength, null, null));
                     columns.add(auditColumn);
                 }
             }
-            sb.append(sqlCreate.substring(insertIdx));
-            sqlCreate = sb.toString();
+            if (sb.length() > 0) {
+                createTable = createTable.edit().insert(insertIdx, sb.toString()).apply();
+            }
         }
-        return sqlCreate;
+        return createTable;
     }
 
     private static String formatColumn(Dialect dialect, String colTemplate, Integer length, Integer precision, Integer scale) {
@@ -1211,7 +1534,7 @@ public class CreateDDL {
         return wr.toString();
     }
 
-    private String getTimelineView(Changelog changelog, TableConfig tableConfig, Dialect dialect, String sqlCreate, String viewName, String tableName, Set<String> columns, List<String> pkCols) {
+    private String getTimelineView(Changelog changelog, TableConfig tableConfig, Dialect dialect, CreateTableStatement createTable, String viewName, String tableName, Set<String> columns, List<String> pkCols) {
         StringWriter objWr = new StringWriter();
 
         columns = new LinkedHashSet<String>(columns);
@@ -1225,8 +1548,8 @@ public class CreateDDL {
 
         checkObjectName(dialect, viewName);
 
-        Map<String, String> numericColumnDefinitions = findNumericColumnDefinitions(sqlCreate);
-        Map<String, String> timestampColumnDefinitions = findTimestampColumnDefinitions(sqlCreate);
+        Map<String, String> numericColumnDefinitions = findNumericColumnDefinitions(createTable);
+        Map<String, String> timestampColumnDefinitions = findTimestampColumnDefinitions(createTable);
 
         VelocityContext context = new VelocityContext();
         context.put("changelogQueryString", changelog.changelogQueryString());
@@ -1238,57 +1561,45 @@ public class CreateDDL {
         context.put("numericColumns", numericColumnDefinitions.keySet());
         context.put("numericColumnDefinitions", numericColumnDefinitions);
         context.put("timestampColumns", timestampColumnDefinitions.keySet());
-        context.put("clobColumns", findClobColumns(sqlCreate));
+        context.put("clobColumns", findClobColumns(createTable));
 
         mergeTemplateFromResource("TimelineView.vm.sql", objWr, context);
 
         return objWr.toString();
     }
 
-    private Object findClobColumns(String sqlCreate) {
+    private Object findClobColumns(CreateTableStatement createTable) {
         Set<String> lobColumns = new HashSet<String>();
-        Matcher colMatcher = COL_PATTERN.matcher(sqlCreate);
-        int idx = 0;
 
-        while (colMatcher.find(idx)) {
-            String type = colMatcher.group(COL_PATTERN_IDX_TYPE);
-            if (type.toLowerCase().contains("clob")) {
-                lobColumns.add(colMatcher.group(COL_PATTERN_IDX_COLNAME).toLowerCase());
+        for (CreateTableStatement.Column column : createTable.getColumns()) {
+            if (column.getType().toLowerCase().contains("clob")) {
+                lobColumns.add(column.getName().toLowerCase());
             }
-            idx = colMatcher.end();
         }
         return lobColumns;
     }
 
-    private Map<String, String> findNumericColumnDefinitions(String sqlCreate) {
+    private Map<String, String> findNumericColumnDefinitions(CreateTableStatement createTable) {
         Map<String, String> numColumnDef = new HashMap<String, String>();
 
-        Matcher colMatcher = COL_PATTERN.matcher(sqlCreate);
-        int idx = 0;
-
-        while (colMatcher.find(idx)) {
-            String type = colMatcher.group(COL_PATTERN_IDX_TYPE).toLowerCase();
+        for (CreateTableStatement.Column column : createTable.getColumns()) {
+            String type = column.getType().toLowerCase();
             if (type.contains("num") || type.contains("int") || type.contains("long") || type.contains("double") || type.contains("float")) {
-                numColumnDef.put(colMatcher.group(COL_PATTERN_IDX_COLNAME).toLowerCase(), type);
+                numColumnDef.put(column.getName().toLowerCase(), type);
             }
-            idx = colMatcher.end();
         }
 
         return numColumnDef;
     }
 
-    private Map<String, String> findTimestampColumnDefinitions(String sqlCreate) {
+    private Map<String, String> findTimestampColumnDefinitions(CreateTableStatement createTable) {
         Map<String, String> colDef = new HashMap<String, String>();
 
-        Matcher colMatcher = COL_PATTERN.matcher(sqlCreate);
-        int idx = 0;
-
-        while (colMatcher.find(idx)) {
-            String type = colMatcher.group(COL_PATTERN_IDX_TYPE).toLowerCase();
+        for (CreateTableStatement.Column column : createTable.getColumns()) {
+            String type = column.getType().toLowerCase();
             if (type.contains("timestamp")) {
-                colDef.put(colMatcher.group(COL_PATTERN_IDX_COLNAME).toLowerCase(), type);
+                colDef.put(column.getName().toLowerCase(), type);
             }
-            idx = colMatcher.end();
         }
 
         return colDef;
@@ -1383,7 +1694,7 @@ public class CreateDDL {
         buf.append(wr.toString());
         buf.append("\n/");
 
-        getProfile().duplex(ObjectType.TRIGGER, triggerName, wr.toString());
+        duplex(ObjectType.TRIGGER, triggerName, wr.toString());
     }
 
     private String getEntityClassName(String tableName) {
@@ -1400,17 +1711,12 @@ public class CreateDDL {
         return null;
     }
 
-    private static List<String> getPkColumnNamesFrom(String sqlCreate) {
-        Matcher tblMatcher = TBL_PATTERN.matcher(sqlCreate);
-
-        if (!tblMatcher.find()) {
+    private static List<String> getPkColumnNamesFrom(CreateTableStatement createTable) {
+        if (!createTable.hasPrimaryKey()) {
             return null;
         }
 
-        String pkColList = tblMatcher.group(TBL_PATTERN_IDX_PK_COLLIST);
-        if (pkColList == null) {
-            throw new IllegalStateException("unable to find primary key in sql: " + sqlCreate);
-        }
+        String pkColList = createTable.getPrimaryKey().getColumnList();
 
         return Arrays.asList(pkColList.toLowerCase().split(",[ ]?"));
     }
@@ -1469,6 +1775,13 @@ public class CreateDDL {
     }
 
     private void addComments(StringBuffer buf, String tableName, String entityClassName, Set<String> columns) {
+        long start = System.nanoTime();
+        int length = buf.length();
+        addCommentsOfEntity(buf, tableName, entityClassName, columns);
+        getProfile().phaseCompleted(GenerationPhase.COMMENTS, tableName, start, buf.length() > length ? 1 : 0, buf.length() - length);
+    }
+
+    private void addCommentsOfEntity(StringBuffer buf, String tableName, String entityClassName, Set<String> columns) {
         Class entityClass = null;
         try {
             entityClass = entityClassName != null ? Class.forName(entityClassName) : null;
@@ -1503,7 +1816,7 @@ public class CreateDDL {
             return;
         }
 
-        getProfile().duplex(ObjectType.COMMENT, null, ddl.toString());
+        duplex(ObjectType.COMMENT, tableName, ddl.toString());
 
         buf.append(STATEMENT_SEPARATOR).append(ddl.toString()).append("\n/");
     }
@@ -1525,17 +1838,15 @@ public class CreateDDL {
         return comment.replaceAll("'", "''''").replaceAll("\n", "'||chr(10)||\n'");
     }
 
-    private String addConstraintsAndNames(Dialect dialect, StringBuffer additionalObjects, String sqlCreate, String nameLC, Map<String, String> column2EnumConstraint) {
-        List<String> pkColumns = getPkColumnNamesFrom(sqlCreate);
+    private CreateTableStatement addConstraintsAndNames(Dialect dialect, StringBuffer additionalObjects, CreateTableStatement createTable, String nameLC, Map<String, String> column2EnumConstraint) {
+        List<String> pkColumns = getPkColumnNamesFrom(createTable);
         TableConfig tableConfig = tblNameToConfig.get(nameLC);
 
-        StringBuilder b = new StringBuilder();
+        CreateTableStatement.Editor editor = createTable.edit();
         StringBuilder enumConstraints = new StringBuilder();
-        Matcher matcher = COL_PATTERN.matcher(sqlCreate);
-        int idx = 0;
 
-        while (matcher.find(idx)) {
-            String defColName = matcher.group(COL_PATTERN_IDX_COLNAME);
+        for (CreateTableStatement.Column column : createTable.getColumns()) {
+            String defColName = column.getName();
             String colName = TableConfig.getIdentifierForReference(defColName);
 
             String constraintDef = column2EnumConstraint != null ? column2EnumConstraint.get(colName) : null;
@@ -1546,61 +1857,29 @@ public class CreateDDL {
             }
 
             // name not null constraint
-            idx = appendConstraint(b, sqlCreate, nameLC, colName, idx, matcher, COL_PATTERN_IDX_NOTNULL, COL_PATTERN_IDX_NOTNULL_CONS_NAME, Constants._NN);
+            appendConstraint(editor, nameLC, colName, column.getNullClauseStart(), column.getNotNullConstraintName(), Constants._NN);
 
             // name unique constraint
-            idx = appendConstraint(b, sqlCreate, nameLC, colName, idx, matcher, COL_PATTERN_IDX_UNIQUE, COL_PATTERN_IDX_UNIQUE_CONS_NAME, Constants._UK);
-
-            b.append(sqlCreate.substring(idx, matcher.end()));
-            idx = matcher.end();
+            appendConstraint(editor, nameLC, colName, column.getUniqueStart(), column.getUniqueConstraintName(), Constants._UK);
         }
 
-        b.append(sqlCreate.substring(idx));
-
-        sqlCreate = b.toString();
-        b = new StringBuilder();
-
-        matcher = UNIQUE_PATTERN.matcher(sqlCreate);
-        idx = 0;
-
-        while (matcher.find(idx)) {
+        for (CreateTableStatement.UniqueClause unique : createTable.getUniqueClauses()) {
             // name unique constraint
-            idx = appendConstraint(b, sqlCreate, nameLC, DefaultNamingStrategy.concatColumnNames(matcher.group(UNIQUE_PATTERN_IDX_UNIQUE_COLS)), idx, matcher, UNIQUE_PATTERN_IDX_UNIQUE_FULL, UNIQUE_PATTERN_IDX_UNIQUE_NAME, Constants._UK);
-
-            b.append(sqlCreate.substring(idx, matcher.end()));
-            idx = matcher.end();
+            appendConstraint(editor, nameLC, DefaultNamingStrategy.concatColumnNames(unique.getColumnList()), unique.getStart(), unique.getConstraintName(), Constants._UK);
         }
 
-        b.append(sqlCreate.substring(idx));
-
-        sqlCreate = b.toString();
-
-        matcher = TBL_PATTERN.matcher(sqlCreate);
-
-        if (matcher.find() && matcher.group(TBL_PATTERN_IDX_PK_CLAUSE) != null) {
-
-            // name not already present
-            if (matcher.group(TBL_PATTERN_IDX_PK_NAME) == null) {
-                b = new StringBuilder();
+        if (createTable.hasPrimaryKey()) {
+            CreateTableStatement.PrimaryKey pk = createTable.getPrimaryKey();
 
-                idx = matcher.start(TBL_PATTERN_IDX_PK_START);
-                b.append(sqlCreate.substring(0, idx));
-
-                // name primary key constraint
-                idx = appendConstraint(b, sqlCreate, nameLC, DefaultNamingStrategy.concatColumnNames(matcher.group(TBL_PATTERN_IDX_PK_COLLIST)), idx, matcher, TBL_PATTERN_IDX_PK_START, TBL_PATTERN_IDX_PK_NAME, Constants._PK);
-
-                b.append(sqlCreate.substring(idx));
-
-                sqlCreate = b.toString();
-            }
+            // name primary key constraint if not already present
+            appendConstraint(editor, nameLC, DefaultNamingStrategy.concatColumnNames(pk.getColumnList()), pk.getStart(), pk.getConstraintName(), Constants._PK);
         }
         else {
             LOG.info("no primary key found for table {}", nameLC);
         }
 
-        matcher = TBL_PATTERN_WO_PK.matcher(sqlCreate);
-        if (matcher.matches()) {
-            b = new StringBuilder(sqlCreate.substring(0, matcher.start(TBL_PATTERN_WO_PK_IDX_AFTER_COL_DEF)));
+        if (createTable.isTable()) {
+            StringBuilder b = new StringBuilder();
 
             if (enumConstraints.length() > 0) {
                 b.append(enumConstraints);
@@ -1671,11 +1950,12 @@ public class CreateDDL {
                 }
             }
 
-            b.append(sqlCreate.substring(matcher.start(TBL_PATTERN_WO_PK_IDX_AFTER_COL_DEF)));
-            sqlCreate = b.toString();
+            if (b.length() > 0) {
+                editor.insert(createTable.getCloseParen(), b.toString());
+            }
         }
 
-        return sqlCreate;
+        return editor.apply();
     }
 
     private String getDeferredCheckConstraintFunction (Dialect dialect, String objectName, String constraintName, String tableName, String declaration, List<String> pkColumns) {
@@ -1691,7 +1971,7 @@ public class CreateDDL {
         StringWriter wr = new StringWriter();
         mergeTemplateFromResource("postgres/DeferredConstraintTriggerFunction.vm.pl.sql", wr, context);
 
-        getProfile().duplex(ObjectType.VIEW, objectName, wr.toString());
+        duplex(ObjectType.VIEW, objectName, wr.toString());
 
         return wr.toString();
     }
@@ -1717,37 +1997,30 @@ public class CreateDDL {
     }
 
     private String getLanguageDetailTableNameFromLiveTableName(String liveTableName) {
-        for (TableConfig tableConfig : tblNameToConfig.values()) {
-            if (tableConfig.getI18nBaseEntityTblName() != null &&
-                    liveTableName.equals(getI18NDetailTableName(tableConfig.getTableName()))) {
-                return tableConfig.getTableName();
+        synchronized (tblNameToConfig) {
+            for (TableConfig tableConfig : tblNameToConfig.values()) {
+                if (tableConfig.getI18nBaseEntityTblName() != null &&
+                        liveTableName.equals(getI18NDetailTableName(tableConfig.getTableName()))) {
+                    return tableConfig.getTableName();
+                }
             }
         }
         return null;
     }
 
-    private int appendConstraint(StringBuilder b,
-                                 String sqlCreate,
-                                 String tableName,
-                                 String columnName,
-                                 int currIdx,
-                                 Matcher colMatcher,
-                                 int groupId,
-                                 int existingNameGroupId,
-                                 String constraintSuffix) {
-        if (colMatcher.group(groupId) != null && colMatcher.group(existingNameGroupId) == null) {
+    private void appendConstraint(CreateTableStatement.Editor editor,
+                                  String tableName,
+                                  String columnName,
+                                  int clauseStart,
+                                  String existingName,
+                                  String constraintSuffix) {
+        if (clauseStart >= 0 && existingName == null) {
             String constraintName = getProfile().getNamingStrategy().constraintName(getEntityClassName(tableName), tableName, columnName, constraintSuffix);
-            b.append(sqlCreate.substring(currIdx, colMatcher.start(groupId)));
-            currIdx = colMatcher.start(groupId);
-            b.append(" constraint ").append(constraintName);
-            b.append(sqlCreate.substring(currIdx, colMatcher.end(groupId)));
-            currIdx = colMatcher.end(groupId);
+            editor.insert(clauseStart, " constraint " + constraintName);
         }
-
-        return currIdx;
     }
 
-    private String addPartitioning(StringBuffer addDdl, IntervalPartitioning partitioning, String nameLC, String sqlCreate, Set<String> columns, List<String> pkCols) {
+    private CreateTableStatement addPartitioning(StringBuffer addDdl, IntervalPartitioning partitioning, String nameLC, CreateTableStatement createTable, Set<String> columns, List<String> pkCols) {
         String shortName = getShortName(nameLC);
 
         if (StringUtils.isEmpty(shortName)) {
@@ -1756,44 +2029,33 @@ public class CreateDDL {
         }
 
         String partColName = partitioning.columnName().toLowerCase();
-        if (!columns.contains(partColName)) {
-            Matcher pkMatcher = TBL_PATTERN.matcher(sqlCreate);
-            if (pkMatcher.find()) {
-                StringBuilder sb = new StringBuilder();
-                sb.append(sqlCreate.substring(0, pkMatcher.start(TBL_PATTERN_IDX_AFTER_COL_DEF)));
-                sb.append(", ").append(partColName).append(" date default sysdate");
-                sb.append(sqlCreate.substring(pkMatcher.start(TBL_PATTERN_IDX_AFTER_COL_DEF)));
-                sqlCreate = sb.toString();
-                columns.add(partColName);
-            }
+        if (!columns.contains(partColName) && createTable.hasPrimaryKey()) {
+            createTable = createTable.edit()
+                    .insert(createTable.getPrimaryKey().getCommaIdx(), ", " + partColName + " date default sysdate")
+                    .apply();
+            columns.add(partColName);
         }
         StringBuilder sb;
 
         if (partitioning.useLocalPK()) {
-            sb = new StringBuilder();
-
-            Matcher matcher = TBL_PATTERN.matcher(sqlCreate);
-
-            if (!matcher.find()) {
-                throw new IllegalArgumentException("cannot parse create table statement: "+sqlCreate);
+            if (!createTable.hasPrimaryKey()) {
+                throw new IllegalArgumentException("cannot parse create table statement: "+createTable);
             }
 
-            if (matcher.group(TBL_PATTERN_IDX_PK_CLAUSE) != null) {
-                String pkColList = matcher.group(TBL_PATTERN_IDX_PK_COLLIST);
-
-                if (!pkCols.contains(partColName)) {
-                    pkColList += ", " + partColName;
-                }
+            CreateTableStatement.PrimaryKey pk = createTable.getPrimaryKey();
+            String pkColList = pk.getColumnList();
 
-                addDdl.append(STATEMENT_SEPARATOR).append("-- creating local unique index instead of global primary key\n");
-                addLocalUniqueConstraintIndex(addDdl, nameLC, pkColList);
+            if (!pkCols.contains(partColName)) {
+                pkColList += ", " + partColName;
             }
 
-            sb.append(sqlCreate.substring(0, matcher.start(TBL_PATTERN_IDX_AFTER_COL_DEF)));
-            sb.append(sqlCreate.substring(matcher.end(TBL_PATTERN_IDX_AFTER_COL_DEF)));
+            addDdl.append(STATEMENT_SEPARATOR).append("-- creating local unique index instead of global primary key\n");
+            addLocalUniqueConstraintIndex(addDdl, nameLC, pkColList);
+
+            sb = new StringBuilder(createTable.edit().delete(pk.getCommaIdx(), pk.getClauseEnd()).toSql());
         }
         else {
-            sb = new StringBuilder(sqlCreate);
+            sb = new StringBuilder(createTable.getSql());
         }
 
         sb.append(" partition by range (").append(partitioning.columnName()).append(") ");
@@ -1813,7 +2075,7 @@ public class CreateDDL {
         sb.append(partitioning.enableRowMovement() ? "ENABLE" : "DISABLE");
         sb.append(" ROW MOVEMENT");
 
-        return sb.toString();
+        return CreateTableStatement.parse(sb.toString());
     }
 
     private void addLocalUniqueConstraintIndex(StringBuffer ddl, String tableName, String columnList) {
@@ -1827,42 +2089,41 @@ public class CreateDDL {
         return i18nBaseEntityTblName != null ? i18nBaseEntityTblName + I18N_LIVE_TABLE_SUFFIX : null;
     }
     
-    private String getI18NDetailTableCreateString(Dialect dialect, String sqlCreate, String i18nTblName, String i18nFKColName) {
+    private CreateTableStatement getI18NDetailTableCreateString(Dialect dialect, CreateTableStatement createTable, String i18nTblName, String i18nFKColName) {
         StringBuilder sql = new StringBuilder();
-        Matcher matcher = TBL_PATTERN.matcher(sqlCreate);
         checkTableName(dialect, i18nTblName);
         
-        if (matcher.matches()) {
-            sql.append(sqlCreate.substring(0, matcher.start(TBL_PATTERN_IDX_TBLNAME))).append(i18nTblName);
+        if (createTable.hasPrimaryKey()) {
+            String sqlCreate = createTable.getSql();
+            sql.append(sqlCreate.substring(0, createTable.getTableNameStart())).append(i18nTblName);
             
-            Matcher colMatcher = COL_PATTERN.matcher(sqlCreate);
-            
-            int idx = sqlCreate.indexOf('(', matcher.end(TBL_PATTERN_IDX_TBLNAME)) + 1;
-            sql.append(sqlCreate.substring(matcher.end(TBL_PATTERN_IDX_TBLNAME), idx));
+            int idx = createTable.getOpenParen() + 1;
+            sql.append(sqlCreate.substring(createTable.getTableNameEnd(), idx));
 
             StringBuilder colDef = new StringBuilder();
-            while (colMatcher.find(idx)) {
-                String colName = TableConfig.getIdentifierForReference(colMatcher.group(COL_PATTERN_IDX_COLNAME));
+            for (CreateTableStatement.Column column : createTable.getColumns()) {
+                String colName = TableConfig.getIdentifierForReference(column.getName());
                 if (!colName.toLowerCase().equals(I18N_COLUMN_IS_PERSISTENT) && !colName.toLowerCase().equals(I18N_COLUMN_COMPOSITE_ID)) {
-                    colDef.append(" ").append(sqlCreate.substring(colMatcher.start(COL_PATTERN_IDX_COLNAME), colMatcher.end()));
+                    colDef.append(" ").append(sqlCreate.substring(column.getNameStart(), column.getEnd()));
                 }
-                idx = colMatcher.end();
+                idx = column.getEnd();
             }
             sql.append(colDef.substring(1));
             sql.append(sqlCreate.substring(idx));
 
-            String tmpSql = sql.toString();
-            matcher = TBL_PATTERN.matcher(tmpSql);
-            if (matcher.matches()) {
-                sql = new StringBuilder(tmpSql.substring(0, matcher.start(TBL_PATTERN_IDX_PK_COLLIST)));
-                sql.append(i18nFKColName).append(", language_cd")
-                        .append(tmpSql.substring(matcher.end(TBL_PATTERN_IDX_PK_COLLIST)));
+            CreateTableStatement i18nTable = CreateTableStatement.parse(sql.toString());
+            if (i18nTable.hasPrimaryKey()) {
+                CreateTableStatement.PrimaryKey pk = i18nTable.getPrimaryKey();
+                i18nTable = i18nTable.edit()
+                        .replace(pk.getColumnListStart(), pk.getColumnListEnd(), i18nFKColName + ", language_cd")
+                        .apply();
             }
+            sql = new StringBuilder(i18nTable.getSql());
         }
 
-        getProfile().duplex(ObjectType.TABLE, i18nTblName, sql.toString());
+        duplex(ObjectType.TABLE, i18nTblName, sql.toString());
 
-        return sql.toString();
+        return CreateTableStatement.parse(sql.toString());
     }
     
     private String getI18NDetailViewCreateString (Dialect dialect, String i18nDetailTblName, String baseEntityTableName, String i18nTblName, String i18nFKColName, Set<String> columns) {
@@ -1883,7 +2144,7 @@ public class CreateDDL {
         StringWriter wr = new StringWriter();
         mergeTemplateFromResource(isOracle(dialect) ? "I18NDetailView.vm.sql" : "I18NDetailView.hsqldb.vm.sql", wr, context);
 
-        getProfile().duplex(ObjectType.VIEW, i18nDetailTblName, wr.toString());
+        duplex(ObjectType.VIEW, i18nDetailTblName, wr.toString());
 
         return wr.toString();
     }
@@ -1907,7 +2168,7 @@ public class CreateDDL {
 
             mergeTemplateFromResource("I18NDetailViewTrigger.vm.pl.sql", wr, context);
 
-            getProfile().duplex(ObjectType.TRIGGER, objectName, wr.toString());
+            duplex(ObjectType.TRIGGER, objectName, wr.toString());
 
             buf.append(STATEMENT_SEPARATOR).append(wr.toString()).append("\n/\n");
         }
@@ -1941,48 +2202,166 @@ public class CreateDDL {
         }
     }
 
+    /**
+     * append-only outbox table with the columns of the history table, the sequence number orders the records and the
+     * transaction id groups them for {@link com.github.gekoh.yagen.hst.HistoryOutboxDrainer}
+     */
+    private String getHistOutboxSql (Dialect dialect,
+                                     String tableName,
+                                     String histTableName,
+                                     String outboxTableName) {
+        String sequenceName = outboxTableName + "_SEQ";
+        checkTableName(dialect, outboxTableName);
+        checkObjectName(dialect, sequenceName);
+
+        StringBuilder sql = new StringBuilder();
+        sql.append(STATEMENT_SEPARATOR)
+                .append("-- adding outbox table for asynchronous history of table ").append(tableName).append("\n")
+                .append("create table ").append(outboxTableName).append(" as\n")
+                .append("select h.*, cast(null as ").append(dialect.getTypeName(Types.BIGINT)).append(") ").append(HistoryOutboxDrainer.SEQUENCE_COLUMN_NAME)
+                .append(", cast(null as ").append(dialect.getTypeName(Types.VARCHAR, 64, 0, 0)).append(") ").append(HistoryOutboxDrainer.TRANSACTION_ID_COLUMN_NAME).append("\n")
+                .append("from ").append(histTableName).append(" h where 1=0");
+        sql.append(STATEMENT_SEPARATOR)
+                .append("alter table ").append(outboxTableName).append(" add primary key (").append(HistoryOutboxDrainer.SEQUENCE_COLUMN_NAME).append(")");
+        sql.append(STATEMENT_SEPARATOR)
+                .append("create sequence ").append(sequenceName).append(" start with 1 increment by 1 cache 1000");
+
+        addDropStatement(tableName, getIfExistsDropStatement(dialect, "drop table " + outboxTableName, null));
+        addDropStatement(tableName, "drop sequence " + getNameAndIfExistsWhenSupported(dialect, sequenceName));
+
+        return sql.toString();
+    }
+
     private String getOracleHistTriggerSql (Dialect dialect,
                                             String tableName,
                                             String histTableName,
+                                            String outboxTableName,
                                             String histColName,
                                             Set<String> columns,
                                             List<String> pkColumns,
                                             List<String> histRelevantCols,
                                             Set<String> blobCols,
+                                            Set<String> lobCols,
                                             Map<String, Column> columnMap) {
         String objectName = tableName + "_htr";
+        checkObjectName(dialect, objectName);
 
-        String histTriggerSource = getHistTriggerSource(dialect, objectName, tableName, histTableName, histColName, columns, pkColumns, histRelevantCols, blobCols, columnMap);
+        VelocityContext context = createHistTriggerContext(dialect, tableName, histTableName, histColName, columns, pkColumns, histRelevantCols, blobCols, columnMap);
+        context.put("objectName", objectName);
 
-        getProfile().duplex(ObjectType.TRIGGER, objectName, histTriggerSource);
+        String resourceName;
+        if (outboxTableName != null) {
+            resourceName = "HstOutboxTrigger.vm.pl.sql";
+            putOutboxVariables(context, outboxTableName);
+            context.put("whenCondition", getOracleHistTriggerWhenCondition(pkColumns, histRelevantCols, lobCols));
+        }
+        else if (getProfile().isCompoundHistoryTriggers()) {
+            // compound trigger collecting the rows and writing the history in bulk after the statement
+            resourceName = "HstCompoundTrigger.vm.pl.sql";
+        }
+        else {
+            resourceName = "HstTrigger.vm.pl.sql";
+            context.put("whenCondition", getOracleHistTriggerWhenCondition(pkColumns, histRelevantCols, lobCols));
+        }
+
+        StringWriter wr = new StringWriter();
+        mergeTemplateFromResource(resourceName, wr, context);
+        String histTriggerSource = wr.toString();
+
+        duplex(ObjectType.TRIGGER, objectName, histTriggerSource);
 
         return histTriggerSource;
     }
 
     private String getPostgreSQLHistTriggerFunction (Dialect dialect,
+                                                     String objectName,
                                                      String tableName,
                                                      String histTableName,
+                                                     String outboxTableName,
                                                      String histColName,
                                                      Set<String> columns,
                                                      List<String> pkColumns,
                                                      List<String> histRelevantCols,
                                                      Set<String> blobCols,
                                                      Map<String, Column> columnMap) {
-        return getHistTriggerSource(dialect, tableName + "_htr_function", tableName, histTableName, histColName, columns, pkColumns, histRelevantCols, blobCols, columnMap);
-    }
-
-    private String getHistTriggerSource (Dialect dialect,
-                                         String objectName,
-                                         String tableName,
-                                         String histTableName,
-                                         String histColName,
-                                         Set<String> columns,
-                                         List<String> pkColumns,
-                                         List<String> histRelevantCols,
-                                         Set<String> blobCols,
-                                         Map<String, Column> columnMap) {
         checkObjectName(dialect, objectName);
 
+        VelocityContext context = createHistTriggerContext(dialect, tableName, histTableName, histColName, columns, pkColumns, histRelevantCols, blobCols, columnMap);
+        context.put("objectName", objectName);
+
+        if (outboxTableName != null) {
+            putOutboxVariables(context, outboxTableName);
+        }
+
+        StringWriter wr = new StringWriter();
+        mergeTemplateFromResource(outboxTableName != null ? "HstOutboxTrigger.vm.pl.sql" : "HstTrigger.vm.pl.sql", wr, context);
+
+        return wr.toString();
+    }
+
+    private static void putOutboxVariables(VelocityContext context, String outboxTableName) {
+        context.put("outboxTableName", outboxTableName);
+        context.put("outboxSequenceName", outboxTableName + "_SEQ");
+    }
+
+    /**
+     * statement level triggers per operation reading the modified rows from transition tables, see
+     * {@link DDLGenerator.Profile#setStatementLevelHistoryTriggers(boolean)}
+     */
+    private String getPostgreSQLStatementLevelHistTriggerSql (Dialect dialect,
+                                                              String tableName,
+                                                              String histTableName,
+                                                              String histColName,
+                                                              Set<String> columns,
+                                                              List<String> pkColumns,
+                                                              List<String> histRelevantCols,
+                                                              Set<String> blobCols,
+                                                              Map<String, Column> columnMap) {
+        VelocityContext context = createHistTriggerContext(dialect, tableName, histTableName, histColName, columns, pkColumns, histRelevantCols, blobCols, columnMap);
+
+        StringBuilder sql = new StringBuilder();
+        for (String operation : Arrays.asList("I", "U", "D")) {
+            String triggerName = getProfile().getNamingStrategy().triggerName(getEntityClassName(tableName), tableName, null, "_ht" + operation);
+            String functionName = triggerName + "_function";
+            checkObjectName(dialect, triggerName);
+            checkObjectName(dialect, functionName);
+
+            context.put("objectName", functionName);
+            context.put("operation", operation);
+
+            StringWriter wr = new StringWriter();
+            mergeTemplateFromResource("postgres/HstTriggerStatementLevel.vm.pl.sql", wr, context);
+
+            sql.append(STATEMENT_SEPARATOR).append(wr.toString()).append("\n/");
+
+            sql.append(STATEMENT_SEPARATOR)
+                    .append("create trigger ").append(triggerName).append("\n")
+                    .append("after ").append("I".equals(operation) ? "insert" : "U".equals(operation) ? "update" : "delete")
+                    .append(" on ").append(tableName).append("\n")
+                    .append("referencing");
+            if (!"I".equals(operation)) {
+                sql.append(" old table as hst_old");
+            }
+            if (!"D".equals(operation)) {
+                sql.append(" new table as hst_new");
+            }
+            sql.append("\n")
+                    .append("for each statement\n")
+                    .append("execute procedure ").append(functionName).append("()");
+        }
+
+        return sql.toString();
+    }
+
+    private VelocityContext createHistTriggerContext (Dialect dialect,
+                                                      String tableName,
+                                                      String histTableName,
+                                                      String histColName,
+                                                      Set<String> columns,
+                                                      List<String> pkColumns,
+                                                      List<String> histRelevantCols,
+                                                      Set<String> blobCols,
+                                                      Map<String, Column> columnMap) {
         VelocityContext context = new VelocityContext();
 
         Set<String> hstNoNullColumns = new HashSet<String>();
@@ -2002,7 +2381,6 @@ public class CreateDDL {
             context.put("MODIFIER_COLUMN_TYPE", dialect.getTypeName(Types.VARCHAR, Constants.USER_NAME_LEN, 0, 0));
         }
         context.put("dialect", dialect);
-        context.put("objectName", objectName);
         context.put("liveTableName", tableName);
         context.put("hstTableName", histTableName);
         context.put("columns", columns);
@@ -2014,13 +2392,52 @@ public class CreateDDL {
         context.put("blobCols", blobCols);
         context.put("columnMap", columnMap);
         context.put("varcharType", dialect.getTypeName(Types.VARCHAR, 64, 0, 0));
+        context.put("transactionLocalState", getProfile().isTransactionLocalHistoryState());
 
         setNewOldVar(dialect, context);
 
-        StringWriter wr = new StringWriter();
-        mergeTemplateFromResource("HstTrigger.vm.pl.sql", wr, context);
+        return context;
+    }
 
-        return wr.toString();
+    /**
+     * @return condition of the when clause of the row level oracle history trigger, true for all inserts and deletes
+     * and for updates changing a history relevant column, null if a LOB column is history relevant since LOBs
+     * cannot be compared within the when clause or if there are no key columns telling inserts and deletes apart
+     */
+    private static String getOracleHistTriggerWhenCondition(List<String> pkColumns, List<String> histRelevantCols, Set<String> lobCols) {
+        for (String histRelevantCol : histRelevantCols) {
+            if (lobCols.contains(histRelevantCol)) {
+                return null;
+            }
+        }
+
+        if (pkColumns.isEmpty()) {
+            return null;
+        }
+
+        // all old key values are null when inserting, all new key values when deleting
+        StringBuilder condition = new StringBuilder();
+        for (String prefix : Arrays.asList("old.", "new.")) {
+            if (condition.length() > 0) {
+                condition.append(" or ");
+            }
+            condition.append(pkColumns.size() > 1 ? "(" : "");
+            for (Iterator<String> it = pkColumns.iterator(); it.hasNext(); ) {
+                condition.append(prefix).append(it.next()).append(" is null");
+                if (it.hasNext()) {
+                    condition.append(" and ");
+                }
+            }
+            condition.append(pkColumns.size() > 1 ? ")" : "");
+        }
+
+        for (String col : histRelevantCols) {
+            condition.append(" or\n      (new.").append(col).append(" is null and old.").append(col).append(" is not null) or")
+                    .append(" (new.").append(col).append(" is not null and old.").append(col).append(" is null) or")
+                    .append(" new.").append(col).append("!=old.").append(col);
+        }
+
+        return condition.toString();
     }
 
     private String getHsqlDBHistTriggerSql (Dialect dialect,
@@ -2087,17 +2504,15 @@ public class CreateDDL {
 
         String object = objWr.toString();
 
-        if (dbObjects != null) {
-            dbObjects.add(object);
-        }
+        addDBObject(object);
 
         wr.write(object);
 
-        getProfile().duplex(ObjectType.TRIGGER, triggerName, objWr.toString());
+        duplex(ObjectType.TRIGGER, triggerName, objWr.toString());
     }
 
     private String getHistTableSqlCreateString (Dialect dialect,
-                                                String sqlCreateString,
+                                                CreateTableStatement createTable,
                                                 String histTableName,
                                                 String histColName,
                                                 Set<String> columns,
@@ -2105,27 +2520,25 @@ public class CreateDDL {
                                                 IntervalPartitioning livePartitioning) {
         checkTableName(dialect, histTableName);
 
-        Matcher matcher = TBL_PATTERN.matcher(sqlCreateString);
-        Matcher matchUnique = UNIQUE_PATTERN.matcher(sqlCreateString);
+        String sqlCreateString = createTable.getSql();
 
         StringBuilder sql = new StringBuilder();
         StringBuffer additionalObjects = new StringBuffer();
 
-        // try matching create table sql with PK definition
-        if (!matcher.matches()) {
-            matcher = TBL_PATTERN_WO_PK.matcher(sqlCreateString);
+        // try create table sql with PK definition
+        if (!createTable.hasPrimaryKey()) {
 
             // next try without PD definition (e.g. for CollectionTable)
-            if (!matcher.matches()) {
+            if (!createTable.isTable()) {
                 throw new IllegalStateException("cannot find create table in sql: " + sqlCreateString);
             }
 
-            sql.append(sqlCreateString.substring(0, matcher.start(TBL_PATTERN_WO_PK_IDX_TBLNAME))).append(histTableName);
-            sql.append(sqlCreateString.substring(matcher.end(TBL_PATTERN_WO_PK_IDX_TBLNAME), matcher.end(TBL_PATTERN_WO_PK_IDX_BEFORE_COL_DEF)));
+            sql.append(sqlCreateString.substring(0, createTable.getTableNameStart())).append(histTableName);
+            sql.append(sqlCreateString.substring(createTable.getTableNameEnd(), createTable.getOpenParen() + 1));
             sql.append(formatColumn(dialect, HIST_TABLE_PK_COLUMN_NAME+" ${varcharType} not null", Constants.UUID_LEN, null, null)).append(", ");
             sql.append(formatColumn(dialect, HIST_OPERATION_COLUMN_NAME+" ${varcharType} not null", 1, null, null)).append(", ");
 
-            sql.append(sqlCreateString.substring(matcher.end(TBL_PATTERN_WO_PK_IDX_BEFORE_COL_DEF), matcher.start(TBL_PATTERN_WO_PK_IDX_AFTER_COL_DEF)));
+            sql.append(sqlCreateString.substring(createTable.getOpenParen() + 1, createTable.getCloseParen()));
 
             sql.append(", ");
 
@@ -2143,38 +2556,38 @@ public class CreateDDL {
             sql.append(histColName);
             sql.append(")");
 
-            sql.append(sqlCreateString.substring(matcher.start(TBL_PATTERN_WO_PK_IDX_AFTER_COL_DEF)));
+            sql.append(sqlCreateString.substring(createTable.getCloseParen()));
         }
         else {
-            String liveTableName = matcher.group(TBL_PATTERN_IDX_TBLNAME).toLowerCase();
+            CreateTableStatement.PrimaryKey pk = createTable.getPrimaryKey();
 
-            sql.append(sqlCreateString.substring(0, matcher.start(TBL_PATTERN_IDX_TBLNAME))).append(histTableName);
-            sql.append(sqlCreateString.substring(matcher.end(TBL_PATTERN_IDX_TBLNAME), matcher.start(TBL_PATTERN_IDX_TBL_DEF)));
+            sql.append(sqlCreateString.substring(0, createTable.getTableNameStart())).append(histTableName);
+            sql.append(sqlCreateString.substring(createTable.getTableNameEnd(), createTable.getOpenParen() + 1));
             sql.append(formatColumn(dialect, HIST_TABLE_PK_COLUMN_NAME+" ${varcharType} not null", Constants.UUID_LEN, null, null)).append(", ");
             sql.append(formatColumn(dialect, HIST_OPERATION_COLUMN_NAME+" ${varcharType} not null", 1, null, null)).append(", ");
 
-            sql.append(sqlCreateString.substring(matcher.start(TBL_PATTERN_IDX_TBL_DEF), matcher.start(TBL_PATTERN_IDX_PK_START)));
+            sql.append(sqlCreateString.substring(createTable.getOpenParen() + 1, pk.getStart()));
 
             if (!columns.contains(histColName)) {
                 sql.append(" ").append(formatColumn(dialect, histColName+" ${timestampType} not null", null, null, null)).append(",");
             }
 
-            String pkConstraintName = matcher.group(TBL_PATTERN_IDX_PK_NAME);
+            String pkConstraintName = pk.getConstraintName();
             if (pkConstraintName != null) {
-                sql.append(sqlCreateString.substring(matcher.start(TBL_PATTERN_IDX_PK_START), matcher.start(TBL_PATTERN_IDX_PK_NAME)));
+                sql.append(sqlCreateString.substring(pk.getStart(), pk.getNameStart()));
 
                 int shortNameEndIdx = pkConstraintName.indexOf('_');
                 if (shortNameEndIdx < 0) {
                     shortNameEndIdx = 0;
                 }
                 sql.append(getHistTableShortNameFromLiveTableShortName(pkConstraintName.substring(0, shortNameEndIdx))).append(pkConstraintName.substring(shortNameEndIdx));
-                sql.append(sqlCreateString.substring(matcher.end(TBL_PATTERN_IDX_PK_NAME), matcher.start(TBL_PATTERN_IDX_PK_COLLIST)));
+                sql.append(sqlCreateString.substring(pk.getNameEnd(), pk.getColumnListStart()));
             }
             else {
-                sql.append(sqlCreateString.substring(matcher.start(TBL_PATTERN_IDX_PK_START), matcher.start(TBL_PATTERN_IDX_PK_COLLIST)));
+                sql.append(sqlCreateString.substring(pk.getStart(), pk.getColumnListStart()));
             }
             sql.append(HIST_TABLE_PK_COLUMN_NAME).append(")");
-            String constraintColumns = matcher.group(TBL_PATTERN_IDX_PK_COLLIST) + ", " + histColName;
+            String constraintColumns = pk.getColumnList() + ", " + histColName;
 
             if (livePartitioning != null && livePartitioning.useLocalPK()) {
                 if (!histColName.equals(livePartitioning.columnName().toLowerCase())) {
@@ -2189,68 +2602,78 @@ public class CreateDDL {
                 sql.append(")");
             }
 
-            int restIdx = matcher.end(TBL_PATTERN_IDX_PK_CLAUSE);
-            while (matchUnique.find(restIdx)) {
-                restIdx = matchUnique.end(1);
+            // skip unique constraints of the live table
+            int restIdx = pk.getClauseEnd();
+            for (CreateTableStatement.UniqueClause unique : createTable.getUniqueClauses()) {
+                if (unique.getCommaIdx() >= restIdx) {
+                    restIdx = unique.getEnd();
+                }
             }
 
             sql.append(sqlCreateString.substring(restIdx));
         }
 
-        Matcher uniqueColMatcher = COL_PATTERN.matcher(sql.toString());
-        int colIdx = 0;
-        while (uniqueColMatcher.find(colIdx)) {
-            String colName = TableConfig.getIdentifierForReference(uniqueColMatcher.group(COL_PATTERN_IDX_COLNAME));
+        CreateTableStatement hstTable = CreateTableStatement.parse(sql.toString());
+        CreateTableStatement.Editor editor = hstTable.edit();
+        for (CreateTableStatement.Column column : hstTable.getColumns()) {
+            String colName = TableConfig.getIdentifierForReference(column.getName());
 //                remove unique constraint from single column
-            if (uniqueColMatcher.group(COL_PATTERN_IDX_UNIQUE) != null) {
-                sql.delete(uniqueColMatcher.start(COL_PATTERN_IDX_UNIQUE), uniqueColMatcher.end(COL_PATTERN_IDX_UNIQUE));
-                colIdx = uniqueColMatcher.start();
-                uniqueColMatcher = COL_PATTERN.matcher(sql.toString());
+            if (column.isUnique()) {
+                editor.delete(column.getUniqueStart(), column.getUniqueEnd());
             }
 //                remove not null constraints
-            else if (!colName.equals(HIST_OPERATION_COLUMN_NAME) &&
+            if (!colName.equals(HIST_OPERATION_COLUMN_NAME) &&
                     !colName.equals(histColName) &&
-                    uniqueColMatcher.group(COL_PATTERN_IDX_NOT) != null) {
-                sql.delete(uniqueColMatcher.start(COL_PATTERN_IDX_NOTNULL), uniqueColMatcher.end(COL_PATTERN_IDX_NOTNULL));
-                colIdx = uniqueColMatcher.start();
-                uniqueColMatcher = COL_PATTERN.matcher(sql.toString());
+                    column.isNotNull()) {
+                editor.delete(column.getNullClauseStart(), column.getNullClauseEnd());
             }
             else if (colName.equals(histColName)) {
-                String addCol = ", " + HIST_INVALID_TIMESTAMP_COLUMN_NAME + " " + uniqueColMatcher.group(COL_PATTERN_IDX_TYPE);
-                sql.insert(uniqueColMatcher.end()-1, addCol);
-                colIdx = uniqueColMatcher.end() + addCol.length();
-                uniqueColMatcher = COL_PATTERN.matcher(sql.toString());
-            }
-            else {
-                colIdx = uniqueColMatcher.end();
+                editor.insert(column.getEnd() - 1, ", " + HIST_INVALID_TIMESTAMP_COLUMN_NAME + " " + column.getType());
             }
         }
+        hstTable = editor.apply();
 
         if (supportsPartitioning(dialect) && livePartitioning != null) {
-            sqlCreateString = addPartitioning(additionalObjects, livePartitioning, histTableName, sql.toString(), columns, pkCols);
-        }
-        else {
-            sqlCreateString = sql.toString();
+            hstTable = addPartitioning(additionalObjects, livePartitioning, histTableName, hstTable, columns, pkCols);
         }
 
-        sqlCreateString = addConstraintsAndNames(dialect, additionalObjects, sqlCreateString, histTableName.toLowerCase(), null);
+        hstTable = addConstraintsAndNames(dialect, additionalObjects, hstTable, histTableName.toLowerCase(), null);
+        sqlCreateString = hstTable.getSql();
 //        not adding default values to history tables, this will make investigations very hard
 //        sqlCreateString = addDefaultValues(sqlCreateString, histTableName.toLowerCase());
 
-        getProfile().duplex(ObjectType.TABLE, histTableName, sqlCreateString);
+        duplex(ObjectType.TABLE, histTableName, sqlCreateString);
 
         return sqlCreateString + additionalObjects.toString();
     }
     
-    private static void mergeTemplateFromResource(String resource, Writer wr, VelocityContext context) {
+    private void mergeTemplateFromResource(String resource, Writer wr, VelocityContext context) {
+        if (!getProfile().hasGenerationListeners()) {
+            templateCache.merge(resource, context, wr);
+            return;
+        }
+
+        long start = System.nanoTime();
+        StringWriter merged = new StringWriter();
+        templateCache.merge(resource, context, merged);
+        String ddl = merged.toString();
+        getProfile().phaseCompleted(GenerationPhase.TEMPLATE, resource, start, 1, ddl.length());
+
         try {
-            Velocity.evaluate(context, wr, CreateDDL.class.getName()+"#"+resource,
-                    new InputStreamReader(new SequenceInputStream(CreateDDL.class.getResourceAsStream("setVars.vm"), CreateDDL.class.getResourceAsStream(resource)), "UTF-8"));
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
+            wr.write(ddl);
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot write merged template " + resource, e);
         }
     }
 
+    private static int countStatements(String sql) {
+        int count = 1;
+        for (int idx = sql.indexOf(STATEMENT_SEPARATOR); idx >= 0; idx = sql.indexOf(STATEMENT_SEPARATOR, idx + STATEMENT_SEPARATOR.length())) {
+            count++;
+        }
+        return count;
+    }
+
     private static Set<String> getI18NEntityColumns (Set<String> columns) {
         Set<String> colSet = new HashSet<String>();
         for (String columnName : columns) {
@@ -2269,15 +2692,44 @@ public class CreateDDL {
         tableName = tableName.toLowerCase();
         List<String> dropSqls = tblNameToDropObjectsSql.get(tableName);
         if (dropSqls == null) {
-            tblNameToDropObjectsSql.put(tableName, dropSqls = new ArrayList<String>());
+            List<String> newDropSqls = Collections.synchronizedList(new ArrayList<String>());
+            dropSqls = tblNameToDropObjectsSql.putIfAbsent(tableName, newDropSqls);
+            if (dropSqls == null) {
+                dropSqls = newDropSqls;
+            }
         }
         dropSqls.add(dropSql);
+
+        TableEnhancement enhancement = currentTableEnhancement.get();
+        if (enhancement != null) {
+            enhancement.getFragment().addDropStatement(tableName, dropSql);
+        }
     }
 
     public List<String> getDBObjects() {
         return dbObjects;
     }
 
+    private void addDBObject(String object) {
+        TableEnhancement enhancement = currentTableEnhancement.get();
+        if (enhancement != null) {
+            enhancement.getFragment().addDBObject(object);
+        }
+        else {
+            dbObjects.add(object);
+        }
+    }
+
+    private void duplex(ObjectType objectType, String objectName, String ddl) {
+        TableEnhancement enhancement = currentTableEnhancement.get();
+        if (enhancement != null) {
+            enhancement.getFragment().addDuplexedDdl(objectType, objectName, ddl);
+        }
+        else {
+            getProfile().duplex(objectType, objectName, ddl);
+        }
+    }
+
     public void initViewsAndRegisterDDLs (Dialect dialect, DDLGenerator.AddDDLEntry... addDDLEntries) {
         List<DDLGenerator.AddDDLEntry> ddls = getProfile().getAllDdls();
 
@@ -2314,33 +2766,44 @@ public class CreateDDL {
     private DDLGenerator.AddDDLEntry getAddDDL () {
         return new DDLGenerator.AddDDLEntry(new Reader() {
 
-            StringReader reader;
+            Reader header;
+            Reader deferred;
 
             @Override
             public int read(char[] cbuf, int off, int len) throws IOException {
-                if (reader == null) {
+                if (header == null) {
                     StringBuilder ddl = new StringBuilder();
-                    if (deferredDdl.length() > 0) {
+                    if (!deferredDdl.isEmpty()) {
                         ddl.append(STATEMENT_SEPARATOR);
                         ddl.append("-- deferred DDL executed after creation of entities\n")
                                 .append("-- DO NOT EDIT MANUALLY!\n");
 
-                        if (deferredDdl.indexOf(LANGUAGE_VIEW_NAME)>=0) {
+                        if (languageViewRequired) {
                             ddl.append(STATEMENT_SEPARATOR);
                             ddl.append("create or replace view ").append(LANGUAGE_VIEW_NAME).append(" as\n")
                                     .append("select 'DE' language_cd from dual union all\n")
                                     .append("select 'EN' language_cd from dual;");
                         }
-                        ddl.append(deferredDdl);
+                        deferred = deferredDdl.getReader();
                     }
 
-                    reader = new StringReader(ddl.toString());
+                    header = new StringReader(ddl.toString());
+                }
+
+                int read = header.read(cbuf, off, len);
+                if (read < 0 && deferred != null) {
+                    read = deferred.read(cbuf, off, len);
+                    if (read < 0) {
+                        close();
+                    }
                 }
-                return reader.read(cbuf, off, len);
+                return read;
             }
 
             @Override
             public void close() throws IOException {
+                deferred = null;
+                deferredDdl.close();
             }
         });
     }
@@ -2360,7 +2823,7 @@ public class CreateDDL {
         }
     }
 
-    private static String getNameAndIfExistsWhenSupported(Dialect dialect, String objectName) {
+    static String getNameAndIfExistsWhenSupported(Dialect dialect, String objectName) {
         if (supportsDropIfExists(dialect)) {
             if (isPostgreSql(dialect)) {
                 return "if exists " + objectName;
@@ -2370,15 +2833,15 @@ public class CreateDDL {
         return objectName;
     }
 
-    private static boolean isPostgreSql(Dialect dialect) {
+    static boolean isPostgreSql(Dialect dialect) {
         return dialect.getClass().getSimpleName().toLowerCase().contains("postgres");
     }
 
-    private static boolean isHsqlDB(Dialect dialect) {
+    static boolean isHsqlDB(Dialect dialect) {
         return dialect.getClass().getName().toLowerCase().contains("hsql");
     }
 
-    private static boolean isOracle(Dialect dialect) {
+    static boolean isOracle(Dialect dialect) {
         return dialect.getClass().getSimpleName().toLowerCase().contains("oracle");
     }
 
@@ -2397,4 +2860,90 @@ public class CreateDDL {
     private static boolean supportsDropIfExists(Dialect dialect) {
         return !isOracle(dialect);
     }
-}
\ No newline at end of file
+
+    /**
+     * Enhancement of one create table statement, either executed directly or forked into the table enhancement pool.
+     * Deferred DDL, duplexed DDL and db objects are recorded in a {@link TableFragment} per table to keep the generated
+     * output in the order hibernate requested the tables and to be able to cache the fragment.
+     */
+    private class TableEnhancement extends RecursiveTask<String> {
+        private final int seq;
+        private final Dialect dialect;
+        private final String sql;
+        private final String tableName;
+        private final Map columnMap;
+        private final TableConfig tableConfig;
+        private final Set<String> duplicateSequenceNames;
+        private final TableFragment fragment = new TableFragment();
+
+        private TableEnhancement(Dialect dialect, String sql, String tableName, Map columnMap, TableConfig tableConfig, Set<String> duplicateSequenceNames) {
+            this.seq = tableEnhancementSeq.getAndIncrement();
+            this.dialect = dialect;
+            this.sql = sql;
+            this.tableName = tableName;
+            this.columnMap = columnMap;
+            this.tableConfig = tableConfig;
+            this.duplicateSequenceNames = duplicateSequenceNames;
+
+        }
+
+        @Override
+        protected String compute() {
+            currentTableEnhancement.set(this);
+            try {
+                return enhanceCreateTable(this);
+            } finally {
+                currentTableEnhancement.remove();
+            }
+        }
+
+        private void replay() {
+            for (Object[] duplexedDdl : fragment.getDuplexedDdls()) {
+                getProfile().duplex((ObjectType) duplexedDdl[0], (String) duplexedDdl[1], (String) duplexedDdl[2]);
+            }
+            CreateDDL.this.dbObjects.addAll(fragment.getDBObjects());
+
+            StringBuffer tableDeferredDdl = fragment.getDeferredDdl();
+            if (tableDeferredDdl.indexOf(LANGUAGE_VIEW_NAME) >= 0) {
+                languageViewRequired = true;
+            }
+            deferredDdl.append(tableDeferredDdl);
+        }
+
+        public String getPlaceholder() {
+            return "-- pending enhancement #" + seq + " of table " + tableName;
+        }
+
+        public Dialect getDialect() {
+            return dialect;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public Map getColumnMap() {
+            return columnMap;
+        }
+
+        public TableConfig getTableConfig() {
+            return tableConfig;
+        }
+
+        public Set<String> getDuplicateSequenceNames() {
+            return duplicateSequenceNames;
+        }
+
+        public StringBuffer getDeferredDdl() {
+            return fragment.getDeferredDdl();
+        }
+
+        public TableFragment getFragment() {
+            return fragment;
+        }
+    }
+}
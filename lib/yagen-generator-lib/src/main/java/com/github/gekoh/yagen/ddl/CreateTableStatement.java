@@ -0,0 +1,961 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Structured model of a <code>create table</code> statement as rendered by hibernate.
+ * The statement is tokenized in one single pass, all positions refer to the original sql text.
+ * Modifications are collected using an {@link Editor} which renders a new statement from the
+ * original text in one pass, the resulting statement is tokenized again lazily on first access.
+ *
+ * @author Georg Kohlweiss
+ */
+public class CreateTableStatement {
+
+    private static final String CREATE_TABLE = "create table";
+
+    private final String sql;
+
+    private boolean parsed;
+    private boolean table;
+
+    private int tableKeywordStart = -1;
+    private int tableNameStart = -1;
+    private int tableNameEnd = -1;
+    private int openParen = -1;
+    private int closeParen = -1;
+    private int partitionClauseStart = -1;
+
+    private List<Column> columns;
+    private PrimaryKey primaryKey;
+    private List<UniqueClause> uniqueClauses;
+
+    private CreateTableStatement(String sql) {
+        this.sql = sql;
+    }
+
+    public static CreateTableStatement parse(String sql) {
+        return new CreateTableStatement(sql);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    @Override
+    public String toString() {
+        return sql;
+    }
+
+    /**
+     * @return true if the sql could be tokenized as a <code>create table</code> statement
+     */
+    public boolean isTable() {
+        ensureParsed();
+        return table;
+    }
+
+    /**
+     * @return position of keyword <code>table</code> following <code>create</code>
+     */
+    public int getTableKeywordStart() {
+        ensureTable();
+        return tableKeywordStart;
+    }
+
+    public String getTableName() {
+        ensureTable();
+        return sql.substring(tableNameStart, tableNameEnd);
+    }
+
+    public int getTableNameStart() {
+        ensureTable();
+        return tableNameStart;
+    }
+
+    public int getTableNameEnd() {
+        ensureTable();
+        return tableNameEnd;
+    }
+
+    /**
+     * @return position of the opening parenthesis of the column definition list
+     */
+    public int getOpenParen() {
+        ensureTable();
+        return openParen;
+    }
+
+    /**
+     * @return position of the closing parenthesis of the column definition list
+     */
+    public int getCloseParen() {
+        ensureTable();
+        return closeParen;
+    }
+
+    public String getPartitionClause() {
+        ensureTable();
+        return partitionClauseStart < 0 ? null : sql.substring(partitionClauseStart);
+    }
+
+    /**
+     * @return column definitions, empty if the sql is no <code>create table</code> statement
+     */
+    public List<Column> getColumns() {
+        ensureParsed();
+        return table ? columns : Collections.<Column>emptyList();
+    }
+
+    public Column getColumn(String name) {
+        for (Column column : getColumns()) {
+            if (column.getName().equalsIgnoreCase(name)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    public boolean hasPrimaryKey() {
+        ensureParsed();
+        return primaryKey != null;
+    }
+
+    public PrimaryKey getPrimaryKey() {
+        ensureTable();
+        return primaryKey;
+    }
+
+    public List<UniqueClause> getUniqueClauses() {
+        ensureParsed();
+        return table ? uniqueClauses : Collections.<UniqueClause>emptyList();
+    }
+
+    public Editor edit() {
+        return new Editor(this);
+    }
+
+    private void ensureTable() {
+        ensureParsed();
+        if (!table) {
+            throw new IllegalStateException("cannot find create table statement in sql: " + sql);
+        }
+    }
+
+    private void ensureParsed() {
+        if (parsed) {
+            return;
+        }
+        parsed = true;
+
+        int createIdx = sql.lastIndexOf(CREATE_TABLE);
+        while (createIdx >= 0) {
+            if (tokenize(createIdx)) {
+                table = true;
+                return;
+            }
+            createIdx = createIdx > 0 ? sql.lastIndexOf(CREATE_TABLE, createIdx - 1) : -1;
+        }
+
+        columns = null;
+        primaryKey = null;
+        uniqueClauses = null;
+    }
+
+    private boolean tokenize(int createIdx) {
+        int len = sql.length();
+        int idx = createIdx + CREATE_TABLE.length();
+        int tblKeyword = createIdx + "create ".length();
+
+        int nameStart = skipWhitespace(idx);
+        if (nameStart == idx) {
+            return false;
+        }
+        int nameEnd = scanIdentifier(nameStart);
+        if (nameEnd < 0) {
+            return false;
+        }
+        int paren = skipWhitespace(nameEnd);
+        if (paren >= len || sql.charAt(paren) != '(') {
+            return false;
+        }
+
+        List<Column> cols = new ArrayList<Column>();
+        List<UniqueClause> uniques = new ArrayList<UniqueClause>();
+        PrimaryKey pk = null;
+
+        int elementStart = paren + 1;
+        int depth = 0;
+        int close = -1;
+
+        for (idx = paren + 1; idx < len && close < 0; idx++) {
+            char c = sql.charAt(idx);
+            if (c == '\'' || c == '"' || c == '`') {
+                idx = skipQuoted(idx);
+            }
+            else if (c == '(') {
+                depth++;
+            }
+            else if (c == ')' && depth > 0) {
+                depth--;
+            }
+            else if (c == ',' && depth == 0 || c == ')') {
+                boolean last = c == ')';
+                if (last) {
+                    close = idx;
+                }
+
+                Column column = tokenizeColumn(elementStart, idx);
+                if (column != null) {
+                    cols.add(column);
+                }
+                else {
+                    PrimaryKey elementPk = tokenizePrimaryKey(elementStart, idx);
+                    if (elementPk != null) {
+                        pk = elementPk;
+                    }
+                    else {
+                        UniqueClause unique = tokenizeUnique(elementStart, idx);
+                        if (unique != null) {
+                            uniques.add(unique);
+                        }
+                    }
+                }
+                elementStart = idx + 1;
+            }
+        }
+
+        if (close < 0) {
+            return false;
+        }
+
+        tableKeywordStart = tblKeyword;
+        tableNameStart = nameStart;
+        tableNameEnd = nameEnd;
+        openParen = paren;
+        closeParen = close;
+
+        int partIdx = skipWhitespace(close + 1);
+        if (sql.startsWith("partition", partIdx) && isWhitespace(partIdx + "partition".length())) {
+            partitionClauseStart = partIdx;
+        }
+
+        columns = Collections.unmodifiableList(cols);
+        primaryKey = pk;
+        uniqueClauses = Collections.unmodifiableList(uniques);
+        return true;
+    }
+
+    /**
+     * tokenizes one column definition <code>name type [default expr] [[constraint name] [not] null] [[constraint name] unique]</code>
+     * from an element of the column definition list
+     */
+    private Column tokenizeColumn(int start, int terminator) {
+        int nameStart = skipWhitespace(start);
+        int nameEnd = scanColumnName(nameStart, terminator);
+        if (nameEnd < 0 || isKeyword(nameStart, nameEnd)) {
+            return null;
+        }
+
+        int typeStart = skipWhitespace(nameEnd);
+        if (typeStart == nameEnd) {
+            return null;
+        }
+        int typeEnd = scanType(typeStart, terminator);
+        if (typeEnd < 0) {
+            return null;
+        }
+
+        Column column = new Column();
+        column.start = start;
+        column.nameStart = nameStart;
+        column.nameEnd = nameEnd;
+        column.typeStart = typeStart;
+        column.typeEnd = typeEnd;
+
+        int idx = typeEnd;
+
+        // [ws]+ default [ws]* expr
+        int kw = skipWhitespace(idx);
+        if (kw > idx && startsWithKeyword(kw, "default", terminator)) {
+            int valueStart = skipWhitespace(kw + "default".length());
+            int valueEnd = valueStart;
+            while (valueEnd < terminator && !isWhitespace(valueEnd)) {
+                valueEnd++;
+            }
+            column.defaultValue = sql.substring(valueStart, valueEnd);
+            idx = valueEnd;
+        }
+
+        // ([ws]+ constraint [ws]+ name)? ([ws]+ not)? [ws]+ null
+        int[] constraintName = new int[3];
+        int clauseEnd = scanNamedClause(idx, terminator, constraintName, true);
+        if (clauseEnd >= 0) {
+            column.nullClauseStart = idx;
+            column.nullClauseEnd = clauseEnd;
+            column.nullConstraintNameStart = constraintName[0];
+            column.nullConstraintNameEnd = constraintName[1];
+            column.notNull = constraintName[2] != 0;
+            idx = clauseEnd;
+        }
+
+        // ([ws]+ constraint [ws]+ name)? [ws]+ unique
+        clauseEnd = scanNamedClause(idx, terminator, constraintName, false);
+        if (clauseEnd >= 0) {
+            column.uniqueStart = idx;
+            column.uniqueEnd = clauseEnd;
+            column.uniqueConstraintNameStart = constraintName[0];
+            column.uniqueConstraintNameEnd = constraintName[1];
+            idx = clauseEnd;
+        }
+
+        // anything else up to the terminator must not contain nested parentheses
+        if (sql.indexOf('(', idx) >= 0 && sql.indexOf('(', idx) < terminator) {
+            return null;
+        }
+
+        column.end = terminator + 1;
+        return column;
+    }
+
+    /**
+     * scans <code>([ws]+ constraint [ws]+ name)? [ws]+ unique</code> or <code>([ws]+ constraint [ws]+ name)? ([ws]+ not)? [ws]+ null</code>
+     * beginning at idx, name positions are returned in constraintName[0..1], constraintName[2] is set to 1 if
+     * the null clause is preceded by not
+     * @return the end position of the clause or -1 if there is none
+     */
+    private int scanNamedClause(int idx, int terminator, int[] constraintName, boolean nullClause) {
+        constraintName[0] = -1;
+        constraintName[1] = -1;
+        constraintName[2] = 0;
+
+        int kw = skipWhitespace(idx);
+        if (kw == idx) {
+            return -1;
+        }
+
+        if (startsWithKeyword(kw, "constraint", terminator)) {
+            int afterKw = kw + "constraint".length();
+            int nameStart = skipWhitespace(afterKw);
+            int nameEnd = nameStart > afterKw ? scanIdentifier(nameStart) : -1;
+            if (nameEnd > 0 && nameEnd <= terminator) {
+                int next = skipWhitespace(nameEnd);
+                if (next > nameEnd) {
+                    constraintName[0] = nameStart;
+                    constraintName[1] = nameEnd;
+                    idx = nameEnd;
+                    kw = next;
+                }
+            }
+        }
+
+        if (nullClause) {
+            boolean not = false;
+            if (startsWithKeyword(kw, "not", terminator)) {
+                int afterNot = kw + "not".length();
+                int next = skipWhitespace(afterNot);
+                if (next > afterNot) {
+                    not = true;
+                    kw = next;
+                }
+            }
+            if (startsWithKeyword(kw, "null", terminator)) {
+                constraintName[2] = not ? 1 : 0;
+                return kw + "null".length();
+            }
+        }
+        else if (startsWithKeyword(kw, "unique", terminator)) {
+            return kw + "unique".length();
+        }
+
+        constraintName[0] = -1;
+        constraintName[1] = -1;
+        return -1;
+    }
+
+    /**
+     * tokenizes <code>[constraint name] primary key (col[, col]*)</code>
+     */
+    private PrimaryKey tokenizePrimaryKey(int start, int terminator) {
+        if (start < 1 || sql.charAt(start - 1) != ',') {
+            return null;
+        }
+        int kw = skipWhitespace(start);
+        int nameStart = -1, nameEnd = -1;
+
+        if (startsWithKeyword(kw, "constraint", terminator)) {
+            int afterKw = kw + "constraint".length();
+            nameStart = skipWhitespace(afterKw);
+            nameEnd = nameStart > afterKw ? scanIdentifier(nameStart) : -1;
+            if (nameEnd < 0) {
+                return null;
+            }
+            kw = skipWhitespace(nameEnd);
+            if (kw == nameEnd) {
+                return null;
+            }
+        }
+
+        if (!sql.startsWith("primary key", kw)) {
+            return null;
+        }
+        int clauseStart = kw;
+        int listParen = skipWhitespace(kw + "primary key".length());
+        int listEnd = scanColumnList(listParen, terminator);
+        if (listEnd < 0) {
+            return null;
+        }
+
+        PrimaryKey pk = new PrimaryKey();
+        pk.commaIdx = start - 1;
+        pk.start = start;
+        pk.nameStart = nameStart;
+        pk.nameEnd = nameEnd;
+        pk.clauseStart = clauseStart;
+        pk.columnListStart = listParen + 1;
+        pk.columnListEnd = listEnd;
+        pk.clauseEnd = listEnd + 1;
+        return pk;
+    }
+
+    /**
+     * tokenizes <code>[constraint name] unique (col[, col]*)</code>
+     */
+    private UniqueClause tokenizeUnique(int start, int terminator) {
+        if (start < 1 || sql.charAt(start - 1) != ',') {
+            return null;
+        }
+        int kw = skipWhitespace(start);
+        int nameStart = -1, nameEnd = -1;
+
+        if (startsWithKeyword(kw, "constraint", terminator)) {
+            int afterKw = kw + "constraint".length();
+            nameStart = skipWhitespace(afterKw);
+            nameEnd = nameStart > afterKw ? scanIdentifier(nameStart) : -1;
+            if (nameEnd < 0) {
+                return null;
+            }
+            kw = skipWhitespace(nameEnd);
+        }
+
+        if (!startsWithKeyword(kw, "unique", terminator)) {
+            return null;
+        }
+        int listParen = skipWhitespace(kw + "unique".length());
+        int listEnd = scanColumnList(listParen, terminator);
+        if (listEnd < 0) {
+            return null;
+        }
+
+        UniqueClause unique = new UniqueClause();
+        unique.commaIdx = start - 1;
+        unique.start = start;
+        unique.nameStart = nameStart;
+        unique.nameEnd = nameEnd;
+        unique.columnListStart = listParen + 1;
+        unique.columnListEnd = listEnd;
+        unique.end = listEnd + 1;
+        return unique;
+    }
+
+    /**
+     * scans <code>(col[ws]*,[ws]*col...)</code> starting at the opening parenthesis
+     * @return position of the closing parenthesis or -1
+     */
+    private int scanColumnList(int paren, int terminator) {
+        if (paren >= terminator || sql.charAt(paren) != '(') {
+            return -1;
+        }
+        int idx = paren + 1;
+        while (true) {
+            int end = scanColumnName(idx, terminator);
+            if (end < 0) {
+                return -1;
+            }
+            int next = skipWhitespace(end);
+            if (next < terminator && sql.charAt(next) == ',') {
+                idx = skipWhitespace(next + 1);
+            }
+            else {
+                return end < terminator && sql.charAt(end) == ')' ? end : -1;
+            }
+        }
+    }
+
+    /**
+     * recognizes the column types hibernate renders for the supported dialects
+     * @return end position of the type or -1 if not recognized
+     */
+    private int scanType(int idx, int terminator) {
+        if (sql.startsWith("varchar", idx)) {
+            int paren = idx + "varchar".length();
+            if (sql.startsWith("2", paren)) {
+                paren++;
+            }
+            return scanLength(paren, terminator);
+        }
+        if (sql.startsWith("number", idx)) {
+            return scanLength(idx + "number".length(), terminator);
+        }
+        if (sql.startsWith("numeric", idx)) {
+            return scanLength(idx + "numeric".length(), terminator);
+        }
+        if (sql.startsWith("timestamp", idx)) {
+            int end = idx + "timestamp".length();
+            int paren = skipWhitespace(end);
+            if (paren < terminator && sql.charAt(paren) == '(') {
+                int digit = paren + 1;
+                while (digit < terminator && Character.isDigit(sql.charAt(digit))) {
+                    digit++;
+                }
+                if (digit > paren + 1 && digit < terminator && sql.charAt(digit) == ')') {
+                    return digit + 1;
+                }
+            }
+            return end;
+        }
+        if (sql.startsWith("date", idx)) {
+            return idx + "date".length();
+        }
+        if (sql.startsWith("clob", idx) || sql.startsWith("blob", idx)) {
+            return idx + "clob".length();
+        }
+        if (sql.startsWith("char", idx)) {
+            return scanLength(idx + "char".length(), terminator);
+        }
+        if (sql.startsWith("integer", idx)) {
+            return idx + "integer".length();
+        }
+        if (sql.startsWith("int", idx)) {
+            int end = idx + "int".length();
+            while (end < terminator && Character.isDigit(sql.charAt(end))) {
+                end++;
+            }
+            return end;
+        }
+        if (sql.startsWith("bigint", idx)) {
+            return idx + "bigint".length();
+        }
+        if (sql.startsWith("bit", idx)) {
+            return idx + "bit".length();
+        }
+        if (sql.startsWith("boolean", idx)) {
+            return idx + "boolean".length();
+        }
+        if (sql.startsWith("bool", idx)) {
+            return idx + "bool".length();
+        }
+        int end = -1;
+        if (sql.startsWith("double", idx)) {
+            end = idx + "double".length();
+        }
+        else if (sql.startsWith("float", idx)) {
+            end = idx + "float".length();
+        }
+        if (end > 0 && sql.startsWith(" precision", end)) {
+            end += " precision".length();
+        }
+        return end;
+    }
+
+    /**
+     * scans <code>([^)]+)</code> directly following a type name
+     */
+    private int scanLength(int paren, int terminator) {
+        if (paren >= terminator || sql.charAt(paren) != '(') {
+            return -1;
+        }
+        int close = sql.indexOf(')', paren);
+        if (close < 0 || close == paren + 1) {
+            return -1;
+        }
+        return close + 1;
+    }
+
+    /**
+     * scans a column name, optionally quoted
+     * @return end position or -1
+     */
+    private int scanColumnName(int idx, int terminator) {
+        int start = idx;
+        if (idx < terminator && isQuote(sql.charAt(idx))) {
+            idx++;
+        }
+        int end = scanIdentifier(idx);
+        if (end < 0 || end > terminator) {
+            return -1;
+        }
+        if (end < terminator && isQuote(sql.charAt(end))) {
+            end++;
+        }
+        return end > start ? end : -1;
+    }
+
+    /**
+     * scans <code>[a-zA-Z]+[0-9a-zA-Z_]*</code>
+     * @return end position or -1
+     */
+    private int scanIdentifier(int idx) {
+        int len = sql.length();
+        if (idx >= len || !isLetter(sql.charAt(idx))) {
+            return -1;
+        }
+        idx++;
+        while (idx < len && (isLetter(sql.charAt(idx)) || Character.isDigit(sql.charAt(idx)) || sql.charAt(idx) == '_')) {
+            idx++;
+        }
+        return idx;
+    }
+
+    private boolean isKeyword(int start, int end) {
+        String word = sql.substring(start, end);
+        return "constraint".equals(word) || "primary".equals(word) || "unique".equals(word) || "check".equals(word) || "foreign".equals(word);
+    }
+
+    private boolean startsWithKeyword(int idx, String keyword, int terminator) {
+        int end = idx + keyword.length();
+        if (end > terminator || !sql.startsWith(keyword, idx)) {
+            return false;
+        }
+        return end >= sql.length() || !(isLetter(sql.charAt(end)) || Character.isDigit(sql.charAt(end)) || sql.charAt(end) == '_');
+    }
+
+    private int skipQuoted(int idx) {
+        char quote = sql.charAt(idx);
+        int end = sql.indexOf(quote, idx + 1);
+        return end < 0 ? sql.length() : end;
+    }
+
+    private int skipWhitespace(int idx) {
+        while (idx < sql.length() && isWhitespace(idx)) {
+            idx++;
+        }
+        return idx;
+    }
+
+    private boolean isWhitespace(int idx) {
+        if (idx >= sql.length()) {
+            return false;
+        }
+        char c = sql.charAt(idx);
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isQuote(char c) {
+        return c == '"' || c == '\'' || c == '`';
+    }
+
+    private String substring(int start, int end) {
+        return start < 0 ? null : sql.substring(start, end);
+    }
+
+    /**
+     * column definition within the column definition list
+     */
+    public class Column {
+        private int start;
+        private int nameStart;
+        private int nameEnd;
+        private int typeStart;
+        private int typeEnd;
+        private String defaultValue;
+        private int nullClauseStart = -1;
+        private int nullClauseEnd = -1;
+        private int nullConstraintNameStart = -1;
+        private int nullConstraintNameEnd = -1;
+        private boolean notNull;
+        private int uniqueStart = -1;
+        private int uniqueEnd = -1;
+        private int uniqueConstraintNameStart = -1;
+        private int uniqueConstraintNameEnd = -1;
+        private int end;
+
+        /**
+         * @return column name as written in the statement, may be quoted
+         */
+        public String getName() {
+            return sql.substring(nameStart, nameEnd);
+        }
+
+        public String getType() {
+            return sql.substring(typeStart, typeEnd);
+        }
+
+        public String getDefaultValue() {
+            return defaultValue;
+        }
+
+        public boolean hasNullClause() {
+            return nullClauseStart >= 0;
+        }
+
+        public boolean isNotNull() {
+            return notNull;
+        }
+
+        public String getNotNullConstraintName() {
+            return substring(nullConstraintNameStart, nullConstraintNameEnd);
+        }
+
+        public boolean isUnique() {
+            return uniqueStart >= 0;
+        }
+
+        public String getUniqueConstraintName() {
+            return substring(uniqueConstraintNameStart, uniqueConstraintNameEnd);
+        }
+
+        /**
+         * @return position after the separator preceding this column definition
+         */
+        public int getStart() {
+            return start;
+        }
+
+        public int getNameStart() {
+            return nameStart;
+        }
+
+        public int getTypeEnd() {
+            return typeEnd;
+        }
+
+        /**
+         * @return start of the null clause including leading whitespace, -1 if there is none
+         */
+        public int getNullClauseStart() {
+            return nullClauseStart;
+        }
+
+        public int getNullClauseEnd() {
+            return nullClauseEnd;
+        }
+
+        /**
+         * @return start of the unique clause including leading whitespace, -1 if there is none
+         */
+        public int getUniqueStart() {
+            return uniqueStart;
+        }
+
+        public int getUniqueEnd() {
+            return uniqueEnd;
+        }
+
+        /**
+         * @return position after the terminating comma or closing parenthesis
+         */
+        public int getEnd() {
+            return end;
+        }
+    }
+
+    /**
+     * out of line primary key clause
+     */
+    public class PrimaryKey {
+        private int commaIdx;
+        private int start;
+        private int nameStart;
+        private int nameEnd;
+        private int clauseStart;
+        private int clauseEnd;
+        private int columnListStart;
+        private int columnListEnd;
+
+        public String getConstraintName() {
+            return substring(nameStart, nameEnd);
+        }
+
+        public String getColumnList() {
+            return sql.substring(columnListStart, columnListEnd);
+        }
+
+        /**
+         * @return position of the comma separating the primary key clause from the column definitions
+         */
+        public int getCommaIdx() {
+            return commaIdx;
+        }
+
+        /**
+         * @return position after the separating comma
+         */
+        public int getStart() {
+            return start;
+        }
+
+        public int getNameStart() {
+            return nameStart;
+        }
+
+        public int getNameEnd() {
+            return nameEnd;
+        }
+
+        /**
+         * @return position of keyword <code>primary key</code>
+         */
+        public int getClauseStart() {
+            return clauseStart;
+        }
+
+        /**
+         * @return position after the closing parenthesis of the column list
+         */
+        public int getClauseEnd() {
+            return clauseEnd;
+        }
+
+        public int getColumnListStart() {
+            return columnListStart;
+        }
+
+        public int getColumnListEnd() {
+            return columnListEnd;
+        }
+    }
+
+    /**
+     * out of line unique constraint clause
+     */
+    public class UniqueClause {
+        private int commaIdx;
+        private int start;
+        private int nameStart;
+        private int nameEnd;
+        private int columnListStart;
+        private int columnListEnd;
+        private int end;
+
+        public String getConstraintName() {
+            return substring(nameStart, nameEnd);
+        }
+
+        public String getColumnList() {
+            return sql.substring(columnListStart, columnListEnd);
+        }
+
+        public int getCommaIdx() {
+            return commaIdx;
+        }
+
+        /**
+         * @return position after the separating comma
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return position after the closing parenthesis of the column list
+         */
+        public int getEnd() {
+            return end;
+        }
+    }
+
+    /**
+     * collects modifications based on positions of the tokenized statement and renders them in one pass
+     */
+    public static class Editor {
+        private final CreateTableStatement statement;
+        private final List<Modification> modifications = new ArrayList<Modification>();
+
+        private Editor(CreateTableStatement statement) {
+            this.statement = statement;
+        }
+
+        public Editor insert(int idx, String text) {
+            return replace(idx, idx, text);
+        }
+
+        public Editor delete(int start, int end) {
+            return replace(start, end, "");
+        }
+
+        public Editor replace(int start, int end, String text) {
+            if (start < 0 || end < start || end > statement.sql.length()) {
+                throw new IllegalArgumentException("invalid range [" + start + ", " + end + "] for sql: " + statement.sql);
+            }
+            modifications.add(new Modification(start, end, text, modifications.size()));
+            return this;
+        }
+
+        public boolean isModified() {
+            return !modifications.isEmpty();
+        }
+
+        public String toSql() {
+            if (modifications.isEmpty()) {
+                return statement.sql;
+            }
+            List<Modification> sorted = new ArrayList<Modification>(modifications);
+            Collections.sort(sorted);
+
+            String sql = statement.sql;
+            StringBuilder b = new StringBuilder(sql.length() + 64);
+            int idx = 0;
+            for (Modification modification : sorted) {
+                if (modification.start < idx) {
+                    throw new IllegalStateException("overlapping modifications at position " + modification.start + " for sql: " + sql);
+                }
+                b.append(sql, idx, modification.start).append(modification.text);
+                idx = modification.end;
+            }
+            b.append(sql, idx, sql.length());
+
+            return b.toString();
+        }
+
+        public CreateTableStatement apply() {
+            return modifications.isEmpty() ? statement : parse(toSql());
+        }
+    }
+
+    private static class Modification implements Comparable<Modification> {
+        private final int start;
+        private final int end;
+        private final String text;
+        private final int seq;
+
+        private Modification(int start, int end, String text, int seq) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+            this.seq = seq;
+        }
+
+        public int compareTo(Modification o) {
+            if (start != o.start) {
+                return start < o.start ? -1 : 1;
+            }
+            // pure insertions go before replacements at the same position
+            if ((start == end) != (o.start == o.end)) {
+                return start == end ? -1 : 1;
+            }
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+    }
+}
@@ -17,6 +17,7 @@ package com.github.gekoh.yagen.ddl;
 
 import com.github.gekoh.yagen.api.DefaultNamingStrategy;
 import com.github.gekoh.yagen.api.NamingStrategy;
+import com.github.gekoh.yagen.ddl.scan.ClassMetadataRepository;
 import com.github.gekoh.yagen.hibernate.PatchGlue;
 import com.github.gekoh.yagen.hibernate.PatchHibernateMappingClasses;
 import com.github.gekoh.yagen.util.DBHelper;
@@ -30,10 +31,15 @@ import org.dom4j.Node;
 import org.dom4j.io.DOMWriter;
 import org.dom4j.io.SAXReader;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.cfg.Environment;
 import org.hibernate.dialect.Dialect;
+import org.hibernate.mapping.PersistentClass;
 import org.hibernate.tool.hbm2ddl.SchemaExport;
 import org.joda.time.DateTime;
 
+import javax.persistence.Entity;
+import javax.persistence.MappedSuperclass;
+import javax.sql.DataSource;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -42,6 +48,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -49,11 +56,18 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 /**
@@ -67,9 +81,102 @@ public class DDLGenerator {
         export.setDelimiter(";");
         export.setFormat(true);
         export.setOutputFile(profile.getOutputFile());
+
+        long start = System.nanoTime();
         export.execute(true, false, false, true);
+        profile.phaseCompleted(GenerationPhase.SCHEMA_EXPORT, null, start, 0, getFileSize(profile.getOutputFile()));
 
         LOG.info("schema script written to file {}", profile.getOutputFile());
+        profile.generationCompleted();
+    }
+
+    /**
+     * Writes the schema scripts of several dialects with one hibernate configuration. The entity classes are scanned
+     * once, every dialect renders from this shared model.
+     * Hibernate does not support generating scripts of one configuration concurrently, so the dialects take turns
+     * there while the tables of each dialect get enhanced in parallel as configured in the profile and the scripts
+     * are written concurrently.
+     *
+     * @param profile profile yagen was initialized with
+     * @param dialectToOutputFile dialect class name mapped to the path of the generated ddl file
+     */
+    public void writeDDL (final Profile profile, Map<String, String> dialectToOutputFile) {
+        final SchemaExportFactory schemaExportFactory = new SchemaExportFactory();
+        final Configuration cfg = schemaExportFactory.getConfiguration(profile);
+
+        cfg.buildMappings();
+        for (Iterator<PersistentClass> it = cfg.getClassMappings(); it.hasNext(); ) {
+            profile.addPersistenceClass(it.next().getMappedClass());
+        }
+        if (cfg.getNamingStrategy() instanceof DefaultNamingStrategy) {
+            profile.setNamingStrategy((DefaultNamingStrategy) cfg.getNamingStrategy());
+        }
+        profile.setSharedModel(CreateDDL.createSharedModel(profile));
+
+        ForkJoinPool pool = new ForkJoinPool(dialectToOutputFile.size());
+        try {
+            List<Callable<String>> exports = new ArrayList<Callable<String>>();
+            for (final Map.Entry<String, String> dialectOutputFile : dialectToOutputFile.entrySet()) {
+                exports.add(new Callable<String>() {
+                    public String call() {
+                        SchemaExport export;
+                        synchronized (cfg) {
+                            export = schemaExportFactory.createSchemaExport(cfg, dialectOutputFile.getKey());
+                        }
+                        export.setDelimiter(";");
+                        export.setFormat(true);
+                        export.setOutputFile(dialectOutputFile.getValue());
+
+                        long start = System.nanoTime();
+                        export.execute(true, false, false, true);
+                        profile.phaseCompleted(GenerationPhase.SCHEMA_EXPORT, dialectOutputFile.getKey(), start, 0, getFileSize(dialectOutputFile.getValue()));
+
+                        LOG.info("{} schema script written to file {}", dialectOutputFile.getKey(), dialectOutputFile.getValue());
+                        return dialectOutputFile.getValue();
+                    }
+                });
+            }
+
+            for (Future<String> export : pool.invokeAll(exports)) {
+                try {
+                    export.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("cannot write schema script", e.getCause());
+                }
+            }
+            profile.generationCompleted();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted writing schema scripts", e);
+        } finally {
+            pool.shutdown();
+            profile.setSharedModel(null);
+        }
+    }
+
+    /**
+     * Creates the schema of the profile in an empty database, executing independent statements concurrently,
+     * see {@link SchemaDeployer}. The dialect is taken from the hibernate configuration of the profile.
+     *
+     * @param parallelism number of connections used
+     * @return statements which failed
+     */
+    public List<String> deploy (Profile profile, DataSource dataSource, int parallelism) {
+        Configuration cfg = new SchemaExportFactory().getConfiguration(profile);
+
+        long start = System.nanoTime();
+        String[] script = cfg.generateSchemaCreationScript(Dialect.getDialect(cfg.getProperties()));
+        List<String> statements = SchemaDeployer.getStatements(script);
+        profile.phaseCompleted(GenerationPhase.SCHEMA_EXPORT, null, start, statements.size(), 0);
+
+        List<String> failed = new SchemaDeployer(dataSource, parallelism).deploy(statements);
+        profile.generationCompleted();
+
+        return failed;
+    }
+
+    private static long getFileSize(String fileName) {
+        return fileName != null ? new File(fileName).length() : 0;
     }
 
     public static class SchemaExportFactory {
@@ -77,6 +184,20 @@ public class DDLGenerator {
         private Configuration cfg;
 
         public SchemaExport createSchemaExport (Profile profile) {
+            return new SchemaExport(getConfiguration(profile));
+        }
+
+        /**
+         * @return schema export of the given configuration generating the scripts for the given dialect
+         */
+        public SchemaExport createSchemaExport (Configuration configuration, String dialectClassName) {
+            Properties properties = new Properties();
+            properties.putAll(configuration.getProperties());
+            properties.setProperty(Environment.DIALECT, dialectClassName);
+            return new SchemaExport(configuration, properties);
+        }
+
+        public Configuration getConfiguration (Profile profile) {
             if (StringUtils.isNotEmpty(profile.getPersistenceUnitName())) {
 //            need to patch the class NumericBooleanType only for oracle until all applications have
 //            upgraded hibernate to 3.6.10-Final and the type specifications @Type(type = "org.hibernate.type.NumericBooleanType")
@@ -115,7 +236,7 @@ public class DDLGenerator {
                 LOG.error("cannot set persistence xml file", e);
             }
 
-            return new SchemaExport(cfg);
+            return cfg;
         }
 
         private void createConfiguration(Profile profile) {
@@ -187,10 +308,18 @@ public class DDLGenerator {
         private List<AddDDLEntry> addDdls = new ArrayList<AddDDLEntry>();
         private boolean disableFKs = false;
         private boolean noHistory = false;
+        private boolean statementLevelHistoryTriggers = false;
+        private boolean compoundHistoryTriggers = false;
+        private boolean transactionLocalHistoryState = false;
+        private int enhancementParallelism = 1;
+        private String fragmentCacheDir;
         private Pattern onlyRenderEntities;
         private Map<String, Map<String, String>> comments;
         private List<Duplexer> duplexers = new ArrayList<Duplexer>();
+        private List<GenerationListener> generationListeners = new ArrayList<GenerationListener>();
         private NamingStrategy namingStrategy;
+        private ClassMetadataRepository classMetadata;
+        private CreateDDL sharedModel;
 
         public static List<Profile> getAllProfiles() {
             return Collections.unmodifiableList(PROFILES);
@@ -243,6 +372,71 @@ public class DDLGenerator {
             this.noHistory = noHistory;
         }
 
+        public boolean isStatementLevelHistoryTriggers() {
+            return statementLevelHistoryTriggers;
+        }
+
+        /**
+         * @param statementLevelHistoryTriggers generate history triggers firing once per statement and processing all
+         *                                      modified rows set based, currently only supported for PostgreSQL (10+),
+         *                                      other databases always get row level triggers
+         */
+        public void setStatementLevelHistoryTriggers(boolean statementLevelHistoryTriggers) {
+            this.statementLevelHistoryTriggers = statementLevelHistoryTriggers;
+        }
+
+        public boolean isCompoundHistoryTriggers() {
+            return compoundHistoryTriggers;
+        }
+
+        /**
+         * @param compoundHistoryTriggers generate compound history triggers on Oracle (11g+) collecting the modified rows
+         *                                of a statement and writing the history with FORALL, other databases are not
+         *                                affected
+         */
+        public void setCompoundHistoryTriggers(boolean compoundHistoryTriggers) {
+            this.compoundHistoryTriggers = compoundHistoryTriggers;
+        }
+
+        public boolean isTransactionLocalHistoryState() {
+            return transactionLocalHistoryState;
+        }
+
+        /**
+         * @param transactionLocalHistoryState on PostgreSQL (9.6+) keep the transaction timestamp in a transaction local
+         *                                     setting and the modified rows in a session temporary table instead of the
+         *                                     logged tables HST_CURRENT_TRANSACTION and HST_MODIFIED_ROW,
+         *                                     other databases already use global temporary tables
+         */
+        public void setTransactionLocalHistoryState(boolean transactionLocalHistoryState) {
+            this.transactionLocalHistoryState = transactionLocalHistoryState;
+        }
+
+        public int getEnhancementParallelism() {
+            return enhancementParallelism;
+        }
+
+        /**
+         * @param enhancementParallelism number of threads enhancing create table statements, values greater than 1
+         *                               enable parallel generation, the generated script is the same as in serial mode
+         */
+        public void setEnhancementParallelism(int enhancementParallelism) {
+            this.enhancementParallelism = enhancementParallelism;
+        }
+
+        public String getFragmentCacheDir() {
+            return fragmentCacheDir;
+        }
+
+        /**
+         * @param fragmentCacheDir directory for caching the enhanced DDL of each table, tables are only enhanced again
+         *                         if the entity classes, profile settings, dialect or generator changed, null disables
+         *                         incremental generation
+         */
+        public void setFragmentCacheDir(String fragmentCacheDir) {
+            this.fragmentCacheDir = fragmentCacheDir;
+        }
+
         public Pattern getOnlyRenderEntities() {
             return onlyRenderEntities;
         }
@@ -301,6 +495,20 @@ public class DDLGenerator {
             entityClasses.add(clazz);
         }
 
+        /**
+         * adds all classes annotated with {@link Entity} or {@link MappedSuperclass} found in the given jars or class
+         * directories. The class files are read in parallel without loading any class, only the found persistence
+         * classes get loaded but not initialized.
+         */
+        public void addPersistenceClassesFrom(File... classPathRoots) {
+            ClassMetadataRepository repository = getClassMetadata();
+            repository.scan(Runtime.getRuntime().availableProcessors(), classPathRoots);
+
+            for (String className : repository.getClassNamesAnnotatedWith(Entity.class, MappedSuperclass.class)) {
+                entityClasses.add(repository.loadClass(className));
+            }
+        }
+
         public void addPersistenceFile (String... persistenceXmlFile) {
             for (String file : persistenceXmlFile) {
                 addPersistenceFile(getPersistenceDocument(file));
@@ -349,46 +557,45 @@ public class DDLGenerator {
             return allDdls;
         }
 
+        /**
+         * @return the given statements framed by header and additional DDL, each entry is materialized as string
+         * since hibernate's schema export takes the complete script as string array
+         */
         public String[] addDdls (String[] stmts, Dialect dialect) {
-            List<String> ddlList = new ArrayList<String>(Arrays.asList(stmts));
-
-            int idx = 0;
-            StringWriter sw = new StringWriter();
+            List<String> ddlList = new ArrayList<String>(stmts.length + headerDdls.size() + addDdls.size() + 1);
 
-            sw.write("-- auto generated by " + getClass().getName() + " at " + new DateTime()+"\n");
-            sw.write("-- DO NOT EDIT MANUALLY!");
-
-            ddlList.add(idx++, sw.toString());
+            ddlList.add("-- auto generated by " + getClass().getName() + " at " + new DateTime() + "\n" +
+                    "-- DO NOT EDIT MANUALLY!");
 
             for (AddDDLEntry addDdlFile : getHeaderDdls()) {
-                if (addDdlFile.getDependentOnEntityClass() != null && !getEntityClasses().contains(addDdlFile.getDependentOnEntityClass())) {
-                    continue;
-                }
-                sw = new StringWriter();
+                addDdl(ddlList, addDdlFile, dialect);
+            }
 
-                sw.write("-- " + addDdlFile + "\n");
-                sw.write("-- DO NOT EDIT!\n");
-                sw.write(addDdlFile.getDdlText(dialect));
-                sw.write("\n");
+            ddlList.addAll(Arrays.asList(stmts));
 
-                ddlList.add(idx++, sw.toString());
+            for (AddDDLEntry addDdlFile : getAddDdls()) {
+                addDdl(ddlList, addDdlFile, dialect);
             }
 
-            for (AddDDLEntry addDdlFile : getAddDdls()) {
-                if (addDdlFile.getDependentOnEntityClass() != null && !getEntityClasses().contains(addDdlFile.getDependentOnEntityClass())) {
-                    continue;
-                }
-                sw = new StringWriter();
+            return ddlList.toArray(new String[ddlList.size()]);
+        }
 
-                sw.write("-- " + addDdlFile + "\n");
-                sw.write("-- DO NOT EDIT!\n");
-                sw.write(addDdlFile.getDdlText(dialect));
-                sw.write("\n");
+        private void addDdl(List<String> ddlList, AddDDLEntry addDdlFile, Dialect dialect) {
+            if (addDdlFile.getDependentOnEntityClass() != null && !getEntityClasses().contains(addDdlFile.getDependentOnEntityClass())) {
+                return;
+            }
+            StringWriter sw = new StringWriter();
 
-                ddlList.add(sw.toString());
+            sw.write("-- " + addDdlFile + "\n");
+            sw.write("-- DO NOT EDIT!\n");
+            try {
+                addDdlFile.writeDdlText(dialect, sw);
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot read DDL of " + addDdlFile, e);
             }
+            sw.write("\n");
 
-            return ddlList.toArray(new String[ddlList.size()]);
+            ddlList.add(sw.toString());
         }
 
         public Set<Class> getEntityClasses() {
@@ -405,6 +612,38 @@ public class DDLGenerator {
             }
         }
 
+        /**
+         * @param generationListener receives timings, statement counts and sizes of the generation phases
+         */
+        public void addGenerationListener(GenerationListener generationListener) {
+            generationListeners.add(generationListener);
+        }
+
+        public boolean hasGenerationListeners() {
+            return !generationListeners.isEmpty();
+        }
+
+        /**
+         * reports a finished phase to all listeners, see {@link GenerationListener#phaseCompleted(GenerationPhase, String, long, int, long)}
+         *
+         * @param startNanos {@link System#nanoTime()} when the phase started
+         */
+        public void phaseCompleted(GenerationPhase phase, String objectName, long startNanos, int statementCount, long byteSize) {
+            if (generationListeners.isEmpty()) {
+                return;
+            }
+            long durationNanos = System.nanoTime() - startNanos;
+            for (GenerationListener listener : generationListeners) {
+                listener.phaseCompleted(phase, objectName, durationNanos, statementCount, byteSize);
+            }
+        }
+
+        public void generationCompleted() {
+            for (GenerationListener listener : generationListeners) {
+                listener.generationCompleted(this);
+            }
+        }
+
         public NamingStrategy getNamingStrategy() {
             return namingStrategy != null ? namingStrategy : (namingStrategy = new DefaultNamingStrategy());
         }
@@ -413,6 +652,26 @@ public class DDLGenerator {
             this.namingStrategy = namingStrategy;
         }
 
+        public CreateDDL getSharedModel() {
+            return sharedModel;
+        }
+
+        /**
+         * @param sharedModel scanned entity model used by all generators of this profile and its clones instead of
+         *                    scanning the entity classes again, null to scan for each generator
+         */
+        public void setSharedModel(CreateDDL sharedModel) {
+            this.sharedModel = sharedModel;
+        }
+
+        /**
+         * @return metadata of the persistence classes, read from class files for classes added through
+         * {@link #addPersistenceClassesFrom(File...)}
+         */
+        public ClassMetadataRepository getClassMetadata() {
+            return classMetadata != null ? classMetadata : (classMetadata = new ClassMetadataRepository());
+        }
+
         @Override
         public String toString() {
             return getName();
@@ -431,9 +690,15 @@ public class DDLGenerator {
             profile.addDdls = new ArrayList<AddDDLEntry>(this.addDdls);
             profile.disableFKs = isDisableFKs();
             profile.noHistory = isNoHistory();
+            profile.statementLevelHistoryTriggers = isStatementLevelHistoryTriggers();
+            profile.compoundHistoryTriggers = isCompoundHistoryTriggers();
+            profile.transactionLocalHistoryState = isTransactionLocalHistoryState();
+            profile.enhancementParallelism = getEnhancementParallelism();
+            profile.fragmentCacheDir = getFragmentCacheDir();
             profile.onlyRenderEntities = getOnlyRenderEntities();
             profile.comments = this.comments != null ? new HashMap<String, Map<String, String>>(this.comments) : null;
             profile.duplexers = new ArrayList<Duplexer>(this.duplexers);
+            profile.generationListeners = new ArrayList<GenerationListener>(this.generationListeners);
 
             return profile;
         }
@@ -457,19 +722,22 @@ public class DDLGenerator {
 
     public static String read(Reader reader) {
         StringWriter wr = new StringWriter();
-        char[] buf = new char[1024];
-        int read;
         try {
-
-            while ((read=reader.read(buf)) > -1) {
-                wr.write(buf, 0, read);
-            }
+            transfer(reader, wr);
         } catch (IOException e) {
             e.printStackTrace();
         }
         return wr.toString();
     }
 
+    private static void transfer(Reader reader, Writer wr) throws IOException {
+        char[] buf = new char[8192];
+        int read;
+        while ((read=reader.read(buf)) > -1) {
+            wr.write(buf, 0, read);
+        }
+    }
+
     @SuppressWarnings("UnusedDeclaration")
     public static class AddDDLEntry {
         protected URL url;
@@ -502,6 +770,19 @@ public class DDLGenerator {
             return this;
         }
 
+        /**
+         * writes the DDL text to the given writer, DDL provided by a reader is transferred without reading it into
+         * a string first
+         */
+        public void writeDdlText(Dialect dialect, Writer wr) throws IOException {
+            if (isReader()) {
+                transfer(reader, wr);
+            }
+            else {
+                wr.write(getDdlText(dialect));
+            }
+        }
+
         public String getDdlText(Dialect dialect) {
             if (ddlText != null) {
                 return ddlText;
@@ -532,7 +813,11 @@ public class DDLGenerator {
     }
 
     public static class AddTemplateDDLEntry extends AddDDLEntry {
-        private String text;
+        private Map<String, Object> variables = new HashMap<String, Object>();
+        /**
+         * rendered text per dialect class, profile clones of a multi dialect generation share their entries
+         */
+        private ConcurrentMap<Class, String> texts = new ConcurrentHashMap<Class, String>();
 
         public AddTemplateDDLEntry(URL url) {
             super(url);
@@ -542,14 +827,23 @@ public class DDLGenerator {
             super(ddlText);
         }
 
+        /**
+         * @return this entry, the variable is available in the template besides dialect and the is_* flags
+         */
+        public AddTemplateDDLEntry withVariable(String name, Object value) {
+            variables.put(name, value);
+            return this;
+        }
+
         @Override
         public String getDdlText(Dialect dialect) {
+            String text = texts.get(dialect.getClass());
             if (text == null) {
                 String dialectClassLC = dialect.getClass().getSimpleName().toLowerCase();
                 String classNameLC;
 
                 String template = super.getDdlText(dialect);
-                VelocityContext ctx = new VelocityContext();
+                VelocityContext ctx = new VelocityContext(new HashMap<String, Object>(variables));
                 ctx.put("dialect", dialect);
 
                 ctx.put("is_oracleXE", dialectClassLC.contains("oraclexe"));
@@ -570,6 +864,7 @@ public class DDLGenerator {
                 StringWriter wr = new StringWriter();
                 Velocity.evaluate(ctx, wr, url != null ? url.toString() : ddlText, template);
                 text = wr.toString();
+                texts.putIfAbsent(dialect.getClass(), text);
             }
             return text;
         }
@@ -0,0 +1,37 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+import java.io.Closeable;
+import java.io.Reader;
+
+/**
+ * Receives DDL fragments in the order they shall appear in the generated script, implementations decide whether
+ * the DDL is held in memory or written out.
+ *
+ * @author Georg Kohlweiss
+ */
+public interface DdlSink extends Closeable {
+
+    DdlSink append(CharSequence ddl);
+
+    boolean isEmpty();
+
+    /**
+     * @return reader of all DDL appended, no more DDL may be appended afterwards
+     */
+    Reader getReader();
+}
@@ -0,0 +1,39 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+/**
+ * Receives timings and sizes of the phases of a generation run, see {@link DDLGenerator.Profile#addGenerationListener(GenerationListener)}.
+ * Tables may be enhanced in parallel, so implementations need to be thread safe.
+ *
+ * @author Georg Kohlweiss
+ */
+public interface GenerationListener {
+
+    /**
+     * @param phase finished phase
+     * @param objectName table, class or template the phase worked on, null if the phase covers the whole run
+     * @param durationNanos elapsed time
+     * @param statementCount number of generated statements, 0 if the phase does not generate DDL itself
+     * @param byteSize number of generated characters, 0 if the phase does not generate DDL itself
+     */
+    void phaseCompleted(GenerationPhase phase, String objectName, long durationNanos, int statementCount, long byteSize);
+
+    /**
+     * called after all scripts of the run were written
+     */
+    void generationCompleted(DDLGenerator.Profile profile);
+}
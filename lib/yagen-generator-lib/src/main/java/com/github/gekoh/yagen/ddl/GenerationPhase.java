@@ -0,0 +1,53 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+/**
+ * Phases of a generation run reported to {@link GenerationListener}s.
+ *
+ * @author Georg Kohlweiss
+ */
+public enum GenerationPhase {
+
+    /**
+     * patching hibernate classes for yagen
+     */
+    PATCH,
+    /**
+     * hibernate building the mappings and exporting the schema script, includes all other phases of one dialect
+     */
+    SCHEMA_EXPORT,
+    /**
+     * scanning the annotations of all entity classes, reported once per generator
+     */
+    ENTITY_SCAN,
+    /**
+     * scanning the annotations of one entity class, object name is the class name
+     */
+    ENTITY,
+    /**
+     * enhancing the create table statement of one table including its dependent objects, object name is the table name
+     */
+    TABLE,
+    /**
+     * merging one velocity template, object name is the template resource
+     */
+    TEMPLATE,
+    /**
+     * collecting table and column comments of one table, object name is the table name
+     */
+    COMMENTS
+}
@@ -0,0 +1,216 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates the phases reported during a generation run and writes a machine readable (JSON) summary report
+ * with count, total and maximum duration, statements and size per phase as well as the slowest objects of each phase.
+ *
+ * @author Georg Kohlweiss
+ */
+public class GenerationSummary implements GenerationListener {
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(GenerationSummary.class);
+
+    public static final int SLOWEST_OBJECTS = 10;
+
+    private final File reportFile;
+    private final Map<GenerationPhase, PhaseSummary> phases = new EnumMap<GenerationPhase, PhaseSummary>(GenerationPhase.class);
+
+    public GenerationSummary() {
+        this(null);
+    }
+
+    /**
+     * @param reportFile file the report gets written to when the run completed, null to only aggregate
+     */
+    public GenerationSummary(File reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    public synchronized void phaseCompleted(GenerationPhase phase, String objectName, long durationNanos, int statementCount, long byteSize) {
+        PhaseSummary summary = phases.get(phase);
+        if (summary == null) {
+            phases.put(phase, summary = new PhaseSummary(phase));
+        }
+        summary.add(objectName, durationNanos, statementCount, byteSize);
+    }
+
+    public void generationCompleted(DDLGenerator.Profile profile) {
+        if (reportFile == null) {
+            return;
+        }
+        try {
+            Writer wr = new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8");
+            try {
+                writeReport(profile, wr);
+            } finally {
+                wr.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot write generation summary to " + reportFile, e);
+        }
+        LOG.info("generation summary written to file {}", reportFile);
+    }
+
+    /**
+     * @return aggregated values of the given phase, null if it was not reported
+     */
+    public synchronized PhaseSummary getPhaseSummary(GenerationPhase phase) {
+        return phases.get(phase);
+    }
+
+    public synchronized void writeReport(DDLGenerator.Profile profile, Writer wr) throws IOException {
+        wr.write("{\n  \"profile\": " + quote(profile != null ? profile.getName() : null) + ",\n  \"phases\": [");
+        boolean first = true;
+        for (PhaseSummary summary : phases.values()) {
+            wr.write(first ? "\n" : ",\n");
+            first = false;
+            summary.write(wr);
+        }
+        wr.write("\n  ]\n}\n");
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    public static class PhaseSummary {
+        private final GenerationPhase phase;
+        private int count;
+        private long totalNanos;
+        private long maxNanos;
+        private long statementCount;
+        private long byteSize;
+        private final List<ObjectTiming> slowestObjects = new ArrayList<ObjectTiming>();
+
+        private PhaseSummary(GenerationPhase phase) {
+            this.phase = phase;
+        }
+
+        private void add(String objectName, long durationNanos, int statements, long bytes) {
+            count++;
+            totalNanos += durationNanos;
+            maxNanos = Math.max(maxNanos, durationNanos);
+            statementCount += statements;
+            byteSize += bytes;
+
+            if (objectName != null) {
+                if (slowestObjects.size() < SLOWEST_OBJECTS) {
+                    slowestObjects.add(new ObjectTiming(objectName, durationNanos));
+                }
+                else if (slowestObjects.get(SLOWEST_OBJECTS - 1).durationNanos < durationNanos) {
+                    slowestObjects.set(SLOWEST_OBJECTS - 1, new ObjectTiming(objectName, durationNanos));
+                }
+                else {
+                    return;
+                }
+                Collections.sort(slowestObjects);
+            }
+        }
+
+        public GenerationPhase getPhase() {
+            return phase;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getStatementCount() {
+            return statementCount;
+        }
+
+        public long getByteSize() {
+            return byteSize;
+        }
+
+        /**
+         * @return names of the slowest objects of this phase, slowest first
+         */
+        public List<String> getSlowestObjects() {
+            List<String> names = new ArrayList<String>(slowestObjects.size());
+            for (ObjectTiming timing : slowestObjects) {
+                names.add(timing.objectName);
+            }
+            return names;
+        }
+
+        private void write(Writer wr) throws IOException {
+            wr.write("    {\n");
+            wr.write("      \"phase\": " + quote(phase.name()) + ",\n");
+            wr.write("      \"count\": " + count + ",\n");
+            wr.write("      \"totalMillis\": " + totalNanos / 1000000 + ",\n");
+            wr.write("      \"maxMillis\": " + maxNanos / 1000000 + ",\n");
+            wr.write("      \"statements\": " + statementCount + ",\n");
+            wr.write("      \"bytes\": " + byteSize + ",\n");
+            wr.write("      \"slowest\": [");
+            for (int i = 0; i < slowestObjects.size(); i++) {
+                ObjectTiming timing = slowestObjects.get(i);
+                wr.write((i > 0 ? ", " : "") + "{\"name\": " + quote(timing.objectName) + ", \"millis\": " + timing.durationNanos / 1000000 + "}");
+            }
+            wr.write("]\n    }");
+        }
+    }
+
+    private static class ObjectTiming implements Comparable<ObjectTiming> {
+        private final String objectName;
+        private final long durationNanos;
+
+        private ObjectTiming(String objectName, long durationNanos) {
+            this.objectName = objectName;
+            this.durationNanos = durationNanos;
+        }
+
+        public int compareTo(ObjectTiming o) {
+            return durationNanos > o.durationNanos ? -1 : (durationNanos < o.durationNanos ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+import com.github.gekoh.yagen.hibernate.PatchGlue;
+import com.github.gekoh.yagen.hibernate.SqlScript;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Deploys the statements of a generated schema script concurrently over several connections.
+ * Each statement is analyzed for the object it creates or modifies and the objects it refers to, e.g. an index
+ * modifies its table, a foreign key constraint modifies its table and refers to the referenced table, a view refers
+ * to all tables and views used in its query. Statements modifying the same object run in script order, statements
+ * referring to an object wait until the statements modifying it before in the script are done.
+ * Statements which cannot be analyzed like inserts act as barrier, they run after all statements before and before
+ * all statements after them.
+ * <p>
+ * Failing statements are logged and reported like in the schema export, statements depending on them are executed
+ * anyway.
+ *
+ * @author Georg Kohlweiss
+ */
+public class SchemaDeployer {
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(SchemaDeployer.class);
+
+    private static final String NAME = "[\"`]?([a-zA-Z_][a-zA-Z0-9_$#.]*)[\"`]?";
+
+    private static final Pattern CREATE_TABLE_PATTERN = Pattern.compile("^create\\s+(global\\s+temporary\\s+|cached\\s+|memory\\s+)?table\\s+" + NAME, Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_INDEX_PATTERN = Pattern.compile("^create\\s+(unique\\s+|bitmap\\s+)?index\\s+" + NAME + "\\s+on\\s+" + NAME, Pattern.CASE_INSENSITIVE);
+    private static final Pattern ALTER_TABLE_PATTERN = Pattern.compile("^alter\\s+table\\s+" + NAME, Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_OBJECT_PATTERN = Pattern.compile("^create\\s+(or\\s+replace\\s+)?(force\\s+)?(view|sequence|function|procedure|package\\s+body|package|type)\\s+" + NAME, Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_TRIGGER_PATTERN = Pattern.compile("^create\\s+(or\\s+replace\\s+)?trigger\\s+" + NAME + ".*?\\son\\s+" + NAME, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern COMMENT_PATTERN = Pattern.compile("comment\\s+on\\s+(table|column)\\s+([a-zA-Z_][a-zA-Z0-9_$#]*)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COMMENT_STATEMENT_PATTERN = Pattern.compile("^(comment|begin)\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_$#]*");
+
+    private final DataSource dataSource;
+    private final int parallelism;
+
+    /**
+     * @param parallelism number of connections and threads used to execute the statements
+     */
+    public SchemaDeployer(DataSource dataSource, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism needs to be at least 1");
+        }
+        this.dataSource = dataSource;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param script creation script as generated by hibernate with yagen enhancements
+     * @return single statements ready to be executed, comments only statements removed
+     */
+    public static List<String> getStatements(String[] script) {
+        List<String> statements = new ArrayList<String>();
+        for (String sqlCommand : script) {
+            for (SqlScript.Statement statement : SqlScript.split(sqlCommand)) {
+                if (statement.hasCode()) {
+                    statements.add(statement.getSql());
+                }
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * executes all statements, returns when all are executed
+     *
+     * @return statements which failed
+     */
+    public List<String> deploy(List<String> statements) {
+        List<Node> nodes = createPlan(statements);
+        Deployment deployment = new Deployment(nodes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "yagen-deployer-" + count.incrementAndGet());
+            }
+        });
+        try {
+            deployment.start(executor);
+            deployment.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted deploying schema", e);
+        } finally {
+            executor.shutdownNow();
+            deployment.closeConnections();
+        }
+
+        if (deployment.error != null) {
+            throw new IllegalStateException("cannot deploy schema", deployment.error);
+        }
+        LOG.info("deployed {} statements with {} connections, {} failed", new Object[]{nodes.size(), parallelism, deployment.failed.size()});
+        return deployment.failed;
+    }
+
+    /**
+     * @return statements in script order, each knowing the statements it has to wait for
+     */
+    static List<Node> createPlan(List<String> statements) {
+        List<Node> nodes = new ArrayList<Node>(statements.size());
+        Set<String> knownObjects = new LinkedHashSet<String>();
+        Map<String, Node> lastWriter = new HashMap<String, Node>();
+        Map<String, List<Node>> readersSinceWrite = new HashMap<String, List<Node>>();
+        List<Node> sinceBarrier = new ArrayList<Node>();
+        Node lastBarrier = null;
+
+        for (String sql : statements) {
+            Node node = new Node(nodes.size(), sql);
+            nodes.add(node);
+
+            if (!analyze(node, knownObjects)) {
+                node.dependsOn(lastBarrier);
+                for (Node previous : sinceBarrier) {
+                    node.dependsOn(previous);
+                }
+                // everything before is executed once the barrier is, so there is nothing else to wait for
+                sinceBarrier.clear();
+                lastWriter.clear();
+                readersSinceWrite.clear();
+                lastBarrier = node;
+                continue;
+            }
+
+            node.dependsOn(lastBarrier);
+            sinceBarrier.add(node);
+
+            for (String written : node.writes) {
+                node.dependsOn(lastWriter.get(written));
+                List<Node> readers = readersSinceWrite.remove(written);
+                if (readers != null) {
+                    for (Node reader : readers) {
+                        node.dependsOn(reader);
+                    }
+                }
+                lastWriter.put(written, node);
+            }
+            for (String read : node.reads) {
+                node.dependsOn(lastWriter.get(read));
+                List<Node> readers = readersSinceWrite.get(read);
+                if (readers == null) {
+                    readersSinceWrite.put(read, readers = new ArrayList<Node>());
+                }
+                readers.add(node);
+            }
+        }
+
+        return nodes;
+    }
+
+    /**
+     * determines the objects the statement writes and reads
+     *
+     * @param knownObjects objects created by the script so far, to be extended by objects created by the statement
+     * @return false if the statement cannot be analyzed
+     */
+    private static boolean analyze(Node node, Set<String> knownObjects) {
+        String sql = stripLeadingComments(node.sql);
+        Matcher matcher;
+
+        if ((matcher = CREATE_TABLE_PATTERN.matcher(sql)).find()) {
+            node.writes.add(matcher.group(2).toLowerCase());
+        }
+        else if ((matcher = CREATE_INDEX_PATTERN.matcher(sql)).find()) {
+            node.writes.add(matcher.group(3).toLowerCase());
+        }
+        else if ((matcher = ALTER_TABLE_PATTERN.matcher(sql)).find()) {
+            node.writes.add(matcher.group(1).toLowerCase());
+        }
+        else if ((matcher = CREATE_TRIGGER_PATTERN.matcher(sql)).find()) {
+            node.writes.add(matcher.group(2).toLowerCase());
+            node.writes.add(matcher.group(3).toLowerCase());
+        }
+        else if ((matcher = CREATE_OBJECT_PATTERN.matcher(sql)).find()) {
+            node.writes.add(matcher.group(4).toLowerCase());
+        }
+        else if ((matcher = COMMENT_PATTERN.matcher(sql)).find() && COMMENT_STATEMENT_PATTERN.matcher(sql).find()) {
+            do {
+                node.writes.add(matcher.group(2).toLowerCase());
+            } while (matcher.find());
+        }
+        else {
+            return false;
+        }
+
+        // referring to all objects of the script mentioned in the statement, may be more than necessary
+        matcher = IDENTIFIER_PATTERN.matcher(sql);
+        while (matcher.find()) {
+            String name = matcher.group().toLowerCase();
+            if (knownObjects.contains(name) && !node.writes.contains(name)) {
+                node.reads.add(name);
+            }
+        }
+
+        if (sql.regionMatches(true, 0, "create", 0, 6)) {
+            knownObjects.addAll(node.writes);
+        }
+        return true;
+    }
+
+    private static String stripLeadingComments(String sql) {
+        Matcher matcher = PatchGlue.COMMENT_PATTERN.matcher(sql);
+        int idx = 0;
+        while (matcher.find(idx) && sql.substring(idx, matcher.start()).trim().length() < 1) {
+            idx = matcher.end();
+        }
+        return sql.substring(idx).trim();
+    }
+
+    static class Node {
+        private final int seq;
+        private final String sql;
+        private final Set<String> writes = new LinkedHashSet<String>();
+        private final Set<String> reads = new LinkedHashSet<String>();
+        private final Set<Node> dependencies = new LinkedHashSet<Node>();
+        private final List<Node> dependents = new ArrayList<Node>();
+        private int pendingDependencies;
+
+        private Node(int seq, String sql) {
+            this.seq = seq;
+            this.sql = sql;
+        }
+
+        private void dependsOn(Node node) {
+            if (node != null && node != this && dependencies.add(node)) {
+                node.dependents.add(this);
+                pendingDependencies++;
+            }
+        }
+
+        int getSeq() {
+            return seq;
+        }
+
+        Collection<Node> getDependencies() {
+            return Collections.unmodifiableSet(dependencies);
+        }
+
+        @Override
+        public String toString() {
+            return seq + ": " + sql;
+        }
+    }
+
+    /**
+     * state of one deployment, submits statements as soon as all their dependencies are executed
+     */
+    private class Deployment {
+        private final List<Node> nodes;
+        private final List<String> failed = Collections.synchronizedList(new ArrayList<String>());
+        private final List<Connection> connections = Collections.synchronizedList(new ArrayList<Connection>());
+        private final ThreadLocal<Connection> connection = new ThreadLocal<Connection>();
+        private ExecutorService executor;
+        private int remaining;
+        private Throwable error;
+
+        private Deployment(List<Node> nodes) {
+            this.nodes = nodes;
+            this.remaining = nodes.size();
+        }
+
+        private synchronized void start(ExecutorService executor) {
+            this.executor = executor;
+            for (Node node : nodes) {
+                if (node.pendingDependencies == 0) {
+                    submit(node);
+                }
+            }
+        }
+
+        private synchronized void await() throws InterruptedException {
+            while (remaining > 0 && error == null) {
+                wait();
+            }
+        }
+
+        private void submit(final Node node) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        execute(node);
+                        completed(node);
+                    } catch (Throwable e) {
+                        failed(e);
+                    }
+                }
+            });
+        }
+
+        private void execute(Node node) throws SQLException {
+            Connection con = connection.get();
+            if (con == null) {
+                con = dataSource.getConnection();
+                con.setAutoCommit(true);
+                connections.add(con);
+                connection.set(con);
+            }
+
+            Statement statement = con.createStatement();
+            try {
+                statement.execute(node.sql);
+            } catch (SQLException e) {
+                LOG.warn("failed executing sql: {}", node.sql);
+                LOG.warn("failure: {}", e.getMessage());
+                failed.add(node.sql);
+            } finally {
+                statement.close();
+            }
+        }
+
+        private synchronized void completed(Node node) {
+            remaining--;
+            for (Node dependent : node.dependents) {
+                if (--dependent.pendingDependencies == 0) {
+                    submit(dependent);
+                }
+            }
+            if (remaining == 0) {
+                notifyAll();
+            }
+        }
+
+        private synchronized void failed(Throwable e) {
+            if (error == null) {
+                error = e;
+            }
+            notifyAll();
+        }
+
+        private void closeConnections() {
+            for (Connection con : connections) {
+                try {
+                    con.close();
+                } catch (SQLException e) {
+                    LOG.warn("cannot close connection", e);
+                }
+            }
+        }
+    }
+}
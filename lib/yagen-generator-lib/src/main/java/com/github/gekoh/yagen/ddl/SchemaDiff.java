@@ -0,0 +1,367 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+import com.github.gekoh.yagen.hibernate.SqlScript;
+import org.apache.commons.lang.StringUtils;
+import org.hibernate.dialect.Dialect;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the schema model of a previous release with the current one and creates the statements migrating the
+ * previous schema, without connecting to a database.
+ * Tables are altered column by column, indexes and constraints are dropped and created again when changed,
+ * views and triggers are replaced. History and audit triggers depend on the columns of their table, so they get
+ * regenerated whenever a column of the table changed.
+ * <p>
+ * usage: SchemaDiff dialect-class previous-model current-model output-file
+ * <br>
+ * models are read from text files written by {@link SchemaModel#write(Writer)} or from {@link SchemaSnapshot}s
+ *
+ * @author Georg Kohlweiss
+ */
+public class SchemaDiff {
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(SchemaDiff.class);
+
+    private static final Pattern ALTER_TABLE_PATTERN = Pattern.compile("alter\\s+table\\s+([^\\s(]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ON_TABLE_PATTERN = Pattern.compile("\\son\\s+([^\\s(]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_TRIGGER_PATTERN = Pattern.compile("(^|\\s)create\\s+trigger\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_FUNCTION_PATTERN = Pattern.compile("create\\s+(or\\s+replace\\s+)?function\\s+([^\\s(]+)", Pattern.CASE_INSENSITIVE);
+
+    private final Dialect dialect;
+
+    public SchemaDiff(Dialect dialect) {
+        this.dialect = dialect;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 4) {
+            throw new IllegalArgumentException("usage: SchemaDiff dialect-class previous-model current-model output-file");
+        }
+        SchemaDiff schemaDiff = new SchemaDiff((Dialect) Class.forName(args[0]).newInstance());
+        List<String> statements = schemaDiff.diff(readModel(args[1]), readModel(args[2]));
+
+        Writer wr = new OutputStreamWriter(new FileOutputStream(args[3]), "UTF-8");
+        try {
+            write(statements, wr);
+        } finally {
+            wr.close();
+        }
+        LOG.info("{} migration statements written to file {}", statements.size(), args[3]);
+    }
+
+    private static SchemaModel readModel(String fileName) throws IOException {
+        if (SchemaSnapshot.isSnapshot(new File(fileName))) {
+            return SchemaSnapshot.open(new File(fileName));
+        }
+        Reader reader = new InputStreamReader(new FileInputStream(fileName), "UTF-8");
+        try {
+            return SchemaModel.read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * writes the statements as script in the same format as the generated create scripts
+     */
+    public static void write(List<String> statements, Writer wr) throws IOException {
+        for (String statement : statements) {
+            for (SqlScript.Statement ddlStmt : SqlScript.split(statement)) {
+                wr.write(ddlStmt.getSql());
+                wr.write(ddlStmt.getDelimiter());
+                wr.write("\n\n");
+            }
+        }
+    }
+
+    /**
+     * @return statements migrating a database with the previous schema to the current schema
+     */
+    public List<String> diff(SchemaModel previous, SchemaModel current) {
+        List<String> statements = new ArrayList<String>();
+        Set<String> droppedTables = getRemoved(previous, current, ObjectType.TABLE);
+
+        for (String trigger : getRemoved(previous, current, ObjectType.TRIGGER)) {
+            String ddl = previous.get(ObjectType.TRIGGER, trigger);
+            if (!droppedTables.contains(getTableName(ON_TABLE_PATTERN, ddl))) {
+                statements.add(getDropTrigger(trigger, ddl));
+            }
+            Matcher matcher = CREATE_FUNCTION_PATTERN.matcher(ddl);
+            if (matcher.find()) {
+                statements.add("drop function " + CreateDDL.getNameAndIfExistsWhenSupported(dialect, matcher.group(2) + "()"));
+            }
+        }
+
+        for (String view : getRemoved(previous, current, ObjectType.VIEW)) {
+            statements.add("drop view " + CreateDDL.getNameAndIfExistsWhenSupported(dialect, view));
+        }
+        if (CreateDDL.isPostgreSql(dialect)) {
+            // create or replace view cannot remove or rename columns
+            for (String view : getChanged(previous, current, ObjectType.VIEW)) {
+                statements.add("drop view " + CreateDDL.getNameAndIfExistsWhenSupported(dialect, view));
+            }
+        }
+
+        for (String constraint : getRemovedOrChanged(previous, current, ObjectType.CONSTRAINT)) {
+            String tableName = getTableName(ALTER_TABLE_PATTERN, previous.get(ObjectType.CONSTRAINT, constraint));
+            if (tableName != null && !droppedTables.contains(tableName)) {
+                statements.add("alter table " + tableName + " drop constraint " + constraint);
+            }
+        }
+
+        for (String index : getRemovedOrChanged(previous, current, ObjectType.INDEX)) {
+            if (!droppedTables.contains(getTableName(ON_TABLE_PATTERN, previous.get(ObjectType.INDEX, index)))) {
+                statements.add("drop index " + CreateDDL.getNameAndIfExistsWhenSupported(dialect, index));
+            }
+        }
+
+        for (String table : droppedTables) {
+            statements.add("drop table " + table);
+        }
+        for (String table : getChanged(previous, current, ObjectType.TABLE)) {
+            alterTable(statements, table, previous.get(ObjectType.TABLE, table), current.get(ObjectType.TABLE, table));
+        }
+
+        for (String table : getAdded(previous, current, ObjectType.TABLE)) {
+            statements.add(current.get(ObjectType.TABLE, table));
+        }
+        addCreated(statements, previous, current, ObjectType.INDEX);
+        addCreated(statements, previous, current, ObjectType.CONSTRAINT);
+        addCreated(statements, previous, current, ObjectType.VIEW);
+
+        for (String trigger : getAddedOrChanged(previous, current, ObjectType.TRIGGER)) {
+            String ddl = current.get(ObjectType.TRIGGER, trigger);
+            String previousDdl = previous.get(ObjectType.TRIGGER, trigger);
+            if (previousDdl != null && CREATE_TRIGGER_PATTERN.matcher(ddl).find()) {
+                statements.add(getDropTrigger(trigger, previousDdl));
+            }
+            statements.add(ddl);
+        }
+
+        addCreated(statements, previous, current, ObjectType.COMMENT);
+
+        return statements;
+    }
+
+    /**
+     * adds the ddl of all new and changed objects
+     */
+    private void addCreated(List<String> statements, SchemaModel previous, SchemaModel current, ObjectType objectType) {
+        for (String name : getAddedOrChanged(previous, current, objectType)) {
+            statements.add(current.get(objectType, name));
+        }
+    }
+
+    private void alterTable(List<String> statements, String tableName, String previousSql, String currentSql) {
+        CreateTableStatement previousTable = CreateTableStatement.parse(previousSql);
+        CreateTableStatement currentTable = CreateTableStatement.parse(currentSql);
+
+        if (!previousTable.isTable() || !currentTable.isTable()) {
+            statements.add("-- cannot compare create statements of table " + tableName + ", needs manual migration");
+            return;
+        }
+
+        Map<String, CreateTableStatement.Column> previousColumns = getColumnsByName(previousTable);
+        Map<String, CreateTableStatement.Column> currentColumns = getColumnsByName(currentTable);
+
+        for (Map.Entry<String, CreateTableStatement.Column> previousColumn : previousColumns.entrySet()) {
+            if (!currentColumns.containsKey(previousColumn.getKey())) {
+                statements.add("alter table " + tableName + " drop column " + previousColumn.getValue().getName());
+            }
+        }
+
+        for (Map.Entry<String, CreateTableStatement.Column> currentColumn : currentColumns.entrySet()) {
+            CreateTableStatement.Column column = currentColumn.getValue();
+            CreateTableStatement.Column previousColumn = previousColumns.get(currentColumn.getKey());
+
+            if (previousColumn == null) {
+                String definition = currentSql.substring(column.getNameStart(), column.getEnd() - 1).trim();
+                statements.add("alter table " + tableName + (CreateDDL.isOracle(dialect) ? " add (" + definition + ")" : " add column " + definition));
+                continue;
+            }
+
+            if (!normalize(previousColumn.getType()).equals(normalize(column.getType()))) {
+                statements.add(alterColumn(tableName, column.getName(), CreateDDL.isOracle(dialect) ? column.getType() :
+                        (CreateDDL.isPostgreSql(dialect) ? "type " : "set data type ") + column.getType()));
+            }
+            if (!StringUtils.equals(normalize(previousColumn.getDefaultValue()), normalize(column.getDefaultValue()))) {
+                String defaultValue = column.getDefaultValue();
+                statements.add(alterColumn(tableName, column.getName(), CreateDDL.isOracle(dialect) ? "default " + (defaultValue != null ? defaultValue : "null") :
+                        (defaultValue != null ? "set default " + defaultValue : "drop default")));
+            }
+            if (previousColumn.isNotNull() != column.isNotNull()) {
+                String constraintName = column.getNotNullConstraintName();
+                statements.add(alterColumn(tableName, column.getName(), CreateDDL.isOracle(dialect) ?
+                        (column.isNotNull() && constraintName != null ? "constraint " + constraintName + " " : "") + (column.isNotNull() ? "not null" : "null") :
+                        (column.isNotNull() ? "set not null" : (CreateDDL.isPostgreSql(dialect) ? "drop not null" : "set null"))));
+            }
+            if (previousColumn.isUnique() && !column.isUnique()) {
+                dropConstraint(statements, tableName, previousColumn.getUniqueConstraintName(), "unique constraint of column " + column.getName());
+            }
+            else if (!previousColumn.isUnique() && column.isUnique()) {
+                statements.add("alter table " + tableName + " add " + getConstraintClause(column.getUniqueConstraintName()) + "unique (" + column.getName() + ")");
+            }
+        }
+
+        String previousPk = previousTable.hasPrimaryKey() ? normalize(previousTable.getPrimaryKey().getColumnList()) : null;
+        String currentPk = currentTable.hasPrimaryKey() ? normalize(currentTable.getPrimaryKey().getColumnList()) : null;
+        if (!StringUtils.equals(previousPk, currentPk)) {
+            if (previousPk != null) {
+                String constraintName = previousTable.getPrimaryKey().getConstraintName();
+                if (constraintName != null || !CreateDDL.isPostgreSql(dialect)) {
+                    statements.add("alter table " + tableName + (constraintName != null ? " drop constraint " + constraintName : " drop primary key"));
+                }
+                else {
+                    statements.add("-- primary key of table " + tableName + " has no name, needs to be dropped manually");
+                }
+            }
+            if (currentPk != null) {
+                statements.add("alter table " + tableName + " add " + getConstraintClause(currentTable.getPrimaryKey().getConstraintName())
+                        + "primary key (" + currentTable.getPrimaryKey().getColumnList() + ")");
+            }
+        }
+
+        Map<String, CreateTableStatement.UniqueClause> previousUniques = getUniqueClausesByColumns(previousTable);
+        Map<String, CreateTableStatement.UniqueClause> currentUniques = getUniqueClausesByColumns(currentTable);
+        for (Map.Entry<String, CreateTableStatement.UniqueClause> previousUnique : previousUniques.entrySet()) {
+            if (!currentUniques.containsKey(previousUnique.getKey())) {
+                dropConstraint(statements, tableName, previousUnique.getValue().getConstraintName(), "unique constraint on (" + previousUnique.getKey() + ")");
+            }
+        }
+        for (Map.Entry<String, CreateTableStatement.UniqueClause> currentUnique : currentUniques.entrySet()) {
+            if (!previousUniques.containsKey(currentUnique.getKey())) {
+                statements.add("alter table " + tableName + " add " + getConstraintClause(currentUnique.getValue().getConstraintName())
+                        + "unique (" + currentUnique.getValue().getColumnList() + ")");
+            }
+        }
+
+        if (!StringUtils.equals(normalize(previousTable.getPartitionClause()), normalize(currentTable.getPartitionClause()))) {
+            statements.add("-- partitioning of table " + tableName + " changed, needs manual migration");
+        }
+    }
+
+    private String alterColumn(String tableName, String columnName, String change) {
+        if (CreateDDL.isOracle(dialect)) {
+            return "alter table " + tableName + " modify (" + columnName + " " + change + ")";
+        }
+        return "alter table " + tableName + " alter column " + columnName + " " + change;
+    }
+
+    private static void dropConstraint(List<String> statements, String tableName, String constraintName, String description) {
+        if (constraintName != null) {
+            statements.add("alter table " + tableName + " drop constraint " + constraintName);
+        }
+        else {
+            statements.add("-- " + description + " of table " + tableName + " has no name, needs to be dropped manually");
+        }
+    }
+
+    private static String getConstraintClause(String constraintName) {
+        return constraintName != null ? "constraint " + constraintName + " " : "";
+    }
+
+    private String getDropTrigger(String triggerName, String ddl) {
+        if (CreateDDL.isPostgreSql(dialect)) {
+            return "drop trigger if exists " + triggerName + " on " + getTableName(ON_TABLE_PATTERN, ddl);
+        }
+        return "drop trigger " + triggerName;
+    }
+
+    private static Map<String, CreateTableStatement.Column> getColumnsByName(CreateTableStatement createTable) {
+        Map<String, CreateTableStatement.Column> columns = new LinkedHashMap<String, CreateTableStatement.Column>();
+        for (CreateTableStatement.Column column : createTable.getColumns()) {
+            columns.put(unquote(column.getName()), column);
+        }
+        return columns;
+    }
+
+    private static Map<String, CreateTableStatement.UniqueClause> getUniqueClausesByColumns(CreateTableStatement createTable) {
+        Map<String, CreateTableStatement.UniqueClause> uniques = new LinkedHashMap<String, CreateTableStatement.UniqueClause>();
+        for (CreateTableStatement.UniqueClause uniqueClause : createTable.getUniqueClauses()) {
+            uniques.put(normalize(uniqueClause.getColumnList()), uniqueClause);
+        }
+        return uniques;
+    }
+
+    private static String getTableName(Pattern pattern, String ddl) {
+        Matcher matcher = pattern.matcher(ddl);
+        return matcher.find() ? unquote(matcher.group(1)) : null;
+    }
+
+    private static String unquote(String name) {
+        return name.replaceAll("[\"'`]", "").toLowerCase();
+    }
+
+    private static String normalize(String sql) {
+        return sql != null ? sql.trim().replaceAll("\\s+", " ").replaceAll("\\s*([,()])\\s*", "$1").toLowerCase() : null;
+    }
+
+    private static Set<String> getRemoved(SchemaModel previous, SchemaModel current, ObjectType objectType) {
+        Set<String> removed = new LinkedHashSet<String>(previous.getNames(objectType));
+        removed.removeAll(current.getNames(objectType));
+        return removed;
+    }
+
+    private static Set<String> getAdded(SchemaModel previous, SchemaModel current, ObjectType objectType) {
+        return getRemoved(current, previous, objectType);
+    }
+
+    private static Set<String> getChanged(SchemaModel previous, SchemaModel current, ObjectType objectType) {
+        Set<String> changed = new LinkedHashSet<String>();
+        for (String name : current.getNames(objectType)) {
+            String previousDdl = previous.get(objectType, name);
+            if (previousDdl != null && !previousDdl.trim().equals(current.get(objectType, name).trim())) {
+                changed.add(name);
+            }
+        }
+        return changed;
+    }
+
+    private static Set<String> getRemovedOrChanged(SchemaModel previous, SchemaModel current, ObjectType objectType) {
+        Set<String> names = getRemoved(previous, current, objectType);
+        names.addAll(getChanged(previous, current, objectType));
+        return names;
+    }
+
+    private static Set<String> getAddedOrChanged(SchemaModel previous, SchemaModel current, ObjectType objectType) {
+        Set<String> names = new LinkedHashSet<String>();
+        Set<String> previousNames = new HashSet<String>(previous.getNames(objectType));
+        for (String name : current.getNames(objectType)) {
+            if (!previousNames.contains(name) || !previous.get(objectType, name).trim().equals(current.get(objectType, name).trim())) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+}
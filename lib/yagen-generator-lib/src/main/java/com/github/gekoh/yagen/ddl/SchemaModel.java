@@ -0,0 +1,117 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generated schema of one dialect: the DDL of all tables, views, triggers, indexes, constraints and comments by
+ * object name, in the order they were generated.
+ * Collects the model as {@link Duplexer} of a profile while generating, so it contains the enhanced DDL including
+ * history tables, audit and history triggers. Register one model per dialect.
+ * The model can be stored in a text format or as {@link SchemaSnapshot} to compare the schema of a release with the
+ * next one, see {@link SchemaDiff}.
+ *
+ * @author Georg Kohlweiss
+ */
+public class SchemaModel implements Duplexer {
+
+    private static final String OBJECT_HEADER = "-- @yagen-object ";
+
+    private final Map<ObjectType, Map<String, String>> objects = new EnumMap<ObjectType, Map<String, String>>(ObjectType.class);
+
+    @Override
+    public void handleDdl(ObjectType objectType, String objectName, String ddl) {
+        put(objectType, objectName, ddl);
+    }
+
+    public synchronized void put(ObjectType objectType, String objectName, String ddl) {
+        Map<String, String> ddlByName = objects.get(objectType);
+        if (ddlByName == null) {
+            objects.put(objectType, ddlByName = new LinkedHashMap<String, String>());
+        }
+        ddlByName.put(getKey(objectName), ddl);
+    }
+
+    /**
+     * @return ddl of the object, null if there is no such object
+     */
+    public synchronized String get(ObjectType objectType, String objectName) {
+        Map<String, String> ddlByName = objects.get(objectType);
+        return ddlByName != null ? ddlByName.get(getKey(objectName)) : null;
+    }
+
+    /**
+     * @return lower case names of all objects of the given type in the order they were generated
+     */
+    public synchronized Set<String> getNames(ObjectType objectType) {
+        Map<String, String> ddlByName = objects.get(objectType);
+        return ddlByName != null ? Collections.unmodifiableSet(ddlByName.keySet()) : Collections.<String>emptySet();
+    }
+
+    /**
+     * writes the model in a text format readable by {@link #read(Reader)}, each object is a header line
+     * with type, name and length followed by its DDL
+     */
+    public void write(Writer wr) throws IOException {
+        for (ObjectType objectType : ObjectType.values()) {
+            for (String name : getNames(objectType)) {
+                String ddl = get(objectType, name);
+                wr.write(OBJECT_HEADER + objectType.name() + " " + ddl.length() + " " + name + "\n");
+                wr.write(ddl);
+                wr.write("\n");
+            }
+        }
+    }
+
+    public static SchemaModel read(Reader reader) throws IOException {
+        SchemaModel model = new SchemaModel();
+        BufferedReader rd = new BufferedReader(reader);
+        String header;
+
+        while ((header = rd.readLine()) != null) {
+            if (header.length() == 0) {
+                continue;
+            }
+            if (!header.startsWith(OBJECT_HEADER)) {
+                throw new IllegalArgumentException("expected object header instead of '" + header + "'");
+            }
+            String[] typeLengthName = header.substring(OBJECT_HEADER.length()).split(" ", 3);
+
+            char[] ddl = new char[Integer.parseInt(typeLengthName[1])];
+            for (int read = 0, count; read < ddl.length; read += count) {
+                if ((count = rd.read(ddl, read, ddl.length - read)) < 0) {
+                    throw new IllegalArgumentException("unexpected end of schema model in object " + typeLengthName[2]);
+                }
+            }
+            model.put(ObjectType.valueOf(typeLengthName[0]), typeLengthName.length > 2 ? typeLengthName[2] : "", new String(ddl));
+        }
+
+        return model;
+    }
+
+    static String getKey(String objectName) {
+        return objectName != null ? objectName.toLowerCase() : "";
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read only {@link SchemaModel} stored in a compact binary file which gets memory mapped when opened.
+ * Only the index of object names is read when opening, the DDL of an object is decoded when requested, so even
+ * snapshots of large schemas open in milliseconds. Reading a snapshot needs neither hibernate nor the entity classes.
+ * <p>
+ * Layout (version 1, big endian): magic, version, number of object types followed by their names, number of objects
+ * followed by type index, name, offset and length of the DDL of each object, then the UTF-8 encoded DDL of all objects.
+ *
+ * @author Georg Kohlweiss
+ */
+public class SchemaSnapshot extends SchemaModel {
+
+    public static final int MAGIC = 0x5947534D;
+    public static final short VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer data;
+    private final Map<ObjectType, Map<String, int[]>> index;
+
+    private SchemaSnapshot(ByteBuffer data, Map<ObjectType, Map<String, int[]>> index) {
+        this.data = data;
+        this.index = index;
+    }
+
+    public static void write(SchemaModel model, File file) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            write(model, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    public static void write(SchemaModel model, DataOutputStream out) throws IOException {
+        List<ObjectType> types = new ArrayList<ObjectType>();
+        int objectCount = 0;
+        for (ObjectType objectType : ObjectType.values()) {
+            if (!model.getNames(objectType).isEmpty()) {
+                types.add(objectType);
+                objectCount += model.getNames(objectType).size();
+            }
+        }
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeByte(types.size());
+        for (ObjectType objectType : types) {
+            writeString(out, objectType.name());
+        }
+
+        List<byte[]> ddls = new ArrayList<byte[]>(objectCount);
+        long offset = 0;
+        out.writeInt(objectCount);
+        for (int typeIdx = 0; typeIdx < types.size(); typeIdx++) {
+            ObjectType objectType = types.get(typeIdx);
+            for (String name : model.getNames(objectType)) {
+                byte[] ddl = model.get(objectType, name).getBytes(UTF8);
+                ddls.add(ddl);
+
+                out.writeByte(typeIdx);
+                writeString(out, name);
+                out.writeInt((int) offset);
+                out.writeInt(ddl.length);
+                offset += ddl.length;
+            }
+        }
+        if (offset > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("schema model too large for a snapshot");
+        }
+
+        for (byte[] ddl : ddls) {
+            out.write(ddl);
+        }
+    }
+
+    /**
+     * maps the snapshot file and reads the object index
+     */
+    public static SchemaSnapshot open(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        } finally {
+            // the mapping stays valid after closing the channel
+            in.close();
+        }
+    }
+
+    public static SchemaSnapshot read(ByteBuffer buffer) {
+        if (buffer.remaining() < 6 || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("no schema snapshot");
+        }
+        short version = buffer.getShort();
+        if (version > VERSION) {
+            throw new IllegalArgumentException("schema snapshot version " + version + " not supported, latest supported version is " + VERSION);
+        }
+
+        ObjectType[] types = new ObjectType[buffer.get()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = ObjectType.valueOf(readString(buffer));
+        }
+
+        Map<ObjectType, Map<String, int[]>> index = new EnumMap<ObjectType, Map<String, int[]>>(ObjectType.class);
+        int objectCount = buffer.getInt();
+        for (int i = 0; i < objectCount; i++) {
+            ObjectType objectType = types[buffer.get()];
+            String name = readString(buffer);
+            int[] location = new int[]{buffer.getInt(), buffer.getInt()};
+
+            Map<String, int[]> objects = index.get(objectType);
+            if (objects == null) {
+                index.put(objectType, objects = new LinkedHashMap<String, int[]>());
+            }
+            objects.put(name, location);
+        }
+
+        return new SchemaSnapshot(buffer.slice(), index);
+    }
+
+    /**
+     * @return true if the file starts like a snapshot
+     */
+    public static boolean isSnapshot(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            byte[] magic = new byte[4];
+            return in.read(magic) == magic.length && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public void put(ObjectType objectType, String objectName, String ddl) {
+        throw new UnsupportedOperationException("schema snapshot is read only");
+    }
+
+    @Override
+    public String get(ObjectType objectType, String objectName) {
+        Map<String, int[]> objects = index.get(objectType);
+        int[] location = objects != null ? objects.get(getKey(objectName)) : null;
+        if (location == null) {
+            return null;
+        }
+
+        // the position of a duplicate is independent of the shared buffer, so concurrent reads are fine
+        ByteBuffer ddl = data.duplicate();
+        ddl.position(location[0]);
+        ddl.limit(location[0] + location[1]);
+        return UTF8.decode(ddl).toString();
+    }
+
+    @Override
+    public Set<String> getNames(ObjectType objectType) {
+        Map<String, int[]> objects = index.get(objectType);
+        return objects != null ? Collections.unmodifiableSet(objects.keySet()) : Collections.<String>emptySet();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
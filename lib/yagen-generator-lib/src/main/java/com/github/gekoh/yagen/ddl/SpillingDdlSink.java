@@ -0,0 +1,138 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * Keeps DDL in memory until it exceeds the spill threshold, from then on all DDL is written to a temporary file
+ * through a buffered {@link FileChannel}. So deferred DDL is not held in memory while tables are being enhanced,
+ * it is read back completely when the script is assembled by {@link DDLGenerator.Profile#addDdls(String[], org.hibernate.dialect.Dialect)}
+ * since hibernate exports the script as string array.
+ * Not thread safe, DDL has to be appended in order by one thread.
+ *
+ * @author Georg Kohlweiss
+ */
+public class SpillingDdlSink implements DdlSink {
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(SpillingDdlSink.class);
+
+    public static final int DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+
+    private static final String CHARSET = "UTF-8";
+
+    private final int spillThreshold;
+    private StringBuilder buffer = new StringBuilder();
+    private File spillFile;
+    private FileChannel channel;
+    private Writer writer;
+    private boolean empty = true;
+    private boolean reading;
+
+    public SpillingDdlSink() {
+        this(DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * @param spillThreshold number of chars held in memory before spilling to a temporary file
+     */
+    public SpillingDdlSink(int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    @Override
+    public DdlSink append(CharSequence ddl) {
+        if (reading) {
+            throw new IllegalStateException("cannot append DDL after reading started");
+        }
+        if (ddl.length() < 1) {
+            return this;
+        }
+
+        empty = false;
+        try {
+            if (writer != null) {
+                writer.append(ddl);
+            }
+            else {
+                buffer.append(ddl);
+                if (buffer.length() > spillThreshold) {
+                    spill();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot write DDL to spill file " + spillFile, e);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    @Override
+    public Reader getReader() {
+        reading = true;
+
+        if (writer == null) {
+            return new StringReader(buffer.toString());
+        }
+
+        try {
+            writer.flush();
+            channel.position(0);
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot read DDL from spill file " + spillFile, e);
+        }
+        return new BufferedReader(Channels.newReader(channel, CHARSET));
+    }
+
+    public boolean isSpilled() {
+        return spillFile != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        if (spillFile != null && spillFile.exists() && !spillFile.delete()) {
+            LOG.warn("cannot delete spill file {}", spillFile);
+        }
+    }
+
+    private void spill() throws IOException {
+        spillFile = File.createTempFile("yagen-ddl", ".sql");
+        spillFile.deleteOnExit();
+        LOG.debug("spilling DDL exceeding {} chars to {}", spillThreshold, spillFile);
+
+        channel = new RandomAccessFile(spillFile, "rw").getChannel();
+        writer = new BufferedWriter(Channels.newWriter(channel, CHARSET));
+        writer.append(buffer);
+        buffer = null;
+    }
+}
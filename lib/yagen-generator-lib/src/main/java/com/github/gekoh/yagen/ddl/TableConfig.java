@@ -34,6 +34,9 @@ import com.github.gekoh.yagen.api.Profile;
 import com.github.gekoh.yagen.api.Sequence;
 import com.github.gekoh.yagen.api.TemporalEntity;
 import com.github.gekoh.yagen.api.UniqueConstraint;
+import com.github.gekoh.yagen.ddl.scan.ClassMetadata;
+import com.github.gekoh.yagen.ddl.scan.ClassMetadataRepository;
+import com.github.gekoh.yagen.util.AnnotationIndex;
 import com.github.gekoh.yagen.util.MappingUtils;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.annotations.OnDelete;
@@ -69,6 +72,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -114,6 +118,7 @@ public class TableConfig {
     private Map<String, String> colNameToDefault = new HashMap<String, String>();
     private String i18nBaseEntityFkCol;
     private String i18nBaseEntityTblName;
+    private Set<Class> scannedClasses = new LinkedHashSet<Class>();
 
     public static TableConfig add(CreateDDL ddlEnhancer, String tableName) {
         TableConfig tableConfig = new TableConfig(ddlEnhancer, (Class)null, tableName);
@@ -127,12 +132,16 @@ public class TableConfig {
     }
 
     public TableConfig(CreateDDL ddlEnhancer, Class baseClass, String tableName) {
+        this(ddlEnhancer, baseClass != null ? ddlEnhancer.getProfile().getClassMetadata().get(baseClass) : null, tableName);
+    }
+
+    public TableConfig(CreateDDL ddlEnhancer, ClassMetadata baseClass, String tableName) {
         this.ddlEnhancer = ddlEnhancer;
-        this.baseClassName = baseClass != null ? baseClass.getName() : null;
+        this.baseClassName = baseClass != null ? baseClass.getClassName() : null;
         this.tableName = getIdentifierForReference(tableName);
-        Class superclass = baseClass != null ? baseClass.getSuperclass() : null;
+        ClassMetadata superclass = baseClass != null ? ddlEnhancer.getProfile().getClassMetadata().getSuperclass(baseClass) : null;
         if (superclass != null && superclass.isAnnotationPresent(MappedSuperclass.class)) {
-            this.superClassConfig = new TableConfig(ddlEnhancer, superclass, ddlEnhancer.getProfile().getNamingStrategy().classToTableName(superclass.getName()));
+            this.superClassConfig = ddlEnhancer.getMappedSuperclassConfig(superclass);
         }
     }
 
@@ -140,6 +149,9 @@ public class TableConfig {
         this.ddlEnhancer = ddlEnhancer;
         this.definedAtFieldOrMethod = definedAtFieldOrMethod;
         this.tableName = getIdentifierForReference(tableName);
+        if (definedAtFieldOrMethod instanceof Member) {
+            scannedClasses.add(((Member) definedAtFieldOrMethod).getDeclaringClass());
+        }
         for (Annotation annotation : definedAtFieldOrMethod.getAnnotations()) {
             if (COLLECT_ANNOTATIONS.contains(annotation.annotationType()) && !annotations2annClassMap.containsKey(annotation)) {
                 putTableAnnotation(definedAtFieldOrMethod, annotation);
@@ -150,7 +162,8 @@ public class TableConfig {
     public void scanEntityClass(Class entityClass, boolean selectiveRendering) {
         Class annClass = entityClass;
         while (annClass != null) {
-            for (Annotation annotation : annClass.getAnnotations()) {
+            scannedClasses.add(annClass);
+            for (Annotation annotation : AnnotationIndex.of(annClass).getTypeAnnotations()) {
                 if (COLLECT_ANNOTATIONS.contains(annotation.annotationType()) && !annotations2annClassMap.containsKey(annotation)) {
                     putTableAnnotation(annClass, annotation);
                 }
@@ -165,8 +178,7 @@ public class TableConfig {
 
         processTypeAnnotations(entityClass, selectiveRendering);
 
-        addI18NInfo(entityClass.getDeclaredFields());
-        addI18NInfo(entityClass.getDeclaredMethods());
+        addI18NInfo(AnnotationIndex.of(entityClass).getFieldsAndMethods());
 
         gatherPkColumn(entityClass);
         gatherEnumCheckConstraints(entityClass);
@@ -175,7 +187,8 @@ public class TableConfig {
         gatherIndexes(entityClass);
         gatherAccessibleObjects(entityClass);
 
-        if (superClassConfig != null) {
+        // mapped superclass configs are shared by all subclasses, scan only once
+        if (superClassConfig != null && superClassConfig.getScannedClasses().isEmpty()) {
             superClassConfig.scanEntityClass(superClassConfig.getEntityBaseClass(), selectiveRendering);
         }
     }
@@ -208,6 +221,13 @@ public class TableConfig {
         return superClassConfig;
     }
 
+    /**
+     * @return all classes this table config was built from, including superclasses and embeddables
+     */
+    public Set<Class> getScannedClasses() {
+        return scannedClasses;
+    }
+
     private void putTableAnnotation(AccessibleObject fieldOrMethod, Annotation annotation) {
         putTableAnnotation(fieldOrMethod instanceof Member ? ((Member)fieldOrMethod).getDeclaringClass() : null, annotation);
     }
@@ -531,17 +551,13 @@ public class TableConfig {
         }
     }
 
-    private static void traverseFieldsAndMethods (Class type, boolean fields, boolean methods, GatherFieldOrMethodInfoAction action) {
-        List<AccessibleObject> fOms = new ArrayList<AccessibleObject>();
-        if (fields) {
-            fOms.addAll(Arrays.asList(type.getDeclaredFields()));
-        }
-        if (methods) {
-            fOms.addAll(Arrays.asList(type.getDeclaredMethods()));
-        }
+    private void traverseFieldsAndMethods (Class type, boolean fields, boolean methods, GatherFieldOrMethodInfoAction action) {
+        scannedClasses.add(type);
+        AnnotationIndex index = AnnotationIndex.of(type);
+        List<? extends AccessibleObject> fOms = fields && methods ? index.getFieldsAndMethods() : fields ? index.getFields() : index.getMethods();
 
         for (AccessibleObject fOm : fOms) {
-            if (fOm.isAnnotationPresent(Transient.class)) {
+            if (index.isAnnotationPresent(fOm, Transient.class)) {
                 continue;
             }
 
@@ -554,6 +570,10 @@ public class TableConfig {
     }
 
     public TableConfig withTemporalEntityAnnotation(final String historyTableName, final String historyTimestampColumnName, final String... ignoreChangeOfColumns) {
+        return withTemporalEntityAnnotation(historyTableName, historyTimestampColumnName, false, ignoreChangeOfColumns);
+    }
+
+    public TableConfig withTemporalEntityAnnotation(final String historyTableName, final String historyTimestampColumnName, final boolean outbox, final String... ignoreChangeOfColumns) {
         putTableAnnotation((Class)null, new TemporalEntity() {
             public String historyTableName() {
                 return historyTableName != null ? historyTableName : "";
@@ -567,6 +587,10 @@ public class TableConfig {
                 return ignoreChangeOfColumns != null ? ignoreChangeOfColumns : new String[0];
             }
 
+            public boolean outbox() {
+                return outbox;
+            }
+
             public Class<? extends Annotation> annotationType() {
                 return TemporalEntity.class;
             }
@@ -745,16 +769,7 @@ public class TableConfig {
                                                                                           Class<T> annotationClass,
                                                                                           Class entityClass,
                                                                                           boolean withInheritance) {
-        for (Field field : entityClass.getDeclaredFields()) {
-            if (field.isAnnotationPresent(annotationClass)) {
-                fieldsOrMethods.add(field);
-            }
-        }
-        for (Method method : entityClass.getDeclaredMethods()) {
-            if (method.isAnnotationPresent(annotationClass)) {
-                fieldsOrMethods.add(method);
-            }
-        }
+        fieldsOrMethods.addAll(AnnotationIndex.of(entityClass).getAnnotatedMembers(annotationClass));
         if (entityClass.getSuperclass() != null && withInheritance) {
             return getAnnotatedFieldOrMethod(fieldsOrMethods, annotationClass, entityClass.getSuperclass(), withInheritance);
         }
@@ -763,12 +778,11 @@ public class TableConfig {
 
     private void processTypeAnnotations(Class type, boolean selectiveRendering) {
         do {
-            processAnnotations(type.getDeclaredFields(), selectiveRendering);
-            processAnnotations(type.getDeclaredMethods(), selectiveRendering);
+            processAnnotations(AnnotationIndex.of(type).getFieldsAndMethods(), selectiveRendering);
         } while ((type = getEntitySuperclass(type)) != null);
     }
 
-    private void processAnnotations (AccessibleObject[] fieldsOrMethods, boolean selectiveRendering) {
+    private void processAnnotations (List<AccessibleObject> fieldsOrMethods, boolean selectiveRendering) {
         for (AccessibleObject fieldOrMethod: fieldsOrMethods) {
             JoinTable joinTable = fieldOrMethod.getAnnotation(JoinTable.class);
             CollectionTable collectionTable = fieldOrMethod.getAnnotation(CollectionTable.class);
@@ -879,7 +893,7 @@ public class TableConfig {
         return null;
     }
 
-    private void addI18NInfo (AccessibleObject[] fieldsOrMethods) {
+    private void addI18NInfo (List<AccessibleObject> fieldsOrMethods) {
         for (AccessibleObject fieldOrMethod: fieldsOrMethods) {
             if (fieldOrMethod.getAnnotation(I18NDetailEntityRelation.class) != null) {
                 JoinColumn joinColumn = getJoinColumn(fieldOrMethod);
@@ -926,6 +940,16 @@ public class TableConfig {
         return null;
     }
 
+    public static ClassMetadata getClassOfTableAnnotation(ClassMetadataRepository repository, ClassMetadata type) {
+        do {
+            if (type.isAnnotationPresent(javax.persistence.Table.class)) {
+                return type;
+            }
+        } while ((type = repository.getSuperclass(type)) != null);
+
+        return null;
+    }
+
 
     public static String getIdentifierForReference(String identifier) {
         return identifier.replaceAll("[\"'`]", "").toLowerCase();
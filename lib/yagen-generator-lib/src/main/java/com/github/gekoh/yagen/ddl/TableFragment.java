@@ -0,0 +1,108 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything the enhancement of one create table statement contributes to the generated script: the enhanced DDL,
+ * deferred DDL, duplexed DDL, db objects and the state registered in {@link CreateDDL} while enhancing.
+ * Recorded while enhancing and replayed in the order hibernate requested the tables, fragments of unchanged tables
+ * are read from the {@link TableFragmentCache} instead of being enhanced again.
+ *
+ * @author Georg Kohlweiss
+ */
+public class TableFragment {
+
+    private String sql;
+    private StringBuffer deferredDdl = new StringBuffer();
+    private List<Object[]> duplexedDdls = new ArrayList<Object[]>();
+    private List<String> dbObjects = new ArrayList<String>();
+    private List<String> objectNames = new ArrayList<String>();
+    private List<String[]> dropStatements = new ArrayList<String[]>();
+    private List<String[]> historyEntities = new ArrayList<String[]>();
+    private boolean historyInitRequired;
+
+    public String getSql() {
+        return sql;
+    }
+
+    public void setSql(String sql) {
+        this.sql = sql;
+    }
+
+    public StringBuffer getDeferredDdl() {
+        return deferredDdl;
+    }
+
+    public void addDuplexedDdl(ObjectType objectType, String objectName, String ddl) {
+        duplexedDdls.add(new Object[]{objectType, objectName, ddl});
+    }
+
+    /**
+     * @return entries of object type, object name and DDL in the order they were duplexed
+     */
+    public List<Object[]> getDuplexedDdls() {
+        return duplexedDdls;
+    }
+
+    public void addDBObject(String object) {
+        dbObjects.add(object);
+    }
+
+    public List<String> getDBObjects() {
+        return dbObjects;
+    }
+
+    public void addObjectName(String name) {
+        objectNames.add(name);
+    }
+
+    public List<String> getObjectNames() {
+        return objectNames;
+    }
+
+    public void addDropStatement(String tableName, String dropSql) {
+        dropStatements.add(new String[]{tableName, dropSql});
+    }
+
+    /**
+     * @return entries of table name and drop statement
+     */
+    public List<String[]> getDropStatements() {
+        return dropStatements;
+    }
+
+    public void addHistoryEntity(String hstEntityClassName, String histTableName) {
+        historyEntities.add(new String[]{hstEntityClassName, histTableName});
+    }
+
+    /**
+     * @return entries of history entity class name and history table name
+     */
+    public List<String[]> getHistoryEntities() {
+        return historyEntities;
+    }
+
+    public boolean isHistoryInitRequired() {
+        return historyInitRequired;
+    }
+
+    public void setHistoryInitRequired(boolean historyInitRequired) {
+        this.historyInitRequired = historyInitRequired;
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On-disk cache of {@link TableFragment}s keyed by a fingerprint of everything the enhancement of a create table
+ * statement depends on. Each fingerprint includes the version of the generator itself (bytecode of the enhancing classes
+ * and all templates), so fragments of an older generator are never reused.
+ * Cache failures are logged and lead to enhancing the table again, the cache directory may be deleted at any time.
+ * <p>
+ * Fragments are stored in an explicit format instead of java serialization, so a file placed in the cache directory
+ * can at most yield wrong DDL but never instantiate arbitrary classes.
+ * Layout (version 1, big endian): magic, version, then all values of the fragment as length prefixed UTF-8 strings
+ * (length -1 for null) and counted lists of those.
+ *
+ * @author Georg Kohlweiss
+ */
+public class TableFragmentCache {
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(TableFragmentCache.class);
+
+    public static final int MAGIC = 0x59475446;
+    public static final short VERSION = 1;
+
+    private static final String FILE_SUFFIX = ".fragment";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Class[] GENERATOR_CLASSES = {CreateDDL.class, CreateTableStatement.class, TableConfig.class, TableFragment.class};
+
+    private final File directory;
+    private final String generatorFingerprint;
+    private final ConcurrentMap<String, String> classFingerprints = new ConcurrentHashMap<String, String>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public TableFragmentCache(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("cannot create table fragment cache directory " + directory);
+        }
+        this.directory = directory;
+
+        Fingerprint fingerprint = new Fingerprint();
+        for (Class generatorClass : GENERATOR_CLASSES) {
+            fingerprint.add(getClassFingerprint(generatorClass.getName()));
+        }
+        fingerprint.add(CreateDDL.class.getResourceAsStream(TemplateCache.SET_VARS_RESOURCE));
+        for (String resource : TemplateCache.TEMPLATE_RESOURCES) {
+            fingerprint.add(CreateDDL.class.getResourceAsStream(resource));
+        }
+        this.generatorFingerprint = fingerprint.getHash();
+    }
+
+    /**
+     * @return new fingerprint already containing the generator version
+     */
+    public Fingerprint createFingerprint() {
+        return new Fingerprint().add(generatorFingerprint);
+    }
+
+    /**
+     * @return fingerprint of the bytecode of the given class, null if the class file cannot be found,
+     * fingerprints are computed only once per class
+     */
+    public String getClassFingerprint(String className) {
+        String classFingerprint = classFingerprints.get(className);
+
+        if (classFingerprint == null) {
+            InputStream classFile = CreateDDL.class.getClassLoader().getResourceAsStream(className.replace('.', '/') + ".class");
+            if (classFile == null) {
+                return null;
+            }
+            classFingerprint = new Fingerprint().add(classFile).getHash();
+            classFingerprints.putIfAbsent(className, classFingerprint);
+        }
+
+        return classFingerprint;
+    }
+
+    public TableFragment load(String fingerprint) {
+        File file = getFile(fingerprint);
+
+        if (!file.isFile()) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            TableFragment fragment = read(in, file.length());
+            hits.incrementAndGet();
+            return fragment;
+        } catch (Exception e) {
+            LOG.warn("cannot read cached table fragment " + file + ", deleting it", e);
+            close(in);
+            in = null;
+            if (!file.delete()) {
+                LOG.warn("cannot delete table fragment {}", file);
+            }
+            misses.incrementAndGet();
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    public void store(String fingerprint, TableFragment fragment) {
+        File tmpFile = null;
+        DataOutputStream out = null;
+        try {
+            tmpFile = File.createTempFile(fingerprint, ".tmp", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            write(fragment, out);
+            out.close();
+            out = null;
+
+            File file = getFile(fingerprint);
+            // the same fingerprint always yields the same fragment, so it does not matter who wins
+            if (!tmpFile.renameTo(file) && !file.isFile()) {
+                LOG.warn("cannot store table fragment {}", file);
+            }
+        } catch (IOException e) {
+            LOG.warn("cannot store table fragment " + fingerprint, e);
+        } finally {
+            close(out);
+            if (tmpFile != null && tmpFile.exists() && !tmpFile.delete()) {
+                LOG.warn("cannot delete temporary file {}", tmpFile);
+            }
+        }
+    }
+
+    static void write(TableFragment fragment, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+
+        writeString(out, fragment.getSql());
+        writeString(out, fragment.getDeferredDdl().toString());
+
+        out.writeInt(fragment.getDuplexedDdls().size());
+        for (Object[] duplexedDdl : fragment.getDuplexedDdls()) {
+            writeString(out, ((ObjectType) duplexedDdl[0]).name());
+            writeString(out, (String) duplexedDdl[1]);
+            writeString(out, (String) duplexedDdl[2]);
+        }
+        writeStrings(out, fragment.getDBObjects());
+        writeStrings(out, fragment.getObjectNames());
+
+        out.writeInt(fragment.getDropStatements().size());
+        for (String[] dropStatement : fragment.getDropStatements()) {
+            writeString(out, dropStatement[0]);
+            writeString(out, dropStatement[1]);
+        }
+        out.writeInt(fragment.getHistoryEntities().size());
+        for (String[] historyEntity : fragment.getHistoryEntities()) {
+            writeString(out, historyEntity[0]);
+            writeString(out, historyEntity[1]);
+        }
+
+        out.writeBoolean(fragment.isHistoryInitRequired());
+    }
+
+    /**
+     * @param maxLength size of the file, no length read from the file may exceed it
+     */
+    static TableFragment read(DataInputStream in, long maxLength) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IllegalArgumentException("no table fragment");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("table fragment version " + version + " not supported, supported version is " + VERSION);
+        }
+
+        TableFragment fragment = new TableFragment();
+        fragment.setSql(readString(in, maxLength));
+        fragment.getDeferredDdl().append(readString(in, maxLength));
+
+        for (int i = readCount(in, maxLength); i > 0; i--) {
+            fragment.addDuplexedDdl(ObjectType.valueOf(readString(in, maxLength)), readString(in, maxLength), readString(in, maxLength));
+        }
+        for (int i = readCount(in, maxLength); i > 0; i--) {
+            fragment.addDBObject(readString(in, maxLength));
+        }
+        for (int i = readCount(in, maxLength); i > 0; i--) {
+            fragment.addObjectName(readString(in, maxLength));
+        }
+        for (int i = readCount(in, maxLength); i > 0; i--) {
+            fragment.addDropStatement(readString(in, maxLength), readString(in, maxLength));
+        }
+        for (int i = readCount(in, maxLength); i > 0; i--) {
+            fragment.addHistoryEntity(readString(in, maxLength), readString(in, maxLength));
+        }
+
+        fragment.setHistoryInitRequired(in.readBoolean());
+
+        if (in.read() >= 0) {
+            throw new IllegalArgumentException("unexpected data after table fragment");
+        }
+        return fragment;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static int readCount(DataInputStream in, long maxLength) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > maxLength) {
+            throw new IllegalArgumentException("invalid count " + count);
+        }
+        return count;
+    }
+
+    private static String readString(DataInputStream in, long maxLength) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > maxLength) {
+            throw new IllegalArgumentException("invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    private File getFile(String fingerprint) {
+        return new File(directory, fingerprint + FILE_SUFFIX);
+    }
+
+    private static void close(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LOG.warn("cannot close stream", e);
+            }
+        }
+    }
+
+    /**
+     * SHA-1 hash over all added values, values are delimited so that different sequences of values do not collide
+     */
+    public static class Fingerprint {
+        private final MessageDigest digest;
+
+        private Fingerprint() {
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public Fingerprint add(Object value) {
+            try {
+                digest.update(String.valueOf(value).getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            digest.update((byte) 0);
+            return this;
+        }
+
+        private Fingerprint add(InputStream in) {
+            if (in == null) {
+                return add((Object) null);
+            }
+            try {
+                byte[] buffer = new byte[8192];
+                int len;
+                while ((len = in.read(buffer)) >= 0) {
+                    digest.update(buffer, 0, len);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot read input for fingerprint", e);
+            } finally {
+                close(in);
+            }
+            digest.update((byte) 0);
+            return this;
+        }
+
+        /**
+         * completes the fingerprint, no more values may be added afterwards
+         *
+         * @return hex encoded hash
+         */
+        public String getHash() {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.RuntimeSingleton;
+import org.apache.velocity.runtime.parser.ParseException;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the parsed velocity templates used by {@link CreateDDL}, each template resource gets read and parsed only once.
+ * Every template is prefixed with setVars.vm which determines the dialect specific variables when merging, so the
+ * parsed template itself does not depend on the dialect.
+ * Parsed templates are immutable and may be merged concurrently.
+ *
+ * @author Georg Kohlweiss
+ */
+public class TemplateCache {
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(TemplateCache.class);
+
+    public static final String SET_VARS_RESOURCE = "setVars.vm";
+
+    /**
+     * all templates merged by {@link CreateDDL}, relative to its package
+     */
+    public static final List<String> TEMPLATE_RESOURCES = Collections.unmodifiableList(Arrays.asList(
+            "AuditTrigger.vm.pl.sql",
+            "AuditTriggerSingleOperation.vm.pl.sql",
+            "AuditTriggerSingleTimestamp.vm.pl.sql",
+            "AuditTriggerSingleTimestampSingleOperation.vm.pl.sql",
+            "CascadeNullableTrigger.vm.pl.sql",
+            "HstCompoundTrigger.vm.pl.sql",
+            "HstOutboxTrigger.vm.pl.sql",
+            "HstTrigger.vm.pl.sql",
+            "HstTriggerSingleOperation.vm.pl.sql",
+            "I18NDetailView.hsqldb.vm.sql",
+            "I18NDetailView.vm.sql",
+            "I18NDetailViewTrigger.hsqldb.vm.pl.sql",
+            "I18NDetailViewTrigger.vm.pl.sql",
+            "TimelineView.vm.sql",
+            "hsqldb/CascadeNullableTrigger.vm.pl.sql",
+            "postgres/DeferredConstraintTriggerFunction.vm.pl.sql",
+            "postgres/HstTriggerStatementLevel.vm.pl.sql"
+    ));
+
+    private final ConcurrentMap<String, Template> templates = new ConcurrentHashMap<String, Template>();
+
+    /**
+     * parses all templates in {@link #TEMPLATE_RESOURCES} in advance, fails on the first template with syntax errors
+     */
+    public void precompile() {
+        for (String resource : TEMPLATE_RESOURCES) {
+            getTemplate(resource);
+        }
+        LOG.debug("precompiled {} templates", templates.size());
+    }
+
+    public void merge(String resource, VelocityContext context, Writer wr) {
+        getTemplate(resource).merge(context, wr);
+    }
+
+    public Template getTemplate(String resource) {
+        Template template = templates.get(resource);
+
+        if (template == null) {
+            template = parse(resource);
+            Template existing = templates.putIfAbsent(resource, template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+
+        return template;
+    }
+
+    private static Template parse(String resource) {
+        InputStream setVars = CreateDDL.class.getResourceAsStream(SET_VARS_RESOURCE);
+        InputStream templateStream = CreateDDL.class.getResourceAsStream(resource);
+
+        if (templateStream == null) {
+            throw new IllegalArgumentException("cannot find template resource " + resource);
+        }
+
+        RuntimeServices runtimeServices = RuntimeSingleton.getRuntimeServices();
+        Template template = new Template();
+        template.setName(CreateDDL.class.getName() + "#" + resource);
+        template.setRuntimeServices(runtimeServices);
+
+        try {
+            template.setData(runtimeServices.parse(new InputStreamReader(new SequenceInputStream(setVars, templateStream), "UTF-8"), template));
+            template.initDocument();
+        } catch (ParseException e) {
+            throw new IllegalStateException("cannot parse template " + resource, e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return template;
+    }
+}
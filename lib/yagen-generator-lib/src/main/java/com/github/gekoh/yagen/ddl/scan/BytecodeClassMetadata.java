@@ -0,0 +1,163 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl.scan;
+
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ClassFile;
+import javassist.bytecode.annotation.AnnotationMemberValue;
+import javassist.bytecode.annotation.ArrayMemberValue;
+import javassist.bytecode.annotation.BooleanMemberValue;
+import javassist.bytecode.annotation.ByteMemberValue;
+import javassist.bytecode.annotation.CharMemberValue;
+import javassist.bytecode.annotation.ClassMemberValue;
+import javassist.bytecode.annotation.DoubleMemberValue;
+import javassist.bytecode.annotation.EnumMemberValue;
+import javassist.bytecode.annotation.FloatMemberValue;
+import javassist.bytecode.annotation.IntegerMemberValue;
+import javassist.bytecode.annotation.LongMemberValue;
+import javassist.bytecode.annotation.MemberValue;
+import javassist.bytecode.annotation.ShortMemberValue;
+import javassist.bytecode.annotation.StringMemberValue;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link ClassMetadata} read from a class file with javassist without loading the class.
+ * Only the explicitly specified attribute values of runtime visible type annotations are kept, the class file
+ * itself is not referenced after reading. Default values are taken from the annotation type.
+ *
+ * @author Georg Kohlweiss
+ */
+public class BytecodeClassMetadata extends ClassMetadata {
+
+    private final String className;
+    private final String superclassName;
+    private final Map<String, Map<String, Object>> annotations;
+
+    private BytecodeClassMetadata(ClassFile classFile) {
+        this.className = classFile.getName();
+        String superclass = classFile.getSuperclass();
+        this.superclassName = classFile.isInterface() || Object.class.getName().equals(superclass) ? null : superclass;
+
+        AnnotationsAttribute visible = (AnnotationsAttribute) classFile.getAttribute(AnnotationsAttribute.visibleTag);
+        if (visible == null) {
+            this.annotations = Collections.emptyMap();
+            return;
+        }
+
+        this.annotations = new HashMap<String, Map<String, Object>>();
+        for (javassist.bytecode.annotation.Annotation annotation : visible.getAnnotations()) {
+            Map<String, Object> attributes = new HashMap<String, Object>();
+            if (annotation.getMemberNames() != null) {
+                for (Object memberName : annotation.getMemberNames()) {
+                    attributes.put((String) memberName, toValue(annotation.getMemberValue((String) memberName)));
+                }
+            }
+            annotations.put(annotation.getTypeName(), attributes);
+        }
+    }
+
+    public static BytecodeClassMetadata read(InputStream classFile) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(classFile));
+        try {
+            return new BytecodeClassMetadata(new ClassFile(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Object toValue(MemberValue value) {
+        if (value instanceof StringMemberValue) {
+            return ((StringMemberValue) value).getValue();
+        }
+        else if (value instanceof BooleanMemberValue) {
+            return ((BooleanMemberValue) value).getValue();
+        }
+        else if (value instanceof IntegerMemberValue) {
+            return ((IntegerMemberValue) value).getValue();
+        }
+        else if (value instanceof LongMemberValue) {
+            return ((LongMemberValue) value).getValue();
+        }
+        else if (value instanceof ShortMemberValue) {
+            return ((ShortMemberValue) value).getValue();
+        }
+        else if (value instanceof ByteMemberValue) {
+            return ((ByteMemberValue) value).getValue();
+        }
+        else if (value instanceof CharMemberValue) {
+            return ((CharMemberValue) value).getValue();
+        }
+        else if (value instanceof DoubleMemberValue) {
+            return ((DoubleMemberValue) value).getValue();
+        }
+        else if (value instanceof FloatMemberValue) {
+            return ((FloatMemberValue) value).getValue();
+        }
+        else if (value instanceof EnumMemberValue) {
+            return ((EnumMemberValue) value).getValue();
+        }
+        else if (value instanceof ClassMemberValue) {
+            return ((ClassMemberValue) value).getValue();
+        }
+        else if (value instanceof ArrayMemberValue) {
+            MemberValue[] elements = ((ArrayMemberValue) value).getValue();
+            Object[] values = new Object[elements != null ? elements.length : 0];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = toValue(elements[i]);
+            }
+            return values;
+        }
+        else if (value instanceof AnnotationMemberValue) {
+            return null;
+        }
+        throw new IllegalArgumentException("unsupported annotation member value " + value);
+    }
+
+    @Override
+    public String getClassName() {
+        return className;
+    }
+
+    @Override
+    public String getSuperclassName() {
+        return superclassName;
+    }
+
+    @Override
+    public boolean isAnnotationPresent(Class<? extends Annotation> annotationType) {
+        return annotations.containsKey(annotationType.getName());
+    }
+
+    @Override
+    public Object getAnnotationAttribute(Class<? extends Annotation> annotationType, String attributeName) {
+        Map<String, Object> attributes = annotations.get(annotationType.getName());
+        if (attributes == null) {
+            return null;
+        }
+        if (attributes.containsKey(attributeName)) {
+            return attributes.get(attributeName);
+        }
+        return getDefaultValue(annotationType, attributeName);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl.scan;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+
+/**
+ * Type level information of a class as needed to register entity tables, either read from a loaded class or
+ * straight from its class file.
+ * Annotation attribute values are normalized so that both sources return the same values: strings, booleans and
+ * numbers as is, enum constants and classes by name, arrays as Object[]. Nested annotations are not supported
+ * and returned as null.
+ *
+ * @author Georg Kohlweiss
+ */
+public abstract class ClassMetadata {
+
+    public abstract String getClassName();
+
+    /**
+     * @return name of the direct superclass, null if the class directly extends java.lang.Object or is an interface
+     */
+    public abstract String getSuperclassName();
+
+    public abstract boolean isAnnotationPresent(Class<? extends Annotation> annotationType);
+
+    /**
+     * @return normalized value of the annotation attribute or its default value, null if the annotation is not present
+     */
+    public abstract Object getAnnotationAttribute(Class<? extends Annotation> annotationType, String attributeName);
+
+    public String getStringAttribute(Class<? extends Annotation> annotationType, String attributeName) {
+        return (String) getAnnotationAttribute(annotationType, attributeName);
+    }
+
+    public boolean getBooleanAttribute(Class<? extends Annotation> annotationType, String attributeName) {
+        return Boolean.TRUE.equals(getAnnotationAttribute(annotationType, attributeName));
+    }
+
+    public String[] getStringArrayAttribute(Class<? extends Annotation> annotationType, String attributeName) {
+        Object[] values = (Object[]) getAnnotationAttribute(annotationType, attributeName);
+        if (values == null) {
+            return null;
+        }
+        String[] strings = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            strings[i] = (String) values[i];
+        }
+        return strings;
+    }
+
+    /**
+     * @return the default value of the attribute as declared by the annotation type, normalized
+     */
+    protected static Object getDefaultValue(Class<? extends Annotation> annotationType, String attributeName) {
+        try {
+            return normalize(annotationType.getMethod(attributeName).getDefaultValue());
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("annotation " + annotationType.getName() + " has no attribute " + attributeName, e);
+        }
+    }
+
+    /**
+     * @param value attribute value as returned by a reflective annotation
+     */
+    protected static Object normalize(Object value) {
+        if (value == null || value instanceof Annotation) {
+            return null;
+        }
+        if (value instanceof Enum) {
+            return ((Enum) value).name();
+        }
+        if (value instanceof Class) {
+            return ((Class) value).getName();
+        }
+        if (value.getClass().isArray()) {
+            Object[] values = new Object[Array.getLength(value)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = normalize(Array.get(value, i));
+            }
+            return values;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return getClassName();
+    }
+}
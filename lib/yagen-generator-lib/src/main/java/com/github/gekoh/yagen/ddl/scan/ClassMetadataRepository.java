@@ -0,0 +1,282 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl.scan;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Holds the {@link ClassMetadata} of all classes used for generation.
+ * Jars and class directories can be scanned in parallel upfront, reading the class files without loading any class.
+ * Metadata of classes which were not scanned is read from the class file found by the class loader on first request,
+ * classes which are already loaded or have no class file are described through reflection.
+ * The repository may be used concurrently.
+ *
+ * @author Georg Kohlweiss
+ */
+public class ClassMetadataRepository {
+    private static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(ClassMetadataRepository.class);
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+    private static final int CLASS_FILES_PER_TASK = 64;
+
+    private final ClassLoader classLoader;
+    private final ConcurrentMap<String, ClassMetadata> metadata = new ConcurrentHashMap<String, ClassMetadata>();
+
+    public ClassMetadataRepository() {
+        this(Thread.currentThread().getContextClassLoader() != null ? Thread.currentThread().getContextClassLoader() : ClassMetadataRepository.class.getClassLoader());
+    }
+
+    public ClassMetadataRepository(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * reads all class files of the given jars or class directories
+     *
+     * @param parallelism number of threads reading class files
+     * @return number of class files read
+     */
+    public int scan(int parallelism, File... classPathRoots) {
+        List<ClassFileSource> sources = new ArrayList<ClassFileSource>();
+        List<JarFile> jars = new ArrayList<JarFile>();
+        long start = System.currentTimeMillis();
+
+        try {
+            for (File root : classPathRoots) {
+                if (root.isDirectory()) {
+                    addClassFiles(sources, root);
+                }
+                else if (root.isFile()) {
+                    JarFile jar = new JarFile(root);
+                    jars.add(jar);
+                    addClassFiles(sources, jar);
+                }
+                else {
+                    throw new IllegalArgumentException("cannot scan " + root + ", neither a directory nor a jar file");
+                }
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+            try {
+                pool.invoke(new ReadClassFiles(sources, 0, sources.size()));
+            } finally {
+                pool.shutdown();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot scan " + Arrays.asList(classPathRoots), e);
+        } finally {
+            for (JarFile jar : jars) {
+                try {
+                    jar.close();
+                } catch (IOException e) {
+                    LOG.warn("cannot close {}", jar.getName());
+                }
+            }
+        }
+
+        LOG.info("read {} class files in {} ms", sources.size(), System.currentTimeMillis() - start);
+        return sources.size();
+    }
+
+    /**
+     * @return metadata of the given class, read from its class file if it was scanned before
+     */
+    public ClassMetadata get(Class type) {
+        ClassMetadata classMetadata = metadata.get(type.getName());
+        if (classMetadata == null) {
+            classMetadata = put(new ReflectionClassMetadata(type));
+        }
+        return classMetadata;
+    }
+
+    /**
+     * @return metadata of the given class or null if neither its class file nor the class can be found
+     */
+    public ClassMetadata get(String className) {
+        ClassMetadata classMetadata = metadata.get(className);
+        if (classMetadata != null) {
+            return classMetadata;
+        }
+
+        InputStream classFile = classLoader.getResourceAsStream(className.replace('.', '/') + CLASS_FILE_SUFFIX);
+        if (classFile != null) {
+            try {
+                return put(BytecodeClassMetadata.read(classFile));
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot read class file of " + className, e);
+            }
+        }
+
+        try {
+            return get(Class.forName(className, false, classLoader));
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    public ClassMetadata getSuperclass(ClassMetadata classMetadata) {
+        if (classMetadata instanceof ReflectionClassMetadata) {
+            Class superclass = ((ReflectionClassMetadata) classMetadata).getType().getSuperclass();
+            return superclass != null && superclass != Object.class ? get(superclass) : null;
+        }
+        return classMetadata.getSuperclassName() != null ? get(classMetadata.getSuperclassName()) : null;
+    }
+
+    /**
+     * @return sorted names of all known classes annotated with at least one of the given annotations
+     */
+    public List<String> getClassNamesAnnotatedWith(Class<? extends Annotation>... annotationTypes) {
+        List<String> classNames = new ArrayList<String>();
+        for (ClassMetadata classMetadata : metadata.values()) {
+            for (Class<? extends Annotation> annotationType : annotationTypes) {
+                if (classMetadata.isAnnotationPresent(annotationType)) {
+                    classNames.add(classMetadata.getClassName());
+                    break;
+                }
+            }
+        }
+        Collections.sort(classNames);
+        return classNames;
+    }
+
+    /**
+     * loads the class without initializing it
+     */
+    public Class loadClass(String className) {
+        try {
+            return Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private ClassMetadata put(ClassMetadata classMetadata) {
+        ClassMetadata existing = metadata.putIfAbsent(classMetadata.getClassName(), classMetadata);
+        return existing != null ? existing : classMetadata;
+    }
+
+    private static void addClassFiles(List<ClassFileSource> sources, File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addClassFiles(sources, file);
+            }
+            else if (file.getName().endsWith(CLASS_FILE_SUFFIX)) {
+                sources.add(new FileSource(file));
+            }
+        }
+    }
+
+    private static void addClassFiles(List<ClassFileSource> sources, JarFile jar) {
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            if (!entry.isDirectory() && entry.getName().endsWith(CLASS_FILE_SUFFIX)) {
+                sources.add(new JarEntrySource(jar, entry));
+            }
+        }
+    }
+
+    private interface ClassFileSource {
+        InputStream open() throws IOException;
+    }
+
+    private static class FileSource implements ClassFileSource {
+        private final File file;
+
+        private FileSource(File file) {
+            this.file = file;
+        }
+
+        public InputStream open() throws IOException {
+            return new FileInputStream(file);
+        }
+
+        @Override
+        public String toString() {
+            return file.getPath();
+        }
+    }
+
+    private static class JarEntrySource implements ClassFileSource {
+        private final JarFile jar;
+        private final JarEntry entry;
+
+        private JarEntrySource(JarFile jar, JarEntry entry) {
+            this.jar = jar;
+            this.entry = entry;
+        }
+
+        public InputStream open() throws IOException {
+            return jar.getInputStream(entry);
+        }
+
+        @Override
+        public String toString() {
+            return jar.getName() + "!/" + entry.getName();
+        }
+    }
+
+    private class ReadClassFiles extends RecursiveAction {
+        private final List<ClassFileSource> sources;
+        private final int from;
+        private final int to;
+
+        private ReadClassFiles(List<ClassFileSource> sources, int from, int to) {
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CLASS_FILES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ReadClassFiles(sources, from, middle), new ReadClassFiles(sources, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                ClassFileSource source = sources.get(i);
+                try {
+                    BytecodeClassMetadata classMetadata = BytecodeClassMetadata.read(source.open());
+                    // scanned class files take precedence over metadata which was read lazily or via reflection
+                    metadata.put(classMetadata.getClassName(), classMetadata);
+                } catch (IOException e) {
+                    throw new IllegalStateException("cannot read class file " + source, e);
+                }
+            }
+        }
+    }
+}
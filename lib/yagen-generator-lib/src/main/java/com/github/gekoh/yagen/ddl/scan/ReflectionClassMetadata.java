@@ -0,0 +1,72 @@
+/*
+ Copyright 2014 Georg Kohlweiss
+
+ Licensed under the Apache License, Version 2.0 (the License);
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an AS IS BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.github.gekoh.yagen.ddl.scan;
+
+import com.github.gekoh.yagen.util.AnnotationIndex;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * {@link ClassMetadata} of an already loaded class.
+ *
+ * @author Georg Kohlweiss
+ */
+public class ReflectionClassMetadata extends ClassMetadata {
+
+    private final Class type;
+
+    public ReflectionClassMetadata(Class type) {
+        this.type = type;
+    }
+
+    public Class getType() {
+        return type;
+    }
+
+    @Override
+    public String getClassName() {
+        return type.getName();
+    }
+
+    @Override
+    public String getSuperclassName() {
+        Class superclass = type.getSuperclass();
+        return superclass != null && superclass != Object.class ? superclass.getName() : null;
+    }
+
+    @Override
+    public boolean isAnnotationPresent(Class<? extends Annotation> annotationType) {
+        return AnnotationIndex.of(type).isTypeAnnotationPresent(annotationType);
+    }
+
+    @Override
+    public Object getAnnotationAttribute(Class<? extends Annotation> annotationType, String attributeName) {
+        Annotation annotation = AnnotationIndex.of(type).getTypeAnnotation(annotationType);
+        if (annotation == null) {
+            return null;
+        }
+        try {
+            return normalize(annotationType.getMethod(attributeName).invoke(annotation));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("annotation " + annotationType.getName() + " has no attribute " + attributeName, e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -16,12 +16,20 @@
 package com.github.gekoh.yagen.hibernate;
 
 import com.github.gekoh.yagen.PatchTransformer;
+import com.github.gekoh.yagen.PatchedClassCache;
 import javassist.ClassClassPath;
 import javassist.ClassPool;
 import javassist.CtClass;
 import javassist.CtConstructor;
 import javassist.CtMethod;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @author Georg Kohlweiss 
  */
@@ -33,13 +41,46 @@ public class PatchHibernateMappingClasses {
             if (alreadyLoaded("org.hibernate.cfg.Configuration$MappingsImpl")) {
                 throw new HibernateClassesAlreadyLoadedException();
             }
-            ClassPool cp = ClassPool.getDefault();
+            // pool is only used for this patch and released afterwards
+            ClassPool cp = new ClassPool(true);
             cp.insertClassPath(new ClassClassPath(PatchHibernateMappingClasses.class));
 
+            PatchedClassCache cache = PatchedClassCache.getDefault();
+            Map<String, byte[]> originalClasses = new LinkedHashMap<String, byte[]>();
+            Map<String, byte[]> patchedClasses = new LinkedHashMap<String, byte[]>();
             for (String class2Patch : PatchTransformer.PATCH_CLASS_LIST) {
-                CtClass ctClass = cp.getCtClass(class2Patch);
-                PatchTransformer.patchClass(ctClass);
-                LOG.info("patched class {}", ctClass.toClass().getName());
+                InputStream classfile = cp.openClassfile(class2Patch);
+                if (classfile == null) {
+                    throw new IllegalStateException("cannot find class " + class2Patch);
+                }
+                byte[] original = PatchedClassCache.readFully(classfile);
+                originalClasses.put(class2Patch, original);
+                byte[] cached = cache != null ? cache.get(class2Patch, original) : null;
+                if (cached != null) {
+                    patchedClasses.put(class2Patch, cached);
+                }
+            }
+
+            // patches refer to members added by other patches, so patch all classes unless all are cached
+            if (patchedClasses.size() < originalClasses.size()) {
+                patchedClasses.clear();
+                for (Map.Entry<String, byte[]> original : originalClasses.entrySet()) {
+                    CtClass ctClass = cp.makeClass(new ByteArrayInputStream(original.getValue()));
+                    PatchTransformer.patchClass(ctClass);
+                    byte[] patched = ctClass.toBytecode();
+                    patchedClasses.put(original.getKey(), patched);
+                    if (cache != null) {
+                        cache.put(original.getKey(), original.getValue(), patched);
+                    }
+                }
+            }
+            else {
+                LOG.info("using cached patched classes");
+            }
+
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            for (Map.Entry<String, byte[]> patched : patchedClasses.entrySet()) {
+                LOG.info("patched class {}", PatchedClassCache.defineClass(loader, patched.getKey(), patched.getValue()).getName());
             }
         }
     }
@@ -52,6 +93,10 @@ public class PatchHibernateMappingClasses {
         return test1 != null;
     }
 
+    /**
+     * @return true if the hibernate classes have already been patched by the agent, a previous call of
+     * {@link #applyPatch()} or at build time (see com.github.gekoh.yagen.PatchHibernateClasses)
+     */
     public static boolean isAlreadyPatched() throws Exception {
         String dialectClassName = "org.hibernate.dialect.Dialect";
         if (alreadyLoaded(dialectClassName)) {
@@ -61,8 +106,38 @@ public class PatchHibernateMappingClasses {
                     return true;
                 }
             }
+            return false;
         }
-        return false;
+
+        // not loaded yet, so check the class file without loading the class which would prevent patching it
+        InputStream classfile = PatchGlue.class.getClassLoader().getResourceAsStream(dialectClassName.replace('.', '/') + ".class");
+        if (classfile == null) {
+            return false;
+        }
+        try {
+            return hasMarkerField(classfile);
+        } finally {
+            classfile.close();
+        }
+    }
+
+    /**
+     * @return true if the given class file declares the field {@link PatchTransformer#YAGEN_INIT_MARKER_FIELD} which
+     * is added by every patch, i.e. its constant pool contains the field name as UTF8 entry
+     */
+    static boolean hasMarkerField(InputStream classfile) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int read;
+        while ((read = classfile.read(buf)) > 0) {
+            bytes.write(buf, 0, read);
+        }
+
+        // CONSTANT_Utf8 tag followed by u2 length and the name
+        String name = PatchTransformer.YAGEN_INIT_MARKER_FIELD;
+        String entry = "\u0001" + (char) (name.length() >> 8) + (char) (name.length() & 0xff) + name;
+
+        return bytes.toString("ISO-8859-1").indexOf(entry) >= 0;
     }
 
     public static void patchCollectionsAlwaysLazy() throws Exception {
@@ -62,7 +62,7 @@ public class YagenInit {
                 profile = ((ProfileProvider)Class.forName(providerClass).newInstance()).getProfile("runtime");
             }
             else {
-                profile = ReflectExecutor.i_profile.get().newInstance("runtime");
+                profile = ReflectExecutor.i_profile.invoke("runtime");
             }
             PatchGlue.setProfile(profile);
         } catch (Exception e) {
@@ -77,8 +77,8 @@ public class YagenInit {
     public static void patch4Transfer(Object profile) {
         try {
             init(profile);
-            ReflectExecutor.m_patchCollectionsAlwaysLazy.get().invoke(null);
-            ReflectExecutor.m_patchIgnoreVersion.get().invoke(null);
+            ReflectExecutor.m_patchCollectionsAlwaysLazy.invoke();
+            ReflectExecutor.m_patchIgnoreVersion.invoke();
         } catch (Exception e) {
             LOG.error("unable to patch for transfer", e);
         }
@@ -21,6 +21,7 @@ import com.github.gekoh.yagen.api.NamingStrategy;
 import com.github.gekoh.yagen.api.TemporalEntity;
 import com.github.gekoh.yagen.ddl.CreateDDL;
 import com.github.gekoh.yagen.ddl.DDLGenerator;
+import com.github.gekoh.yagen.util.AnnotationIndex;
 import com.github.gekoh.yagen.util.FieldInfo;
 import com.github.gekoh.yagen.util.MappingUtils;
 import org.apache.commons.lang.StringUtils;
@@ -54,7 +55,6 @@ import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -188,10 +188,7 @@ public class CreateEntities {
     }
 
     private Set<AccessibleObject> getFieldsAndMethods(Class clazz) {
-        Set<AccessibleObject> fieldOrMethods = new HashSet<AccessibleObject>(Arrays.asList(clazz.getDeclaredFields()));
-        fieldOrMethods.addAll(Arrays.asList(clazz.getDeclaredMethods()));
-
-        return fieldOrMethods;
+        return new HashSet<AccessibleObject>(AnnotationIndex.of(clazz).getFieldsAndMethods());
     }
 
     private boolean hasColumnDeclared(Class clazz, String columnName) {
@@ -0,0 +1,187 @@
+#*
+  compound trigger variant of HstTrigger.vm.pl.sql, the row images are collected after each row and written with
+  FORALL after the statement (or when reaching flush_threshold), the resulting history is the same as written
+  by the row level trigger
+*#
+#define( $hstColumns )
+#foreach( $pkColumn in $pkColumns ) ${pkColumn},#end #foreach( $column in $nonPkColumns ) #if( $column != $histColName ) ${column},#end #end hst_uuid, operation, ${histColName}#end
+create or replace
+trigger ${objectName}
+for insert or update or delete on ${liveTableName}
+compound trigger
+  type hst_rows_t is table of ${hstTableName}%ROWTYPE index by pls_integer;
+  type live_rows_t is table of ${liveTableName}%ROWTYPE index by pls_integer;
+  type rowids_t is table of rowid index by pls_integer;
+  type uuids_t is table of ${hstTableName}.hst_uuid%TYPE index by pls_integer;
+
+  -- collected rows are written at the latest when reaching this number to limit memory usage of huge statements
+  flush_threshold constant pls_integer:=1000;
+
+  hst_rows hst_rows_t;
+  old_keys live_rows_t;
+  live_rowids rowids_t;
+  old_rowids rowids_t;
+  rows_moved boolean:=false;
+  transaction_timestamp_found timestamp;
+#if( $MODIFIER_COLUMN_NAME )  hst_modified_by ${MODIFIER_COLUMN_TYPE}:=substr(get_audit_user(null), 1, ${MODIFIER_COLUMN_NAME_LENGTH});
+#end  hst_table_name ${varcharType}:=upper('${liveTableName}');
+
+  procedure flush is
+    dml_errors exception;
+    pragma exception_init(dml_errors, -24381);
+    type flags_t is table of boolean index by pls_integer;
+    modified_before flags_t;
+    prev_operation ${hstTableName}.operation%TYPE;
+    invalidate_keys live_rows_t;
+    replaced_uuids uuids_t;
+  begin
+    if live_rowids.count=0 then
+      return;
+    end if;
+
+    if transaction_timestamp_found is null then
+      transaction_timestamp_found:=HST_TRANSACTION.get_timestamp;
+    end if;
+
+    if rows_moved then
+      forall i in 1..live_rowids.count
+        update hst_modified_row set row_id=live_rowids(i)
+          where table_name=hst_table_name
+            and row_id=old_rowids(i) and old_rowids(i)<>live_rowids(i);
+    end if;
+
+    begin
+      forall i in 1..live_rowids.count save exceptions
+        insert into hst_modified_row values (hst_table_name, live_rowids(i), hst_rows(i).operation, hst_rows(i).hst_uuid);
+    exception when dml_errors then
+      for j in 1..sql%bulk_exceptions.count loop
+        -- ORA-00001, row already modified in this transaction
+        if sql%bulk_exceptions(j).error_code<>1 then
+          raise;
+        end if;
+        modified_before(sql%bulk_exceptions(j).error_index):=true;
+      end loop;
+    end;
+
+    for i in 1..live_rowids.count loop
+      if modified_before.exists(i) then
+        select operation, hst_uuid into prev_operation, hst_rows(i).hst_uuid
+          from hst_modified_row
+         where table_name=hst_table_name
+           and row_id=live_rowids(i);
+
+        replaced_uuids(replaced_uuids.count+1):=hst_rows(i).hst_uuid;
+
+        if prev_operation='I' and hst_rows(i).operation='U' then
+          hst_rows(i).operation:='I';
+        elsif prev_operation='I' and hst_rows(i).operation='D' then
+          hst_rows.delete(i);
+        end if;
+      elsif hst_rows(i).operation<>'I' then
+        invalidate_keys(invalidate_keys.count+1):=old_keys(i);
+      end if;
+    end loop;
+
+    -- invalidate latest entry in history table
+    forall i in 1..invalidate_keys.count
+      update ${hstTableName} h set invalidated_at=transaction_timestamp_found
+        where
+          transaction_timestamp < transaction_timestamp_found and
+          operation <> 'D' and
+#foreach( $pkColumn in $pkColumns )
+  #if( $!{columnMap.get($pkColumn).nullable} )
+          ((${pkColumn} is null and invalidate_keys(i).${pkColumn} is null) or ${pkColumn}=invalidate_keys(i).${pkColumn}) and
+  #else
+          ${pkColumn}=invalidate_keys(i).${pkColumn} and
+  #end
+#end
+          invalidated_at is null;
+
+    for i in 1..invalidate_keys.count loop
+      if sql%bulk_rowcount(i)<>1 then
+        raise_application_error(-20100, 'unable to invalidate history record for '||hst_table_name
+#foreach( $pkColumn in $pkColumns )
+            ||' ${pkColumn}='''|| invalidate_keys(i).${pkColumn} ||''''
+#end
+          );
+      end if;
+    end loop;
+
+    forall i in 1..replaced_uuids.count
+      delete from ${hstTableName} where hst_uuid=replaced_uuids(i);
+
+    forall i in indices of hst_rows
+      insert into ${hstTableName} ($hstColumns)
+      values (#foreach( $pkColumn in $pkColumns ) hst_rows(i).${pkColumn},#end #foreach( $column in $nonPkColumns ) #if( $column != $histColName ) hst_rows(i).${column},#end #end hst_rows(i).hst_uuid, hst_rows(i).operation, transaction_timestamp_found);
+
+    hst_rows.delete;
+    old_keys.delete;
+    live_rowids.delete;
+    old_rowids.delete;
+    rows_moved:=false;
+  end flush;
+
+  after each row is
+    i pls_integer;
+  begin
+    if inserting or deleting
+#foreach( $column in $histRelevantCols )
+    or ((${new}.$column is null and ${old}.$column is not null) or
+        (${new}.$column is not null and ${old}.$column is null) or
+#if( $blobCols.contains($column) )
+        DBMS_LOB.COMPARE(${new}.$column, ${old}.$column) <> 0)
+#else
+        ${new}.$column!=${old}.$column)
+#end
+#end
+    then
+      i:=live_rowids.count+1;
+      live_rowids(i):=coalesce(${new}.rowid, ${old}.rowid);
+      old_rowids(i):=${old}.rowid;
+      if ${new}.rowid<>${old}.rowid then
+        rows_moved:=true;
+      end if;
+
+      hst_rows(i).hst_uuid:=sys_guid();
+      hst_rows(i).operation:=case when inserting then 'I'
+                                  when updating then 'U'
+                                  when deleting then 'D' end;
+#foreach( $pkColumn in $pkColumns )
+      old_keys(i).${pkColumn}:=${old}.${pkColumn};
+#end
+
+      if deleting then
+#foreach( $pkColumn in $pkColumns )
+        hst_rows(i).${pkColumn}:=${old}.${pkColumn};
+#end
+#foreach( $column in $nonPkColumns )
+#if( $column == $MODIFIER_COLUMN_NAME )
+        hst_rows(i).${column}:=hst_modified_by;
+#elseif( $column != $histColName && $noNullColumns.contains($column) )
+        hst_rows(i).${column}:=${old}.${column};
+#end
+#end
+      else
+#foreach( $pkColumn in $pkColumns )
+        hst_rows(i).${pkColumn}:=coalesce(${new}.${pkColumn}, ${old}.${pkColumn});
+#end
+#foreach( $column in $nonPkColumns )
+#if( $column == $MODIFIER_COLUMN_NAME )
+        hst_rows(i).${column}:=coalesce(${new}.${column}, hst_modified_by);
+#elseif( $column != $histColName )
+        hst_rows(i).${column}:=${new}.${column};
+#end
+#end
+      end if;
+
+      if i>=flush_threshold then
+        flush;
+      end if;
+    end if;
+  end after each row;
+
+  after statement is
+  begin
+    flush;
+  end after statement;
+end ${objectName};
\ No newline at end of file
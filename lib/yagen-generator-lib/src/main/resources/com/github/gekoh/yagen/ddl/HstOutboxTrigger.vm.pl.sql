@@ -0,0 +1,75 @@
+#*
+  outbox variant of HstTrigger.vm.pl.sql, the trigger only appends the history row image to the outbox table,
+  invalidation and merging of rows modified several times in a transaction is done by HistoryOutboxDrainer
+*#
+#define( $hstColumns )
+hst_outbox_seq, hst_transaction_id,#foreach( $pkColumn in $pkColumns ) ${pkColumn},#end #foreach( $column in $nonPkColumns ) #if( $column != $histColName ) ${column},#end #end hst_uuid, operation, ${histColName}#end
+#define( $outboxKeys )
+#if( $is_postgres )nextval('${outboxSequenceName}'), cast(txid_current() as ${varcharType})#{else}${outboxSequenceName}.nextval, DBMS_TRANSACTION.LOCAL_TRANSACTION_ID#end#end
+#if( $is_postgres )
+create or replace function ${objectName}()
+  returns trigger AS $$
+#else
+create or replace
+trigger ${objectName}
+after insert or update or delete on ${liveTableName}
+for each row
+#if( $whenCondition )
+when (${whenCondition})
+#end
+#end
+declare
+  transaction_timestamp_found timestamp;
+  hst_operation ${outboxTableName}.operation%TYPE:=#if($is_postgres)substr(TG_OP, 1, 1)#{else}case when inserting then 'I'
+                                                      when updating then 'U'
+                                                      when deleting then 'D' end#{end};
+#if( $MODIFIER_COLUMN_NAME )  hst_modified_by ${MODIFIER_COLUMN_TYPE}:=substr(get_audit_user(null), 1, ${MODIFIER_COLUMN_NAME_LENGTH});
+#end
+begin
+
+#if( !$is_postgres )
+  if inserting or deleting
+#foreach( $column in $histRelevantCols )
+  or ((${new}.$column is null and ${old}.$column is not null) or
+      (${new}.$column is not null and ${old}.$column is null) or
+#if( $blobCols.contains($column) )
+      DBMS_LOB.COMPARE(${new}.$column, ${old}.$column) <> 0)
+#else
+      ${new}.$column!=${old}.$column)
+#end
+#end
+  then
+
+#end
+#if( $is_postgres && $transactionLocalState )
+    transaction_timestamp_found:=HST_TRANSACTION_TIMESTAMP();
+#elseif( $is_postgres )
+    begin
+      select transaction_timestamp into strict transaction_timestamp_found
+      from HST_CURRENT_TRANSACTION
+      where transaction_id=txid_current();
+    exception when no_data_found then
+      transaction_timestamp_found:=clock_timestamp();
+      insert into HST_CURRENT_TRANSACTION (transaction_id, transaction_timestamp)
+        values (txid_current(), transaction_timestamp_found);
+    end;
+#else
+    transaction_timestamp_found:=HST_TRANSACTION.get_timestamp;
+#end
+
+    if hst_operation<>'D' then
+      insert into ${outboxTableName} ($hstColumns)
+      values ($outboxKeys,#foreach( $pkColumn in $pkColumns ) coalesce(${new}.${pkColumn}, ${old}.${pkColumn}),#end #foreach( $column in $nonPkColumns ) #if( $column == $MODIFIER_COLUMN_NAME ) coalesce(${new}.${column}, hst_modified_by),#else #if( $column != $histColName ) ${new}.${column},#end #end #end sys_guid(), hst_operation, transaction_timestamp_found);
+    else
+      insert into ${outboxTableName} ($hstColumns)
+      values ($outboxKeys,#foreach( $pkColumn in $pkColumns ) ${old}.${pkColumn},#end #foreach( $column in $nonPkColumns ) #if( $column == $MODIFIER_COLUMN_NAME ) hst_modified_by,#else #if( $column != $histColName )#if( $noNullColumns.contains($column) ) ${old}.$column#else null#end,#end #end #end sys_guid(), hst_operation, transaction_timestamp_found);
+    end if;
+
+#if( $is_postgres )
+  return new;
+#else
+  end if;
+#end
+end;#if( $is_postgres )
+
+$$ LANGUAGE 'plpgsql';#end
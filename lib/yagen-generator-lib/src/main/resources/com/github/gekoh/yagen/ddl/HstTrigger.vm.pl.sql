@@ -6,12 +6,19 @@ create or replace
 trigger ${objectName}
 after insert or update or delete on ${liveTableName}
 for each row
+#if( $whenCondition )
+when (${whenCondition})
+#end
 #end
 declare
   transaction_timestamp_found timestamp;
-  hst_operation HST_MODIFIED_ROW.operation%TYPE:=#if($is_postgres)substr(TG_OP, 1, 1)#{else}case when inserting then 'I'
+#if( $is_postgres )
+  hst_operation char(1):=substr(TG_OP, 1, 1);
+#else
+  hst_operation HST_MODIFIED_ROW.operation%TYPE:=case when inserting then 'I'
                                                       when updating then 'U'
-                                                      when deleting then 'D' end#{end};
+                                                      when deleting then 'D' end;
+#end
 #if( $is_postgres )
   live_rowid ${varcharType}:=''
     #foreach( $pkColumn in $pkColumns )
@@ -40,15 +47,21 @@ begin
   then
 
 #end
+#if( $is_postgres && $transactionLocalState )
+    transaction_timestamp_found:=HST_TRANSACTION_TIMESTAMP();
+#elseif( $is_postgres )
     begin
-      select transaction_timestamp into #if($is_postgres)strict #{end}transaction_timestamp_found
+      select transaction_timestamp into strict transaction_timestamp_found
       from HST_CURRENT_TRANSACTION
-      where transaction_id=#if($is_postgres)txid_current()#{else}DBMS_TRANSACTION.LOCAL_TRANSACTION_ID#{end};
+      where transaction_id=txid_current();
     exception when no_data_found then
       transaction_timestamp_found:=systimestamp;
       insert into HST_CURRENT_TRANSACTION (transaction_id, transaction_timestamp)
-        values (#if($is_postgres)txid_current()#{else}DBMS_TRANSACTION.LOCAL_TRANSACTION_ID#{end}, transaction_timestamp_found);
+        values (txid_current(), transaction_timestamp_found);
     end;
+#else
+    transaction_timestamp_found:=HST_TRANSACTION.get_timestamp;
+#end
 
 #if( !$is_postgres )
     if ${new}.rowid<>${old}.rowid then
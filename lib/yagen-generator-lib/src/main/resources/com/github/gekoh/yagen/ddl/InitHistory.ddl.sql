@@ -15,11 +15,55 @@ create global temporary table HST_MODIFIED_ROW (
   constraint hstmod_rowid_tablename_PK primary key (row_id, table_name)
 );
 
+------- CreateDDL statement separator -------
+/*
+  Caches the timestamp of the current transaction in package state, so history triggers only query
+  HST_CURRENT_TRANSACTION for the first row modified in a transaction instead of for every row.
+ */
+create package HST_TRANSACTION is
+  function get_timestamp return timestamp;
+  procedure set_timestamp(timestamp_in in timestamp);
+end HST_TRANSACTION;
+/
+
+------- CreateDDL statement separator -------
+create package body HST_TRANSACTION is
+  cached_transaction_id varchar2(4000 char);
+  cached_timestamp timestamp;
+
+  function get_timestamp return timestamp is
+    transaction_id_used varchar2(4000 char):=DBMS_TRANSACTION.LOCAL_TRANSACTION_ID;
+  begin
+    if cached_transaction_id is null or cached_transaction_id<>transaction_id_used then
+      begin
+        select transaction_timestamp into cached_timestamp
+        from HST_CURRENT_TRANSACTION
+        where transaction_id=transaction_id_used;
+      exception when no_data_found then
+        cached_timestamp:=systimestamp;
+        insert into HST_CURRENT_TRANSACTION (transaction_id, transaction_timestamp)
+          values (transaction_id_used, cached_timestamp);
+      end;
+      cached_transaction_id:=transaction_id_used;
+    end if;
+    return cached_timestamp;
+  end get_timestamp;
+
+  procedure set_timestamp(timestamp_in in timestamp) is
+    transaction_id_used varchar2(4000 char):=DBMS_TRANSACTION.LOCAL_TRANSACTION_ID(true);
+  begin
+    insert into HST_CURRENT_TRANSACTION (TRANSACTION_ID, TRANSACTION_TIMESTAMP)
+      values (transaction_id_used, timestamp_in);
+    cached_transaction_id:=transaction_id_used;
+    cached_timestamp:=timestamp_in;
+  end set_timestamp;
+end HST_TRANSACTION;
+/
+
 ------- CreateDDL statement separator -------
 create procedure set_transaction_timestamp(timestamp_in in timestamp) is
 begin
-  insert into HST_CURRENT_TRANSACTION (TRANSACTION_ID, TRANSACTION_TIMESTAMP)
-    values (DBMS_TRANSACTION.LOCAL_TRANSACTION_ID, timestamp_in);
+  HST_TRANSACTION.set_timestamp(timestamp_in);
 end;
 /
 #end
@@ -64,7 +108,7 @@ end;
 /
 #end
 
-#if( $is_postgres )
+#if( $is_postgres && !$transactionLocalState )
 ------- CreateDDL statement separator -------
 create table HST_CURRENT_TRANSACTION (transaction_id bigint, transaction_timestamp timestamp, constraint hsttr_transaction_id_PK primary key (transaction_id));
 
@@ -96,3 +140,47 @@ on HST_CURRENT_TRANSACTION initially deferred for each row
 execute procedure HST_CURRENT_TRANSACTION_TRG_FCT();
 
 #end
+
+#if( $is_postgres && $transactionLocalState )
+------- CreateDDL statement separator -------
+/*
+  Transaction local alternative to the tables HST_CURRENT_TRANSACTION and HST_MODIFIED_ROW.
+  The transaction timestamp is kept in a transaction local setting, the modified rows in a temporary table
+  created once per session. Neither is WAL logged nor leaves dead tuples behind.
+ */
+CREATE or REPLACE FUNCTION HST_CREATE_MODIFIED_ROW()
+  RETURNS void AS $$
+begin
+  if to_regclass('pg_temp.hst_modified_row') is null then
+    create temporary table HST_MODIFIED_ROW (transaction_id bigint, table_name varchar(30), row_id varchar(64), operation char(1), hst_uuid varchar(32), constraint hstmod_rowid_tablename_PK primary key (row_id, table_name)) on commit delete rows;
+  end if;
+end;
+$$ LANGUAGE 'plpgsql';
+/
+
+------- CreateDDL statement separator -------
+CREATE or REPLACE FUNCTION set_transaction_timestamp(timestamp_in timestamp)
+  RETURNS void AS $$
+begin
+  perform HST_CREATE_MODIFIED_ROW();
+  perform set_config('yagen.hst_transaction_timestamp', timestamp_in::text, true);
+end;
+$$ LANGUAGE 'plpgsql';
+/
+
+------- CreateDDL statement separator -------
+CREATE or REPLACE FUNCTION HST_TRANSACTION_TIMESTAMP()
+  RETURNS timestamp AS $$
+declare
+  transaction_timestamp_found timestamp:=nullif(current_setting('yagen.hst_transaction_timestamp', true), '');
+begin
+  if transaction_timestamp_found is null then
+    transaction_timestamp_found:=clock_timestamp();
+    perform set_transaction_timestamp(transaction_timestamp_found);
+  end if;
+  return transaction_timestamp_found;
+end;
+$$ LANGUAGE 'plpgsql';
+/
+
+#end
@@ -0,0 +1,145 @@
+#*
+  statement level variant of HstTrigger.vm.pl.sql for operation ${operation}, all rows of the statement are read from
+  the transition tables hst_new / hst_old and processed set based, the resulting history is the same as written
+  by the row level trigger
+*#
+#define( $pkMatchOld )
+#foreach( $pkColumn in $pkColumns )
+  #if( $!{columnMap.get($pkColumn).nullable} )
+            ((n.${pkColumn} is null and o.${pkColumn} is null) or n.${pkColumn}=o.${pkColumn}) and
+  #else
+            n.${pkColumn}=o.${pkColumn} and
+  #end
+#end
+            1=1#end
+#define( $changedRows )
+#if( ${operation} == 'U' )
+(select n.*, ''#foreach( $pkColumn in $pkColumns )||n.${pkColumn}#end as hst_live_rowid
+           from hst_new n join hst_old o on
+$pkMatchOld
+          where 1=0
+#foreach( $column in $histRelevantCols )
+            or n.${column} is distinct from o.${column}
+#end
+        )#{else}(select r.*, ''#foreach( $pkColumn in $pkColumns )||r.${pkColumn}#end as hst_live_rowid
+           from #if( ${operation} == 'I' )hst_new#{else}hst_old#end r)#end#end
+#define( $notModifiedBefore )
+not exists (select 1 from hst_modified_row m
+                          where m.transaction_id=txid_current() and m.table_name=hst_table_name
+                            and m.row_id=c.hst_live_rowid)#end
+#define( $hstColumns )
+#foreach( $pkColumn in $pkColumns ) ${pkColumn},#end #foreach( $column in $nonPkColumns ) #if( $column != $histColName ) ${column},#end #end hst_uuid, operation, ${histColName}#end
+#define( $hstValues )
+#if( ${operation} != 'D' )#foreach( $pkColumn in $pkColumns ) c.${pkColumn},#end #foreach( $column in $nonPkColumns ) #if( $column == $MODIFIER_COLUMN_NAME ) coalesce(c.${column}, hst_modified_by),#else #if( $column != $histColName ) c.${column},#end #end #end#{else}#foreach( $pkColumn in $pkColumns ) c.${pkColumn},#end #foreach( $column in $nonPkColumns ) #if( $column == $MODIFIER_COLUMN_NAME ) hst_modified_by,#else #if( $column != $histColName )#if( $noNullColumns.contains($column) ) c.$column#else null#end,#end #end #end#end#end
+create or replace function ${objectName}()
+  returns trigger AS $$
+declare
+  transaction_timestamp_found timestamp;
+#if( $MODIFIER_COLUMN_NAME )  hst_modified_by ${MODIFIER_COLUMN_TYPE}:=substr(get_audit_user(null), 1, ${MODIFIER_COLUMN_NAME_LENGTH});
+#end  hst_table_name ${varcharType}:=upper('${liveTableName}');
+  invalidation_failure ${varcharType};
+begin
+
+#if( ${operation} == 'U' )
+  -- old and new rows are paired by primary key, so the primary key must not change
+  if exists (select 1 from hst_new n where not exists (select 1 from hst_old o where
+$pkMatchOld
+            )) then
+    raise exception 'primary key update of % not supported by statement level history trigger', hst_table_name;
+  end if;
+
+#end
+  if not exists (select 1 from $changedRows c) then
+    return null;
+  end if;
+
+#if( $transactionLocalState )
+  transaction_timestamp_found:=HST_TRANSACTION_TIMESTAMP();
+#else
+  begin
+    select transaction_timestamp into strict transaction_timestamp_found
+    from HST_CURRENT_TRANSACTION
+    where transaction_id=txid_current();
+  exception when no_data_found then
+    transaction_timestamp_found:=clock_timestamp();
+    insert into HST_CURRENT_TRANSACTION (transaction_id, transaction_timestamp)
+      values (txid_current(), transaction_timestamp_found);
+  end;
+#end
+
+#if( ${operation} != 'I' )
+  -- invalidate latest entry in history table of each row modified the first time in this transaction
+  with invalidated as (
+    update ${hstTableName} h set invalidated_at=transaction_timestamp_found
+      from $changedRows c
+     where $notModifiedBefore and
+           h.transaction_timestamp < transaction_timestamp_found and
+           h.operation <> 'D' and
+#foreach( $pkColumn in $pkColumns )
+  #if( $!{columnMap.get($pkColumn).nullable} )
+           ((h.${pkColumn} is null and c.${pkColumn} is null) or h.${pkColumn}=c.${pkColumn}) and
+  #else
+           h.${pkColumn}=c.${pkColumn} and
+  #end
+#end
+           h.invalidated_at is null
+    returning#foreach( $pkColumn in $pkColumns ) h.${pkColumn}#if( $foreach.hasNext ),#end#end
+  )
+  select ''
+#foreach( $pkColumn in $pkColumns )
+         ||' ${pkColumn}='''|| c.${pkColumn} ||''''
+#end
+    into invalidation_failure
+    from $changedRows c
+   where $notModifiedBefore
+     and (select count(1) from invalidated i where
+#foreach( $pkColumn in $pkColumns )
+  #if( $!{columnMap.get($pkColumn).nullable} )
+            ((i.${pkColumn} is null and c.${pkColumn} is null) or i.${pkColumn}=c.${pkColumn}) and
+  #else
+            i.${pkColumn}=c.${pkColumn} and
+  #end
+#end
+            1=1)<>1
+   limit 1;
+
+  if found then
+    raise exception 'unable to invalidate history record for %', hst_table_name||coalesce(invalidation_failure, '');
+  end if;
+
+#end
+  -- rows modified before in this transaction replace their history entry
+  delete from ${hstTableName} h
+   using hst_modified_row m, $changedRows c
+   where m.transaction_id=txid_current() and m.table_name=hst_table_name
+     and m.row_id=c.hst_live_rowid
+     and h.hst_uuid=m.hst_uuid;
+
+  insert into ${hstTableName} ($hstColumns)
+  select $hstValues m.hst_uuid, #if( ${operation} == 'U' )case when m.operation='I' then 'I' else 'U' end#{else}'${operation}'#end, transaction_timestamp_found
+    from $changedRows c
+    join hst_modified_row m on m.transaction_id=txid_current() and m.table_name=hst_table_name
+                           and m.row_id=c.hst_live_rowid
+#if( ${operation} == 'D' )
+   -- rows inserted and deleted within this transaction leave no history
+   where m.operation<>'I'
+#end
+  ;
+
+  -- rows modified the first time in this transaction
+  with modified as (
+    insert into hst_modified_row (transaction_id, table_name, row_id, operation, hst_uuid)
+    select txid_current(), hst_table_name, c.hst_live_rowid, '${operation}', sys_guid()
+      from $changedRows c
+     where $notModifiedBefore
+    returning row_id, hst_uuid
+  )
+  insert into ${hstTableName} ($hstColumns)
+  select $hstValues m.hst_uuid, '${operation}', transaction_timestamp_found
+    from modified m
+    join $changedRows c on c.hst_live_rowid=m.row_id;
+
+  return null;
+end;
+
+$$ LANGUAGE 'plpgsql'
\ No newline at end of file
@@ -1,11 +1,20 @@
 package com.github.gekoh.yagen.ddl;
 
 import com.github.gekoh.yagen.api.AuditInfo;
+import com.github.gekoh.yagen.api.Auditable;
 import org.hibernate.dialect.Oracle10gDialect;
+import org.hibernate.dialect.PostgreSQL82Dialect;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author Georg Kohlweiss
@@ -80,6 +89,344 @@ public class CreateDDLTest {
 
     }
 
+    @Test
+    public void testPostgreSQLStatementLevelHistoryTriggers() {
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("default");
+        profile.setStatementLevelHistoryTriggers(true);
+        PostgreSQL82Dialect dialect = new PostgreSQL82Dialect();
+        CreateDDL createDDL = new CreateDDL(profile, dialect);
+
+        TableConfig.add(createDDL, "AMP_JOB_CONFIGS")
+                .withTableAnnotation("AMPJC")
+                .withTemporalEntityAnnotation()
+                .withAuditableAnnotation();
+
+        Collection<String> sql = createDDL.enhanceCreateTableDdl(dialect, "CREATE TABLE AMP_JOB_CONFIGS ( ID varchar(36) NOT NULL, PRIORITY int NOT NULL, JOBS_ID varchar(36) NOT NULL, constraint AJC_PK PRIMARY KEY (ID));");
+
+        String allSql = sql.toString().toLowerCase();
+        LOG.info(allSql);
+
+        Assert.assertFalse(allSql.contains("_htr_function"));
+        Assert.assertTrue(allSql.contains("create trigger amp_job_configs_hti\n" +
+                "after insert on amp_job_configs\n" +
+                "referencing new table as hst_new\n" +
+                "for each statement\n" +
+                "execute procedure amp_job_configs_hti_function()"));
+        Assert.assertTrue(allSql.contains("create trigger amp_job_configs_htu\n" +
+                "after update on amp_job_configs\n" +
+                "referencing old table as hst_old new table as hst_new\n" +
+                "for each statement\n" +
+                "execute procedure amp_job_configs_htu_function()"));
+        Assert.assertTrue(allSql.contains("create trigger amp_job_configs_htd\n" +
+                "after delete on amp_job_configs\n" +
+                "referencing old table as hst_old\n" +
+                "for each statement\n" +
+                "execute procedure amp_job_configs_htd_function()"));
+
+        // only changes of history relevant columns lead to history entries
+        Assert.assertTrue(allSql.contains("or n.priority is distinct from o.priority"));
+        Assert.assertTrue(allSql.contains("h.id=c.id and\n           h.invalidated_at is null"));
+    }
+
+    @Test
+    public void testHistoryTriggerWhenClause() {
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("default");
+        Oracle10gDialect dialect = new Oracle10gDialect();
+        CreateDDL createDDL = new CreateDDL(profile, dialect);
+
+        TableConfig.add(createDDL, "AMP_JOB_CONFIGS")
+                .withTableAnnotation("AMPJC")
+                .withTemporalEntityAnnotation(null, null, "JOBS_ID")
+                .withAuditableAnnotation();
+
+        String allSql = createDDL.enhanceCreateTableDdl(dialect, "CREATE TABLE AMP_JOB_CONFIGS ( ID varchar2(36) NOT NULL, PRIORITY number(10) NOT NULL, JOBS_ID varchar2(36) NOT NULL, constraint AJC_PK PRIMARY KEY (ID));").toString().toLowerCase();
+        LOG.info(allSql);
+
+        Assert.assertTrue(allSql.contains("after insert or update or delete on amp_job_configs\n" +
+                "for each row\n" +
+                "when (old.id is null or new.id is null or\n" +
+                "      (new.id is null and old.id is not null) or (new.id is not null and old.id is null) or new.id!=old.id or\n" +
+                "      (new.priority is null and old.priority is not null) or (new.priority is not null and old.priority is null) or new.priority!=old.priority)\n"));
+
+        profile = new DDLGenerator.Profile("default");
+        PostgreSQL82Dialect pgDialect = new PostgreSQL82Dialect();
+        createDDL = new CreateDDL(profile, pgDialect);
+
+        TableConfig.add(createDDL, "AMP_JOB_CONFIGS")
+                .withTableAnnotation("AMPJC")
+                .withTemporalEntityAnnotation(null, null, "ID", "PRIORITY", "JOBS_ID");
+
+        allSql = createDDL.enhanceCreateTableDdl(pgDialect, "CREATE TABLE AMP_JOB_CONFIGS ( ID varchar(36) NOT NULL, PRIORITY int NOT NULL, JOBS_ID varchar(36) NOT NULL, constraint AJC_PK PRIMARY KEY (ID));").toString().toLowerCase();
+        LOG.info(allSql);
+
+        // no update trigger if no column is history relevant
+        Assert.assertFalse(allSql.contains("amp_job_configs_htu"));
+        Assert.assertTrue(allSql.contains("create trigger amp_job_configs_htr\nafter insert or delete on amp_job_configs\n" +
+                "for each row\n" +
+                "execute procedure amp_job_configs_htr_function()"));
+        Assert.assertEquals(1, createDDL.getDBObjects().size());
+    }
+
+    @Test
+    public void testHistoryTriggerWhenClauseCompositeKey() {
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("default");
+        Oracle10gDialect dialect = new Oracle10gDialect();
+        CreateDDL createDDL = new CreateDDL(profile, dialect);
+
+        TableConfig.add(createDDL, "AMP_JOB_CONFIGS")
+                .withTableAnnotation("AMPJC")
+                .withTemporalEntityAnnotation(null, null, "JOBS_ID")
+                .withAuditableAnnotation();
+
+        String allSql = createDDL.enhanceCreateTableDdl(dialect, "CREATE TABLE AMP_JOB_CONFIGS ( ID varchar2(36) NOT NULL, PRIORITY number(10) NOT NULL, JOBS_ID varchar2(36) NOT NULL, constraint AJC_PK PRIMARY KEY (ID, PRIORITY));").toString().toLowerCase();
+        LOG.info(allSql);
+
+        // inserts and deletes are told apart by all key columns, not only the first one
+        Assert.assertTrue(allSql.contains("when ((old.id is null and old.priority is null) or (new.id is null and new.priority is null) or\n"));
+    }
+
+    @Test
+    public void testPostgreSQLHistoryTriggerNames() {
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("default");
+        PostgreSQL82Dialect dialect = new PostgreSQL82Dialect();
+        CreateDDL createDDL = new CreateDDL(profile, dialect);
+
+        TableConfig.add(createDDL, "AMP_JOB_CONFIGURATION_ENTRIES")
+                .withTableAnnotation("AMPJCE")
+                .withTemporalEntityAnnotation();
+
+        String allSql = createDDL.enhanceCreateTableDdl(dialect, "CREATE TABLE AMP_JOB_CONFIGURATION_ENTRIES ( ID varchar(36) NOT NULL, PRIORITY int NOT NULL, constraint AJCE_PK PRIMARY KEY (ID));").toString().toLowerCase();
+        LOG.info(allSql);
+
+        // too long table names are shortened by the naming strategy like for all other triggers
+        Assert.assertFalse(allSql.contains("amp_job_configuration_entries_ht"));
+        Assert.assertTrue(allSql.contains("create trigger ampjce_htu\nafter update on amp_job_configuration_entries\n"));
+        Assert.assertTrue(allSql.contains("create trigger ampjce_htr\nafter insert or delete on amp_job_configuration_entries\n" +
+                "for each row\n" +
+                "execute procedure ampjce_htr_function()"));
+        Assert.assertEquals(2, createDDL.getDBObjects().size());
+    }
+
+    @Test
+    public void testOracleCompoundHistoryTrigger() {
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("default");
+        profile.setCompoundHistoryTriggers(true);
+        Oracle10gDialect dialect = new Oracle10gDialect();
+        CreateDDL createDDL = new CreateDDL(profile, dialect);
+
+        TableConfig.add(createDDL, "AMP_JOB_CONFIGS")
+                .withTableAnnotation("AMPJC")
+                .withTemporalEntityAnnotation()
+                .withAuditableAnnotation();
+
+        Collection<String> sql = createDDL.enhanceCreateTableDdl(dialect, "CREATE TABLE AMP_JOB_CONFIGS ( ID varchar2(36) NOT NULL, PRIORITY number(10) NOT NULL, JOBS_ID varchar2(36) NOT NULL, constraint AJC_PK PRIMARY KEY (ID));");
+
+        String allSql = sql.toString().toLowerCase();
+        LOG.info(allSql);
+
+        Assert.assertTrue(allSql.contains("trigger amp_job_configs_htr\n" +
+                "for insert or update or delete on amp_job_configs\n" +
+                "compound trigger"));
+        Assert.assertTrue(allSql.contains("after each row is"));
+        Assert.assertTrue(allSql.contains("after statement is"));
+        Assert.assertTrue(allSql.contains("forall i in indices of hst_rows\n      insert into amp_job_configs_hst"));
+        Assert.assertTrue(allSql.contains("id=invalidate_keys(i).id and\n          invalidated_at is null;"));
+        Assert.assertTrue(allSql.contains("transaction_timestamp_found:=hst_transaction.get_timestamp;"));
+        Assert.assertFalse(allSql.contains("from hst_current_transaction"));
+
+        // statement level triggers of PostgreSQL do not change the oracle trigger
+        profile = new DDLGenerator.Profile("default");
+        profile.setStatementLevelHistoryTriggers(true);
+        createDDL = new CreateDDL(profile, dialect);
+
+        TableConfig.add(createDDL, "AMP_JOB_CONFIGS")
+                .withTableAnnotation("AMPJC")
+                .withTemporalEntityAnnotation()
+                .withAuditableAnnotation();
+
+        allSql = createDDL.enhanceCreateTableDdl(dialect, "CREATE TABLE AMP_JOB_CONFIGS ( ID varchar2(36) NOT NULL, PRIORITY number(10) NOT NULL, JOBS_ID varchar2(36) NOT NULL, constraint AJC_PK PRIMARY KEY (ID));").toString().toLowerCase();
+        Assert.assertFalse(allSql.contains("compound trigger"));
+        Assert.assertTrue(allSql.contains("for each row"));
+    }
+
+    @Test
+    public void testPostgreSQLTransactionLocalHistoryState() {
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("default");
+        profile.setTransactionLocalHistoryState(true);
+        PostgreSQL82Dialect dialect = new PostgreSQL82Dialect();
+        CreateDDL createDDL = new CreateDDL(profile, dialect);
+
+        TableConfig.add(createDDL, "AMP_JOB_CONFIGS")
+                .withTableAnnotation("AMPJC")
+                .withTemporalEntityAnnotation();
+
+        Collection<String> sql = createDDL.enhanceCreateTableDdl(dialect, "CREATE TABLE AMP_JOB_CONFIGS ( ID varchar(36) NOT NULL, PRIORITY int NOT NULL, JOBS_ID varchar(36) NOT NULL, constraint AJC_PK PRIMARY KEY (ID));");
+
+        String allSql = sql.toString().toLowerCase();
+        LOG.info(allSql);
+
+        Assert.assertTrue(allSql.contains("transaction_timestamp_found:=hst_transaction_timestamp();"));
+        Assert.assertFalse(allSql.contains("hst_current_transaction"));
+        // HST_MODIFIED_ROW is a temporary table created on demand, %TYPE would be resolved before it exists
+        Assert.assertTrue(allSql.contains("hst_operation char(1):=substr(tg_op, 1, 1);"));
+        Assert.assertFalse(allSql.contains("hst_modified_row.operation%type"));
+
+        String initHistory = null;
+        for (DDLGenerator.AddDDLEntry headerDdl : profile.getHeaderDdls()) {
+            if (headerDdl.toString().endsWith("InitHistory.ddl.sql")) {
+                initHistory = headerDdl.getDdlText(dialect).toLowerCase();
+            }
+        }
+        Assert.assertNotNull(initHistory);
+        Assert.assertTrue(initHistory.contains("create temporary table hst_modified_row"));
+        Assert.assertTrue(initHistory.contains("function set_transaction_timestamp(timestamp_in timestamp)"));
+        Assert.assertFalse(initHistory.contains("create table hst_current_transaction"));
+    }
+
+    @Test
+    public void testHistoryOutbox() {
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("default");
+        Oracle10gDialect dialect = new Oracle10gDialect();
+        CreateDDL createDDL = new CreateDDL(profile, dialect);
+
+        TableConfig.add(createDDL, "AMP_JOB_CONFIGS")
+                .withTableAnnotation("AMPJC")
+                .withTemporalEntityAnnotation(null, null, true)
+                .withAuditableAnnotation();
+
+        String allSql = createDDL.enhanceCreateTableDdl(dialect, "CREATE TABLE AMP_JOB_CONFIGS ( ID varchar2(36) NOT NULL, PRIORITY number(10) NOT NULL, JOBS_ID varchar2(36) NOT NULL, constraint AJC_PK PRIMARY KEY (ID));").toString().toLowerCase();
+        LOG.info(allSql);
+
+        Assert.assertTrue(allSql.contains("create table amp_job_configs_hst_hob as\nselect h.*, cast(null as number(19,0)) hst_outbox_seq"));
+        Assert.assertTrue(allSql.contains("alter table amp_job_configs_hst_hob add primary key (hst_outbox_seq)"));
+        Assert.assertTrue(allSql.contains("create sequence amp_job_configs_hst_hob_seq"));
+        Assert.assertTrue(allSql.contains("insert into amp_job_configs_hst_hob ("));
+        Assert.assertTrue(allSql.contains("amp_job_configs_hst_hob_seq.nextval, dbms_transaction.local_transaction_id"));
+        // invalidation is done by the drainer
+        Assert.assertFalse(allSql.contains("update amp_job_configs_hst "));
+
+        profile = new DDLGenerator.Profile("default");
+        PostgreSQL82Dialect pgDialect = new PostgreSQL82Dialect();
+        createDDL = new CreateDDL(profile, pgDialect);
+
+        TableConfig.add(createDDL, "AMP_JOB_CONFIGS")
+                .withTableAnnotation("AMPJC")
+                .withTemporalEntityAnnotation(null, null, true);
+
+        allSql = createDDL.enhanceCreateTableDdl(pgDialect, "CREATE TABLE AMP_JOB_CONFIGS ( ID varchar(36) NOT NULL, PRIORITY int NOT NULL, JOBS_ID varchar(36) NOT NULL, constraint AJC_PK PRIMARY KEY (ID));").toString().toLowerCase();
+        LOG.info(allSql);
+
+        Assert.assertTrue(allSql.contains("nextval('amp_job_configs_hst_hob_seq'), cast(txid_current() as "));
+        Assert.assertTrue(allSql.contains("create trigger amp_job_configs_htr\nafter insert or delete on amp_job_configs"));
+    }
+
+    @Test
+    public void testParallelEnhancementSameAsSerial() {
+        String[] serialSql = enhanceTables(1);
+        String[] parallelSql = enhanceTables(4);
+
+        for (String sql : parallelSql) {
+            Assert.assertFalse(sql.startsWith("-- pending enhancement"));
+        }
+        Assert.assertArrayEquals(serialSql, parallelSql);
+    }
+
+    private String[] enhanceTables(int parallelism) {
+        int tableCount = 12;
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("default");
+        profile.setEnhancementParallelism(parallelism);
+        Oracle10gDialect dialect = new Oracle10gDialect();
+        CreateDDL createDDL = new CreateDDL(profile, dialect);
+
+        for (int i = 0; i < tableCount; i++) {
+            TableConfig.add(createDDL, "AMP_JOB_CONFIGS_" + i)
+                    .withTableAnnotation("AMPJC" + i)
+                    .withTemporalEntityAnnotation()
+                    .withAuditableAnnotation();
+        }
+
+        Map<String, Object> columns = new LinkedHashMap<String, Object>();
+        columns.put("id", null);
+        columns.put("priority", null);
+        columns.put("jobs_id", null);
+
+        String[] createSQL = new String[tableCount];
+
+        createDDL.beginTableEnhancements();
+        for (int i = 0; i < tableCount; i++) {
+            createSQL[i] = createDDL.updateCreateTable(dialect, new StringBuffer("create table AMP_JOB_CONFIGS_" + i + " (" +
+                    "ID varchar2(36) not null, PRIORITY number(10) not null, JOBS_ID varchar2(36) not null, " +
+                    "constraint AJC" + i + "_PK primary key (ID))"), "AMP_JOB_CONFIGS_" + i, columns);
+        }
+        createSQL = createDDL.completeTableEnhancements(createSQL);
+
+        String[] allSql = new String[tableCount + 1];
+        System.arraycopy(createSQL, 0, allSql, 0, tableCount);
+        // deferred DDL
+        allSql[tableCount] = profile.getAddDdls().get(0).getDdlText(dialect);
+
+        return allSql;
+    }
+
+    @Test
+    public void testFragmentCacheSameAsEnhancing() throws IOException {
+        File cacheDir = File.createTempFile("yagen-fragments", "");
+        Assert.assertTrue(cacheDir.delete() && cacheDir.mkdir());
+
+        try {
+            String[] enhancedSql = enhanceCachedJobs(null);
+            String[] firstRunSql = enhanceCachedJobs(cacheDir.getPath());
+
+            File[] fragmentFiles = cacheDir.listFiles();
+            Assert.assertEquals(1, fragmentFiles.length);
+
+            String fingerprint = fragmentFiles[0].getName().replaceFirst("\\.fragment$", "");
+            TableFragment fragment = new TableFragmentCache(cacheDir).load(fingerprint);
+            Assert.assertNotNull(fragment);
+            Assert.assertEquals(enhancedSql[0], fragment.getSql());
+
+            String[] secondRunSql = enhanceCachedJobs(cacheDir.getPath());
+
+            Assert.assertArrayEquals(enhancedSql, firstRunSql);
+            Assert.assertArrayEquals(enhancedSql, secondRunSql);
+            Assert.assertEquals(1, cacheDir.listFiles().length);
+        } finally {
+            for (File file : cacheDir.listFiles()) {
+                file.delete();
+            }
+            cacheDir.delete();
+        }
+    }
+
+    private String[] enhanceCachedJobs(String fragmentCacheDir) {
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("default");
+        profile.setFragmentCacheDir(fragmentCacheDir);
+        profile.addPersistenceClass(CachedJob.class);
+        Oracle10gDialect dialect = new Oracle10gDialect();
+        CreateDDL createDDL = new CreateDDL(profile, dialect);
+
+        Map<String, Object> columns = new LinkedHashMap<String, Object>();
+        columns.put("id", null);
+        columns.put("priority", null);
+
+        createDDL.beginTableEnhancements();
+        String[] createSQL = createDDL.completeTableEnhancements(new String[]{
+                createDDL.updateCreateTable(dialect, new StringBuffer("create table CACHED_JOBS (" +
+                        "ID varchar2(36) not null, PRIORITY number(10) not null, constraint CJ_PK primary key (ID))"), "CACHED_JOBS", columns)
+        });
+
+        return new String[]{createSQL[0], profile.getAddDdls().get(0).getDdlText(dialect), createDDL.getDBObjects().toString()};
+    }
+
+    @Entity
+    @Table(name = "CACHED_JOBS")
+    @Auditable
+    public static class CachedJob {
+        @Id
+        private String id;
+        private int priority;
+    }
+
     private void assertHtrUpdateInvalidatedAtSql(String lowerCase) {
         Assert.assertTrue(lowerCase.contains("update amp_job_configs_hst h set invalidated_at=transaction_timestamp_found\n" +
                                               "          where\n" +
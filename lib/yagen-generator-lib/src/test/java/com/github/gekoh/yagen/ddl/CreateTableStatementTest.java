@@ -0,0 +1,85 @@
+package com.github.gekoh.yagen.ddl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class CreateTableStatementTest {
+
+    private static final String DDL = "create table AMP_JOB_CONFIGS (ID varchar2(36) not null, PRIORITY number(10) default 5 not null, " +
+            "CPU_USAGE number(3,1), REMARK varchar2(200) constraint AJC_REMARK_UK unique, CREATED_AT timestamp, " +
+            "JOBS_ID varchar2(36) not null, NAME varchar2(20), constraint AJC_PK primary key (ID), unique (JOBS_ID, NAME)) " +
+            "partition by range (CREATED_AT)";
+
+    @Test
+    public void testParseModel() {
+        CreateTableStatement createTable = CreateTableStatement.parse(DDL);
+
+        Assert.assertTrue(createTable.isTable());
+        Assert.assertEquals("AMP_JOB_CONFIGS", createTable.getTableName());
+        Assert.assertEquals(7, createTable.getColumns().size());
+        Assert.assertEquals("partition by range (CREATED_AT)", createTable.getPartitionClause());
+
+        CreateTableStatement.Column priority = createTable.getColumn("priority");
+        Assert.assertNotNull(priority);
+        Assert.assertEquals("number(10)", priority.getType());
+        Assert.assertEquals("5", priority.getDefaultValue());
+        Assert.assertTrue(priority.isNotNull());
+        Assert.assertNull(priority.getNotNullConstraintName());
+
+        CreateTableStatement.Column cpuUsage = createTable.getColumn("CPU_USAGE");
+        Assert.assertEquals("number(3,1)", cpuUsage.getType());
+        Assert.assertFalse(cpuUsage.hasNullClause());
+
+        CreateTableStatement.Column remark = createTable.getColumn("REMARK");
+        Assert.assertTrue(remark.isUnique());
+        Assert.assertEquals("AJC_REMARK_UK", remark.getUniqueConstraintName());
+
+        Assert.assertTrue(createTable.hasPrimaryKey());
+        Assert.assertEquals("AJC_PK", createTable.getPrimaryKey().getConstraintName());
+        Assert.assertEquals("ID", createTable.getPrimaryKey().getColumnList());
+
+        Assert.assertEquals(1, createTable.getUniqueClauses().size());
+        Assert.assertNull(createTable.getUniqueClauses().get(0).getConstraintName());
+        Assert.assertEquals("JOBS_ID, NAME", createTable.getUniqueClauses().get(0).getColumnList());
+    }
+
+    @Test
+    public void testNoTable() {
+        CreateTableStatement statement = CreateTableStatement.parse("create index AJC_IX on AMP_JOB_CONFIGS (JOBS_ID)");
+
+        Assert.assertFalse(statement.isTable());
+        Assert.assertTrue(statement.getColumns().isEmpty());
+        Assert.assertFalse(statement.hasPrimaryKey());
+    }
+
+    @Test
+    public void testEditor() {
+        CreateTableStatement createTable = CreateTableStatement.parse(DDL);
+        CreateTableStatement.Column jobsId = createTable.getColumn("JOBS_ID");
+
+        CreateTableStatement edited = createTable.edit()
+                .insert(jobsId.getNullClauseStart(), " constraint AJC_JOBS_ID_NN")
+                .delete(createTable.getPrimaryKey().getNameStart(), createTable.getPrimaryKey().getNameEnd())
+                .insert(createTable.getPrimaryKey().getNameStart(), "AJC_NEW_PK")
+                .apply();
+
+        Assert.assertEquals("AJC_JOBS_ID_NN", edited.getColumn("JOBS_ID").getNotNullConstraintName());
+        Assert.assertEquals("AJC_NEW_PK", edited.getPrimaryKey().getConstraintName());
+        Assert.assertEquals(createTable.getColumns().size(), edited.getColumns().size());
+        Assert.assertSame(createTable, createTable.edit().apply());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOverlappingEdits() {
+        CreateTableStatement createTable = CreateTableStatement.parse(DDL);
+        CreateTableStatement.Column id = createTable.getColumn("ID");
+
+        createTable.edit()
+                .delete(id.getStart(), id.getEnd())
+                .replace(id.getNameStart(), id.getTypeEnd(), "X")
+                .toSql();
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.gekoh.yagen.ddl;
+
+import org.hibernate.dialect.Oracle10gDialect;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class GenerationSummaryTest {
+
+    @Test
+    public void testAggregation() throws Exception {
+        GenerationSummary summary = new GenerationSummary();
+        for (int i = 1; i <= GenerationSummary.SLOWEST_OBJECTS + 5; i++) {
+            summary.phaseCompleted(GenerationPhase.TABLE, "TABLE_" + i, i * 1000000L, 2, 100);
+        }
+        summary.phaseCompleted(GenerationPhase.PATCH, null, 5000000L, 0, 0);
+
+        GenerationSummary.PhaseSummary tables = summary.getPhaseSummary(GenerationPhase.TABLE);
+        Assert.assertEquals(GenerationSummary.SLOWEST_OBJECTS + 5, tables.getCount());
+        Assert.assertEquals(15000000L, tables.getMaxNanos());
+        Assert.assertEquals(30, tables.getStatementCount());
+        Assert.assertEquals(1500, tables.getByteSize());
+        Assert.assertEquals(GenerationSummary.SLOWEST_OBJECTS, tables.getSlowestObjects().size());
+        Assert.assertEquals(Arrays.asList("TABLE_15", "TABLE_14", "TABLE_13"), tables.getSlowestObjects().subList(0, 3));
+
+        Assert.assertTrue(summary.getPhaseSummary(GenerationPhase.PATCH).getSlowestObjects().isEmpty());
+        Assert.assertNull(summary.getPhaseSummary(GenerationPhase.COMMENTS));
+
+        StringWriter report = new StringWriter();
+        summary.writeReport(new DDLGenerator.Profile("summary"), report);
+        String json = report.toString();
+        Assert.assertTrue(json, json.contains("\"profile\": \"summary\""));
+        Assert.assertTrue(json, json.contains("\"phase\": \"TABLE\""));
+        Assert.assertTrue(json, json.contains("{\"name\": \"TABLE_15\", \"millis\": 15}"));
+        Assert.assertTrue(json, json.indexOf("\"PATCH\"") < json.indexOf("\"TABLE\""));
+    }
+
+    @Test
+    public void testScanPhasesReported() throws Exception {
+        SyntheticDomain domain = new SyntheticDomain.Generator().withAuditableRatio(0.5).generate(20);
+
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("summary");
+        domain.addTo(profile);
+        GenerationSummary summary = new GenerationSummary();
+        profile.addGenerationListener(summary);
+
+        new CreateDDL(profile.clone(), new Oracle10gDialect());
+
+        Assert.assertEquals(1, summary.getPhaseSummary(GenerationPhase.ENTITY_SCAN).getCount());
+        Assert.assertEquals(domain.getEntityClasses().size(), summary.getPhaseSummary(GenerationPhase.ENTITY).getCount());
+    }
+}
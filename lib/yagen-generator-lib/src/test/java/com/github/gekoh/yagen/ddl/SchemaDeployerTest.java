@@ -0,0 +1,117 @@
+package com.github.gekoh.yagen.ddl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class SchemaDeployerTest {
+
+    private static final List<String> SCRIPT = Arrays.asList(
+            "create table customer (id varchar2(36) not null, constraint customer_pk primary key (id))",
+            "create table orders (id varchar2(36) not null, customer_id varchar2(36), constraint orders_pk primary key (id))",
+            "create table orders_hst (hst_uuid varchar2(32) not null, id varchar2(36))",
+            "create index orders_customer_ix on orders (customer_id)",
+            "alter table orders add constraint orders_customer_fk foreign key (customer_id) references customer",
+            "create or replace\ntrigger orders_htr\nafter insert or update or delete on orders\nfor each row\nbegin\n  insert into orders_hst (hst_uuid, id) values (sys_guid(), :new.id);\nend;",
+            "create or replace view orders_v as select o.id, c.id customer from orders o join customer c on c.id=o.customer_id",
+            "-- initial data\ninsert into customer (id) values ('1')",
+            "create index customer_ix on customer (id, id)",
+            "begin\nexecute immediate 'comment on table orders is ''orders''';\nend;"
+    );
+
+    private static Set<Integer> getDependencies(List<SchemaDeployer.Node> plan, int seq) {
+        Set<Integer> dependencies = new HashSet<Integer>();
+        for (SchemaDeployer.Node node : plan.get(seq).getDependencies()) {
+            dependencies.add(node.getSeq());
+        }
+        return dependencies;
+    }
+
+    @Test
+    public void testPlan() {
+        List<SchemaDeployer.Node> plan = SchemaDeployer.createPlan(SCRIPT);
+
+        Assert.assertTrue(getDependencies(plan, 0).isEmpty());
+        Assert.assertTrue(getDependencies(plan, 1).isEmpty());
+        Assert.assertTrue(getDependencies(plan, 2).isEmpty());
+        // index and constraint modify the table, so they run in script order
+        Assert.assertEquals(new HashSet<Integer>(Arrays.asList(1)), getDependencies(plan, 3));
+        Assert.assertEquals(new HashSet<Integer>(Arrays.asList(3, 0)), getDependencies(plan, 4));
+        // trigger on orders refers to the history table
+        Assert.assertEquals(new HashSet<Integer>(Arrays.asList(4, 2)), getDependencies(plan, 5));
+        // view waits for the last modification of its base tables
+        Assert.assertEquals(new HashSet<Integer>(Arrays.asList(5, 0)), getDependencies(plan, 6));
+        // the insert cannot be analyzed and waits for everything before
+        Assert.assertEquals(new HashSet<Integer>(Arrays.asList(0, 1, 2, 3, 4, 5, 6)), getDependencies(plan, 7));
+        Assert.assertEquals(new HashSet<Integer>(Arrays.asList(7)), getDependencies(plan, 8));
+        Assert.assertEquals(new HashSet<Integer>(Arrays.asList(7)), getDependencies(plan, 9));
+    }
+
+    @Test
+    public void testDeploy() throws Exception {
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        final AtomicInteger connections = new AtomicInteger();
+
+        final InvocationHandler statementHandler = new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("execute")) {
+                    Thread.sleep(5);
+                    executed.add((String) args[0]);
+                    if (((String) args[0]).startsWith("create index customer_ix")) {
+                        throw new SQLException("such column list already indexed");
+                    }
+                    return false;
+                }
+                return null;
+            }
+        };
+        final InvocationHandler connectionHandler = new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("createStatement")) {
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Statement.class}, statementHandler);
+                }
+                return null;
+            }
+        };
+        DataSource dataSource = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{DataSource.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getName().equals("getConnection")) {
+                    connections.incrementAndGet();
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class}, connectionHandler);
+                }
+                return null;
+            }
+        });
+
+        List<String> failed = new SchemaDeployer(dataSource, 4).deploy(SCRIPT);
+
+        Assert.assertEquals(Arrays.asList(SCRIPT.get(8)), failed);
+        Assert.assertEquals(SCRIPT.size(), executed.size());
+        Assert.assertTrue(connections.get() <= 4);
+
+        List<SchemaDeployer.Node> plan = SchemaDeployer.createPlan(SCRIPT);
+        for (SchemaDeployer.Node node : plan) {
+            for (SchemaDeployer.Node dependency : node.getDependencies()) {
+                Assert.assertTrue(node + " executed before " + dependency,
+                        executed.indexOf(SCRIPT.get(dependency.getSeq())) < executed.indexOf(SCRIPT.get(node.getSeq())));
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.gekoh.yagen.ddl;
+
+import org.hibernate.dialect.Oracle10gDialect;
+import org.hibernate.dialect.PostgreSQL82Dialect;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class SchemaDiffTest {
+
+    private static final String HST_TRIGGER = "create or replace\ntrigger ORDERS_htr\nafter insert or update or delete on orders\nfor each row\nbegin\n  null; -- %s\nend;";
+
+    private static SchemaModel createPreviousModel() {
+        SchemaModel model = new SchemaModel();
+        model.put(ObjectType.TABLE, "ORDERS", "create table orders (id varchar2(36) not null, customer varchar2(100), amount number(10,2), remark varchar2(20), constraint orders_pk primary key (id))");
+        model.put(ObjectType.TABLE, "OLD_ITEMS", "create table old_items (id varchar2(36) not null, constraint old_items_pk primary key (id))");
+        model.put(ObjectType.INDEX, "ORDERS_CUSTOMER_IX", "create index orders_customer_ix on orders (customer)");
+        model.put(ObjectType.INDEX, "OLD_ITEMS_IX", "create index old_items_ix on old_items (id)");
+        model.put(ObjectType.TRIGGER, "ORDERS_htr", String.format(HST_TRIGGER, "id, customer, amount, remark"));
+        return model;
+    }
+
+    private static SchemaModel createCurrentModel() {
+        SchemaModel model = new SchemaModel();
+        model.put(ObjectType.TABLE, "ORDERS", "create table orders (id varchar2(36) not null, customer varchar2(200) not null, amount number(10,2) default 0, created timestamp, constraint orders_pk primary key (id))");
+        model.put(ObjectType.TABLE, "ITEMS", "create table items (id varchar2(36) not null, constraint items_pk primary key (id))");
+        model.put(ObjectType.INDEX, "ORDERS_CUSTOMER_IX", "create index orders_customer_ix on orders (customer, amount)");
+        model.put(ObjectType.TRIGGER, "ORDERS_htr", String.format(HST_TRIGGER, "id, customer, amount, created"));
+        return model;
+    }
+
+    @Test
+    public void testOracleMigration() {
+        List<String> statements = new SchemaDiff(new Oracle10gDialect()).diff(createPreviousModel(), createCurrentModel());
+
+        Assert.assertEquals(Arrays.asList(
+                "drop index orders_customer_ix",
+                "drop table old_items",
+                "alter table orders drop column remark",
+                "alter table orders modify (customer varchar2(200))",
+                "alter table orders modify (customer not null)",
+                "alter table orders modify (amount default 0)",
+                "alter table orders add (created timestamp)",
+                "create table items (id varchar2(36) not null, constraint items_pk primary key (id))",
+                "create index orders_customer_ix on orders (customer, amount)",
+                String.format(HST_TRIGGER, "id, customer, amount, created")
+        ), statements);
+    }
+
+    @Test
+    public void testPostgresMigration() {
+        List<String> statements = new SchemaDiff(new PostgreSQL82Dialect()).diff(createPreviousModel(), createCurrentModel());
+
+        Assert.assertTrue(statements.toString(), statements.contains("drop index if exists orders_customer_ix"));
+        Assert.assertTrue(statements.toString(), statements.contains("alter table orders alter column customer type varchar2(200)"));
+        Assert.assertTrue(statements.toString(), statements.contains("alter table orders alter column customer set not null"));
+        Assert.assertTrue(statements.toString(), statements.contains("alter table orders add column created timestamp"));
+    }
+
+    @Test
+    public void testUnchangedSchema() {
+        Assert.assertTrue(new SchemaDiff(new Oracle10gDialect()).diff(createCurrentModel(), createCurrentModel()).isEmpty());
+    }
+
+    @Test
+    public void testModelRoundTrip() throws Exception {
+        SchemaModel model = createPreviousModel();
+        model.put(ObjectType.COMMENT, null, "begin\nexecute immediate 'comment on table orders is ''line\n-- @yagen-object TABLE 1 x''';\nend;");
+
+        StringWriter wr = new StringWriter();
+        model.write(wr);
+        SchemaModel read = SchemaModel.read(new StringReader(wr.toString()));
+
+        for (ObjectType objectType : ObjectType.values()) {
+            Assert.assertEquals(model.getNames(objectType), read.getNames(objectType));
+            for (String name : model.getNames(objectType)) {
+                Assert.assertEquals(model.get(objectType, name), read.get(objectType, name));
+            }
+        }
+        Assert.assertTrue(new SchemaDiff(new Oracle10gDialect()).diff(model, read).isEmpty());
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.gekoh.yagen.ddl;
+
+import org.hibernate.dialect.Oracle10gDialect;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class SchemaSnapshotTest {
+
+    private static SchemaModel createModel() {
+        SchemaModel model = new SchemaModel();
+        for (int i = 0; i < 100; i++) {
+            model.put(ObjectType.TABLE, "TABLE_" + i, "create table table_" + i + " (id varchar2(36) not null, text varchar2(20) default '\u00e4\u00f6\u00fc', constraint table_" + i + "_pk primary key (id))");
+            model.put(ObjectType.INDEX, "TABLE_" + i + "_IX", "create index table_" + i + "_ix on table_" + i + " (text)");
+        }
+        model.put(ObjectType.TRIGGER, "TABLE_0_HTR", "create or replace\ntrigger table_0_htr\nafter insert or update or delete on table_0\nfor each row\nbegin\n  null;\nend;");
+        return model;
+    }
+
+    @Test
+    public void testFileRoundTrip() throws Exception {
+        SchemaModel model = createModel();
+        File file = File.createTempFile("schema", ".snapshot");
+        try {
+            SchemaSnapshot.write(model, file);
+            Assert.assertTrue(SchemaSnapshot.isSnapshot(file));
+
+            SchemaSnapshot snapshot = SchemaSnapshot.open(file);
+            for (ObjectType objectType : ObjectType.values()) {
+                Assert.assertEquals(model.getNames(objectType), snapshot.getNames(objectType));
+                for (String name : model.getNames(objectType)) {
+                    Assert.assertEquals(model.get(objectType, name), snapshot.get(objectType, name));
+                }
+            }
+            Assert.assertNull(snapshot.get(ObjectType.VIEW, "TABLE_0"));
+            Assert.assertTrue(new SchemaDiff(new Oracle10gDialect()).diff(snapshot, model).isEmpty());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testDiffAgainstSnapshot() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SchemaSnapshot.write(createModel(), new DataOutputStream(bytes));
+        SchemaSnapshot previous = SchemaSnapshot.read(ByteBuffer.wrap(bytes.toByteArray()));
+
+        SchemaModel current = createModel();
+        current.put(ObjectType.INDEX, "TABLE_1_IX", "create index table_1_ix on table_1 (id, text)");
+
+        Assert.assertEquals(2, new SchemaDiff(new Oracle10gDialect()).diff(previous, current).size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SchemaSnapshot.write(createModel(), new DataOutputStream(bytes));
+        SchemaSnapshot.read(ByteBuffer.wrap(bytes.toByteArray())).put(ObjectType.TABLE, "X", "create table x (id int)");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNewerVersion() {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putInt(SchemaSnapshot.MAGIC).putShort((short) (SchemaSnapshot.VERSION + 1));
+        buffer.flip();
+        SchemaSnapshot.read(buffer);
+    }
+}
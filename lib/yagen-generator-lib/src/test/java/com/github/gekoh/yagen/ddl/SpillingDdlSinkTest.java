@@ -0,0 +1,49 @@
+package com.github.gekoh.yagen.ddl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class SpillingDdlSinkTest {
+
+    @Test
+    public void testInMemory() throws IOException {
+        SpillingDdlSink sink = new SpillingDdlSink(1024);
+        Assert.assertTrue(sink.isEmpty());
+
+        sink.append("create view A_V as select * from A;\n").append("").append("comment on table A is '\u00c4';\n");
+
+        Assert.assertFalse(sink.isEmpty());
+        Assert.assertFalse(sink.isSpilled());
+        Assert.assertEquals("create view A_V as select * from A;\ncomment on table A is '\u00c4';\n", DDLGenerator.read(sink.getReader()));
+        sink.close();
+    }
+
+    @Test
+    public void testSpilled() throws IOException {
+        SpillingDdlSink sink = new SpillingDdlSink(64);
+        StringBuilder expected = new StringBuilder();
+
+        for (int i = 0; i < 1000; i++) {
+            String ddl = "comment on column TBL_" + i + ".NAME is 'Gr\u00f6\u00dfe " + i + "';\n";
+            sink.append(ddl);
+            expected.append(ddl);
+        }
+
+        Assert.assertTrue(sink.isSpilled());
+        Assert.assertEquals(expected.toString(), DDLGenerator.read(sink.getReader()));
+        sink.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAppendAfterRead() {
+        SpillingDdlSink sink = new SpillingDdlSink();
+        sink.append("create view A_V as select * from A;\n");
+        sink.getReader();
+        sink.append("create view B_V as select * from B;\n");
+    }
+}
@@ -0,0 +1,404 @@
+package com.github.gekoh.yagen.ddl;
+
+import com.github.gekoh.yagen.api.Auditable;
+import com.github.gekoh.yagen.api.I18NDetailEntityRelation;
+import com.github.gekoh.yagen.api.IntervalPartitioning;
+import com.github.gekoh.yagen.api.LayeredTablesView;
+import com.github.gekoh.yagen.api.TemporalEntity;
+import com.github.gekoh.yagen.hst.CreateEntities;
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewConstructor;
+import javassist.Modifier;
+import javassist.NotFoundException;
+import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.ConstPool;
+import javassist.bytecode.annotation.Annotation;
+import javassist.bytecode.annotation.AnnotationMemberValue;
+import javassist.bytecode.annotation.ArrayMemberValue;
+import javassist.bytecode.annotation.IntegerMemberValue;
+import javassist.bytecode.annotation.MemberValue;
+import javassist.bytecode.annotation.StringMemberValue;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.MappedSuperclass;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Domain of annotated entity classes generated at runtime with javassist to test and benchmark the generator with
+ * production sized schemas, see {@link Generator} for the configurable mix of features.
+ * All classes get defined in the context class loader since the generator resolves entity classes by name.
+ * <p>
+ * usage: new SyntheticDomain.Generator().withTemporalEntityRatio(0.2).withForeignKeysPerEntity(3).generate(5000).addTo(profile)
+ *
+ * @author Georg Kohlweiss
+ */
+public class SyntheticDomain {
+
+    private static final AtomicInteger DOMAIN_SEQ = new AtomicInteger();
+
+    private final List<Class> entityClasses;
+    private final List<Class> historyEntityClasses;
+    private final List<Class> mappedSuperclasses;
+
+    private SyntheticDomain(List<Class> entityClasses, List<Class> historyEntityClasses, List<Class> mappedSuperclasses) {
+        this.entityClasses = Collections.unmodifiableList(entityClasses);
+        this.historyEntityClasses = Collections.unmodifiableList(historyEntityClasses);
+        this.mappedSuperclasses = Collections.unmodifiableList(mappedSuperclasses);
+    }
+
+    /**
+     * @return all entity classes including I18N detail entities, in the order they were generated
+     */
+    public List<Class> getEntityClasses() {
+        return entityClasses;
+    }
+
+    /**
+     * @return history entity classes of all {@link TemporalEntity} annotated entities, these are not part of the
+     * persistence unit but need to be resolvable for the history tables to be generated
+     */
+    public List<Class> getHistoryEntityClasses() {
+        return historyEntityClasses;
+    }
+
+    /**
+     * @return mapped superclasses from root to leaf
+     */
+    public List<Class> getMappedSuperclasses() {
+        return mappedSuperclasses;
+    }
+
+    public void addTo(DDLGenerator.Profile profile) {
+        for (Class entityClass : entityClasses) {
+            profile.addPersistenceClass(entityClass);
+        }
+    }
+
+    static String getTableName(int idx) {
+        return String.format("SYN%05d", idx);
+    }
+
+    /**
+     * Configures the mix of features, each ratio is the probability of an entity to get the feature.
+     * The structure is derived from the seed only, so generating the same number of entities with the same
+     * configuration results in equally structured domains (in different packages).
+     */
+    public static class Generator {
+        private long seed = 4711L;
+        private double auditableRatio;
+        private double temporalEntityRatio;
+        private double intervalPartitioningRatio;
+        private double layeredTablesViewRatio;
+        private double i18nRatio;
+        private int mappedSuperclassDepth;
+        private double mappedSuperclassRatio = 1d;
+        private int foreignKeysPerEntity = 1;
+
+        private ClassPool pool = ClassPool.getDefault();
+        private ConstPool cp;
+
+        public Generator withSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Generator withAuditableRatio(double auditableRatio) {
+            this.auditableRatio = auditableRatio;
+            return this;
+        }
+
+        /**
+         * temporal entities are always {@link Auditable} as the history triggers maintain the audit columns
+         */
+        public Generator withTemporalEntityRatio(double temporalEntityRatio) {
+            this.temporalEntityRatio = temporalEntityRatio;
+            return this;
+        }
+
+        public Generator withIntervalPartitioningRatio(double intervalPartitioningRatio) {
+            this.intervalPartitioningRatio = intervalPartitioningRatio;
+            return this;
+        }
+
+        /**
+         * layered table views neither get nor are target of foreign keys and do not combine with other features
+         */
+        public Generator withLayeredTablesViewRatio(double layeredTablesViewRatio) {
+            this.layeredTablesViewRatio = layeredTablesViewRatio;
+            return this;
+        }
+
+        /**
+         * each entity chosen gets an additional I18N detail entity referencing it
+         */
+        public Generator withI18NRatio(double i18nRatio) {
+            this.i18nRatio = i18nRatio;
+            return this;
+        }
+
+        /**
+         * @param depth number of {@link MappedSuperclass} classes in the chain, the root declares the id
+         * @param ratio ratio of entities extending the leaf of the chain
+         */
+        public Generator withMappedSuperclassChain(int depth, double ratio) {
+            this.mappedSuperclassDepth = depth;
+            this.mappedSuperclassRatio = ratio;
+            return this;
+        }
+
+        /**
+         * @param foreignKeysPerEntity number of many-to-one relations to randomly chosen entities generated before
+         */
+        public Generator withForeignKeysPerEntity(int foreignKeysPerEntity) {
+            this.foreignKeysPerEntity = foreignKeysPerEntity;
+            return this;
+        }
+
+        /**
+         * @param size number of entities, not counting the I18N detail entities
+         * @return the generated domain with all classes loaded
+         */
+        public synchronized SyntheticDomain generate(int size) {
+            if (size > 99999) {
+                throw new IllegalArgumentException("cannot generate more than 99999 entities, table names would exceed the naming scheme");
+            }
+            String packageName = SyntheticDomain.class.getPackage().getName() + ".synthetic.d" + DOMAIN_SEQ.incrementAndGet();
+            Random random = new Random(seed);
+
+            List<CtClass> superclasses = new ArrayList<CtClass>();
+            List<CtClass> entities = new ArrayList<CtClass>();
+            List<CtClass> historyEntities = new ArrayList<CtClass>();
+            List<CtClass> referenceable = new ArrayList<CtClass>();
+
+            try {
+                CtClass superclass = null;
+                for (int level = 1; level <= mappedSuperclassDepth; level++) {
+                    superclass = createMappedSuperclass(packageName, level, superclass);
+                    superclasses.add(superclass);
+                }
+
+                for (int i = 0; i < size; i++) {
+                    String tableName = getTableName(i);
+                    CtClass entity = pool.makeClass(packageName + ".Entity" + i);
+                    entity.setModifiers(Modifier.PUBLIC);
+                    cp = entity.getClassFile().getConstPool();
+
+                    if (random.nextDouble() < layeredTablesViewRatio) {
+                        addLayeredTablesViewEntity(entity, tableName);
+                        entities.add(entity);
+                        continue;
+                    }
+
+                    boolean temporal = random.nextDouble() < temporalEntityRatio;
+                    boolean auditable = temporal || random.nextDouble() < auditableRatio;
+                    boolean partitioned = random.nextDouble() < intervalPartitioningRatio;
+                    boolean i18n = random.nextDouble() < i18nRatio;
+
+                    List<Annotation> annotations = getEntityAnnotations(tableName, true);
+                    if (auditable) {
+                        annotations.add(annotation(Auditable.class));
+                    }
+                    if (temporal) {
+                        annotations.add(annotation(TemporalEntity.class, "historyTableName", string(tableName + "_HST")));
+                    }
+                    if (partitioned) {
+                        annotations.add(annotation(IntervalPartitioning.class, "columnName", string("VALID_FROM")));
+                    }
+                    entity.getClassFile().addAttribute(annotations(annotations.toArray(new Annotation[annotations.size()])));
+
+                    if (superclass != null && random.nextDouble() < mappedSuperclassRatio) {
+                        entity.setSuperclass(superclass);
+                    }
+                    else {
+                        addField(entity, String.class, "id", annotation(Id.class), column("ID", 36));
+                    }
+                    addField(entity, String.class, "name", column("NAME", 100));
+                    addField(entity, Long.class, "amount", column("AMOUNT", null));
+                    addField(entity, java.util.Date.class, "validFrom", column("VALID_FROM", null));
+
+                    for (int fk = 0; fk < foreignKeysPerEntity && !referenceable.isEmpty(); fk++) {
+                        CtClass target = referenceable.get(random.nextInt(referenceable.size()));
+                        addField(entity, target, "ref" + fk,
+                                annotation(ManyToOne.class),
+                                annotation(JoinColumn.class, "name", string("REF" + fk + "_ID")));
+                    }
+
+                    entity.addConstructor(CtNewConstructor.defaultConstructor(entity));
+                    entities.add(entity);
+                    referenceable.add(entity);
+
+                    if (temporal) {
+                        historyEntities.add(createHistoryEntity(entity.getName() + CreateEntities.HISTORY_ENTITY_SUFFIX, tableName + "_HST"));
+                    }
+                    if (i18n) {
+                        entities.add(createI18NDetailEntity(entity, tableName));
+                    }
+                }
+
+                // superclasses need to be defined before their subclasses
+                List<Class> mappedSuperclasses = toClasses(superclasses);
+                return new SyntheticDomain(toClasses(entities), toClasses(historyEntities), mappedSuperclasses);
+            } catch (CannotCompileException e) {
+                throw new IllegalStateException("cannot generate synthetic domain of " + size + " entities", e);
+            } catch (NotFoundException e) {
+                throw new IllegalStateException("cannot generate synthetic domain of " + size + " entities", e);
+            } finally {
+                cp = null;
+            }
+        }
+
+        private CtClass createMappedSuperclass(String packageName, int level, CtClass superclass) throws CannotCompileException, NotFoundException {
+            CtClass ctClass = pool.makeClass(packageName + ".Base" + level);
+            ctClass.setModifiers(Modifier.PUBLIC | Modifier.ABSTRACT);
+            cp = ctClass.getClassFile().getConstPool();
+            ctClass.getClassFile().addAttribute(annotations(annotation(MappedSuperclass.class)));
+
+            if (superclass != null) {
+                ctClass.setSuperclass(superclass);
+            }
+            else {
+                addField(ctClass, String.class, "id", annotation(Id.class), column("ID", 36));
+            }
+            addField(ctClass, String.class, "attr" + level, column("ATTR_" + level, 50));
+
+            ctClass.addConstructor(CtNewConstructor.defaultConstructor(ctClass));
+            return ctClass;
+        }
+
+        private void addLayeredTablesViewEntity(CtClass entity, String tableName) throws CannotCompileException, NotFoundException {
+            // no index on the view, the layered tables are indexed by the generator
+            List<Annotation> annotations = getEntityAnnotations(tableName, false);
+
+            ArrayMemberValue keyColumns = new ArrayMemberValue(new StringMemberValue(cp), cp);
+            keyColumns.setValue(new MemberValue[]{string("NAME")});
+            ArrayMemberValue tableNames = new ArrayMemberValue(new StringMemberValue(cp), cp);
+            tableNames.setValue(new MemberValue[]{string(tableName + "_COR"), string(tableName + "_IMP")});
+            annotations.add(annotation(LayeredTablesView.class, "keyColumns", keyColumns, "tableNamesInOrder", tableNames));
+
+            entity.getClassFile().addAttribute(annotations(annotations.toArray(new Annotation[annotations.size()])));
+
+            addField(entity, String.class, "id", annotation(Id.class), column("ID", 36));
+            addField(entity, String.class, "name", column("NAME", 100));
+            addField(entity, Long.class, "amount", column("AMOUNT", null));
+            entity.addConstructor(CtNewConstructor.defaultConstructor(entity));
+        }
+
+        private CtClass createI18NDetailEntity(CtClass baseEntity, String baseTableName) throws CannotCompileException, NotFoundException {
+            CtClass detail = pool.makeClass(baseEntity.getName() + "I18N");
+            detail.setModifiers(Modifier.PUBLIC);
+            cp = detail.getClassFile().getConstPool();
+
+            List<Annotation> annotations = new ArrayList<Annotation>();
+            annotations.add(annotation(Entity.class));
+            annotations.add(annotation(javax.persistence.Table.class, "name", string(baseTableName + "_DESC")));
+            annotations.add(annotation(com.github.gekoh.yagen.api.Table.class, "shortName", string(baseTableName + "D")));
+            detail.getClassFile().addAttribute(annotations(annotations.toArray(new Annotation[annotations.size()])));
+
+            addField(detail, String.class, "compositeId", annotation(Id.class), column("COMPOSITE_ID", 50));
+            addField(detail, String.class, "isPersistent", column("IS_PERSISTENT", 1));
+            addField(detail, baseEntity, "baseEntity",
+                    annotation(ManyToOne.class),
+                    annotation(I18NDetailEntityRelation.class),
+                    annotation(JoinColumn.class, "name", string("BASE_ID")));
+            addField(detail, String.class, "languageCd", column("LANGUAGE_CD", 2));
+            addField(detail, String.class, "description", column("DESCRIPTION", 200));
+
+            detail.addConstructor(CtNewConstructor.defaultConstructor(detail));
+            return detail;
+        }
+
+        private CtClass createHistoryEntity(String className, String tableName) throws CannotCompileException, NotFoundException {
+            CtClass hstEntity = pool.makeClass(className);
+            hstEntity.setModifiers(Modifier.PUBLIC);
+            cp = hstEntity.getClassFile().getConstPool();
+
+            hstEntity.getClassFile().addAttribute(annotations(
+                    annotation(Entity.class),
+                    annotation(javax.persistence.Table.class, "name", string(tableName))));
+            addField(hstEntity, String.class, "hstUuid", annotation(Id.class), column("HST_UUID", 32));
+
+            hstEntity.addConstructor(CtNewConstructor.defaultConstructor(hstEntity));
+            return hstEntity;
+        }
+
+        private List<Annotation> getEntityAnnotations(String tableName, boolean withIndex) {
+            Annotation table = annotation(javax.persistence.Table.class, "name", string(tableName));
+            if (withIndex) {
+                Annotation index = annotation(javax.persistence.Index.class,
+                        "name", string(tableName + "_NAME_IX"),
+                        "columnList", string("NAME"));
+                ArrayMemberValue indexes = new ArrayMemberValue(new AnnotationMemberValue(cp), cp);
+                indexes.setValue(new MemberValue[]{new AnnotationMemberValue(index, cp)});
+                table.addMemberValue("indexes", indexes);
+            }
+
+            List<Annotation> annotations = new ArrayList<Annotation>();
+            annotations.add(annotation(Entity.class));
+            annotations.add(table);
+            annotations.add(annotation(com.github.gekoh.yagen.api.Table.class, "shortName", string(tableName)));
+            return annotations;
+        }
+
+        private List<Class> toClasses(List<CtClass> ctClasses) throws CannotCompileException {
+            List<Class> classes = new ArrayList<Class>(ctClasses.size());
+            for (CtClass ctClass : ctClasses) {
+                classes.add(ctClass.toClass());
+            }
+            for (CtClass ctClass : ctClasses) {
+                ctClass.detach();
+            }
+            return classes;
+        }
+
+        private void addField(CtClass ctClass, Class type, String name, Annotation... fieldAnnotations) throws CannotCompileException, NotFoundException {
+            addField(ctClass, pool.get(type.getName()), name, fieldAnnotations);
+        }
+
+        private void addField(CtClass ctClass, CtClass type, String name, Annotation... fieldAnnotations) throws CannotCompileException {
+            CtField field = new CtField(type, name, ctClass);
+            field.setModifiers(Modifier.PRIVATE);
+            field.getFieldInfo().addAttribute(annotations(fieldAnnotations));
+            ctClass.addField(field);
+        }
+
+        private Annotation column(String name, Integer length) {
+            Annotation column = annotation(Column.class, "name", string(name));
+            if (length != null) {
+                column.addMemberValue("length", new IntegerMemberValue(cp, length));
+            }
+            return column;
+        }
+
+        private StringMemberValue string(String value) {
+            return new StringMemberValue(value, cp);
+        }
+
+        private AnnotationsAttribute annotations(Annotation... annotations) {
+            AnnotationsAttribute attribute = new AnnotationsAttribute(cp, AnnotationsAttribute.visibleTag);
+            attribute.setAnnotations(annotations);
+            return attribute;
+        }
+
+        /**
+         * @param members alternating member name and {@link MemberValue}
+         */
+        private Annotation annotation(Class annotationType, Object... members) {
+            Annotation annotation = new Annotation(annotationType.getName(), cp);
+            for (int i = 0; i < members.length; i += 2) {
+                annotation.addMemberValue((String) members[i], (MemberValue) members[i + 1]);
+            }
+            return annotation;
+        }
+    }
+}
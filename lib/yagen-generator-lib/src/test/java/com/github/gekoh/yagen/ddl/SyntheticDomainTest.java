@@ -0,0 +1,164 @@
+package com.github.gekoh.yagen.ddl;
+
+import com.github.gekoh.yagen.api.Auditable;
+import com.github.gekoh.yagen.api.I18NDetailEntityRelation;
+import com.github.gekoh.yagen.api.IntervalPartitioning;
+import com.github.gekoh.yagen.api.LayeredTablesView;
+import com.github.gekoh.yagen.api.TemporalEntity;
+import com.github.gekoh.yagen.hst.CreateEntities;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.Oracle10gDialect;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.persistence.MappedSuperclass;
+import javax.persistence.Table;
+import java.lang.reflect.Field;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class SyntheticDomainTest {
+
+    private static SyntheticDomain.Generator createMixedGenerator() {
+        return new SyntheticDomain.Generator()
+                .withAuditableRatio(0.5)
+                .withTemporalEntityRatio(0.2)
+                .withIntervalPartitioningRatio(0.1)
+                .withLayeredTablesViewRatio(0.05)
+                .withI18NRatio(0.1)
+                .withMappedSuperclassChain(4, 0.5)
+                .withForeignKeysPerEntity(3);
+    }
+
+    @Test
+    public void testFeatureMix() throws Exception {
+        SyntheticDomain domain = createMixedGenerator().generate(500);
+
+        int temporal = 0, auditable = 0, partitioned = 0, layered = 0, i18nDetails = 0, extendingChain = 0;
+
+        for (Class entityClass : domain.getEntityClasses()) {
+            Assert.assertTrue(entityClass.isAnnotationPresent(Entity.class));
+            Assert.assertNotNull(entityClass.getAnnotation(Table.class));
+
+            if (entityClass.isAnnotationPresent(TemporalEntity.class)) {
+                temporal++;
+                Assert.assertTrue("temporal entities need to be auditable", entityClass.isAnnotationPresent(Auditable.class));
+                Assert.assertNotNull(Class.forName(entityClass.getName() + CreateEntities.HISTORY_ENTITY_SUFFIX));
+            }
+            if (entityClass.isAnnotationPresent(Auditable.class)) {
+                auditable++;
+            }
+            if (entityClass.isAnnotationPresent(IntervalPartitioning.class)) {
+                partitioned++;
+            }
+            if (entityClass.isAnnotationPresent(LayeredTablesView.class)) {
+                layered++;
+                Assert.assertEquals(0, countManyToOneFields(entityClass));
+            }
+            if (entityClass.getSuperclass().isAnnotationPresent(MappedSuperclass.class)) {
+                extendingChain++;
+            }
+            for (Field field : entityClass.getDeclaredFields()) {
+                if (field.isAnnotationPresent(I18NDetailEntityRelation.class)) {
+                    i18nDetails++;
+                }
+            }
+        }
+
+        Assert.assertEquals(temporal, domain.getHistoryEntityClasses().size());
+        Assert.assertTrue(temporal > 0 && auditable > temporal && partitioned > 0 && layered > 0 && i18nDetails > 0 && extendingChain > 0);
+        Assert.assertEquals(500 + i18nDetails, domain.getEntityClasses().size());
+
+        Assert.assertEquals(4, domain.getMappedSuperclasses().size());
+        Class root = domain.getMappedSuperclasses().get(0);
+        Assert.assertTrue(root.getDeclaredField("id").isAnnotationPresent(Id.class));
+        Assert.assertSame(root, domain.getMappedSuperclasses().get(3).getSuperclass().getSuperclass().getSuperclass());
+
+        // the dense part of the graph: every regular entity after the first references 3 entities
+        Class last = domain.getEntityClasses().get(domain.getEntityClasses().size() - 1);
+        if (!last.isAnnotationPresent(LayeredTablesView.class) && countI18NRelations(last) == 0) {
+            Assert.assertEquals(3, countManyToOneFields(last));
+        }
+    }
+
+    @Test
+    public void testSameStructureForSameSeed() {
+        SyntheticDomain first = createMixedGenerator().generate(100);
+        SyntheticDomain second = createMixedGenerator().generate(100);
+
+        Assert.assertEquals(first.getEntityClasses().size(), second.getEntityClasses().size());
+        for (int i = 0; i < first.getEntityClasses().size(); i++) {
+            Class firstClass = first.getEntityClasses().get(i);
+            Class secondClass = second.getEntityClasses().get(i);
+
+            Assert.assertNotSame(firstClass, secondClass);
+            Assert.assertEquals(firstClass.getSimpleName(), secondClass.getSimpleName());
+            Assert.assertEquals(firstClass.getAnnotations().length, secondClass.getAnnotations().length);
+            Assert.assertEquals(countManyToOneFields(firstClass), countManyToOneFields(secondClass));
+        }
+    }
+
+    @Test
+    public void testCreateDDLInit() {
+        SyntheticDomain domain = createMixedGenerator().generate(300);
+
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("synthetic");
+        domain.addTo(profile);
+        CreateDDL createDDL = new CreateDDL(profile, new Oracle10gDialect());
+
+        for (Class entityClass : domain.getEntityClasses()) {
+            String tableName = ((Table) entityClass.getAnnotation(Table.class)).name().toLowerCase();
+            TableConfig tableConfig = createDDL.getConfigForTableName(tableName);
+            Assert.assertNotNull("no table config for " + tableName, tableConfig);
+
+            if (countI18NRelations(entityClass) > 0) {
+                Assert.assertEquals("BASE_ID", tableConfig.getI18nBaseEntityFkCol());
+            }
+        }
+    }
+
+    @Test
+    public void testSharedModelForSeveralDialects() throws Exception {
+        SyntheticDomain domain = createMixedGenerator().generate(100);
+
+        DDLGenerator.Profile profile = new DDLGenerator.Profile("synthetic");
+        domain.addTo(profile);
+        CreateDDL sharedModel = CreateDDL.createSharedModel(profile);
+        profile.setSharedModel(sharedModel);
+
+        CreateDDL oracle = new CreateDDL(profile.clone(), new Oracle10gDialect());
+        CreateDDL hsqldb = new CreateDDL(profile.clone(), new HSQLDialect());
+
+        for (Class entityClass : domain.getEntityClasses()) {
+            String tableName = ((Table) entityClass.getAnnotation(Table.class)).name().toLowerCase();
+            TableConfig tableConfig = sharedModel.getConfigForTableName(tableName);
+            Assert.assertNotNull("no table config for " + tableName, tableConfig);
+            Assert.assertSame(tableConfig, oracle.getConfigForTableName(tableName));
+            Assert.assertSame(tableConfig, hsqldb.getConfigForTableName(tableName));
+        }
+    }
+
+    private static int countManyToOneFields(Class entityClass) {
+        int count = 0;
+        for (Field field : entityClass.getDeclaredFields()) {
+            if (field.isAnnotationPresent(ManyToOne.class)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countI18NRelations(Class entityClass) {
+        int count = 0;
+        for (Field field : entityClass.getDeclaredFields()) {
+            if (field.isAnnotationPresent(I18NDetailEntityRelation.class)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
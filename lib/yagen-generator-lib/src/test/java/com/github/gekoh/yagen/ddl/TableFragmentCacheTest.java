@@ -0,0 +1,87 @@
+package com.github.gekoh.yagen.ddl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class TableFragmentCacheTest {
+
+    private static TableFragment createFragment() {
+        TableFragment fragment = new TableFragment();
+        fragment.setSql("create table cached_jobs (id varchar2(36) not null, text varchar2(20) default '\u00e4\u00f6\u00fc')");
+        fragment.getDeferredDdl().append("comment on table cached_jobs is 'jobs'");
+        fragment.addDuplexedDdl(ObjectType.TRIGGER, "CACHED_JOBS_HTR", "create or replace\ntrigger cached_jobs_htr");
+        fragment.addDBObject("create trigger cached_jobs_atu");
+        fragment.addObjectName("cached_jobs_htr");
+        fragment.addDropStatement("cached_jobs", "drop table cached_jobs");
+        fragment.addHistoryEntity("com.github.gekoh.yagen.CachedJobHst", "cached_jobs_hst");
+        fragment.setHistoryInitRequired(true);
+        return fragment;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File cacheDir = createCacheDir();
+        try {
+            TableFragmentCache cache = new TableFragmentCache(cacheDir);
+            TableFragment fragment = createFragment();
+            cache.store("abc", fragment);
+
+            TableFragment loaded = cache.load("abc");
+            Assert.assertNotNull(loaded);
+            Assert.assertEquals(fragment.getSql(), loaded.getSql());
+            Assert.assertEquals(fragment.getDeferredDdl().toString(), loaded.getDeferredDdl().toString());
+            Assert.assertEquals(1, loaded.getDuplexedDdls().size());
+            Assert.assertArrayEquals(fragment.getDuplexedDdls().get(0), loaded.getDuplexedDdls().get(0));
+            Assert.assertEquals(fragment.getDBObjects(), loaded.getDBObjects());
+            Assert.assertEquals(fragment.getObjectNames(), loaded.getObjectNames());
+            Assert.assertArrayEquals(fragment.getDropStatements().get(0), loaded.getDropStatements().get(0));
+            Assert.assertArrayEquals(fragment.getHistoryEntities().get(0), loaded.getHistoryEntities().get(0));
+            Assert.assertTrue(loaded.isHistoryInitRequired());
+            Assert.assertEquals(1, cache.getHits());
+        } finally {
+            delete(cacheDir);
+        }
+    }
+
+    @Test
+    public void testSerializedObjectRejected() throws Exception {
+        File cacheDir = createCacheDir();
+        try {
+            File file = new File(cacheDir, "abc.fragment");
+            ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file));
+            try {
+                out.writeObject(new ArrayList<String>());
+            } finally {
+                out.close();
+            }
+
+            TableFragmentCache cache = new TableFragmentCache(cacheDir);
+            Assert.assertNull(cache.load("abc"));
+            Assert.assertFalse(file.exists());
+            Assert.assertEquals(1, cache.getMisses());
+        } finally {
+            delete(cacheDir);
+        }
+    }
+
+    private static File createCacheDir() throws Exception {
+        File cacheDir = File.createTempFile("yagen-fragments", "");
+        Assert.assertTrue(cacheDir.delete() && cacheDir.mkdir());
+        return cacheDir;
+    }
+
+    private static void delete(File cacheDir) {
+        for (File file : cacheDir.listFiles()) {
+            file.delete();
+        }
+        cacheDir.delete();
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.gekoh.yagen.ddl;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.Velocity;
+import org.hibernate.dialect.Oracle10gDialect;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Scanner;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class TemplateCacheTest {
+
+    private static final String TEMPLATE = "CascadeNullableTrigger.vm.pl.sql";
+
+    /**
+     * parses every template merged by CreateDDL, so syntax errors in templates fail the build instead of the generation
+     */
+    @Test
+    public void testPrecompile() {
+        TemplateCache templateCache = new TemplateCache();
+        templateCache.precompile();
+
+        for (String resource : TemplateCache.TEMPLATE_RESOURCES) {
+            Assert.assertSame(resource, templateCache.getTemplate(resource), templateCache.getTemplate(resource));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingTemplate() {
+        new TemplateCache().getTemplate("NoSuchTemplate.vm.sql");
+    }
+
+    @Test
+    public void testMergeSameAsEvaluate() throws Exception {
+        String source = readResource(TemplateCache.SET_VARS_RESOURCE) + readResource(TEMPLATE);
+
+        StringWriter evaluated = new StringWriter();
+        Velocity.evaluate(createContext(), evaluated, TEMPLATE, source);
+
+        StringWriter merged = new StringWriter();
+        new TemplateCache().merge(TEMPLATE, createContext(), merged);
+
+        Assert.assertEquals(evaluated.toString(), merged.toString());
+    }
+
+    static String readResource(String resource) {
+        return new Scanner(CreateDDL.class.getResourceAsStream(resource), "UTF-8").useDelimiter("\\A").next();
+    }
+
+    static VelocityContext createContext() {
+        VelocityContext context = new VelocityContext();
+        context.put("dialect", new Oracle10gDialect());
+        context.put("triggerName", "AJC_JOBS_ID_NNT");
+        context.put("operation", null);
+        context.put("tableName", "AMP_JOB_CONFIGS");
+        context.put("fkColumnName", "JOBS_ID");
+        context.put("SYSTEM_SETTING", "SYSTEM_SETTING");
+        context.put("new", ":new");
+        context.put("old", ":old");
+        return context;
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.gekoh.yagen.ddl.scan;
+
+import com.github.gekoh.yagen.api.Generated;
+import com.github.gekoh.yagen.api.Profile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.Inheritance;
+import javax.persistence.InheritanceType;
+import javax.persistence.MappedSuperclass;
+import javax.persistence.Table;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class ClassMetadataTest {
+
+    @MappedSuperclass
+    public static class ScannedBase {
+    }
+
+    @Entity
+    @Table(name = "SCANNED")
+    @Profile({"first", "second"})
+    @Generated
+    @Inheritance(strategy = InheritanceType.JOINED)
+    public static class ScannedEntity extends ScannedBase {
+    }
+
+    public static class NotAnnotated {
+    }
+
+    @Test
+    public void testSameMetadataFromBytecodeAndReflection() throws Exception {
+        ClassMetadata reflection = new ReflectionClassMetadata(ScannedEntity.class);
+        ClassMetadata bytecode = readClassFile(ScannedEntity.class);
+
+        for (ClassMetadata metadata : Arrays.asList(reflection, bytecode)) {
+            Assert.assertEquals(ScannedEntity.class.getName(), metadata.getClassName());
+            Assert.assertEquals(ScannedBase.class.getName(), metadata.getSuperclassName());
+            Assert.assertTrue(metadata.isAnnotationPresent(Entity.class));
+            Assert.assertFalse(metadata.isAnnotationPresent(MappedSuperclass.class));
+            Assert.assertEquals("SCANNED", metadata.getStringAttribute(Table.class, "name"));
+            Assert.assertEquals("", metadata.getStringAttribute(Table.class, "schema"));
+            Assert.assertTrue(Arrays.equals(new String[]{"first", "second"}, metadata.getStringArrayAttribute(Profile.class, "value")));
+            Assert.assertFalse(metadata.getBooleanAttribute(Generated.class, "isView"));
+            Assert.assertEquals(InheritanceType.JOINED.name(), metadata.getAnnotationAttribute(Inheritance.class, "strategy"));
+            Assert.assertNull(metadata.getStringArrayAttribute(MappedSuperclass.class, "value"));
+        }
+
+        Assert.assertNull(readClassFile(ScannedBase.class).getSuperclassName());
+        Assert.assertNull(new ReflectionClassMetadata(ScannedBase.class).getSuperclassName());
+    }
+
+    @Test
+    public void testScanClassDirectory() throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "yagen-scan-" + System.nanoTime());
+        for (Class type : Arrays.asList(ScannedBase.class, ScannedEntity.class, NotAnnotated.class)) {
+            copyClassFile(type, dir);
+        }
+
+        ClassMetadataRepository repository = new ClassMetadataRepository();
+        Assert.assertEquals(3, repository.scan(2, dir));
+
+        List<String> persistenceClasses = repository.getClassNamesAnnotatedWith(Entity.class, MappedSuperclass.class);
+        Assert.assertEquals(Arrays.asList(ScannedBase.class.getName(), ScannedEntity.class.getName()), persistenceClasses);
+
+        ClassMetadata entity = repository.get(ScannedEntity.class);
+        Assert.assertTrue(entity instanceof BytecodeClassMetadata);
+        Assert.assertSame(entity, repository.get(ScannedEntity.class.getName()));
+        Assert.assertTrue(repository.getSuperclass(entity).isAnnotationPresent(MappedSuperclass.class));
+        Assert.assertNull(repository.getSuperclass(repository.getSuperclass(entity)));
+
+        // not scanned classes are read from the class loader
+        Assert.assertTrue(repository.get(ClassMetadataTest.class.getName()) instanceof BytecodeClassMetadata);
+        Assert.assertNull(repository.get("com.github.gekoh.yagen.ddl.scan.DoesNotExist"));
+    }
+
+    private static ClassMetadata readClassFile(Class type) throws IOException {
+        return BytecodeClassMetadata.read(type.getResourceAsStream(getClassFileName(type)));
+    }
+
+    private static String getClassFileName(Class type) {
+        return type.getName().substring(type.getName().lastIndexOf('.') + 1) + ".class";
+    }
+
+    private static void copyClassFile(Class type, File root) throws IOException {
+        File file = new File(root, type.getName().replace('.', '/') + ".class");
+        file.getParentFile().mkdirs();
+        file.deleteOnExit();
+
+        InputStream in = type.getResourceAsStream(getClassFileName(type));
+        OutputStream out = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) > 0) {
+                out.write(buffer, 0, len);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+}
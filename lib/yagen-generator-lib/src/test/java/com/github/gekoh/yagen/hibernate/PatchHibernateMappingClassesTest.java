@@ -0,0 +1,36 @@
+package com.github.gekoh.yagen.hibernate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+
+/**
+ * @author Georg Kohlweiss
+ */
+public class PatchHibernateMappingClassesTest {
+
+    @Test
+    public void testHasMarkerField() throws Exception {
+        Assert.assertFalse(hasMarkerField(Unpatched.class));
+        Assert.assertTrue(hasMarkerField(Patched.class));
+    }
+
+    private static boolean hasMarkerField(Class clazz) throws Exception {
+        InputStream classfile = clazz.getResourceAsStream(clazz.getName().substring(clazz.getName().lastIndexOf('.') + 1) + ".class");
+        try {
+            return PatchHibernateMappingClasses.hasMarkerField(classfile);
+        } finally {
+            classfile.close();
+        }
+    }
+
+    public static class Unpatched {
+        private boolean yagenInit;
+        private String yagenInitDoneSuffix;
+    }
+
+    public static class Patched {
+        private boolean yagenInitDone;
+    }
+}